@@ -1,5 +1,6 @@
 package com.swiftcryptollc.crypto.interfaces;
 
+import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
 import com.swiftcryptollc.crypto.spec.KyberParameterSpec;
 
 /**
@@ -14,4 +15,25 @@ public interface KyberKey {
      * @return the key parameters
      */
     public KyberParameterSpec getParams();
+
+    /**
+     * Returns whether the key carries the default p and g. Kyber never uses
+     * them, so they only need to be compared when a key does not.
+     *
+     * @return true if p and g are the defaults
+     */
+    public default boolean hasDefaultParams() {
+        KyberParameterSpec params = getParams();
+        return KyberParams.default_p.equals(params.getP()) && KyberParams.default_g.equals(params.getG());
+    }
+
+    /**
+     * Returns whether the key is for Kyber-90s. Kyber-90s keys only work with
+     * the Kyber-90s key agreement.
+     *
+     * @return true for a Kyber-90s key
+     */
+    public default boolean isKyber90s() {
+        return false;
+    }
 }
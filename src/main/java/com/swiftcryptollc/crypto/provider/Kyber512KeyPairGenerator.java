@@ -1,7 +1,5 @@
 package com.swiftcryptollc.crypto.provider;
 
-import com.swiftcryptollc.crypto.provider.kyber.Indcpa;
-import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
 import com.swiftcryptollc.crypto.spec.KyberParameterSpec;
 import java.security.*;
 import java.security.spec.AlgorithmParameterSpec;
@@ -59,40 +57,11 @@ public final class Kyber512KeyPairGenerator extends KeyPairGeneratorSpi {
         } catch (Exception ex) {
 
         }
-        KyberPKI kyberPKI = generateKeys512(random);
+        long start = System.nanoTime();
+        KyberKeyGenEvent event = new KyberKeyGenEvent(kyberKeySize);
+        KyberPKI kyberPKI = KyberKem.generateKeyPair(kyberKeySize.getParameterSet(), random);
+        KyberMetrics.commit(event);
+        KyberMetrics.recordKeyGen(kyberKeySize, System.nanoTime() - start);
         return new KeyPair(kyberPKI.getPublicKey(), kyberPKI.getPrivateKey());
     }
-
-    /**
-     * Generate a 512 public/private key set
-     */
-    private KyberPKI generateKeys512(SecureRandom rand) {
-        int paramsK = 2;
-        KyberPKI kyberPKI = new KyberPKI();
-        try {
-            KyberPackedPKI indcpaPKI = Indcpa.generateKyberKeys(paramsK);
-            byte[] packedPublicKey = indcpaPKI.getPackedPublicKey();
-            byte[] packedPrivateKey = indcpaPKI.getPackedPrivateKey();
-            byte[] privateKeyFixedLength = new byte[KyberParams.Kyber512SKBytes];
-            MessageDigest md = MessageDigest.getInstance("SHA3-256");
-            byte[] encodedHash = md.digest(packedPublicKey);
-            byte[] pkh = new byte[encodedHash.length];
-            System.arraycopy(encodedHash, 0, pkh, 0, encodedHash.length);
-            byte[] rnd = new byte[KyberParams.paramsSymBytes];
-            rand.nextBytes(rnd);
-            int offsetEnd = packedPrivateKey.length;
-            System.arraycopy(packedPrivateKey, 0, privateKeyFixedLength, 0, offsetEnd);
-            System.arraycopy(packedPublicKey, 0, privateKeyFixedLength, offsetEnd, packedPublicKey.length);
-            offsetEnd = offsetEnd + packedPublicKey.length;
-            System.arraycopy(pkh, 0, privateKeyFixedLength, offsetEnd, pkh.length);
-            offsetEnd += pkh.length;
-            System.arraycopy(rnd, 0, privateKeyFixedLength, offsetEnd, rnd.length);
-            kyberPKI.setPublicKey(new KyberPublicKey(packedPublicKey, null, null));
-            kyberPKI.setPrivateKey(new KyberPrivateKey(privateKeyFixedLength, null, null));
-        } catch (Exception ex) {
-            System.out.println("generateKeys512 Exception! [" + ex.getMessage() + "]");
-            ex.printStackTrace();
-        }
-        return kyberPKI;
-    }
 }
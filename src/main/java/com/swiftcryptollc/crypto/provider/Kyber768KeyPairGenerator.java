@@ -1,7 +1,5 @@
 package com.swiftcryptollc.crypto.provider;
 
-import com.swiftcryptollc.crypto.provider.kyber.Indcpa;
-import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
 import com.swiftcryptollc.crypto.spec.KyberParameterSpec;
 import java.security.*;
 import java.security.spec.AlgorithmParameterSpec;
@@ -59,43 +57,11 @@ public final class Kyber768KeyPairGenerator extends KeyPairGeneratorSpi {
         } catch (Exception ex) {
 
         }
-        KyberPKI kyberPKI = generateKeys768(random);
+        long start = System.nanoTime();
+        KyberKeyGenEvent event = new KyberKeyGenEvent(kyberKeySize);
+        KyberPKI kyberPKI = KyberKem.generateKeyPair(kyberKeySize.getParameterSet(), random);
+        KyberMetrics.commit(event);
+        KyberMetrics.recordKeyGen(kyberKeySize, System.nanoTime() - start);
         return new KeyPair(kyberPKI.getPublicKey(), kyberPKI.getPrivateKey());
     }
-
-    /**
-     * Generate a 768 public/private key set
-     */
-    private KyberPKI generateKeys768(SecureRandom rand) {
-        KyberPKI kyberPKI = new KyberPKI();
-        int paramsK = 3;
-        try {
-            KyberPackedPKI indcpaPKI = Indcpa.generateKyberKeys(paramsK);
-            byte[] packedPrivateKey = indcpaPKI.getPackedPrivateKey();
-            byte[] packedPublicKey = indcpaPKI.getPackedPublicKey();
-            byte[] privateKeyFixedLength = new byte[KyberParams.Kyber768SKBytes];
-            MessageDigest md = MessageDigest.getInstance("SHA3-256");
-
-            byte[] encodedHash = md.digest(packedPublicKey);
-            byte[] pkh = new byte[encodedHash.length];
-            System.arraycopy(encodedHash, 0, pkh, 0, encodedHash.length);
-            byte[] rnd = new byte[KyberParams.paramsSymBytes];
-            rand.nextBytes(rnd);
-
-            int offsetEnd = packedPrivateKey.length;
-            System.arraycopy(packedPrivateKey, 0, privateKeyFixedLength, 0, offsetEnd);
-            System.arraycopy(packedPublicKey, 0, privateKeyFixedLength, offsetEnd, packedPublicKey.length);
-            offsetEnd = offsetEnd + packedPublicKey.length;
-
-            System.arraycopy(pkh, 0, privateKeyFixedLength, offsetEnd, pkh.length);
-            offsetEnd += pkh.length;
-            System.arraycopy(rnd, 0, privateKeyFixedLength, offsetEnd, rnd.length);
-            kyberPKI.setPublicKey(new KyberPublicKey(packedPublicKey, null, null));
-            kyberPKI.setPrivateKey(new KyberPrivateKey(privateKeyFixedLength, null, null));
-        } catch (Exception ex) {
-            System.out.println("generateKeys768 Exception! [" + ex.getMessage() + "]");
-            ex.printStackTrace();
-        }
-        return kyberPKI;
-    }
 }
@@ -0,0 +1,109 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import javax.crypto.KeyAgreementSpi;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+
+/**
+ * The Kyber-90s key agreement
+ *
+ * Runs the KyberKeyAgreement protocol with the Kyber-90s symmetric primitives,
+ * with keys from the Kyber-90s key pair generators. It rejects standard Kyber
+ * keys and cipher texts, and KyberKeyAgreement rejects Kyber-90s ones.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class Kyber90sKeyAgreement extends KeyAgreementSpi {
+
+    private final KyberKeyAgreement keyAgreement = new KyberKeyAgreement(true);
+
+    /**
+     * Empty constructor
+     */
+    public Kyber90sKeyAgreement() {
+    }
+
+    /**
+     * Initialize with a Kyber-90s Private Key
+     *
+     * @param key
+     * @throws InvalidKeyException
+     */
+    public void engineInit(Key key) throws InvalidKeyException {
+        keyAgreement.engineInit(key);
+    }
+
+    @Override
+    public void engineInit(Key key, SecureRandom random) throws InvalidKeyException {
+        keyAgreement.engineInit(key, random);
+    }
+
+    @Override
+    public void engineInit(Key key, AlgorithmParameterSpec params, SecureRandom random)
+            throws InvalidKeyException, InvalidAlgorithmParameterException {
+        keyAgreement.engineInit(key, params, random);
+    }
+
+    @Override
+    public Key engineDoPhase(Key key, boolean lastPhase) throws InvalidKeyException, IllegalStateException {
+        return keyAgreement.engineDoPhase(key, lastPhase);
+    }
+
+    @Override
+    protected byte[] engineGenerateSecret() throws IllegalStateException {
+        return keyAgreement.engineGenerateSecret();
+    }
+
+    @Override
+    protected int engineGenerateSecret(byte[] sharedSecret, int offset) throws IllegalStateException, ShortBufferException {
+        return keyAgreement.engineGenerateSecret(sharedSecret, offset);
+    }
+
+    @Override
+    protected SecretKey engineGenerateSecret(String algorithm)
+            throws IllegalStateException, NoSuchAlgorithmException, InvalidKeyException {
+        return keyAgreement.engineGenerateSecret(algorithm);
+    }
+
+    /**
+     * See {@link KyberKeyAgreement#generateSecrets(String...)}
+     *
+     * @param algorithms
+     * @return the secret keys in the requested order
+     * @throws IllegalStateException
+     * @throws NoSuchAlgorithmException
+     */
+    public SecretKey[] generateSecrets(String... algorithms) throws IllegalStateException, NoSuchAlgorithmException {
+        return keyAgreement.generateSecrets(algorithms);
+    }
+
+    /**
+     * See {@link KyberKeyAgreement#generateSecrets(String[], int[])}
+     *
+     * @param algorithms
+     * @param lengths
+     * @return the secret keys in the requested order
+     * @throws IllegalStateException
+     */
+    public SecretKey[] generateSecrets(String[] algorithms, int[] lengths) throws IllegalStateException {
+        return keyAgreement.generateSecrets(algorithms, lengths);
+    }
+
+    /**
+     * See {@link KyberKeyAgreement#decrypt(KyberKeySize, KyberCipherText)}
+     *
+     * @param kyberKeySize
+     * @param cipherText
+     * @return KyberDecrypted
+     * @throws NoSuchAlgorithmException
+     */
+    public KyberDecrypted decrypt(KyberKeySize kyberKeySize, KyberCipherText cipherText) throws NoSuchAlgorithmException {
+        return keyAgreement.decrypt(kyberKeySize, cipherText);
+    }
+}
@@ -0,0 +1,88 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.spec.KyberParameterSpec;
+import java.security.*;
+import java.security.spec.AlgorithmParameterSpec;
+
+/**
+ * Key pair generator for Kyber-90s, registered as Kyber512-90s, Kyber768-90s
+ * and Kyber1024-90s
+ *
+ * The keys have the same classes as standard Kyber keys, but they are marked
+ * as Kyber-90s keys, are encoded with a private, non-interoperable OID
+ * (KyberJCE.PRIVATE_OID_KYBER_90S) and only work with the
+ * Kyber-90s key agreement.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public abstract class Kyber90sKeyPairGenerator extends KeyPairGeneratorSpi {
+
+    private final KyberKeySize kyberKeySize;
+    private SecureRandom random;
+
+    public static final class Kyber512 extends Kyber90sKeyPairGenerator {
+
+        public Kyber512() {
+            super(KyberKeySize.KEY_512);
+        }
+    }
+
+    public static final class Kyber768 extends Kyber90sKeyPairGenerator {
+
+        public Kyber768() {
+            super(KyberKeySize.KEY_768);
+        }
+    }
+
+    public static final class Kyber1024 extends Kyber90sKeyPairGenerator {
+
+        public Kyber1024() {
+            super(KyberKeySize.KEY_1024);
+        }
+    }
+
+    Kyber90sKeyPairGenerator(KyberKeySize kyberKeySize) {
+        super();
+        this.kyberKeySize = kyberKeySize;
+    }
+
+    @Override
+    public void initialize(int keySize, SecureRandom random) {
+        if (keySize != kyberKeySize.getParamsK() * 256) {
+            throw new InvalidParameterException(
+                    "Kyber key size must be " + (kyberKeySize.getParamsK() * 256) + ". "
+                    + "The specific key size " + keySize + " is not supported");
+        }
+        this.random = random;
+    }
+
+    @Override
+    public void initialize(AlgorithmParameterSpec algParams,
+            SecureRandom random) throws InvalidAlgorithmParameterException {
+        if (!(algParams instanceof KyberParameterSpec)) {
+            throw new InvalidAlgorithmParameterException("Inappropriate parameter type");
+        }
+        if (((KyberParameterSpec) algParams).getKyberKeySize() != this.kyberKeySize) {
+            throw new InvalidAlgorithmParameterException("Invalid key size!");
+        }
+        this.random = random;
+    }
+
+    /**
+     * Generates a key pair.
+     *
+     * @return the new key pair
+     */
+    @Override
+    public KeyPair generateKeyPair() {
+        if (random == null) {
+            random = KyberJCE.getRandom();
+        }
+        long start = System.nanoTime();
+        KyberKeyGenEvent event = new KyberKeyGenEvent(kyberKeySize);
+        KyberPKI kyberPKI = KyberKem.generateKeyPair(kyberKeySize.getParameterSet(true), random);
+        KyberMetrics.commit(event);
+        KyberMetrics.recordKeyGen(kyberKeySize, System.nanoTime() - start);
+        return new KeyPair(kyberPKI.getPublicKey(), kyberPKI.getPrivateKey());
+    }
+}
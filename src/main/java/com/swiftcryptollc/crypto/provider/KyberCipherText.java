@@ -2,21 +2,20 @@ package com.swiftcryptollc.crypto.provider;
 
 import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
 import com.swiftcryptollc.crypto.spec.KyberParameterSpec;
-import com.swiftcryptollc.crypto.util.DerInputStream;
+import com.swiftcryptollc.crypto.util.DerCursor;
 import com.swiftcryptollc.crypto.util.DerOutputStream;
 import com.swiftcryptollc.crypto.util.DerValue;
 import com.swiftcryptollc.crypto.util.KyberKeyUtil;
-import com.swiftcryptollc.crypto.util.ObjectIdentifier;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.KeyRep;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.ProviderException;
 import java.security.PublicKey;
-import java.util.Objects;
 
 
 /**
@@ -26,6 +25,9 @@ public final class KyberCipherText implements PublicKey, Serializable {
 
     static final long serialVersionUID = 2748565237750324982L;
 
+    // whether this is a Kyber-90s cipher text
+    private boolean kyber90s;
+
     // the cipher text
     private byte[] c;
 
@@ -44,6 +46,9 @@ public final class KyberCipherText implements PublicKey, Serializable {
     // the private-value length (optional)
     private int l;
 
+    // SHA3-256 of c, computed on first use
+    private transient volatile byte[] cipherTextHash;
+
     /**
      * Make a Kyber cipher text out of a public value <code>c</code>, a prime
      * modulus <code>p</code>, and a base generator <code>g</code>.
@@ -68,11 +73,25 @@ public final class KyberCipherText implements PublicKey, Serializable {
      * @param p the prime modulus
      * @param g the base generator
      * @param l the private-value length
-     *
-     * @exception ProviderException if the key cannot be encoded
      */
     public KyberCipherText(byte[] c, BigInteger p, BigInteger g, int l)
             throws InvalidKeyException {
+        this(c, p, g, l, false);
+    }
+
+    /**
+     * Make a Kyber or Kyber-90s cipher text out of a public value
+     * <code>c</code>, a prime modulus <code>p</code>, a base generator
+     * <code>g</code>, and a private-value length <code>l</code>.
+     *
+     * @param c the public value
+     * @param p the prime modulus
+     * @param g the base generator
+     * @param l the private-value length
+     * @param kyber90s true for a Kyber-90s cipher text
+     */
+    KyberCipherText(byte[] c, BigInteger p, BigInteger g, int l, boolean kyber90s) {
+        this.kyber90s = kyber90s;
         this.c = c.clone();
         this.p = p;
         if (p == null) {
@@ -83,13 +102,27 @@ public final class KyberCipherText implements PublicKey, Serializable {
             this.g = KyberParams.default_g;
         }
         this.l = l;
-        try {
-            this.key = new DerValue(DerValue.tag_Integer,
-                    this.getC()).toByteArray();
-            this.encodedKey = getEncoded();
-        } catch (IOException e) {
-            throw new ProviderException("Cannot produce ASN.1 encoding", e);
-        }
+        // the DER encoding is only built if getEncoded() is called
+    }
+
+    /**
+     * Take ownership of a raw cipher text instead of copying it
+     *
+     * @param c the public value, not to be modified afterwards
+     * @param kyber90s true for a Kyber-90s cipher text
+     * @return the cipher text with the default parameters
+     */
+    static KyberCipherText move(byte[] c, boolean kyber90s) {
+        KyberCipherText cipherText = new KyberCipherText();
+        cipherText.kyber90s = kyber90s;
+        cipherText.c = c;
+        cipherText.p = KyberParams.default_p;
+        cipherText.g = KyberParams.default_g;
+        cipherText.l = c.length;
+        return cipherText;
+    }
+
+    private KyberCipherText() {
     }
 
     /**
@@ -101,56 +134,46 @@ public final class KyberCipherText implements PublicKey, Serializable {
      * Kyber cipher text
      */
     public KyberCipherText(byte[] encodedKey) throws InvalidKeyException {
-        InputStream inStream = new ByteArrayInputStream(encodedKey);
         try {
-            DerValue derKeyVal = new DerValue(inStream);
-            if (derKeyVal.tag != DerValue.tag_Sequence) {
-                throw new InvalidKeyException("Invalid key format");
+            DerCursor in = new DerCursor(encodedKey);
+            DerCursor derKeyVal = in.getSequence();
+            if (in.available() != 0) {
+                throw new InvalidKeyException("Extra data after the key");
             }
 
             /*
              * Parse the algorithm identifier
              */
-            DerValue algid = derKeyVal.data.getDerValue();
-            if (algid.tag != DerValue.tag_Sequence) {
-                throw new InvalidKeyException("AlgId is not a SEQUENCE");
-            }
-            DerInputStream derInStream = algid.toDerInputStream();
-            ObjectIdentifier oid = derInStream.getOID();
-            if (oid == null) {
-                throw new InvalidKeyException("Null OID");
-            }
-            if (derInStream.available() == 0) {
+            DerCursor algid = derKeyVal.getSequence();
+            this.kyber90s = KyberKeyUtil.isKyber90s(algid.getOID());
+            if (algid.available() == 0) {
                 throw new InvalidKeyException("Parameters missing");
             }
 
             /*
              * Parse the parameters
              */
-            DerValue params = derInStream.getDerValue();
-            if (params.tag == DerValue.tag_Null) {
+            if (algid.peekTag() == DerValue.tag_Null) {
                 throw new InvalidKeyException("Null parameters");
             }
-            if (params.tag != DerValue.tag_Sequence) {
-                throw new InvalidKeyException("Parameters not a SEQUENCE");
-            }
-            params.data.reset();
-            this.p = params.data.getBigInteger();
-            this.g = params.data.getBigInteger();
+            DerCursor params = algid.getSequence();
+            // Share the default values, so the key agreement can check
+            // them by reference
+            this.p = KyberKeyUtil.canonical(params.getBigInteger(), KyberParams.default_p);
+            this.g = KyberKeyUtil.canonical(params.getBigInteger(), KyberParams.default_g);
             // Private-value length is OPTIONAL
-            if (params.data.available() != 0) {
-                this.l = params.data.getInteger();
+            if (params.available() != 0) {
+                this.l = params.getInteger();
             }
-            if (params.data.available() != 0) {
+            if (params.available() != 0) {
                 throw new InvalidKeyException("Extra parameter data");
             }
 
             /*
              * Parse the key
              */
-            this.key = derKeyVal.data.getBitString();
-            parseKeyBits();
-            if (derKeyVal.data.available() != 0) {
+            parseKeyBits(derKeyVal.getBitString());
+            if (derKeyVal.available() != 0) {
                 throw new InvalidKeyException("Excess key data");
             }
 
@@ -184,10 +207,13 @@ public final class KyberCipherText implements PublicKey, Serializable {
     public synchronized byte[] getEncoded() {
         if (this.encodedKey == null) {
             try {
+                if (this.key == null) {
+                    this.key = new DerValue(DerValue.tag_Integer, this.c).toByteArray();
+                }
                 DerOutputStream algid = new DerOutputStream();
 
                 // store oid in algid
-                algid.putOID(ObjectIdentifier.of(KyberJCE.OID_KYBER));
+                algid.putOID(KyberKeyUtil.getOID(this.kyber90s));
 
                 // encode parameters
                 DerOutputStream params = new DerOutputStream();
@@ -232,6 +258,13 @@ public final class KyberCipherText implements PublicKey, Serializable {
         return this.c.clone();
     }
 
+    /**
+     * @return a read-only view of the public value, without copying it
+     */
+    ByteBuffer buffer() {
+        return ByteBuffer.wrap(this.c).asReadOnlyBuffer();
+    }
+
     /**
      * Returns the key parameters.
      *
@@ -242,16 +275,27 @@ public final class KyberCipherText implements PublicKey, Serializable {
     }
 
     /**
-     * Parse the encoded cipher text back to the raw cipher text
+     * @return true for a Kyber-90s cipher text
+     */
+    public boolean isKyber90s() {
+        return kyber90s;
+    }
+
+    /**
+     * Read the raw cipher text out of the key bits, which wrap it in an INTEGER
      *
+     * @param keyBits
      * @throws InvalidKeyException
      */
-    private void parseKeyBits() throws InvalidKeyException {
+    private void parseKeyBits(ByteBuffer keyBits) throws InvalidKeyException {
         try {
-            DerInputStream in = new DerInputStream(this.key);
-            byte[] rawArray = in.toByteArray();
-            this.c = new byte[rawArray.length - 4];
-            System.arraycopy(rawArray, 4, this.c, 0, rawArray.length - 4);
+            DerCursor in = new DerCursor(keyBits);
+            ByteBuffer raw = in.getContents(DerValue.tag_Integer);
+            if (in.available() != 0) {
+                throw new InvalidKeyException("Excess key data");
+            }
+            this.c = new byte[raw.remaining()];
+            raw.get(this.c);
             this.l = this.c.length;
         } catch (IOException e) {
             throw new InvalidKeyException(
@@ -265,7 +309,28 @@ public final class KyberCipherText implements PublicKey, Serializable {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(c, p, g);
+        // Cipher texts can be chosen by an attacker, so hash them rather than
+        // using their leading bytes
+        return KyberKeyUtil.hashCodeOf(getCipherTextHash(), 0);
+    }
+
+    /**
+     * H(c) for standard Kyber, which decapsulation needs as well. The array is
+     * shared, do not modify it.
+     *
+     * @return SHA3-256 of the cipher text
+     */
+    byte[] getCipherTextHash() {
+        byte[] hash = cipherTextHash;
+        if (hash == null) {
+            try {
+                hash = MessageDigest.getInstance("SHA3-256").digest(c);
+            } catch (NoSuchAlgorithmException ex) {
+                throw new ProviderException(ex);
+            }
+            cipherTextHash = hash;
+        }
+        return hash;
     }
 
     @Override
@@ -280,10 +345,10 @@ public final class KyberCipherText implements PublicKey, Serializable {
 
         KyberCipherText other
                 = (KyberCipherText) obj;
-        KyberParameterSpec otherParams = other.getParams();
-        return (((KyberKeyUtil.constantTimeCompare(this.c, other.getC())) == 0)
-                && (this.p.compareTo(otherParams.getP()) == 0)
-                && (this.g.compareTo(otherParams.getG()) == 0));
+        return (((KyberKeyUtil.constantTimeCompare(this.c, other.c)) == 0)
+                && (this.p.compareTo(other.p) == 0)
+                && (this.g.compareTo(other.g) == 0)
+                && (this.kyber90s == other.kyber90s));
     }
 
     /**
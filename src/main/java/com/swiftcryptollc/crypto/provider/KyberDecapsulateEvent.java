@@ -0,0 +1,37 @@
+package com.swiftcryptollc.crypto.provider;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event emitted for every Kyber decapsulation
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+@Name("com.swiftcryptollc.kyber.Decapsulate")
+@Label("Kyber Decapsulate")
+@Category({"KyberJCE"})
+@Description("Recovery of a shared secret from a cipher text and private key")
+@StackTrace(false)
+final class KyberDecapsulateEvent extends jdk.jfr.Event {
+
+    @Label("Parameter Set")
+    String parameterSet;
+
+    @Label("Implicit Rejection")
+    @Description("The cipher text failed re-encryption and the pseudo-random secret was returned")
+    boolean implicitRejection;
+
+    /**
+     * Create and begin the event for the given key size
+     *
+     * @param kyberKeySize
+     */
+    KyberDecapsulateEvent(KyberKeySize kyberKeySize) {
+        this.parameterSet = kyberKeySize.getAlgorithm();
+        begin();
+    }
+}
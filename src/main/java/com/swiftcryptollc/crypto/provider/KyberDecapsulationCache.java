@@ -0,0 +1,170 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.provider.kyber.KyberParameterSet;
+import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, expiring cache of decapsulation results, for clients that resend
+ * the same cipher text when a handshake is retried
+ *
+ * Entries are keyed by the variant, H(pk) from the private key and H(c), and
+ * hold the 32-byte pre-key K, which the shared secret is derived from with
+ * one KDF call, and the 32-byte decrypted message, which is returned as the
+ * variant. The cache is disabled by default. The size is set with
+ * -Dcom.swiftcryptollc.kyber.decapsulationCacheSize and the time to live in
+ * milliseconds with -Dcom.swiftcryptollc.kyber.decapsulationCacheTtl (default
+ * 10000).
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+final class KyberDecapsulationCache {
+
+    static final String CACHE_NAME = "decapsulation";
+
+    private static volatile int capacity = Integer.getInteger("com.swiftcryptollc.kyber.decapsulationCacheSize", 0);
+    private static volatile long ttlNanos = Long.getLong("com.swiftcryptollc.kyber.decapsulationCacheTtl", 10000L) * 1000000L;
+
+    // Insertion ordered, so the eldest entry is also the first to expire
+    private static final Map<ByteBuffer, Entry> cache = new LinkedHashMap<>();
+
+    private KyberDecapsulationCache() {
+    }
+
+    /**
+     * @return true if the cache is enabled
+     */
+    static boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    /**
+     * Resize the cache, dropping every entry
+     *
+     * @param size the maximum number of entries, 0 to disable
+     * @param ttlMillis
+     */
+    static void configure(int size, long ttlMillis) {
+        synchronized (cache) {
+            clear();
+            capacity = size;
+            ttlNanos = ttlMillis * 1000000L;
+        }
+    }
+
+    /**
+     * @param kyber90s
+     * @param params
+     * @param privateKey
+     * @param cipherTextHash H(c)
+     * @return the cache key
+     */
+    static ByteBuffer key(boolean kyber90s, KyberParameterSet params, ByteBuffer privateKey, byte[] cipherTextHash) {
+        byte[] key = new byte[1 + KyberParams.paramsSymBytes + cipherTextHash.length];
+        key[0] = (byte) (kyber90s ? 1 : 0);
+        privateKey.get(params.getPrivateKeyBytes() - 2 * KyberParams.paramsSymBytes, key, 1, KyberParams.paramsSymBytes);
+        System.arraycopy(cipherTextHash, 0, key, 1 + KyberParams.paramsSymBytes, cipherTextHash.length);
+        return ByteBuffer.wrap(key);
+    }
+
+    /**
+     * @param key
+     * @param preKey receives K on a hit
+     * @param message receives the decrypted message on a hit
+     * @return null on a miss, otherwise whether the cached decapsulation was an
+     * implicit rejection
+     */
+    static Boolean get(ByteBuffer key, byte[] preKey, byte[] message) {
+        long now = System.nanoTime();
+        synchronized (cache) {
+            Entry entry = cache.get(key);
+            if ((entry != null) && (now - entry.expires >= 0)) {
+                cache.remove(key).zero();
+                entry = null;
+            }
+            KyberMetrics.recordCacheLookup(CACHE_NAME, entry != null);
+            if (entry == null) {
+                return null;
+            }
+            System.arraycopy(entry.preKey, 0, preKey, 0, preKey.length);
+            System.arraycopy(entry.message, 0, message, 0, message.length);
+            return entry.implicitRejection;
+        }
+    }
+
+    /**
+     * @param key
+     * @param preKey K, copied
+     * @param message the decrypted message, copied
+     * @param implicitRejection
+     */
+    static void put(ByteBuffer key, byte[] preKey, byte[] message, boolean implicitRejection) {
+        long now = System.nanoTime();
+        synchronized (cache) {
+            if (capacity <= 0) {
+                return;
+            }
+            Entry old = cache.put(key, new Entry(preKey.clone(), message.clone(), implicitRejection, now + ttlNanos));
+            if (old != null) {
+                old.zero();
+            }
+            // Drop expired entries from the front, then the eldest ones over
+            // the limit
+            Iterator<Entry> entries = cache.values().iterator();
+            while (entries.hasNext()) {
+                Entry eldest = entries.next();
+                if ((cache.size() <= capacity) && (now - eldest.expires < 0)) {
+                    break;
+                }
+                eldest.zero();
+                entries.remove();
+            }
+        }
+    }
+
+    /**
+     * Drop and zero every cached entry
+     */
+    static void clear() {
+        synchronized (cache) {
+            for (Entry entry : cache.values()) {
+                entry.zero();
+            }
+            cache.clear();
+        }
+    }
+
+    /**
+     * @return the number of cached entries, including expired ones not yet
+     * dropped
+     */
+    static int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private static final class Entry {
+
+        private final byte[] preKey;
+        private final byte[] message;
+        private final boolean implicitRejection;
+        private final long expires;
+
+        private Entry(byte[] preKey, byte[] message, boolean implicitRejection, long expires) {
+            this.preKey = preKey;
+            this.message = message;
+            this.implicitRejection = implicitRejection;
+            this.expires = expires;
+        }
+
+        private void zero() {
+            Arrays.fill(preKey, (byte) 0);
+            Arrays.fill(message, (byte) 0);
+        }
+    }
+}
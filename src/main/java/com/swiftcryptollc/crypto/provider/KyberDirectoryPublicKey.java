@@ -0,0 +1,193 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
+import com.swiftcryptollc.crypto.spec.KyberParameterSpec;
+import com.swiftcryptollc.crypto.util.KyberKeyUtil;
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.KeyRep;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProviderException;
+
+/**
+ * A Kyber public key backed by a read-only slice of a KyberKeyDirectory or of
+ * a buffer read by the KyberWireCodec
+ *
+ * The key agreement encapsulates straight from the slice, the bytes are only
+ * copied when getY(), getEncoded() or equals() is called. Keys with the same
+ * value and variant are equal, whether they are directory keys or
+ * KyberPublicKeys with the default parameters, and have the same hash code.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+final class KyberDirectoryPublicKey implements com.swiftcryptollc.crypto.interfaces.KyberPublicKey {
+
+    static final long serialVersionUID = -6038244617370381205L;
+
+    private final KyberKeySize kyberKeySize;
+
+    private final boolean kyber90s;
+
+    private final transient ByteBuffer y;
+
+    private transient volatile byte[] publicKeyHash;
+
+    /**
+     * @param y read-only slice holding the raw public key
+     * @param kyberKeySize
+     */
+    KyberDirectoryPublicKey(ByteBuffer y, KyberKeySize kyberKeySize) {
+        this(y, kyberKeySize, false);
+    }
+
+    /**
+     * @param y read-only slice holding the raw public key
+     * @param kyberKeySize
+     * @param kyber90s true for a Kyber-90s key
+     */
+    KyberDirectoryPublicKey(ByteBuffer y, KyberKeySize kyberKeySize, boolean kyber90s) {
+        this.y = y;
+        this.kyberKeySize = kyberKeySize;
+        this.kyber90s = kyber90s;
+    }
+
+    /**
+     * @return a read-only view of the key bytes
+     */
+    ByteBuffer buffer() {
+        return y.duplicate();
+    }
+
+    /**
+     * Returns a heap copy of the public value, <code>y</code>.
+     *
+     * @return the public value, <code>y</code>
+     */
+    @Override
+    public byte[] getY() {
+        byte[] pubY = new byte[y.capacity()];
+        y.get(0, pubY);
+        return pubY;
+    }
+
+    /**
+     * Returns the encoding format of this key: "X.509"
+     */
+    @Override
+    public String getFormat() {
+        return "X.509";
+    }
+
+    /**
+     * Returns the name of the algorithm associated with this key: "Kyber"
+     */
+    @Override
+    public String getAlgorithm() {
+        return "Kyber";
+    }
+
+    /**
+     * Get the encoding of the key.
+     */
+    @Override
+    public byte[] getEncoded() {
+        try {
+            byte[] pubY = getY();
+            return new KyberPublicKey(pubY, null, null, pubY.length, kyber90s).getEncoded();
+        } catch (InvalidKeyException ex) {
+            throw new ProviderException("Unable to encode the public key", ex);
+        }
+    }
+
+    /**
+     * Returns the key parameters.
+     *
+     * @return the key parameters
+     */
+    @Override
+    public KyberParameterSpec getParams() {
+        return new KyberParameterSpec(KyberParams.default_p, KyberParams.default_g,
+                kyberKeySize.getParameterSet().getPublicKeyBytes());
+    }
+
+    /**
+     * @return true, this key always uses the default p and g
+     */
+    @Override
+    public boolean hasDefaultParams() {
+        return true;
+    }
+
+    @Override
+    public boolean isKyber90s() {
+        return kyber90s;
+    }
+
+    /**
+     * @return the kyberKeySize
+     */
+    @Override
+    public KyberKeySize getKyberKeySize() {
+        return kyberKeySize;
+    }
+
+    /**
+     * Calculates a hash code value for the object. Objects that are equal will
+     * also have the same hashcode.
+     */
+    @Override
+    public int hashCode() {
+        return KyberKeyUtil.hashCodeOf(getPublicKeyHash(), 0);
+    }
+
+    /**
+     * @return SHA3-256 of the public value, as KyberPublicKey hashes it
+     */
+    private byte[] getPublicKeyHash() {
+        byte[] hash = publicKeyHash;
+        if (hash == null) {
+            try {
+                MessageDigest md = MessageDigest.getInstance("SHA3-256");
+                md.update(y.duplicate());
+                hash = md.digest();
+            } catch (NoSuchAlgorithmException ex) {
+                throw new ProviderException(ex);
+            }
+            publicKeyHash = hash;
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (!(obj instanceof KyberDirectoryPublicKey) && !(obj instanceof KyberPublicKey)) {
+            return false;
+        }
+
+        com.swiftcryptollc.crypto.interfaces.KyberPublicKey other
+                = (com.swiftcryptollc.crypto.interfaces.KyberPublicKey) obj;
+        return ((KyberKeyUtil.constantTimeCompare(getY(), other.getY()) == 0)
+                && other.hasDefaultParams()
+                && (this.kyber90s == other.isKyber90s()));
+    }
+
+    /**
+     * Replace the Kyber public key to be serialized.
+     *
+     * @return the standard KeyRep object to be serialized
+     *
+     * @throws java.io.ObjectStreamException if a new object representing this
+     * Kyber public key could not be created
+     */
+    private Object writeReplace() throws java.io.ObjectStreamException {
+        return new KeyRep(KeyRep.Type.PUBLIC,
+                getAlgorithm(),
+                getFormat(),
+                getEncoded());
+    }
+}
@@ -0,0 +1,33 @@
+package com.swiftcryptollc.crypto.provider;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event emitted for every Kyber encapsulation
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+@Name("com.swiftcryptollc.kyber.Encapsulate")
+@Label("Kyber Encapsulate")
+@Category({"KyberJCE"})
+@Description("Creation of a shared secret and cipher text from a public key")
+@StackTrace(false)
+final class KyberEncapsulateEvent extends jdk.jfr.Event {
+
+    @Label("Parameter Set")
+    String parameterSet;
+
+    /**
+     * Create and begin the event for the given key size
+     *
+     * @param kyberKeySize
+     */
+    KyberEncapsulateEvent(KyberKeySize kyberKeySize) {
+        this.parameterSet = kyberKeySize.getAlgorithm();
+        begin();
+    }
+}
@@ -0,0 +1,319 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
+import java.security.KeyPair;
+import java.security.ProviderException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ephemeral key pairs for servers that run a key agreement per connection
+ *
+ * Instead of generating a key pair per handshake, one key pair is handed out
+ * for up to a given number of uses or a given time, whichever comes first. The
+ * next key pair is generated on a background thread ahead of time, so rotation
+ * is normally a single volatile write. The private keys are off-heap, which
+ * the key agreement decapsulates from in place.
+ *
+ * Key pairs are handed out as leases. A key pair that has been rotated out
+ * stays usable for as long as a lease on it is open, and its private key is
+ * destroyed when the last lease is closed. Keep the lease open until the
+ * handshake has decapsulated, and do not use the key pair after closing it.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class KyberEphemeralKeySource implements AutoCloseable {
+
+    private final KyberKeySize kyberKeySize;
+    private final int maxUses;
+    private final long maxAgeNanos;
+    private final SecureRandom random;
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    // Only written under the lock, read without it
+    private volatile Generation current;
+    private CompletableFuture<KeyPair> next;
+    private long rotations = 0;
+    private boolean closed = false;
+    private final Object lock = new Object();
+
+    /**
+     * @param kyberKeySize
+     * @param maxUses the number of times a key pair is handed out
+     * @param maxAge how long a key pair is handed out for
+     */
+    public KyberEphemeralKeySource(KyberKeySize kyberKeySize, int maxUses, Duration maxAge) {
+        this(kyberKeySize, maxUses, maxAge, KyberJCE.getRandom());
+    }
+
+    /**
+     * @param kyberKeySize
+     * @param maxUses the number of times a key pair is handed out
+     * @param maxAge how long a key pair is handed out for
+     * @param random
+     */
+    public KyberEphemeralKeySource(KyberKeySize kyberKeySize, int maxUses, Duration maxAge, SecureRandom random) {
+        if (maxUses <= 0) {
+            throw new IllegalArgumentException("maxUses must be positive");
+        }
+        if (maxAge.isNegative() || maxAge.isZero()) {
+            throw new IllegalArgumentException("maxAge must be positive");
+        }
+        this.kyberKeySize = kyberKeySize;
+        this.maxUses = maxUses;
+        this.maxAgeNanos = maxAge.toNanos();
+        this.random = random;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "KyberJCE-ephemeral-" + kyberKeySize.getAlgorithm());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        synchronized (lock) {
+            activate(generateKeyPair());
+        }
+    }
+
+    /**
+     * Lease the current key pair, counting one use. The key pair may be shared
+     * with other connections.
+     *
+     * @return a lease on the current key pair, to be closed once the key pair
+     * is no longer needed
+     * @throws IllegalStateException if this source has been closed
+     */
+    public Lease acquire() {
+        while (true) {
+            Generation generation = current;
+            if (generation == null) {
+                throw new IllegalStateException("Ephemeral key source has been closed");
+            }
+            if (!generation.retain()) {
+                // Retired and destroyed since it was read, current has moved on
+                continue;
+            }
+            if ((generation.uses.incrementAndGet() <= maxUses) && (System.nanoTime() - generation.expires < 0)) {
+                return new Lease(generation);
+            }
+            generation.release();
+            rotate(generation);
+        }
+    }
+
+    /**
+     * Rotate to a new key pair now
+     */
+    public void rotate() {
+        Generation generation = current;
+        if (generation != null) {
+            rotate(generation);
+        }
+    }
+
+    /**
+     * @return the number of rotations so far
+     */
+    public long getRotations() {
+        synchronized (lock) {
+            return rotations;
+        }
+    }
+
+    /**
+     * Stop handing out key pairs and stop the background thread. Key pairs
+     * with open leases are destroyed when the last one is closed, the others
+     * right away.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            scheduler.shutdownNow();
+            current.expiry.cancel(false);
+            current.release();
+            current = null;
+            if (next != null) {
+                next.thenAccept(keyPair -> {
+                    KyberMetrics.adjustKeyPoolDepth(-1);
+                    destroy(keyPair);
+                });
+            }
+        }
+    }
+
+    /**
+     * Swap in the next key pair if the given generation is still the current
+     * one, and retire the given one
+     *
+     * @param expired
+     */
+    private void rotate(Generation expired) {
+        synchronized (lock) {
+            if (closed || (current != expired)) {
+                return;
+            }
+            expired.expiry.cancel(false);
+            activate(takeNext());
+            // Destroyed now, or when the last lease on it is closed
+            expired.release();
+            rotations++;
+        }
+    }
+
+    /**
+     * Never waits for the background thread, which could be queued behind a
+     * rotation waiting for the lock. Called with the lock held.
+     *
+     * @return the key pair generated ahead of time if it is ready, otherwise
+     * a new one
+     */
+    private KeyPair takeNext() {
+        KeyPair keyPair = null;
+        try {
+            keyPair = next.getNow(null);
+        } catch (CompletionException | CancellationException ex) {
+            next = null;
+        }
+        if (keyPair == null) {
+            // A pending key pair is kept for the rotation after this one
+            return generateKeyPair();
+        }
+        next = null;
+        KyberMetrics.adjustKeyPoolDepth(-1);
+        return keyPair;
+    }
+
+    /**
+     * Make the key pair current, start generating the next one and schedule
+     * the rotation by age. Called with the lock held.
+     *
+     * @param keyPair
+     */
+    private void activate(KeyPair keyPair) {
+        Generation generation = new Generation(keyPair, System.nanoTime() + maxAgeNanos);
+        current = generation;
+        if (next == null) {
+            next = CompletableFuture.supplyAsync(() -> {
+                KeyPair pending = generateKeyPair();
+                KyberMetrics.adjustKeyPoolDepth(1);
+                return pending;
+            }, scheduler);
+        }
+        generation.expiry = scheduler.schedule(() -> rotate(generation), maxAgeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return a new key pair with the private key off-heap
+     */
+    private KeyPair generateKeyPair() {
+        long start = System.nanoTime();
+        KyberKeyGenEvent event = new KyberKeyGenEvent(kyberKeySize);
+        byte[] d = new byte[KyberParams.paramsSymBytes];
+        byte[] z = new byte[KyberParams.paramsSymBytes];
+        try {
+            random.nextBytes(d);
+            random.nextBytes(z);
+            KyberPackedPKI keys = KyberKem.deriveKeys(kyberKeySize.getParameterSet(), d, z);
+            KyberPublicKey publicKey = new KyberPublicKey(keys.getPackedPublicKey(), null, null);
+            KyberOffHeapPrivateKey privateKey = KyberOffHeapPrivateKey.move(keys.getPackedPrivateKey(), false);
+            KyberMetrics.commit(event);
+            KyberMetrics.recordKeyGen(kyberKeySize, System.nanoTime() - start);
+            return new KeyPair(publicKey, privateKey);
+        } catch (Exception ex) {
+            throw new ProviderException("Unable to generate an ephemeral key pair", ex);
+        } finally {
+            Arrays.fill(d, (byte) 0);
+            Arrays.fill(z, (byte) 0);
+        }
+    }
+
+    private static void destroy(KeyPair keyPair) {
+        ((KyberOffHeapPrivateKey) keyPair.getPrivate()).destroy();
+    }
+
+    /**
+     * A lease on a key pair, which keeps its private key from being destroyed
+     * until the lease is closed
+     */
+    public static final class Lease implements AutoCloseable {
+
+        private final Generation generation;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Lease(Generation generation) {
+            this.generation = generation;
+        }
+
+        /**
+         * @return the leased key pair
+         * @throws IllegalStateException if the lease has been closed
+         */
+        public KeyPair getKeyPair() {
+            if (closed.get()) {
+                throw new IllegalStateException("Lease has been closed");
+            }
+            return generation.keyPair;
+        }
+
+        /**
+         * Release the key pair. Closing a lease more than once has no effect.
+         */
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                generation.release();
+            }
+        }
+    }
+
+    /**
+     * A key pair and its use count, expiry and reference count
+     */
+    private static final class Generation {
+
+        private final KeyPair keyPair;
+        private final long expires;
+        private final AtomicInteger uses = new AtomicInteger();
+        // One for being current plus one per open lease, destroyed at zero
+        private final AtomicInteger references = new AtomicInteger(1);
+        // The rotation by age, cancelled when the uses run out first
+        private ScheduledFuture<?> expiry;
+
+        private Generation(KeyPair keyPair, long expires) {
+            this.keyPair = keyPair;
+            this.expires = expires;
+        }
+
+        /**
+         * @return false if the key pair has already been destroyed
+         */
+        private boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0) {
+                destroy(keyPair);
+            }
+        }
+    }
+}
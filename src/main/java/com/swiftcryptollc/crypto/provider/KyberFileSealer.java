@@ -0,0 +1,307 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.util.KyberKeyUtil;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encrypts and decrypts whole files in parallel
+ *
+ * The output is exactly what the Kyber/GCM Cipher produces for the same input,
+ * so a sealed file can also be opened with the streaming Cipher and the other
+ * way around. Every frame holds a full chunk except the final one, which puts
+ * each frame at a fixed offset. The input is memory-mapped a batch of chunks at
+ * a time, each batch is encrypted or decrypted on a ForkJoinPool and written
+ * with positional writes.
+ *
+ * The output is written to a temporary file in the same directory, which is
+ * moved over out only once everything has been written, so a failure leaves
+ * an existing out untouched. The input and output must be different files.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class KyberFileSealer {
+
+    // 16 MiB of plaintext per task
+    private static final int CHUNKS_PER_TASK = 256;
+    private static final int FRAME_BYTES = KyberGcmCipher.FRAME_OVERHEAD + KyberGcmCipher.CHUNK_BYTES;
+
+    private KyberFileSealer() {
+    }
+
+    /**
+     * Encrypt a file to a public key on the common pool
+     *
+     * @param in
+     * @param out
+     * @param publicKey
+     * @throws IOException
+     * @throws GeneralSecurityException
+     */
+    public static void seal(Path in, Path out, com.swiftcryptollc.crypto.interfaces.KyberPublicKey publicKey)
+            throws IOException, GeneralSecurityException {
+        seal(in, out, publicKey, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Encrypt a file to a public key
+     *
+     * @param in
+     * @param out
+     * @param publicKey
+     * @param pool
+     * @throws IOException
+     * @throws GeneralSecurityException
+     */
+    public static void seal(Path in, Path out, com.swiftcryptollc.crypto.interfaces.KyberPublicKey publicKey, ForkJoinPool pool)
+            throws IOException, GeneralSecurityException {
+        KyberKeyUtil.checkNot90s(publicKey);
+        KyberKeySize kyberKeySize = publicKey.getKyberKeySize();
+        KyberEncrypted kyberEncrypted = KyberGcmCipher.encapsulate(kyberKeySize, KyberKem.buffer(publicKey),
+                KyberKem.publicKeyHash(kyberKeySize.getParameterSet(), publicKey), KyberJCE.getRandom());
+        byte[] header = KyberGcmCipher.header(kyberEncrypted);
+        SecretKeySpec aesKey = KyberGcmCipher.deriveKey(kyberEncrypted.getSecretKey().getS());
+        Path temp = createTemp(in, out);
+        try (FileChannel input = FileChannel.open(in, StandardOpenOption.READ);
+                FileChannel output = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            writeFully(output, ByteBuffer.wrap(header), 0);
+            long size = input.size();
+            // Full chunks, then a final frame with the rest (possibly empty)
+            long frames = size / KyberGcmCipher.CHUNK_BYTES + 1;
+            run(pool, frames, (first, last) -> {
+                Cipher gcm = Cipher.getInstance("AES/GCM/NoPadding");
+                long position = first * KyberGcmCipher.CHUNK_BYTES;
+                MappedByteBuffer map = input.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(size - position, (last - first) * (long) KyberGcmCipher.CHUNK_BYTES));
+                ByteBuffer frame = ByteBuffer.allocate(FRAME_BYTES);
+                for (long i = first; i < last; i++) {
+                    int offset = (int) ((i - first) * KyberGcmCipher.CHUNK_BYTES);
+                    int length = Math.min(KyberGcmCipher.CHUNK_BYTES, map.capacity() - offset);
+                    boolean finalFrame = (i == frames - 1);
+                    if (!finalFrame && length < KyberGcmCipher.CHUNK_BYTES) {
+                        throw new IOException("Input changed while it was being sealed");
+                    }
+                    int frameHeader = (length + KyberGcmCipher.TAG_BYTES) | (finalFrame ? KyberGcmCipher.FINAL_FLAG : 0);
+                    frame.clear();
+                    frame.putInt(frameHeader);
+                    gcm.init(Cipher.ENCRYPT_MODE, aesKey, KyberGcmCipher.nonce(i));
+                    gcm.updateAAD(frame.array(), 0, KyberGcmCipher.FRAME_HEADER_BYTES);
+                    gcm.doFinal(map.slice(offset, length), frame);
+                    frame.flip();
+                    writeFully(output, frame, header.length + i * FRAME_BYTES);
+                }
+            });
+            output.force(true);
+        } catch (IOException | GeneralSecurityException | RuntimeException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+        replace(temp, out);
+    }
+
+    /**
+     * Decrypt a sealed file with a private key on the common pool
+     *
+     * @param in
+     * @param out
+     * @param privateKey
+     * @throws IOException
+     * @throws GeneralSecurityException
+     */
+    public static void open(Path in, Path out, com.swiftcryptollc.crypto.interfaces.KyberPrivateKey privateKey)
+            throws IOException, GeneralSecurityException {
+        open(in, out, privateKey, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Decrypt a sealed file with a private key. out is not written to unless
+     * every frame authenticates.
+     *
+     * @param in
+     * @param out
+     * @param privateKey
+     * @param pool
+     * @throws IOException
+     * @throws GeneralSecurityException
+     */
+    public static void open(Path in, Path out, com.swiftcryptollc.crypto.interfaces.KyberPrivateKey privateKey, ForkJoinPool pool)
+            throws IOException, GeneralSecurityException {
+        KyberKeyUtil.checkNot90s(privateKey);
+        KyberKeySize kyberKeySize = privateKey.getKyberKeySize();
+        int headerBytes = 1 + kyberKeySize.getParameterSet().getCipherTextBytes();
+        Path temp = createTemp(in, out);
+        try (FileChannel input = FileChannel.open(in, StandardOpenOption.READ);
+                FileChannel output = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            long size = input.size();
+            long body = size - headerBytes;
+            int rest = (int) (body % FRAME_BYTES);
+            if (body < KyberGcmCipher.FRAME_OVERHEAD || rest < KyberGcmCipher.FRAME_OVERHEAD) {
+                throw new AEADBadTagException("Truncated Kyber/GCM file");
+            }
+            ByteBuffer header = ByteBuffer.allocate(headerBytes);
+            readFully(input, header, 0);
+            if (header.get(0) != KyberGcmCipher.VERSION) {
+                throw new AEADBadTagException("Unsupported Kyber/GCM version " + header.get(0));
+            }
+            byte[] cipherText = new byte[headerBytes - 1];
+            header.get(1, cipherText);
+            // Implicit rejection gives a random key, the first tag check fails
+            SecretKeySpec aesKey = KyberGcmCipher.deriveKey(KyberGcmCipher.decapsulate(kyberKeySize, cipherText,
+                    KyberKem.buffer(privateKey)).getSecretKey().getS());
+            long frames = body / FRAME_BYTES + 1;
+            run(pool, frames, (first, last) -> {
+                Cipher gcm = Cipher.getInstance("AES/GCM/NoPadding");
+                long position = headerBytes + first * FRAME_BYTES;
+                MappedByteBuffer map = input.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position,
+                        (last - first) * (long) FRAME_BYTES));
+                ByteBuffer chunk = ByteBuffer.allocate(KyberGcmCipher.CHUNK_BYTES);
+                for (long i = first; i < last; i++) {
+                    int offset = (int) ((i - first) * FRAME_BYTES);
+                    int length = Math.min(FRAME_BYTES, map.capacity() - offset);
+                    boolean finalFrame = (i == frames - 1);
+                    // The header is authenticated, so it must be the one
+                    // written at this position
+                    int frameHeader = (length - KyberGcmCipher.FRAME_HEADER_BYTES) | (finalFrame ? KyberGcmCipher.FINAL_FLAG : 0);
+                    if (map.getInt(offset) != frameHeader) {
+                        throw new AEADBadTagException("Invalid Kyber/GCM frame " + i);
+                    }
+                    chunk.clear();
+                    gcm.init(Cipher.DECRYPT_MODE, aesKey, KyberGcmCipher.nonce(i));
+                    gcm.updateAAD(map.slice(offset, KyberGcmCipher.FRAME_HEADER_BYTES));
+                    gcm.doFinal(map.slice(offset + KyberGcmCipher.FRAME_HEADER_BYTES, length - KyberGcmCipher.FRAME_HEADER_BYTES), chunk);
+                    chunk.flip();
+                    writeFully(output, chunk, i * KyberGcmCipher.CHUNK_BYTES);
+                }
+            });
+            output.force(true);
+        } catch (IOException | GeneralSecurityException | RuntimeException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+        replace(temp, out);
+    }
+
+    /**
+     * Create the file the output is written to, next to out so it can be
+     * moved over it atomically
+     *
+     * @param in
+     * @param out
+     * @return an empty file, only readable by the owner where the file system
+     * supports it
+     * @throws IOException if in and out are the same file
+     */
+    private static Path createTemp(Path in, Path out) throws IOException {
+        if (Files.exists(out) && Files.isSameFile(in, out)) {
+            throw new IOException("Input and output are the same file: " + out);
+        }
+        Path dir = out.toAbsolutePath().getParent();
+        return Files.createTempFile(dir, "." + out.getFileName(), ".tmp");
+    }
+
+    /**
+     * Move the finished output over out
+     *
+     * @param temp
+     * @param out
+     * @throws IOException
+     */
+    private static void replace(Path temp, Path out) throws IOException {
+        try {
+            try {
+                Files.move(temp, out, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, out, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+    }
+
+    /**
+     * Work on frames [first, last)
+     */
+    private interface FrameRange {
+
+        void process(long first, long last) throws IOException, GeneralSecurityException;
+    }
+
+    /**
+     * Split the frames into tasks on the pool and wait for all of them,
+     * cancelling the rest as soon as one fails
+     */
+    private static void run(ForkJoinPool pool, long frames, FrameRange range) throws IOException, GeneralSecurityException {
+        List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+        for (long first = 0; first < frames; first += CHUNKS_PER_TASK) {
+            long start = first;
+            long end = Math.min(frames, first + CHUNKS_PER_TASK);
+            tasks.add(pool.submit(() -> {
+                range.process(start, end);
+                return null;
+            }));
+        }
+        try {
+            for (ForkJoinTask<Void> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", ex);
+        } catch (ExecutionException ex) {
+            // Checked exceptions from the callable come back wrapped, possibly
+            // more than once
+            Throwable cause = ex.getCause();
+            for (Throwable t = cause; t != null; t = t.getCause()) {
+                if ((t instanceof IOException) || (t instanceof GeneralSecurityException)) {
+                    cause = t;
+                    break;
+                }
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof GeneralSecurityException) {
+                throw (GeneralSecurityException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            for (ForkJoinTask<Void> task : tasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += n;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.InvalidKeyException;
+import java.security.PublicKey;
+
+/**
+ * Reads Kyber public keys and cipher texts written by a KyberFrameWriter
+ *
+ * The channel is read into a direct buffer many frames at a time. Public keys
+ * are returned as read-only views of that buffer, which the key agreement
+ * encapsulates from in place. Once a key has been handed out the buffer is
+ * never reused, a new one is allocated when it runs out instead. Cipher texts
+ * are copied out once. Frames with an unknown tag are skipped.
+ *
+ * The channel is expected to be blocking and is not closed by this reader.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class KyberFrameReader {
+
+    private static final int DEFAULT_BUFFER_BYTES = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+    private final int bufferBytes;
+    // unread bytes between position and limit
+    private ByteBuffer buffer;
+    // whether keys returned so far are views of the buffer
+    private boolean shared = false;
+
+    /**
+     * @param channel
+     */
+    public KyberFrameReader(ReadableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_BYTES);
+    }
+
+    /**
+     * @param channel
+     * @param bufferBytes how much to read from the channel at a time
+     */
+    public KyberFrameReader(ReadableByteChannel channel, int bufferBytes) {
+        if (bufferBytes <= 0) {
+            throw new IllegalArgumentException("bufferBytes must be positive");
+        }
+        this.channel = channel;
+        this.bufferBytes = bufferBytes;
+        this.buffer = ByteBuffer.allocateDirect(bufferBytes).flip();
+    }
+
+    /**
+     * @return the next public key or KyberCipherText, or null at the end of
+     * the stream
+     * @throws EOFException if the stream ends inside a frame
+     * @throws IOException if a frame is malformed
+     */
+    public PublicKey read() throws IOException {
+        while (true) {
+            if (!fill(2)) {
+                if (buffer.hasRemaining()) {
+                    throw new EOFException("Truncated frame length");
+                }
+                return null;
+            }
+            int length = buffer.getShort(buffer.position()) & 0xFFFF;
+            if (!fill(2 + length)) {
+                throw new EOFException("Truncated frame");
+            }
+            int start = buffer.position() + 2;
+            buffer.position(start + length);
+            if ((length == 0) || !KyberWireCodec.isKnownTag(buffer.get(start))) {
+                continue;
+            }
+            try {
+                PublicKey key = KyberWireCodec.decode(buffer.slice(start, length));
+                if (!(key instanceof KyberCipherText)) {
+                    shared = true;
+                }
+                return key;
+            } catch (InvalidKeyException ex) {
+                throw new IOException("Invalid frame", ex);
+            }
+        }
+    }
+
+    /**
+     * @return the next public key, or null at the end of the stream
+     * @throws IOException if the next frame is not a public key
+     */
+    public com.swiftcryptollc.crypto.interfaces.KyberPublicKey readPublicKey() throws IOException {
+        PublicKey key = read();
+        if ((key != null) && !(key instanceof com.swiftcryptollc.crypto.interfaces.KyberPublicKey)) {
+            throw new IOException("Public key frame expected");
+        }
+        return (com.swiftcryptollc.crypto.interfaces.KyberPublicKey) key;
+    }
+
+    /**
+     * @return the next cipher text, or null at the end of the stream
+     * @throws IOException if the next frame is not a cipher text
+     */
+    public KyberCipherText readCipherText() throws IOException {
+        PublicKey key = read();
+        if ((key != null) && !(key instanceof KyberCipherText)) {
+            throw new IOException("Cipher text frame expected");
+        }
+        return (KyberCipherText) key;
+    }
+
+    /**
+     * Read until at least the given number of bytes are buffered
+     *
+     * @param bytes
+     * @return false if the stream ended first
+     * @throws IOException
+     */
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        if (shared || (buffer.capacity() < bytes)) {
+            // Move the partial frame to a new buffer, the old one stays with
+            // the keys that were read from it
+            ByteBuffer next = ByteBuffer.allocateDirect(Math.max(bufferBytes, bytes));
+            next.put(buffer);
+            buffer = next;
+            shared = false;
+        } else {
+            buffer.compact();
+        }
+        try {
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            buffer.flip();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.util.Arrays;
+
+/**
+ * Writes Kyber public keys and cipher texts back-to-back to a channel
+ *
+ * Every frame is a two-byte big-endian length followed by the KyberWireCodec
+ * encoding. The key bytes are not copied, frames are queued as views of the
+ * keys and written with one gathering write per batch, so keys and cipher
+ * texts must not be modified until they are flushed. The channel is expected
+ * to be blocking and is not closed by this writer.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class KyberFrameWriter implements Flushable {
+
+    static final int HEADER_BYTES = 3;
+    private static final int BATCH_FRAMES = 64;
+
+    private final WritableByteChannel channel;
+    // length and tag of every queued frame
+    private final ByteBuffer headers = ByteBuffer.allocate(BATCH_FRAMES * HEADER_BYTES);
+    private final ByteBuffer[] pending = new ByteBuffer[2 * BATCH_FRAMES];
+    private int count = 0;
+
+    /**
+     * @param channel
+     */
+    public KyberFrameWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Queue a frame, writing the batch once it is full
+     *
+     * @param key a Kyber public key or cipher text
+     * @throws IOException
+     * @throws InvalidKeyException if the key is neither
+     */
+    public void write(Key key) throws IOException, InvalidKeyException {
+        ByteBuffer body = KyberWireCodec.body(key);
+        byte tag = KyberWireCodec.tag(key);
+        int start = headers.position();
+        headers.putShort((short) (1 + body.remaining())).put(tag);
+        pending[count++] = headers.slice(start, HEADER_BYTES);
+        pending[count++] = body;
+        if (count == pending.length) {
+            flush();
+        }
+    }
+
+    /**
+     * Write every queued frame
+     *
+     * @throws IOException
+     */
+    @Override
+    public void flush() throws IOException {
+        if (channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gathering = (GatheringByteChannel) channel;
+            int offset = 0;
+            while (offset < count) {
+                gathering.write(pending, offset, count - offset);
+                while ((offset < count) && !pending[offset].hasRemaining()) {
+                    offset++;
+                }
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                while (pending[i].hasRemaining()) {
+                    channel.write(pending[i]);
+                }
+            }
+        }
+        Arrays.fill(pending, 0, count, null);
+        count = 0;
+        headers.clear();
+    }
+}
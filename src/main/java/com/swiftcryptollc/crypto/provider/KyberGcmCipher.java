@@ -0,0 +1,499 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.github.aelstad.keccakj.core.KeccakSponge;
+import com.github.aelstad.keccakj.fips202.Shake256;
+import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
+import com.swiftcryptollc.crypto.util.KyberKeyUtil;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.InvalidParameterException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProviderException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.CipherSpi;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Hybrid encryption of arbitrarily large messages: one Kyber encapsulation
+ * followed by AES-256-GCM over fixed-size chunks
+ *
+ * Encrypting with a public key produces
+ * <pre>
+ * version (1) || Kyber cipher text || frame || frame || ...
+ * frame = header (4, big endian: final flag | length) || AES-GCM(chunk) || tag
+ * </pre>
+ * The AES key is SHAKE256("KyberGCM" || shared secret), frame i uses the
+ * counter i as its nonce and its header as AAD, so frames can not be dropped,
+ * reordered or appended after the final one. Both directions only hold one
+ * chunk in memory, decryption releases each chunk once its tag checks out.
+ *
+ * A new encapsulation (and so a new AES key) is made every time encryption
+ * starts over, on the first update() or doFinal() after init() or the previous
+ * doFinal().
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public abstract class KyberGcmCipher extends CipherSpi {
+
+    public static final int VERSION = 1;
+    public static final int CHUNK_BYTES = 64 * 1024;
+
+    static final int TAG_BYTES = 16;
+    static final int FRAME_HEADER_BYTES = 4;
+    static final int FRAME_OVERHEAD = FRAME_HEADER_BYTES + TAG_BYTES;
+    static final int FINAL_FLAG = 0x80000000;
+    private static final byte[] KDF_LABEL = "KyberGCM".getBytes(StandardCharsets.US_ASCII);
+
+    private final KyberKeySize kyberKeySize;
+    private final int headerBytes;
+    private final Cipher gcm;
+
+    private boolean encrypting;
+    private ByteBuffer kyberKey;
+    private byte[] kyberKeyHash;
+    private SecureRandom random;
+
+    // per message state
+    private SecretKeySpec aesKey;
+    private long counter;
+    private byte[] pendingHeader;
+    private boolean headerDone;
+    private boolean finalFrame;
+    private int needed;
+    private final byte[] buffer;
+    private int buffered;
+
+    /**
+     * @param kyberKeySize
+     */
+    KyberGcmCipher(KyberKeySize kyberKeySize) {
+        this.kyberKeySize = kyberKeySize;
+        this.headerBytes = 1 + kyberKeySize.getParameterSet().getCipherTextBytes();
+        this.buffer = new byte[Math.max(headerBytes, FRAME_HEADER_BYTES + CHUNK_BYTES + TAG_BYTES)];
+        try {
+            this.gcm = Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException ex) {
+            throw new ProviderException("AES/GCM is not available", ex);
+        }
+    }
+
+    @Override
+    protected void engineSetMode(String mode) throws NoSuchAlgorithmException {
+        if (!"GCM".equalsIgnoreCase(mode)) {
+            throw new NoSuchAlgorithmException("Unsupported mode " + mode);
+        }
+    }
+
+    @Override
+    protected void engineSetPadding(String padding) throws NoSuchPaddingException {
+        if (!"NoPadding".equalsIgnoreCase(padding)) {
+            throw new NoSuchPaddingException("Unsupported padding " + padding);
+        }
+    }
+
+    @Override
+    protected int engineGetBlockSize() {
+        return 0;
+    }
+
+    @Override
+    protected int engineGetKeySize(Key key) throws InvalidKeyException {
+        return kyberKeySize.getParamsK() * 256;
+    }
+
+    @Override
+    protected int engineGetOutputSize(int inputLen) {
+        return outputSize(inputLen, true);
+    }
+
+    @Override
+    protected byte[] engineGetIV() {
+        return null;
+    }
+
+    @Override
+    protected AlgorithmParameters engineGetParameters() {
+        return null;
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, SecureRandom random) throws InvalidKeyException {
+        if (opmode == Cipher.ENCRYPT_MODE) {
+            if (!(key instanceof com.swiftcryptollc.crypto.interfaces.KyberPublicKey)) {
+                throw new InvalidKeyException("Kyber public key expected");
+            }
+            com.swiftcryptollc.crypto.interfaces.KyberPublicKey publicKey = (com.swiftcryptollc.crypto.interfaces.KyberPublicKey) key;
+            checkKeySize(publicKey.getKyberKeySize());
+            KyberKeyUtil.checkNot90s(publicKey);
+            this.kyberKey = KyberKem.buffer(publicKey);
+            this.kyberKeyHash = KyberKem.publicKeyHash(kyberKeySize.getParameterSet(), publicKey);
+            this.encrypting = true;
+        } else if (opmode == Cipher.DECRYPT_MODE) {
+            if (!(key instanceof com.swiftcryptollc.crypto.interfaces.KyberPrivateKey)) {
+                throw new InvalidKeyException("Kyber private key expected");
+            }
+            com.swiftcryptollc.crypto.interfaces.KyberPrivateKey privateKey = (com.swiftcryptollc.crypto.interfaces.KyberPrivateKey) key;
+            checkKeySize(privateKey.getKyberKeySize());
+            KyberKeyUtil.checkNot90s(privateKey);
+            this.kyberKey = KyberKem.buffer(privateKey);
+            this.encrypting = false;
+        } else {
+            throw new InvalidParameterException("Unsupported operation mode " + opmode);
+        }
+        this.random = (random != null) ? random : KyberJCE.getRandom();
+        reset();
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, AlgorithmParameterSpec params, SecureRandom random)
+            throws InvalidKeyException, InvalidAlgorithmParameterException {
+        if (params != null) {
+            throw new InvalidAlgorithmParameterException("No parameters expected");
+        }
+        engineInit(opmode, key, random);
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, AlgorithmParameters params, SecureRandom random)
+            throws InvalidKeyException, InvalidAlgorithmParameterException {
+        if (params != null) {
+            throw new InvalidAlgorithmParameterException("No parameters expected");
+        }
+        engineInit(opmode, key, random);
+    }
+
+    @Override
+    protected byte[] engineUpdate(byte[] input, int inputOffset, int inputLen) {
+        byte[] output = new byte[outputSize(inputLen, false)];
+        int length = update(input, inputOffset, inputLen, output, 0);
+        return (length == output.length) ? output : Arrays.copyOf(output, length);
+    }
+
+    @Override
+    protected int engineUpdate(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset)
+            throws ShortBufferException {
+        if (output.length - outputOffset < outputSize(inputLen, false)) {
+            throw new ShortBufferException("Output buffer too small");
+        }
+        return update(input, inputOffset, inputLen, output, outputOffset);
+    }
+
+    @Override
+    protected byte[] engineDoFinal(byte[] input, int inputOffset, int inputLen)
+            throws IllegalBlockSizeException, BadPaddingException {
+        byte[] output = new byte[outputSize(inputLen, true)];
+        int length = doFinal(input, inputOffset, inputLen, output, 0);
+        return (length == output.length) ? output : Arrays.copyOf(output, length);
+    }
+
+    @Override
+    protected int engineDoFinal(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset)
+            throws ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+        if (output.length - outputOffset < outputSize(inputLen, true)) {
+            throw new ShortBufferException("Output buffer too small");
+        }
+        return doFinal(input, inputOffset, inputLen, output, outputOffset);
+    }
+
+    /**
+     * Upper bound of the output for the given input
+     *
+     * @param inputLen
+     * @param last
+     * @return
+     */
+    private int outputSize(int inputLen, boolean last) {
+        long total = (long) buffered + Math.max(inputLen, 0);
+        long size;
+        if (encrypting) {
+            long frames = total / CHUNK_BYTES + (last ? 1 : 0);
+            size = ((!headerDone || (pendingHeader != null)) ? headerBytes : 0) + total + frames * FRAME_OVERHEAD;
+        } else {
+            size = total;
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private int update(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset) {
+        try {
+            return encrypting ? encrypt(input, inputOffset, inputLen, output, outputOffset, false)
+                    : decrypt(input, inputOffset, inputLen, output, outputOffset);
+        } catch (AEADBadTagException ex) {
+            reset();
+            throw new ProviderException(ex.getMessage(), ex);
+        }
+    }
+
+    private int doFinal(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset)
+            throws AEADBadTagException {
+        try {
+            if (encrypting) {
+                return encrypt(input, inputOffset, inputLen, output, outputOffset, true);
+            }
+            int length = decrypt(input, inputOffset, inputLen, output, outputOffset);
+            if (!finalFrame || buffered != 0) {
+                throw new AEADBadTagException("Truncated Kyber/GCM stream");
+            }
+            return length;
+        } finally {
+            reset();
+        }
+    }
+
+    private int encrypt(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset, boolean last) {
+        int out = outputOffset;
+        if (!headerDone) {
+            encapsulate();
+        }
+        if (pendingHeader != null) {
+            System.arraycopy(pendingHeader, 0, output, out, pendingHeader.length);
+            out += pendingHeader.length;
+            pendingHeader = null;
+        }
+        int end = inputOffset + inputLen;
+        while (inputOffset < end) {
+            int n = Math.min(CHUNK_BYTES - buffered, end - inputOffset);
+            System.arraycopy(input, inputOffset, buffer, buffered, n);
+            buffered += n;
+            inputOffset += n;
+            if (buffered == CHUNK_BYTES) {
+                out += sealFrame(false, output, out);
+            }
+        }
+        if (last) {
+            out += sealFrame(true, output, out);
+        }
+        return out - outputOffset;
+    }
+
+    private int sealFrame(boolean last, byte[] output, int outputOffset) {
+        int header = (buffered + TAG_BYTES) | (last ? FINAL_FLAG : 0);
+        byte[] aad = ByteBuffer.allocate(FRAME_HEADER_BYTES).putInt(header).array();
+        System.arraycopy(aad, 0, output, outputOffset, FRAME_HEADER_BYTES);
+        try {
+            gcm.init(Cipher.ENCRYPT_MODE, aesKey, nextNonce());
+            gcm.updateAAD(aad);
+            int length = gcm.doFinal(buffer, 0, buffered, output, outputOffset + FRAME_HEADER_BYTES);
+            buffered = 0;
+            return FRAME_HEADER_BYTES + length;
+        } catch (GeneralSecurityException ex) {
+            throw new ProviderException("Unable to encrypt the frame", ex);
+        }
+    }
+
+    private int decrypt(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset)
+            throws AEADBadTagException {
+        int out = outputOffset;
+        int end = inputOffset + inputLen;
+        while (inputOffset < end) {
+            if (finalFrame) {
+                throw new AEADBadTagException("Data after the final Kyber/GCM frame");
+            }
+            int n = Math.min(needed - buffered, end - inputOffset);
+            System.arraycopy(input, inputOffset, buffer, buffered, n);
+            buffered += n;
+            inputOffset += n;
+            if (buffered < needed) {
+                break;
+            }
+            if (!headerDone) {
+                openHeader();
+            } else if (needed == FRAME_HEADER_BYTES) {
+                int length = ByteBuffer.wrap(buffer, 0, FRAME_HEADER_BYTES).getInt() & ~FINAL_FLAG;
+                if (length < TAG_BYTES || length > CHUNK_BYTES + TAG_BYTES) {
+                    throw new AEADBadTagException("Invalid Kyber/GCM frame length " + length);
+                }
+                needed = FRAME_HEADER_BYTES + length;
+            } else {
+                out += openFrame(output, out);
+            }
+        }
+        return out - outputOffset;
+    }
+
+    private void openHeader() throws AEADBadTagException {
+        if (buffer[0] != VERSION) {
+            throw new AEADBadTagException("Unsupported Kyber/GCM version " + buffer[0]);
+        }
+        // Implicit rejection gives a random key, the first tag check fails
+        aesKey = deriveKey(decapsulate(kyberKeySize, Arrays.copyOfRange(buffer, 1, headerBytes), kyberKey).getSecretKey().getS());
+        headerDone = true;
+        buffered = 0;
+        needed = FRAME_HEADER_BYTES;
+    }
+
+    private int openFrame(byte[] output, int outputOffset) throws AEADBadTagException {
+        int header = ByteBuffer.wrap(buffer, 0, FRAME_HEADER_BYTES).getInt();
+        try {
+            gcm.init(Cipher.DECRYPT_MODE, aesKey, nextNonce());
+            gcm.updateAAD(buffer, 0, FRAME_HEADER_BYTES);
+            int length = gcm.doFinal(buffer, FRAME_HEADER_BYTES, needed - FRAME_HEADER_BYTES, output, outputOffset);
+            finalFrame = (header & FINAL_FLAG) != 0;
+            buffered = 0;
+            needed = FRAME_HEADER_BYTES;
+            return length;
+        } catch (AEADBadTagException ex) {
+            throw ex;
+        } catch (GeneralSecurityException ex) {
+            throw new ProviderException("Unable to decrypt the frame", ex);
+        }
+    }
+
+    /**
+     * Start a new message: encryption encapsulates again once there is input,
+     * decryption waits for the next header
+     */
+    private void reset() {
+        counter = 0;
+        buffered = 0;
+        finalFrame = false;
+        headerDone = false;
+        needed = headerBytes;
+        pendingHeader = null;
+    }
+
+    private void encapsulate() {
+        KyberEncrypted kyberEncrypted = encapsulate(kyberKeySize, kyberKey, kyberKeyHash, random);
+        pendingHeader = header(kyberEncrypted);
+        aesKey = deriveKey(kyberEncrypted.getSecretKey().getS());
+        headerDone = true;
+    }
+
+    private GCMParameterSpec nextNonce() {
+        return nonce(counter++);
+    }
+
+    /**
+     * @param kyberEncrypted
+     * @return the version byte followed by the Kyber cipher text
+     */
+    static byte[] header(KyberEncrypted kyberEncrypted) {
+        byte[] cipherText = kyberEncrypted.getCipherText().getC();
+        byte[] header = new byte[1 + cipherText.length];
+        header[0] = VERSION;
+        System.arraycopy(cipherText, 0, header, 1, cipherText.length);
+        return header;
+    }
+
+    /**
+     * Encapsulate to the given public key, recording the event and metrics
+     *
+     * @param kyberKeySize
+     * @param publicKey
+     * @param publicKeyHash H(pk), or null
+     * @param random
+     * @return
+     */
+    static KyberEncrypted encapsulate(KyberKeySize kyberKeySize, ByteBuffer publicKey, byte[] publicKeyHash, SecureRandom random) {
+        byte[] variant = new byte[KyberParams.paramsSymBytes];
+        random.nextBytes(variant);
+        try {
+            long start = System.nanoTime();
+            KyberEncapsulateEvent event = new KyberEncapsulateEvent(kyberKeySize);
+            KyberEncrypted kyberEncrypted = KyberKem.encapsulate(kyberKeySize.getParameterSet(), variant, publicKey, publicKeyHash);
+            KyberMetrics.commit(event);
+            KyberMetrics.recordEncapsulate(kyberKeySize, System.nanoTime() - start);
+            return kyberEncrypted;
+        } catch (GeneralSecurityException ex) {
+            throw new ProviderException("Unable to encapsulate", ex);
+        } finally {
+            Arrays.fill(variant, (byte) 0);
+        }
+    }
+
+    /**
+     * Decapsulate with the given private key, recording the event and metrics
+     *
+     * @param kyberKeySize
+     * @param cipherText
+     * @param privateKey
+     * @return
+     */
+    static KyberDecrypted decapsulate(KyberKeySize kyberKeySize, byte[] cipherText, ByteBuffer privateKey) {
+        try {
+            long start = System.nanoTime();
+            KyberDecapsulateEvent event = new KyberDecapsulateEvent(kyberKeySize);
+            KyberDecrypted kyberDecrypted = KyberKem.decapsulate(kyberKeySize.getParameterSet(), cipherText, privateKey, event);
+            KyberMetrics.commit(event);
+            KyberMetrics.recordDecapsulate(kyberKeySize, System.nanoTime() - start, event.implicitRejection);
+            return kyberDecrypted;
+        } catch (NoSuchAlgorithmException ex) {
+            throw new ProviderException("Unable to decapsulate", ex);
+        }
+    }
+
+    /**
+     * @param counter
+     * @return the GCM parameters of the given frame
+     */
+    static GCMParameterSpec nonce(long counter) {
+        byte[] nonce = ByteBuffer.allocate(12).putLong(4, counter).array();
+        return new GCMParameterSpec(TAG_BYTES * 8, nonce);
+    }
+
+    /**
+     * @param sharedSecret zeroed once the key is derived
+     * @return the AES-256 key
+     */
+    static SecretKeySpec deriveKey(byte[] sharedSecret) {
+        byte[] key = new byte[32];
+        KeccakSponge xof = new Shake256();
+        xof.getAbsorbStream().write(KDF_LABEL);
+        xof.getAbsorbStream().write(sharedSecret);
+        xof.getSqueezeStream().read(key);
+        Arrays.fill(sharedSecret, (byte) 0);
+        SecretKeySpec keySpec = new SecretKeySpec(key, "AES");
+        Arrays.fill(key, (byte) 0);
+        return keySpec;
+    }
+
+    private void checkKeySize(KyberKeySize keySize) throws InvalidKeyException {
+        if (keySize != kyberKeySize) {
+            throw new InvalidKeyException(kyberKeySize.getAlgorithm() + " key expected");
+        }
+    }
+
+    /**
+     * Kyber512/GCM
+     */
+    public static final class Kyber512 extends KyberGcmCipher {
+
+        public Kyber512() {
+            super(KyberKeySize.KEY_512);
+        }
+    }
+
+    /**
+     * Kyber768/GCM
+     */
+    public static final class Kyber768 extends KyberGcmCipher {
+
+        public Kyber768() {
+            super(KyberKeySize.KEY_768);
+        }
+    }
+
+    /**
+     * Kyber1024/GCM
+     */
+    public static final class Kyber1024 extends KyberGcmCipher {
+
+        public Kyber1024() {
+            super(KyberKeySize.KEY_1024);
+        }
+    }
+}
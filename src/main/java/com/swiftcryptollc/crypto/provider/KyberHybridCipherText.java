@@ -0,0 +1,120 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.util.KyberKeyUtil;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProviderException;
+import java.security.PublicKey;
+import java.util.Arrays;
+
+/**
+ * An X25519Kyber768 cipher text: the ephemeral X25519 public key of the sender
+ * followed by the Kyber768 cipher text.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class KyberHybridCipherText implements PublicKey {
+
+    static final long serialVersionUID = 8841290637152093614L;
+
+    public static final int ENCODED_BYTES = KyberHybridPublicKey.X25519_BYTES
+            + KyberHybridPublicKey.KYBER_KEY_SIZE.getParameterSet().getCipherTextBytes();
+
+    private final byte[] encoded;
+
+    // SHA3-256 of the encoding, computed on first use
+    private transient volatile byte[] encodedHash;
+
+    /**
+     * @param encoded the ephemeral X25519 public key followed by the Kyber768
+     * cipher text
+     * @throws InvalidKeyException
+     */
+    public KyberHybridCipherText(byte[] encoded) throws InvalidKeyException {
+        if (encoded.length != ENCODED_BYTES) {
+            throw new InvalidKeyException(KyberHybridPublicKey.ALGORITHM + " cipher texts are " + ENCODED_BYTES + " bytes");
+        }
+        this.encoded = encoded.clone();
+    }
+
+    /**
+     * @param classical the encoded ephemeral X25519 public key
+     * @param kyber the Kyber768 cipher text
+     */
+    KyberHybridCipherText(byte[] classical, byte[] kyber) {
+        this.encoded = new byte[ENCODED_BYTES];
+        System.arraycopy(classical, 0, encoded, 0, KyberHybridPublicKey.X25519_BYTES);
+        System.arraycopy(kyber, 0, encoded, KyberHybridPublicKey.X25519_BYTES, kyber.length);
+    }
+
+    /**
+     * @return the encoded ephemeral X25519 public key
+     */
+    byte[] getClassicalBytes() {
+        return Arrays.copyOf(encoded, KyberHybridPublicKey.X25519_BYTES);
+    }
+
+    /**
+     * @return the Kyber768 cipher text
+     */
+    byte[] getKyberBytes() {
+        return Arrays.copyOfRange(encoded, KyberHybridPublicKey.X25519_BYTES, ENCODED_BYTES);
+    }
+
+    /**
+     * Returns the name of the algorithm associated with this cipher text:
+     * "X25519Kyber768"
+     */
+    @Override
+    public String getAlgorithm() {
+        return KyberHybridPublicKey.ALGORITHM;
+    }
+
+    /**
+     * Returns the encoding format of this cipher text: "RAW"
+     */
+    @Override
+    public String getFormat() {
+        return "RAW";
+    }
+
+    /**
+     * Get the encoding of the cipher text.
+     */
+    @Override
+    public byte[] getEncoded() {
+        return encoded.clone();
+    }
+
+    /**
+     * Calculates a hash code value for the object. Objects that are equal will
+     * also have the same hashcode.
+     */
+    @Override
+    public int hashCode() {
+        // Cipher texts can be chosen by an attacker, so hash them rather than
+        // using their leading bytes
+        byte[] hash = encodedHash;
+        if (hash == null) {
+            try {
+                hash = MessageDigest.getInstance("SHA3-256").digest(encoded);
+            } catch (NoSuchAlgorithmException ex) {
+                throw new ProviderException(ex);
+            }
+            encodedHash = hash;
+        }
+        return KyberKeyUtil.hashCodeOf(hash, 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof KyberHybridCipherText)) {
+            return false;
+        }
+        return MessageDigest.isEqual(encoded, ((KyberHybridCipherText) obj).encoded);
+    }
+}
@@ -0,0 +1,344 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.github.aelstad.keccakj.core.KeccakSponge;
+import com.github.aelstad.keccakj.fips202.Shake256;
+import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
+import com.swiftcryptollc.crypto.spec.KyberHybridParameterSpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProviderException;
+import java.security.SecureRandom;
+import java.security.interfaces.XECPublicKey;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.NamedParameterSpec;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import javax.crypto.KeyAgreement;
+import javax.crypto.KeyAgreementSpi;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The X25519Kyber768 hybrid key agreement.
+ *
+ * The sender calls doPhase with the recipient's KyberHybridPublicKey, which
+ * returns the KyberHybridCipherText to send: an ephemeral X25519 public key and
+ * a Kyber768 cipher text. The recipient calls doPhase with that cipher text.
+ * Both sides then hold the same secret, which is derived in a single SHAKE256
+ * pass over both shared secrets, the X25519 cipher text and the recipient's
+ * X25519 public key, so it stays secure while either half does.
+ *
+ * With a {@link KyberHybridParameterSpec} the X25519 half runs on the given
+ * executor while the calling thread runs the Kyber half.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class KyberHybridKeyAgreement extends KeyAgreementSpi {
+
+    private static final byte[] LABEL = KyberHybridPublicKey.ALGORITHM.getBytes(StandardCharsets.US_ASCII);
+
+    private KyberHybridPrivateKey privateKey;
+    private SecureRandom random;
+    private Executor executor;
+    // The combined secret of the last phase, until a generateSecret call
+    // takes it
+    private KeccakSponge kdf;
+
+    /**
+     * Empty constructor
+     */
+    public KyberHybridKeyAgreement() {
+    }
+
+    /**
+     * Initialize with an X25519Kyber768 private key
+     *
+     * @param key
+     * @param random
+     * @throws InvalidKeyException
+     */
+    @Override
+    protected void engineInit(Key key, SecureRandom random) throws InvalidKeyException {
+        try {
+            engineInit(key, null, random);
+        } catch (InvalidAlgorithmParameterException e) {
+            // never happens, because we did not pass any parameters
+        }
+    }
+
+    /**
+     * Initialize with an X25519Kyber768 private key, optional
+     * KyberHybridParameterSpec and the given random
+     *
+     * @param key
+     * @param params
+     * @param random
+     * @throws InvalidKeyException
+     * @throws InvalidAlgorithmParameterException
+     */
+    @Override
+    protected void engineInit(Key key, AlgorithmParameterSpec params, SecureRandom random)
+            throws InvalidKeyException, InvalidAlgorithmParameterException {
+        if ((params != null) && !(params instanceof KyberHybridParameterSpec)) {
+            throw new InvalidAlgorithmParameterException("X25519Kyber768 parameters expected");
+        }
+        if (!(key instanceof KyberHybridPrivateKey)) {
+            throw new InvalidKeyException("X25519Kyber768 private key expected");
+        }
+        this.privateKey = (KyberHybridPrivateKey) key;
+        this.random = (random == null) ? KyberJCE.getRandom() : random;
+        this.executor = (params == null) ? null : ((KyberHybridParameterSpec) params).getExecutor();
+        this.kdf = null;
+    }
+
+    /**
+     * If a KyberHybridPublicKey is passed, returns the KyberHybridCipherText
+     * for its owner
+     *
+     * If a KyberHybridCipherText is passed, returns null
+     *
+     * Either way the shared secret is then available from the generateSecret
+     * methods.
+     *
+     * @param key
+     * @param lastPhase must be true, there is only one phase
+     * @return
+     * @throws InvalidKeyException
+     * @throws IllegalStateException
+     */
+    @Override
+    protected Key engineDoPhase(Key key, boolean lastPhase) throws InvalidKeyException, IllegalStateException {
+        if (privateKey == null) {
+            throw new IllegalStateException("Not initialized");
+        }
+        if (!lastPhase) {
+            throw new IllegalStateException("X25519Kyber768 has a single phase");
+        }
+        kdf = null;
+        if (key instanceof KyberHybridPublicKey) {
+            return encapsulate((KyberHybridPublicKey) key);
+        } else if (key instanceof KyberHybridCipherText) {
+            decapsulate((KyberHybridCipherText) key);
+            return null;
+        }
+        throw new InvalidKeyException("Expected a KyberHybridPublicKey or KyberHybridCipherText");
+    }
+
+    /**
+     * Generates the 32-byte shared secret and returns it in a new buffer.
+     *
+     * @return the new buffer with the shared secret
+     * @exception IllegalStateException if this key agreement has not been
+     * completed yet
+     */
+    @Override
+    protected byte[] engineGenerateSecret() throws IllegalStateException {
+        byte[] sharedSecret = new byte[KyberParams.KyberSSBytes];
+        takeKdf().getSqueezeStream().read(sharedSecret);
+        return sharedSecret;
+    }
+
+    /**
+     * Generates the 32-byte shared secret, and places it into the buffer
+     * <code>sharedSecret</code>, beginning at <code>offset</code>.
+     *
+     * @param sharedSecret the buffer for the shared secret
+     * @param offset the offset in <code>sharedSecret</code> where the shared
+     * secret will be stored
+     * @return the number of bytes placed into <code>sharedSecret</code>
+     * @exception IllegalStateException if this key agreement has not been
+     * completed yet
+     * @exception ShortBufferException if the given output buffer is too small
+     * to hold the secret
+     */
+    @Override
+    protected int engineGenerateSecret(byte[] sharedSecret, int offset) throws IllegalStateException, ShortBufferException {
+        if (sharedSecret.length - offset < KyberParams.KyberSSBytes) {
+            throw new ShortBufferException("Need " + KyberParams.KyberSSBytes + " bytes for the shared secret");
+        }
+        takeKdf().getSqueezeStream().read(sharedSecret, offset, KyberParams.KyberSSBytes);
+        return KyberParams.KyberSSBytes;
+    }
+
+    /**
+     * Creates the shared secret and returns it as a secret key object of the
+     * requested algorithm type, with the algorithm's default length. The first
+     * 32 bytes are always the shared secret itself.
+     *
+     * @param algorithm the requested secret key algorithm
+     * @return the shared secret key
+     * @exception IllegalStateException if this key agreement has not been
+     * completed yet
+     * @exception NoSuchAlgorithmException if the requested secret key algorithm
+     * has no default length
+     */
+    @Override
+    protected SecretKey engineGenerateSecret(String algorithm) throws IllegalStateException, NoSuchAlgorithmException {
+        byte[] material = new byte[KyberKeyAgreement.keyBytes(algorithm)];
+        try {
+            takeKdf().getSqueezeStream().read(material);
+            return new SecretKeySpec(material, KyberKeyAgreement.keyAlgorithm(algorithm));
+        } finally {
+            Arrays.fill(material, (byte) 0);
+        }
+    }
+
+    /**
+     * @return the combined secret of the last phase, which is dropped from
+     * this key agreement
+     */
+    private KeccakSponge takeKdf() {
+        KeccakSponge sponge = kdf;
+        if (sponge == null) {
+            throw new IllegalStateException("Key agreement has not been completed");
+        }
+        kdf = null;
+        return sponge;
+    }
+
+    /**
+     * Run both halves of an encapsulation
+     *
+     * @param publicKey
+     * @return the cipher text
+     * @throws InvalidKeyException
+     */
+    private KyberHybridCipherText encapsulate(KyberHybridPublicKey publicKey) throws InvalidKeyException {
+        Half[] halves = run(() -> {
+            KeyPairGenerator keyGen = KeyPairGenerator.getInstance("X25519");
+            keyGen.initialize(NamedParameterSpec.X25519, random);
+            KeyPair ephemeral = keyGen.generateKeyPair();
+            KeyAgreement keyAgreement = KeyAgreement.getInstance("X25519");
+            keyAgreement.init(ephemeral.getPrivate());
+            keyAgreement.doPhase(publicKey.getClassicalKey(), true);
+            return new Half(KyberHybridPublicKey.encodeU(((XECPublicKey) ephemeral.getPublic()).getU()),
+                    keyAgreement.generateSecret());
+        }, () -> {
+            KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+            keyAgreement.engineInit(privateKey.getKyberKey(), random);
+            KyberEncrypted kyberEncrypted = (KyberEncrypted) keyAgreement.engineDoPhase(publicKey.getKyberKey(), true);
+            return new Half(kyberEncrypted.getCipherText().getC(), keyAgreement.engineGenerateSecret());
+        });
+        combine(halves[0], halves[1], publicKey.getClassicalBytes());
+        return new KyberHybridCipherText(halves[0].cipherText, halves[1].cipherText);
+    }
+
+    /**
+     * Run both halves of a decapsulation
+     *
+     * @param cipherText
+     * @throws InvalidKeyException
+     */
+    private void decapsulate(KyberHybridCipherText cipherText) throws InvalidKeyException {
+        byte[] classicalBytes = cipherText.getClassicalBytes();
+        Half[] halves = run(() -> {
+            KeyAgreement keyAgreement = KeyAgreement.getInstance("X25519");
+            keyAgreement.init(privateKey.getClassicalKey());
+            keyAgreement.doPhase(KyberHybridPublicKey.decodeX25519(classicalBytes, 0), true);
+            return new Half(classicalBytes, keyAgreement.generateSecret());
+        }, () -> {
+            KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+            keyAgreement.engineInit(privateKey.getKyberKey(), random);
+            keyAgreement.engineDoPhase(new KyberCipherText(cipherText.getKyberBytes(), null, null), true);
+            return new Half(null, keyAgreement.engineGenerateSecret());
+        });
+        combine(halves[0], halves[1], privateKey.getPublicKey().getClassicalBytes());
+    }
+
+    /**
+     * Run the X25519 half on the executor, if there is one, while this thread
+     * runs the Kyber half
+     *
+     * @param classical
+     * @param kyber
+     * @return the X25519 half and the Kyber half
+     * @throws InvalidKeyException
+     */
+    private Half[] run(Callable<Half> classical, Callable<Half> kyber) throws InvalidKeyException {
+        if (executor == null) {
+            return new Half[]{call(classical), call(kyber)};
+        }
+        CompletableFuture<Half> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return classical.call();
+            } catch (Exception ex) {
+                throw new CompletionException(ex);
+            }
+        }, executor);
+        Half kyberHalf;
+        try {
+            kyberHalf = call(kyber);
+        } catch (InvalidKeyException | RuntimeException ex) {
+            future.cancel(false);
+            throw ex;
+        }
+        try {
+            return new Half[]{future.join(), kyberHalf};
+        } catch (CompletionException ex) {
+            Arrays.fill(kyberHalf.secret, (byte) 0);
+            if (ex.getCause() instanceof InvalidKeyException) {
+                throw (InvalidKeyException) ex.getCause();
+            }
+            throw new ProviderException("X25519 failed", ex.getCause());
+        }
+    }
+
+    /**
+     * @param half
+     * @return the result of the half
+     * @throws InvalidKeyException
+     */
+    private static Half call(Callable<Half> half) throws InvalidKeyException {
+        try {
+            return half.call();
+        } catch (InvalidKeyException | RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new ProviderException(ex);
+        }
+    }
+
+    /**
+     * SHAKE256(Kyber secret || X25519 secret || X25519 cipher text || X25519
+     * public key || label), as in X-Wing. The Kyber secret already binds the
+     * Kyber cipher text.
+     *
+     * @param classical
+     * @param kyber
+     * @param classicalPublicKey the recipient's encoded X25519 public key
+     */
+    private void combine(Half classical, Half kyber, byte[] classicalPublicKey) {
+        KeccakSponge sponge = new Shake256();
+        sponge.getAbsorbStream().write(kyber.secret);
+        sponge.getAbsorbStream().write(classical.secret);
+        sponge.getAbsorbStream().write(classical.cipherText);
+        sponge.getAbsorbStream().write(classicalPublicKey);
+        sponge.getAbsorbStream().write(LABEL);
+        Arrays.fill(kyber.secret, (byte) 0);
+        Arrays.fill(classical.secret, (byte) 0);
+        this.kdf = sponge;
+    }
+
+    /**
+     * The cipher text and shared secret of one half
+     */
+    private static final class Half {
+
+        private final byte[] cipherText;
+        private final byte[] secret;
+
+        private Half(byte[] cipherText, byte[] secret) {
+            this.cipherText = cipherText;
+            this.secret = secret;
+        }
+    }
+}
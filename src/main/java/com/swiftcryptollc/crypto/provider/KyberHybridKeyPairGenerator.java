@@ -0,0 +1,67 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyPairGeneratorSpi;
+import java.security.ProviderException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.NamedParameterSpec;
+
+/**
+ * Key pair generator for X25519Kyber768
+ *
+ * The parameters and key size are those of the Kyber768 half.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class KyberHybridKeyPairGenerator extends KeyPairGeneratorSpi {
+
+    private final Kyber768KeyPairGenerator kyberKeyGen = new Kyber768KeyPairGenerator();
+    private SecureRandom random;
+
+    public KyberHybridKeyPairGenerator() {
+        super();
+    }
+
+    @Override
+    public void initialize(int keySize, SecureRandom random) {
+        kyberKeyGen.initialize(keySize, random);
+        this.random = random;
+    }
+
+    @Override
+    public void initialize(AlgorithmParameterSpec algParams,
+            SecureRandom random) throws InvalidAlgorithmParameterException {
+        kyberKeyGen.initialize(algParams, random);
+        this.random = random;
+    }
+
+    /**
+     * Generates a key pair.
+     *
+     * @return the new key pair
+     */
+    @Override
+    public KeyPair generateKeyPair() {
+        if (random == null) {
+            random = KyberJCE.getRandom();
+            kyberKeyGen.initialize(768, random);
+        }
+        try {
+            KeyPairGenerator classicalKeyGen = KeyPairGenerator.getInstance("X25519");
+            classicalKeyGen.initialize(NamedParameterSpec.X25519, random);
+            KeyPair classical = classicalKeyGen.generateKeyPair();
+            KeyPair kyber = kyberKeyGen.generateKeyPair();
+            KyberHybridPublicKey publicKey = new KyberHybridPublicKey(classical.getPublic(),
+                    (com.swiftcryptollc.crypto.interfaces.KyberPublicKey) kyber.getPublic());
+            KyberHybridPrivateKey privateKey = new KyberHybridPrivateKey(classical.getPrivate(),
+                    (com.swiftcryptollc.crypto.interfaces.KyberPrivateKey) kyber.getPrivate(), publicKey);
+            return new KeyPair(publicKey, privateKey);
+        } catch (GeneralSecurityException ex) {
+            throw new ProviderException("Unable to generate an X25519Kyber768 key pair", ex);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.interfaces.XECPrivateKey;
+import java.security.spec.NamedParameterSpec;
+import java.security.spec.XECPrivateKeySpec;
+import java.security.spec.XECPublicKeySpec;
+import java.util.Arrays;
+import javax.crypto.KeyAgreement;
+
+/**
+ * An X25519Kyber768 private key: an X25519 private key and a Kyber768 private
+ * key, along with the matching public key, which the key agreement binds into
+ * the shared secret.
+ *
+ * The encoded form is the 32-byte X25519 scalar followed by the raw Kyber768
+ * private key.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class KyberHybridPrivateKey implements PrivateKey {
+
+    static final long serialVersionUID = 3718250964182257340L;
+
+    public static final int ENCODED_BYTES = KyberHybridPublicKey.X25519_BYTES
+            + KyberHybridPublicKey.KYBER_KEY_SIZE.getParameterSet().getPrivateKeyBytes();
+
+    private final XECPrivateKey classicalKey;
+    private final com.swiftcryptollc.crypto.interfaces.KyberPrivateKey kyberKey;
+    private final KyberHybridPublicKey publicKey;
+
+    /**
+     * @param classicalKey an X25519 private key
+     * @param kyberKey a Kyber768 private key
+     * @param publicKey the matching public key
+     * @throws InvalidKeyException
+     */
+    public KyberHybridPrivateKey(PrivateKey classicalKey, com.swiftcryptollc.crypto.interfaces.KyberPrivateKey kyberKey,
+            KyberHybridPublicKey publicKey) throws InvalidKeyException {
+        if (!(classicalKey instanceof XECPrivateKey) || !((XECPrivateKey) classicalKey).getScalar().isPresent()) {
+            throw new InvalidKeyException("X25519 private key expected");
+        }
+        if (kyberKey.getKyberKeySize() != KyberHybridPublicKey.KYBER_KEY_SIZE) {
+            throw new InvalidKeyException("Kyber768 private key expected");
+        }
+        this.classicalKey = (XECPrivateKey) classicalKey;
+        this.kyberKey = kyberKey;
+        this.publicKey = publicKey;
+    }
+
+    /**
+     * @param encoded the X25519 scalar followed by the Kyber768 private key
+     * @throws InvalidKeyException
+     */
+    public KyberHybridPrivateKey(byte[] encoded) throws InvalidKeyException {
+        if (encoded.length != ENCODED_BYTES) {
+            throw new InvalidKeyException(KyberHybridPublicKey.ALGORITHM + " private keys are " + ENCODED_BYTES + " bytes");
+        }
+        byte[] scalar = Arrays.copyOf(encoded, KyberHybridPublicKey.X25519_BYTES);
+        byte[] x = Arrays.copyOfRange(encoded, KyberHybridPublicKey.X25519_BYTES, ENCODED_BYTES);
+        try {
+            this.classicalKey = (XECPrivateKey) KeyFactory.getInstance("XDH").generatePrivate(
+                    new XECPrivateKeySpec(NamedParameterSpec.X25519, scalar));
+            // The X25519 public key is the scalar times the base point u = 9
+            KeyAgreement keyAgreement = KeyAgreement.getInstance("X25519");
+            keyAgreement.init(classicalKey);
+            keyAgreement.doPhase(KeyFactory.getInstance("XDH").generatePublic(
+                    new XECPublicKeySpec(NamedParameterSpec.X25519, BigInteger.valueOf(9))), true);
+            byte[] publicBytes = new byte[KyberHybridPublicKey.ENCODED_BYTES];
+            keyAgreement.generateSecret(publicBytes, 0);
+            KyberPrivateKey kyberPrivateKey = new KyberPrivateKey(x, null, null);
+            int indcpaSecretKeyBytes = KyberHybridPublicKey.KYBER_KEY_SIZE.getParameterSet().getIndcpaSecretKeyBytes();
+            System.arraycopy(x, indcpaSecretKeyBytes, publicBytes, KyberHybridPublicKey.X25519_BYTES,
+                    publicBytes.length - KyberHybridPublicKey.X25519_BYTES);
+            this.kyberKey = kyberPrivateKey;
+            this.publicKey = new KyberHybridPublicKey(publicBytes);
+        } catch (InvalidKeyException ex) {
+            throw ex;
+        } catch (GeneralSecurityException ex) {
+            throw new InvalidKeyException("Invalid X25519 private key", ex);
+        } finally {
+            Arrays.fill(scalar, (byte) 0);
+            Arrays.fill(x, (byte) 0);
+        }
+    }
+
+    /**
+     * @return the X25519 private key
+     */
+    public XECPrivateKey getClassicalKey() {
+        return classicalKey;
+    }
+
+    /**
+     * @return the Kyber768 private key
+     */
+    public com.swiftcryptollc.crypto.interfaces.KyberPrivateKey getKyberKey() {
+        return kyberKey;
+    }
+
+    /**
+     * @return the matching public key
+     */
+    public KyberHybridPublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    /**
+     * Returns the name of the algorithm associated with this key:
+     * "X25519Kyber768"
+     */
+    @Override
+    public String getAlgorithm() {
+        return KyberHybridPublicKey.ALGORITHM;
+    }
+
+    /**
+     * Returns the encoding format of this key: "RAW"
+     */
+    @Override
+    public String getFormat() {
+        return "RAW";
+    }
+
+    /**
+     * Get the encoding of the key.
+     */
+    @Override
+    public byte[] getEncoded() {
+        byte[] scalar = classicalKey.getScalar().get();
+        byte[] x = kyberKey.getX();
+        byte[] encoded = new byte[ENCODED_BYTES];
+        System.arraycopy(scalar, 0, encoded, 0, KyberHybridPublicKey.X25519_BYTES);
+        System.arraycopy(x, 0, encoded, KyberHybridPublicKey.X25519_BYTES, x.length);
+        Arrays.fill(scalar, (byte) 0);
+        Arrays.fill(x, (byte) 0);
+        return encoded;
+    }
+}
@@ -0,0 +1,196 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.util.KyberKeyUtil;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProviderException;
+import java.security.PublicKey;
+import java.security.interfaces.XECPublicKey;
+import java.security.spec.NamedParameterSpec;
+import java.security.spec.XECPublicKeySpec;
+import java.util.Arrays;
+
+/**
+ * An X25519Kyber768 public key: an X25519 public key and a Kyber768 public
+ * key.
+ *
+ * The encoded form is the 32-byte X25519 public key (RFC 7748) followed by the
+ * raw Kyber768 public key.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class KyberHybridPublicKey implements PublicKey {
+
+    static final long serialVersionUID = 6023815270385527193L;
+
+    public static final String ALGORITHM = "X25519Kyber768";
+    static final KyberKeySize KYBER_KEY_SIZE = KyberKeySize.KEY_768;
+    static final int X25519_BYTES = 32;
+    public static final int ENCODED_BYTES = X25519_BYTES + KYBER_KEY_SIZE.getParameterSet().getPublicKeyBytes();
+
+    private final XECPublicKey classicalKey;
+    private final com.swiftcryptollc.crypto.interfaces.KyberPublicKey kyberKey;
+    private final byte[] encoded;
+
+    // SHA3-256 of the encoding, computed on first use
+    private transient volatile byte[] encodedHash;
+
+    /**
+     * @param classicalKey an X25519 public key
+     * @param kyberKey a Kyber768 public key
+     * @throws InvalidKeyException
+     */
+    public KyberHybridPublicKey(PublicKey classicalKey, com.swiftcryptollc.crypto.interfaces.KyberPublicKey kyberKey)
+            throws InvalidKeyException {
+        if (!isX25519(classicalKey)) {
+            throw new InvalidKeyException("X25519 public key expected");
+        }
+        if (kyberKey.getKyberKeySize() != KYBER_KEY_SIZE) {
+            throw new InvalidKeyException("Kyber768 public key expected");
+        }
+        this.classicalKey = (XECPublicKey) classicalKey;
+        this.kyberKey = kyberKey;
+        this.encoded = new byte[ENCODED_BYTES];
+        System.arraycopy(encodeU(this.classicalKey.getU()), 0, encoded, 0, X25519_BYTES);
+        byte[] y = kyberKey.getY();
+        System.arraycopy(y, 0, encoded, X25519_BYTES, y.length);
+    }
+
+    /**
+     * @param encoded the X25519 public key followed by the Kyber768 public key
+     * @throws InvalidKeyException
+     */
+    public KyberHybridPublicKey(byte[] encoded) throws InvalidKeyException {
+        if (encoded.length != ENCODED_BYTES) {
+            throw new InvalidKeyException(ALGORITHM + " public keys are " + ENCODED_BYTES + " bytes");
+        }
+        this.classicalKey = decodeX25519(encoded, 0);
+        this.kyberKey = new KyberPublicKey(Arrays.copyOfRange(encoded, X25519_BYTES, ENCODED_BYTES), null, null);
+        this.encoded = encoded.clone();
+    }
+
+    /**
+     * @return the X25519 public key
+     */
+    public XECPublicKey getClassicalKey() {
+        return classicalKey;
+    }
+
+    /**
+     * @return the Kyber768 public key
+     */
+    public com.swiftcryptollc.crypto.interfaces.KyberPublicKey getKyberKey() {
+        return kyberKey;
+    }
+
+    /**
+     * @return the encoded X25519 public key
+     */
+    byte[] getClassicalBytes() {
+        return Arrays.copyOf(encoded, X25519_BYTES);
+    }
+
+    /**
+     * Returns the name of the algorithm associated with this key:
+     * "X25519Kyber768"
+     */
+    @Override
+    public String getAlgorithm() {
+        return ALGORITHM;
+    }
+
+    /**
+     * Returns the encoding format of this key: "RAW"
+     */
+    @Override
+    public String getFormat() {
+        return "RAW";
+    }
+
+    /**
+     * Get the encoding of the key.
+     */
+    @Override
+    public byte[] getEncoded() {
+        return encoded.clone();
+    }
+
+    /**
+     * Calculates a hash code value for the object. Objects that are equal will
+     * also have the same hashcode.
+     */
+    @Override
+    public int hashCode() {
+        // Keys can be chosen by an attacker, so hash them rather than using
+        // their leading bytes
+        byte[] hash = encodedHash;
+        if (hash == null) {
+            try {
+                hash = MessageDigest.getInstance("SHA3-256").digest(encoded);
+            } catch (NoSuchAlgorithmException ex) {
+                throw new ProviderException(ex);
+            }
+            encodedHash = hash;
+        }
+        return KyberKeyUtil.hashCodeOf(hash, 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof KyberHybridPublicKey)) {
+            return false;
+        }
+        return MessageDigest.isEqual(encoded, ((KyberHybridPublicKey) obj).encoded);
+    }
+
+    /**
+     * @param key
+     * @return true if the key is an X25519 public key
+     */
+    static boolean isX25519(PublicKey key) {
+        return (key instanceof XECPublicKey)
+                && (((XECPublicKey) key).getParams() instanceof NamedParameterSpec)
+                && ((NamedParameterSpec) ((XECPublicKey) key).getParams()).getName().equalsIgnoreCase("X25519");
+    }
+
+    /**
+     * @param u
+     * @return the 32-byte little endian encoding of u
+     */
+    static byte[] encodeU(BigInteger u) {
+        byte[] bigEndian = u.toByteArray();
+        byte[] encodedU = new byte[X25519_BYTES];
+        for (int i = 0; i < X25519_BYTES && i < bigEndian.length; i++) {
+            encodedU[i] = bigEndian[bigEndian.length - 1 - i];
+        }
+        return encodedU;
+    }
+
+    /**
+     * @param in
+     * @param offset
+     * @return the X25519 public key encoded at the offset
+     * @throws InvalidKeyException
+     */
+    static XECPublicKey decodeX25519(byte[] in, int offset) throws InvalidKeyException {
+        byte[] bigEndian = new byte[X25519_BYTES];
+        for (int i = 0; i < X25519_BYTES; i++) {
+            bigEndian[i] = in[offset + X25519_BYTES - 1 - i];
+        }
+        // RFC 7748 ignores the top bit
+        bigEndian[0] &= 0x7F;
+        try {
+            return (XECPublicKey) KeyFactory.getInstance("XDH").generatePublic(
+                    new XECPublicKeySpec(NamedParameterSpec.X25519, new BigInteger(1, bigEndian)));
+        } catch (GeneralSecurityException ex) {
+            throw new InvalidKeyException("Invalid X25519 public key", ex);
+        }
+    }
+}
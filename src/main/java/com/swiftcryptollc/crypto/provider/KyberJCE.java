@@ -1,8 +1,13 @@
 package com.swiftcryptollc.crypto.provider;
 
 import java.security.AccessController;
+import java.security.KeyPair;
+import java.security.KeyPairGeneratorSpi;
 import java.security.Provider;
 import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Java implementation of the CRYSTALS Kyber Algorithm.
@@ -21,6 +26,13 @@ public final class KyberJCE extends Provider {
 
     private static final long serialVersionUID = 387564738298475632L;
     public static final String OID_KYBER = "1.3.6.1.4.1.2.267.8";
+    /**
+     * A private identifier for the encodings of Kyber-90s keys and cipher
+     * texts, which keeps them from being mistaken for standard ones. It is not
+     * an assigned Kyber-90s OID: the arc is made up under OID_KYBER, and other
+     * implementations will not recognize it.
+     */
+    public static final String PRIVATE_OID_KYBER_90S = "1.3.6.1.4.1.2.267.8.90";
 
     private static final String info = "KyberJCE Provider "
             + "(implements CRYSTALS Kyber)";
@@ -32,6 +44,12 @@ public final class KyberJCE extends Provider {
     // to find ourselves or run the risk of not being in the list.
     private static volatile KyberJCE instance;
 
+    // Milliseconds of background warm-up to run when the provider is first
+    // created, 0 to disable
+    private static final long warmUpMillis = Long.getLong("com.swiftcryptollc.kyber.warmup", 0L);
+    private static final AtomicBoolean warmUpStarted = new AtomicBoolean(false);
+    private static volatile Duration warmUpTime = Duration.ZERO;
+
     // lazy initialize SecureRandom to avoid potential recursion if Sun
     // provider has not been installed yet
     private static class SecureRandomHolder {
@@ -65,6 +83,16 @@ public final class KyberJCE extends Provider {
                         "com.swiftcryptollc.crypto.provider.Kyber768KeyPairGenerator");
                 put("Alg.Alias.KeyPairGenerator.Kyber", "Kyber");
 
+                put("KeyPairGenerator.Kyber512-90s",
+                        "com.swiftcryptollc.crypto.provider.Kyber90sKeyPairGenerator$Kyber512");
+                put("KeyPairGenerator.Kyber768-90s",
+                        "com.swiftcryptollc.crypto.provider.Kyber90sKeyPairGenerator$Kyber768");
+                put("KeyPairGenerator.Kyber1024-90s",
+                        "com.swiftcryptollc.crypto.provider.Kyber90sKeyPairGenerator$Kyber1024");
+
+                put("KeyPairGenerator.X25519Kyber768",
+                        "com.swiftcryptollc.crypto.provider.KyberHybridKeyPairGenerator");
+
                 /*
                      * Algorithm parameter generation engines
                  */
@@ -86,6 +114,26 @@ public final class KyberJCE extends Provider {
                 put("KeyAgreement.Kyber SupportedKeyClasses",
                         "com.swiftcryptollc.crypto.interfaces.KyberPublicKey"
                         + "|com.swiftcryptollc.crypto.interfaces.KyberPrivateKey");
+                put("KeyAgreement.Kyber-90s",
+                        "com.swiftcryptollc.crypto.provider.Kyber90sKeyAgreement");
+                put("KeyAgreement.Kyber-90s SupportedKeyClasses",
+                        "com.swiftcryptollc.crypto.interfaces.KyberPublicKey"
+                        + "|com.swiftcryptollc.crypto.interfaces.KyberPrivateKey");
+                put("KeyAgreement.X25519Kyber768",
+                        "com.swiftcryptollc.crypto.provider.KyberHybridKeyAgreement");
+                put("KeyAgreement.X25519Kyber768 SupportedKeyClasses",
+                        "com.swiftcryptollc.crypto.provider.KyberHybridPublicKey"
+                        + "|com.swiftcryptollc.crypto.provider.KyberHybridPrivateKey");
+
+                /*
+                     * Hybrid (KEM + AES-GCM) Cipher engines
+                 */
+                put("Cipher.Kyber512/GCM",
+                        "com.swiftcryptollc.crypto.provider.KyberGcmCipher$Kyber512");
+                put("Cipher.Kyber768/GCM",
+                        "com.swiftcryptollc.crypto.provider.KyberGcmCipher$Kyber768");
+                put("Cipher.Kyber1024/GCM",
+                        "com.swiftcryptollc.crypto.provider.KyberGcmCipher$Kyber1024");
 
                 /*
                      * Algorithm Parameter engines
@@ -103,6 +151,11 @@ public final class KyberJCE extends Provider {
                 put("Alg.Alias.KeyFactory.OID." + OID_KYBER,
                         "Kyber");
                 put("Alg.Alias.KeyFactory." + OID_KYBER, "Kyber");
+                // Only so this provider can read back its own Kyber-90s
+                // encodings, see PRIVATE_OID_KYBER_90S
+                put("Alg.Alias.KeyFactory.OID." + PRIVATE_OID_KYBER_90S,
+                        "Kyber");
+                put("Alg.Alias.KeyFactory." + PRIVATE_OID_KYBER_90S, "Kyber");
 
                 return null;
             }
@@ -111,6 +164,117 @@ public final class KyberJCE extends Provider {
         if (instance == null) {
             instance = this;
         }
+        KyberMetrics.register();
+        if ((warmUpMillis > 0) && warmUpStarted.compareAndSet(false, true)) {
+            warmUpInBackground(Duration.ofMillis(warmUpMillis), KyberKeySize.values());
+        }
+    }
+
+    /**
+     * Run the given number of key generation, encapsulation and decapsulation
+     * rounds for each of the given parameter sets (all of them if none are
+     * given) so the hot methods are JIT compiled before real traffic arrives.
+     * The rounds are not counted in KyberMetrics and emit no flight recorder
+     * events.
+     *
+     * @param iterations
+     * @param kyberKeySizes
+     * @return the time taken
+     */
+    public static Duration warmUp(int iterations, KyberKeySize... kyberKeySizes) {
+        KyberKeySize[] sizes = (kyberKeySizes.length == 0) ? KyberKeySize.values() : kyberKeySizes;
+        return KyberMetrics.unrecorded(() -> {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                for (KyberKeySize kyberKeySize : sizes) {
+                    warmUpRound(kyberKeySize);
+                }
+            }
+            warmUpTime = Duration.ofNanos(System.nanoTime() - start);
+            return warmUpTime;
+        });
+    }
+
+    /**
+     * Run key generation, encapsulation and decapsulation rounds for each of
+     * the given parameter sets (all of them if none are given) until the given
+     * duration has passed.
+     *
+     * @param duration
+     * @param kyberKeySizes
+     * @return the time taken
+     */
+    public static Duration warmUp(Duration duration, KyberKeySize... kyberKeySizes) {
+        KyberKeySize[] sizes = (kyberKeySizes.length == 0) ? KyberKeySize.values() : kyberKeySizes;
+        return KyberMetrics.unrecorded(() -> {
+            long start = System.nanoTime();
+            long end = start + duration.toNanos();
+            do {
+                for (KyberKeySize kyberKeySize : sizes) {
+                    warmUpRound(kyberKeySize);
+                }
+            } while (System.nanoTime() < end);
+            warmUpTime = Duration.ofNanos(System.nanoTime() - start);
+            return warmUpTime;
+        });
+    }
+
+    /**
+     * Run {@link #warmUp(Duration, KyberKeySize...)} on a daemon thread
+     *
+     * @param duration
+     * @param kyberKeySizes
+     * @return a future completed with the time taken
+     */
+    public static CompletableFuture<Duration> warmUpInBackground(Duration duration, KyberKeySize... kyberKeySizes) {
+        CompletableFuture<Duration> future = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                future.complete(warmUp(duration, kyberKeySizes));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, "KyberJCE-warmup");
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+
+    /**
+     * @return the time taken by the last completed warm-up, or zero if no
+     * warm-up has completed
+     */
+    public static Duration getWarmUpTime() {
+        return warmUpTime;
+    }
+
+    /**
+     * A single key generation, encapsulation and decapsulation
+     *
+     * @param kyberKeySize
+     */
+    private static void warmUpRound(KyberKeySize kyberKeySize) {
+        KeyPairGeneratorSpi keyGen;
+        switch (kyberKeySize) {
+            case KEY_512:
+                keyGen = new Kyber512KeyPairGenerator();
+                break;
+            case KEY_1024:
+                keyGen = new Kyber1024KeyPairGenerator();
+                break;
+            default:
+                keyGen = new Kyber768KeyPairGenerator();
+        }
+        keyGen.initialize(kyberKeySize.getParamsK() * 256, getRandom());
+        try {
+            KeyPair keyPair = keyGen.generateKeyPair();
+            KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+            keyAgreement.engineInit(keyPair.getPrivate(), getRandom());
+            KyberEncrypted kyberEncrypted = (KyberEncrypted) keyAgreement.engineDoPhase(keyPair.getPublic(), true);
+            keyAgreement.engineDoPhase(kyberEncrypted.getCipherText(), true);
+        } catch (Exception ex) {
+            throw new IllegalStateException("Warm-up failed", ex);
+        }
     }
 
     // Return the instance of this class or create one if needed.
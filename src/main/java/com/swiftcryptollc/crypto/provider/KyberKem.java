@@ -0,0 +1,330 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.github.aelstad.keccakj.core.KeccakSponge;
+import com.swiftcryptollc.crypto.provider.kyber.Indcpa;
+import com.swiftcryptollc.crypto.provider.kyber.KyberParameterSet;
+import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
+import com.swiftcryptollc.crypto.util.KyberKeyUtil;
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProviderException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Kyber KEM engine shared by every parameter set
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+final class KyberKem {
+
+    /**
+     * Generate a public/private key set
+     *
+     * @param params
+     * @param rand
+     * @return
+     * @throws ProviderException if the key pair can not be generated
+     */
+    static KyberPKI generateKeyPair(KyberParameterSet params, SecureRandom rand) {
+        KyberPKI kyberPKI = new KyberPKI();
+        try {
+            byte[] d = new byte[KyberParams.paramsSymBytes];
+            byte[] z = new byte[KyberParams.paramsSymBytes];
+            rand.nextBytes(d);
+            rand.nextBytes(z);
+            KyberPackedPKI keys = deriveKeys(params, d, z);
+            byte[] publicKey = keys.getPackedPublicKey();
+            byte[] privateKey = keys.getPackedPrivateKey();
+            boolean kyber90s = params.getSymmetric().is90s();
+            kyberPKI.setPublicKey(new KyberPublicKey(publicKey, null, null, publicKey.length, kyber90s));
+            kyberPKI.setPrivateKey(new KyberPrivateKey(privateKey, null, null, privateKey.length, kyber90s));
+        } catch (NoSuchAlgorithmException | InvalidKeyException ex) {
+            throw new ProviderException("Unable to generate a key pair", ex);
+        }
+        return kyberPKI;
+    }
+
+    /**
+     * Deterministically derive the public key and the full KEM private key
+     * from the key generation seed d and the implicit rejection secret z
+     *
+     * @param params
+     * @param d
+     * @param z
+     * @return the public key and the full private key
+     * @throws NoSuchAlgorithmException
+     */
+    static KyberPackedPKI deriveKeys(KyberParameterSet params, byte[] d, byte[] z) throws NoSuchAlgorithmException {
+        return deriveKeys(params, d, null, z);
+    }
+
+    /**
+     * Deterministically derive the public key and the full KEM private key,
+     * with the given seed for the public matrix if it is not null
+     *
+     * @param params
+     * @param d
+     * @param matrixSeed
+     * @param z
+     * @return the public key and the full private key
+     * @throws NoSuchAlgorithmException
+     */
+    static KyberPackedPKI deriveKeys(KyberParameterSet params, byte[] d, byte[] matrixSeed, byte[] z) throws NoSuchAlgorithmException {
+        KyberPackedPKI indcpaPKI = Indcpa.generateKyberKeys(d, matrixSeed, params);
+        byte[] packedPrivateKey = indcpaPKI.getPackedPrivateKey();
+        byte[] packedPublicKey = indcpaPKI.getPackedPublicKey();
+        byte[] privateKeyFixedLength = new byte[params.getPrivateKeyBytes()];
+        MessageDigest md = MessageDigest.getInstance(params.getSymmetric().getHashH());
+
+        byte[] pkh = md.digest(packedPublicKey);
+
+        int offsetEnd = packedPrivateKey.length;
+        System.arraycopy(packedPrivateKey, 0, privateKeyFixedLength, 0, offsetEnd);
+        System.arraycopy(packedPublicKey, 0, privateKeyFixedLength, offsetEnd, packedPublicKey.length);
+        offsetEnd = offsetEnd + packedPublicKey.length;
+
+        System.arraycopy(pkh, 0, privateKeyFixedLength, offsetEnd, pkh.length);
+        offsetEnd += pkh.length;
+        System.arraycopy(z, 0, privateKeyFixedLength, offsetEnd, KyberParams.paramsSymBytes);
+        Arrays.fill(packedPrivateKey, (byte) 0);
+
+        KyberPackedPKI keys = new KyberPackedPKI();
+        keys.setPackedPublicKey(packedPublicKey);
+        keys.setPackedPrivateKey(privateKeyFixedLength);
+        return keys;
+    }
+
+    /**
+     * Encrypt the given variant with the given public key
+     *
+     * @param params
+     * @param variant
+     * @param publicKey read in place, its position is not changed
+     * @param publicKeyHash H(pk) if the key already knows it, otherwise null
+     * @return KyberEncrypted
+     * @throws NoSuchAlgorithmException
+     * @throws InvalidKeyException
+     */
+    static KyberEncrypted encapsulate(KyberParameterSet params, byte[] variant, ByteBuffer publicKey, byte[] publicKeyHash)
+            throws NoSuchAlgorithmException, InvalidKeyException {
+        return encapsulate(params, variant, publicKey, publicKeyHash, params.getSymmetric().newKdf());
+    }
+
+    /**
+     * Encrypt the given variant with the given public key, deriving the shared
+     * secret with the given SHAKE256 sponge. The sponge is left positioned
+     * after the shared secret, so further key material can be squeezed from it.
+     * Kyber-90s derives the secret with SHA-256 and takes a null sponge.
+     *
+     * @param params
+     * @param variant
+     * @param publicKey read in place, its position is not changed
+     * @param publicKeyHash H(pk) if the key already knows it, otherwise null
+     * @param kdf an empty sponge from the parameter set's KyberSymmetric
+     * @return KyberEncrypted
+     * @throws NoSuchAlgorithmException
+     * @throws InvalidKeyException
+     */
+    static KyberEncrypted encapsulate(KyberParameterSet params, byte[] variant, ByteBuffer publicKey, byte[] publicKeyHash,
+            KeccakSponge kdf) throws NoSuchAlgorithmException, InvalidKeyException {
+        variant = verifyVariant(variant);
+        KyberEncrypted msg = new KyberEncrypted();
+        byte[] sharedSecret = new byte[KyberParams.KyberSSBytes];
+        MessageDigest md = MessageDigest.getInstance(params.getSymmetric().getHashH());
+        byte[] buf1 = md.digest(variant);
+        byte[] buf2 = publicKeyHash;
+        if (buf2 == null) {
+            md.update(publicKey.duplicate());
+            buf2 = md.digest();
+        }
+        byte[] buf3 = new byte[buf1.length + buf2.length];
+        System.arraycopy(buf1, 0, buf3, 0, buf1.length);
+        System.arraycopy(buf2, 0, buf3, buf1.length, buf2.length);
+        MessageDigest md512 = MessageDigest.getInstance(params.getSymmetric().getHashG());
+        byte[] kr = md512.digest(buf3);
+        byte[] subKr = new byte[kr.length - KyberParams.paramsSymBytes];
+        System.arraycopy(kr, KyberParams.paramsSymBytes, subKr, 0, subKr.length);
+        byte[] ciphertext = Indcpa.encrypt(buf1, publicKey, subKr, params);
+        byte[] krc = md.digest(ciphertext);
+        byte[] newKr = new byte[KyberParams.paramsSymBytes + krc.length];
+        System.arraycopy(kr, 0, newKr, 0, KyberParams.paramsSymBytes);
+        System.arraycopy(krc, 0, newKr, KyberParams.paramsSymBytes, krc.length);
+        params.getSymmetric().kdf(newKr, kdf, sharedSecret);
+        Arrays.fill(newKr, (byte) 0);
+        msg.setCipherText(KyberCipherText.move(ciphertext, params.getSymmetric().is90s()));
+        msg.setSecretKey(new KyberSecretKey(sharedSecret, null, null));
+        return msg;
+    }
+
+    /**
+     * Get the shared secret with the given cipher text and private key
+     *
+     * The private key is read in place with absolute gets, so a direct
+     * (off-heap) buffer is never copied to the heap as a whole
+     *
+     * @param params
+     * @param ciphertext
+     * @param privateKey
+     * @param event
+     * @return
+     * @throws NoSuchAlgorithmException
+     */
+    static KyberDecrypted decapsulate(KyberParameterSet params, byte[] ciphertext, ByteBuffer privateKey,
+            KyberDecapsulateEvent event) throws NoSuchAlgorithmException {
+        return decapsulate(params, ciphertext, privateKey, event, params.getSymmetric().newKdf());
+    }
+
+    /**
+     * Get the shared secret with the given cipher text and private key,
+     * deriving it with the given SHAKE256 sponge. The sponge is left positioned
+     * after the shared secret, so further key material can be squeezed from it.
+     * Kyber-90s derives the secret with SHA-256 and takes a null sponge.
+     *
+     * @param params
+     * @param ciphertext
+     * @param privateKey
+     * @param event
+     * @param kdf an empty sponge from the parameter set's KyberSymmetric
+     * @return
+     * @throws NoSuchAlgorithmException
+     */
+    static KyberDecrypted decapsulate(KyberParameterSet params, byte[] ciphertext, ByteBuffer privateKey,
+            KyberDecapsulateEvent event, KeccakSponge kdf) throws NoSuchAlgorithmException {
+        byte[] preKey = new byte[KyberParams.paramsSymBytes];
+        KyberVariant variant = decapsulate(params, ciphertext, privateKey, event, preKey);
+        byte[] sharedSecretFixedLength = deriveSecret(params, preKey, cipherTextHash(params, ciphertext), kdf);
+        Arrays.fill(preKey, (byte) 0);
+        return new KyberDecrypted(new KyberSecretKey(sharedSecretFixedLength, null, null), variant);
+    }
+
+    /**
+     * Decrypt and re-encrypt the cipher text, leaving the pre-key K (or z if
+     * re-encryption failed) in preKey. The shared secret is KDF(K || H(c)), see
+     * {@link #deriveSecret}.
+     *
+     * @param params
+     * @param ciphertext
+     * @param privateKey
+     * @param event
+     * @param preKey 32 bytes for K
+     * @return the decrypted message
+     * @throws NoSuchAlgorithmException
+     */
+    static KyberVariant decapsulate(KyberParameterSet params, byte[] ciphertext, ByteBuffer privateKey,
+            KyberDecapsulateEvent event, byte[] preKey) throws NoSuchAlgorithmException {
+        int indcpaSecretKeyBytes = params.getIndcpaSecretKeyBytes();
+        int privateKeyBytes = params.getPrivateKeyBytes();
+        byte[] publicKey = new byte[params.getIndcpaPublicKeyBytes()];
+        privateKey.get(indcpaSecretKeyBytes, publicKey);
+
+        byte[] buf = Indcpa.decrypt(ciphertext, privateKey, params);
+        int ski = privateKeyBytes - 2 * KyberParams.paramsSymBytes;
+        byte[] newBuf = new byte[buf.length + KyberParams.paramsSymBytes];
+        System.arraycopy(buf, 0, newBuf, 0, buf.length);
+        privateKey.get(ski, newBuf, buf.length, KyberParams.paramsSymBytes);
+        MessageDigest md512 = MessageDigest.getInstance(params.getSymmetric().getHashG());
+        byte[] kr = md512.digest(newBuf);
+        byte[] subKr = new byte[kr.length - KyberParams.paramsSymBytes];
+        System.arraycopy(kr, KyberParams.paramsSymBytes, subKr, 0, subKr.length);
+        byte[] cmp = Indcpa.encrypt(buf, publicKey, subKr, params);
+        int fail = KyberKeyUtil.constantTimeCompare(ciphertext, cmp);
+        // Spread any difference to an all ones mask without branching
+        int mask = -((fail | -fail) >>> 31);
+        event.implicitRejection = (fail != 0);
+        // For security purposes, removed the "if" so it behaves the same whether it
+        // worked or not.
+        int index = privateKeyBytes - KyberParams.paramsSymBytes;
+        for (int i = 0; i < KyberParams.paramsSymBytes; i++) {
+            preKey[i] = (byte) ((int) (kr[i] & 0xFF) ^ (mask & ((int) (kr[i] & 0xFF) ^ (int) (privateKey.get(index) & 0xFF))));
+            index += 1;
+        }
+        Arrays.fill(kr, (byte) 0);
+        return new KyberVariant(buf);
+    }
+
+    /**
+     * @param params
+     * @param ciphertext
+     * @return H(c)
+     * @throws NoSuchAlgorithmException
+     */
+    static byte[] cipherTextHash(KyberParameterSet params, byte[] ciphertext) throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance(params.getSymmetric().getHashH()).digest(ciphertext);
+    }
+
+    /**
+     * Derive the shared secret KDF(K || H(c)), leaving the sponge positioned
+     * after it
+     *
+     * @param params
+     * @param preKey K from {@link #decapsulate(KyberParameterSet, byte[], ByteBuffer, KyberDecapsulateEvent, byte[])}
+     * @param cipherTextHash H(c)
+     * @param kdf an empty sponge from the parameter set's KyberSymmetric
+     * @return the shared secret
+     */
+    static byte[] deriveSecret(KyberParameterSet params, byte[] preKey, byte[] cipherTextHash, KeccakSponge kdf) {
+        byte[] sharedSecretFixedLength = new byte[KyberParams.KyberSSBytes];
+        byte[] tempBuf = new byte[KyberParams.paramsSymBytes + cipherTextHash.length];
+        System.arraycopy(preKey, 0, tempBuf, 0, KyberParams.paramsSymBytes);
+        System.arraycopy(cipherTextHash, 0, tempBuf, KyberParams.paramsSymBytes, cipherTextHash.length);
+        params.getSymmetric().kdf(tempBuf, kdf, sharedSecretFixedLength);
+        Arrays.fill(tempBuf, (byte) 0);
+        return sharedSecretFixedLength;
+    }
+
+    /**
+     * @param publicKey
+     * @return the raw public key, in place for directory keys
+     */
+    static ByteBuffer buffer(com.swiftcryptollc.crypto.interfaces.KyberPublicKey publicKey) {
+        if (publicKey instanceof KyberDirectoryPublicKey) {
+            return ((KyberDirectoryPublicKey) publicKey).buffer();
+        }
+        return ByteBuffer.wrap(publicKey.getY());
+    }
+
+    /**
+     * @param privateKey
+     * @return the raw private key, in place for off-heap keys
+     */
+    static ByteBuffer buffer(com.swiftcryptollc.crypto.interfaces.KyberPrivateKey privateKey) {
+        if (privateKey instanceof KyberOffHeapPrivateKey) {
+            return ((KyberOffHeapPrivateKey) privateKey).buffer();
+        }
+        return ByteBuffer.wrap(privateKey.getX());
+    }
+
+    /**
+     * @param params
+     * @param publicKey
+     * @return the cached H(pk) of the key, or null if it has none or H is not
+     * SHA3-256
+     */
+    static byte[] publicKeyHash(KyberParameterSet params, com.swiftcryptollc.crypto.interfaces.KyberPublicKey publicKey) {
+        if (params.getSymmetric().is90s() || !(publicKey instanceof KyberPublicKey)) {
+            return null;
+        }
+        return ((KyberPublicKey) publicKey).getPublicKeyHash();
+    }
+
+    /**
+     * Verify the array size of the variant data
+     *
+     * @param variant
+     * @return
+     * @throws IllegalArgumentException
+     */
+    static byte[] verifyVariant(byte[] variant) throws IllegalArgumentException {
+        if (variant.length > KyberParams.paramsSymBytes) {
+            throw new IllegalArgumentException("Byte array exceeds allowable size of " + KyberParams.paramsSymBytes + " bytes");
+        } else if (variant.length < KyberParams.paramsSymBytes) {
+            byte[] tempData = new byte[KyberParams.paramsSymBytes];
+            System.arraycopy(variant, 0, tempData, 0, variant.length);
+            return tempData;
+        }
+        return variant;
+    }
+}
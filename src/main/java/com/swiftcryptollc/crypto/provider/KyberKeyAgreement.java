@@ -1,41 +1,63 @@
 package com.swiftcryptollc.crypto.provider;
 
 import com.github.aelstad.keccakj.core.KeccakSponge;
-import com.github.aelstad.keccakj.fips202.Shake256;
-import com.swiftcryptollc.crypto.provider.kyber.Indcpa;
+import com.swiftcryptollc.crypto.provider.kyber.KyberParameterSet;
 import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
 import com.swiftcryptollc.crypto.spec.KyberParameterSpec;
 import com.swiftcryptollc.crypto.util.KyberKeyUtil;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.Key;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.ProviderException;
 import java.security.SecureRandom;
 import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
 import javax.crypto.KeyAgreementSpi;
 import javax.crypto.SecretKey;
 import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import javax.security.auth.Destroyable;
 
 /**
  * This class implements the Kyber key agreement protocol between any number of
  * parties.
+ *
+ * {@link Kyber90sKeyAgreement} runs the same protocol with the Kyber-90s
+ * symmetric primitives, through an instance created with the kyber90s flag.
+ * Each key agreement rejects the keys and cipher texts of the other variant.
  */
 public final class KyberKeyAgreement extends KeyAgreementSpi {
 
+    private final boolean kyber90s;
     private KyberKeySize kyberKeySize;
     private BigInteger init_p = null;
     private BigInteger init_g = null;
-    private byte[] x = new byte[0]; // the private value
-    private byte[] y = new byte[0];
+    private ByteBuffer x = ByteBuffer.allocate(0); // the private value
+    private Key privateKey;
+    private ByteBuffer y = ByteBuffer.allocate(0);
+    private byte[] yHash;
     private KyberCipherText kyberCipherText;
+    // The shared secret of the last phase and the SHAKE256 sponge it was
+    // squeezed from, until a generateSecret call takes them
+    private byte[] secret;
+    private KeccakSponge kdf;
     private byte[] rnd = new byte[KyberParams.paramsSymBytes];
 
     /**
      * Empty constructor
      */
     public KyberKeyAgreement() {
+        this(false);
+    }
+
+    /**
+     * @param kyber90s use the Kyber-90s symmetric primitives
+     */
+    KyberKeyAgreement(boolean kyber90s) {
+        this.kyber90s = kyber90s;
     }
 
     /**
@@ -48,7 +70,7 @@ public final class KyberKeyAgreement extends KeyAgreementSpi {
             throws InvalidKeyException {
         try {
             engineInit(key, null, null);
-        } catch (Exception ex) {
+        } catch (InvalidAlgorithmParameterException ex) {
             // never happens, because we did not pass any parameters
         }
     }
@@ -94,6 +116,8 @@ public final class KyberKeyAgreement extends KeyAgreementSpi {
 
         init_p = null;
         init_g = null;
+        this.kyberKeySize = null;
+        clearSecret();
 
         if (random == null) {
             try {
@@ -107,30 +131,42 @@ public final class KyberKeyAgreement extends KeyAgreementSpi {
         }
         com.swiftcryptollc.crypto.interfaces.KyberPrivateKey kyberPrivKey;
         kyberPrivKey = (com.swiftcryptollc.crypto.interfaces.KyberPrivateKey) key;
-        this.kyberKeySize = KyberKeyUtil.getKyberKeySizePrivateKey(kyberPrivKey.getX().length);
+        checkVariant(kyberPrivKey.isKyber90s());
         // check if private key parameters are compatible with
-        // initialized ones
-        if (params != null) {
-            init_p = ((KyberParameterSpec) params).getP();
-            init_g = ((KyberParameterSpec) params).getG();
-        }
-        BigInteger priv_p = kyberPrivKey.getParams().getP();
-        BigInteger priv_g = kyberPrivKey.getParams().getG();
-        if (init_p != null && priv_p != null && !(init_p.equals(priv_p))) {
-            throw new InvalidKeyException("Incompatible parameters");
-        }
-        if (init_g != null && priv_g != null && !(init_g.equals(priv_g))) {
-            throw new InvalidKeyException("Incompatible parameters");
-        }
-        if ((init_p == null && priv_p == null)
-                || (init_g == null && priv_g == null)) {
-            throw new InvalidKeyException("Missing parameters");
+        // initialized ones. Kyber does not use p and g, so a key with the
+        // defaults and no explicit parameters leaves init_p and init_g null.
+        if ((params != null) || !kyberPrivKey.hasDefaultParams()) {
+            if (params != null) {
+                init_p = ((KyberParameterSpec) params).getP();
+                init_g = ((KyberParameterSpec) params).getG();
+            }
+            BigInteger priv_p = kyberPrivKey.getParams().getP();
+            BigInteger priv_g = kyberPrivKey.getParams().getG();
+            if (init_p != null && priv_p != null && !(init_p.equals(priv_p))) {
+                throw new InvalidKeyException("Incompatible parameters");
+            }
+            if (init_g != null && priv_g != null && !(init_g.equals(priv_g))) {
+                throw new InvalidKeyException("Incompatible parameters");
+            }
+            if ((init_p == null && priv_p == null)
+                    || (init_g == null && priv_g == null)) {
+                throw new InvalidKeyException("Missing parameters");
+            }
+            init_p = priv_p;
+            init_g = priv_g;
         }
-        init_p = priv_p;
-        init_g = priv_g;
 
-        // store the x value
-        this.x = kyberPrivKey.getX();
+        // store the x value, off-heap keys are read in place
+        if (kyberPrivKey instanceof KyberOffHeapPrivateKey) {
+            KyberOffHeapPrivateKey offHeapKey = (KyberOffHeapPrivateKey) kyberPrivKey;
+            this.kyberKeySize = offHeapKey.getKyberKeySize();
+            this.x = offHeapKey.buffer();
+        } else {
+            byte[] privX = kyberPrivKey.getX();
+            this.kyberKeySize = KyberKeyUtil.getKyberKeySizePrivateKey(privX.length);
+            this.x = ByteBuffer.wrap(privX);
+        }
+        this.privateKey = key;
     }
 
     /**
@@ -149,7 +185,7 @@ public final class KyberKeyAgreement extends KeyAgreementSpi {
     @Override
     public Key engineDoPhase(Key key, boolean lastPhase)
             throws InvalidKeyException, IllegalStateException {
-        if (init_p == null || init_g == null) {
+        if (kyberKeySize == null) {
             throw new IllegalStateException("Not initialized");
         }
 
@@ -158,29 +194,47 @@ public final class KyberKeyAgreement extends KeyAgreementSpi {
             kyberPubKey = (com.swiftcryptollc.crypto.interfaces.KyberPublicKey) key;
 
             // check if public key parameters are compatible with
-            // initialized ones
-            BigInteger pub_p = kyberPubKey.getParams().getP();
-            BigInteger pub_g = kyberPubKey.getParams().getG();
-            if (pub_p != null && !(init_p.equals(pub_p))) {
+            // initialized ones, the parameter set decides this for keys
+            // with the default p and g
+            if (kyberPubKey.getKyberKeySize() != kyberKeySize) {
                 throw new InvalidKeyException("Incompatible parameters");
             }
-            if (pub_g != null && !(init_g.equals(pub_g))) {
-                throw new InvalidKeyException("Incompatible parameters");
+            checkVariant(kyberPubKey.isKyber90s());
+            if ((init_p != null) || !kyberPubKey.hasDefaultParams()) {
+                BigInteger pub_p = kyberPubKey.getParams().getP();
+                BigInteger pub_g = kyberPubKey.getParams().getG();
+                BigInteger p = (init_p == null) ? KyberParams.default_p : init_p;
+                BigInteger g = (init_g == null) ? KyberParams.default_g : init_g;
+                if (pub_p != null && !(p.equals(pub_p))) {
+                    throw new InvalidKeyException("Incompatible parameters");
+                }
+                if (pub_g != null && !(g.equals(pub_g))) {
+                    throw new InvalidKeyException("Incompatible parameters");
+                }
             }
 
-            // validate the Kyber public key
-            KyberKeyUtil.validate(kyberPubKey);
-
-            // store the y value
-            this.y = kyberPubKey.getY();
+            // store the y value, directory keys are read in place, so check
+            // their length here rather than copying them to validate
+            if (kyberPubKey instanceof KyberDirectoryPublicKey) {
+                ByteBuffer buffer = ((KyberDirectoryPublicKey) kyberPubKey).buffer();
+                if (buffer.remaining() != kyberKeySize.getParameterSet().getPublicKeyBytes()) {
+                    throw new InvalidKeyException("Unsupported Key Length " + buffer.remaining());
+                }
+                this.y = buffer;
+            } else {
+                // validate the Kyber public key
+                KyberKeyUtil.validate(kyberPubKey);
+                this.y = ByteBuffer.wrap(kyberPubKey.getY());
+            }
+            this.yHash = KyberKem.publicKeyHash(kyberKeySize.getParameterSet(kyber90s), kyberPubKey);
 
             // we've received a public key (from one of the other parties),
             // so we are ready to create the secret, which may be an
             // intermediate secret, in which case we wrap it into a
             // Kyber public key object and return it.
             if (lastPhase == true) {
-                byte[] sharedSecret = engineGenerateSecret();
-                KyberSecretKey kyberSecretKey = new KyberSecretKey(sharedSecret,
+                KyberEncrypted kyberEncrypted = encrypt();
+                KyberSecretKey kyberSecretKey = new KyberSecretKey(kyberEncrypted.getSecretKey().getS(),
                         init_p, init_g);
 
                 return new KyberEncrypted(kyberSecretKey, kyberCipherText);
@@ -188,6 +242,7 @@ public final class KyberKeyAgreement extends KeyAgreementSpi {
                 return null;
             }
         } else if (key instanceof com.swiftcryptollc.crypto.provider.KyberCipherText) {
+            checkVariant(((KyberCipherText) key).isKyber90s());
             try {
                 return decrypt(kyberKeySize, (KyberCipherText) key);
             } catch (NoSuchAlgorithmException e) {
@@ -254,11 +309,13 @@ public final class KyberKeyAgreement extends KeyAgreementSpi {
     @Override
     protected int engineGenerateSecret(byte[] sharedSecret, int offset)
             throws IllegalStateException, ShortBufferException {
-        KyberEncrypted kyberEncrypted = encrypt();
-        byte[] tempSecret = kyberEncrypted.getSecretKey().getS();
-        System.arraycopy(tempSecret, 0, sharedSecret, 0, tempSecret.length);
-        kyberCipherText = kyberEncrypted.getCipherText();
-        return KyberParams.paramsSymBytes;
+        if (sharedSecret.length - offset < KyberParams.KyberSSBytes) {
+            throw new ShortBufferException("Need " + KyberParams.KyberSSBytes + " bytes for the shared secret");
+        }
+        takeSecret();
+        System.arraycopy(secret, 0, sharedSecret, offset, KyberParams.KyberSSBytes);
+        clearSecret();
+        return KyberParams.KyberSSBytes;
     }
 
     /**
@@ -288,326 +345,231 @@ public final class KyberKeyAgreement extends KeyAgreementSpi {
     protected SecretKey engineGenerateSecret(String algorithm)
             throws IllegalStateException, NoSuchAlgorithmException,
             InvalidKeyException {
-        throw new NoSuchAlgorithmException("Not implemented");
+        int length = keyBytes(algorithm);
+        takeSecret();
+        if ((kdf == null) && (length > KyberParams.KyberSSBytes)) {
+            // Kyber-90s has no XOF to stretch the shared secret
+            clearSecret();
+            throw new InvalidKeyException(algorithm + " needs " + length + " bytes, only "
+                    + KyberParams.KyberSSBytes + " bytes of key material are available");
+        }
+        return generateSecrets(new String[]{algorithm}, new int[]{length})[0];
     }
 
     /**
-     * Generate a key with the give kyber key size
+     * Creates several secret keys at once, with the default length of each
+     * algorithm. See {@link #generateSecrets(String[], int[])}.
      *
-     * @param kyberKeySize
-     * @param cipherText
-     * @return
+     * @param algorithms the requested secret key algorithms
+     * @return the secret keys in the requested order
+     * @throws IllegalStateException if this key agreement has not been
+     * completed yet
+     * @throws NoSuchAlgorithmException if an algorithm has no default length
      */
-    public KyberDecrypted decrypt(KyberKeySize kyberKeySize, KyberCipherText cipherText) throws NoSuchAlgorithmException {
-        switch (kyberKeySize) {
-            case KEY_512:
-                return this.decrypt512(cipherText);
-            case KEY_1024:
-                return this.decrypt1024(cipherText);
-            case KEY_768:
-                return this.decrypt768(cipherText);
+    public SecretKey[] generateSecrets(String... algorithms) throws IllegalStateException, NoSuchAlgorithmException {
+        int[] lengths = new int[algorithms.length];
+        for (int i = 0; i < algorithms.length; i++) {
+            lengths[i] = keyBytes(algorithms[i]);
         }
-        return null;
+        return generateSecrets(algorithms, lengths);
     }
 
     /**
-     * Get the shared secret with the given cipher text and private key
+     * Creates several secret keys at once, e.g. an AES key, a GCM IV and an
+     * HMAC key. The keys are consecutive pieces of the SHAKE256 output the
+     * shared secret is the first 32 bytes of, so no second KDF pass is needed
+     * and the first 32 bytes are always the shared secret itself. Kyber-90s
+     * derives its secret with SHA-256, so only 32 bytes are available there.
      *
-     * @param kyberCiphertext
-     * @return
+     * <p>
+     * Like the other <code>generateSecret</code> methods, this resets this
+     * key agreement for the next one.
+     *
+     * @param algorithms the algorithm name of each key
+     * @param lengths the length of each key in bytes
+     * @return the secret keys in the requested order
+     * @throws IllegalStateException if this key agreement has not been
+     * completed yet
      */
-    private KyberDecrypted decrypt512(KyberCipherText kyberCiphertext) throws NoSuchAlgorithmException {
-        byte[] ciphertext = kyberCiphertext.getC();
-        byte[] privateKey = this.x;
-        int paramsK = 2;
-        byte[] sharedSecretFixedLength = new byte[KyberParams.KyberSSBytes];
-        byte[] indcpaPrivateKey = new byte[KyberParams.paramsIndcpaSecretKeyBytesK512];
-        System.arraycopy(privateKey, 0, indcpaPrivateKey, 0, indcpaPrivateKey.length);
-        byte[] publicKey = new byte[KyberParams.paramsIndcpaPublicKeyBytesK512];
-        System.arraycopy(privateKey, KyberParams.paramsIndcpaSecretKeyBytesK512, publicKey, 0, publicKey.length);
-
-        byte[] buf = Indcpa.decrypt(ciphertext, indcpaPrivateKey, paramsK);
-        int ski = KyberParams.Kyber512SKBytes - 2 * KyberParams.paramsSymBytes;
-        byte[] newBuf = new byte[buf.length + KyberParams.paramsSymBytes];
-        System.arraycopy(buf, 0, newBuf, 0, buf.length);
-        System.arraycopy(privateKey, ski, newBuf, buf.length, KyberParams.paramsSymBytes);
-        MessageDigest md512 = MessageDigest.getInstance("SHA3-512");
-        byte[] kr = md512.digest(newBuf);
-        byte[] subKr = new byte[kr.length - KyberParams.paramsSymBytes];
-        System.arraycopy(kr, KyberParams.paramsSymBytes, subKr, 0, subKr.length);
-        byte[] cmp = Indcpa.encrypt(buf, publicKey, subKr, paramsK);
-        byte fail = (byte) KyberKeyUtil.constantTimeCompare(ciphertext, cmp);
-        MessageDigest md = MessageDigest.getInstance("SHA3-256");
-        byte[] krh = md.digest(ciphertext);
-        int index = KyberParams.Kyber512SKBytes - KyberParams.paramsSymBytes;
-        for (int i = 0; i < KyberParams.paramsSymBytes; i++) {
-            kr[i] = (byte) ((int) (kr[i] & 0xFF) ^ ((int) (fail & 0xFF) & ((int) (kr[i] & 0xFF) ^ (int) (privateKey[index] & 0xFF))));
-            index += 1;
+    public SecretKey[] generateSecrets(String[] algorithms, int[] lengths) throws IllegalStateException {
+        if (algorithms.length != lengths.length) {
+            throw new IllegalArgumentException("One length is needed for each algorithm");
+        }
+        int total = 0;
+        for (int length : lengths) {
+            if (length <= 0) {
+                throw new IllegalArgumentException("Key lengths must be positive");
+            }
+            total += length;
+        }
+        takeSecret();
+        byte[] material = new byte[total];
+        try {
+            int shared = Math.min(total, KyberParams.KyberSSBytes);
+            System.arraycopy(secret, 0, material, 0, shared);
+            if (total > shared) {
+                if (kdf == null) {
+                    throw new IllegalArgumentException("Only " + KyberParams.KyberSSBytes + " bytes of key material are available");
+                }
+                kdf.getSqueezeStream().read(material, shared, total - shared);
+            }
+            SecretKey[] keys = new SecretKey[algorithms.length];
+            int offset = 0;
+            for (int i = 0; i < algorithms.length; i++) {
+                keys[i] = new SecretKeySpec(material, offset, lengths[i], keyAlgorithm(algorithms[i]));
+                offset += lengths[i];
+            }
+            return keys;
+        } finally {
+            Arrays.fill(material, (byte) 0);
+            clearSecret();
         }
-        byte[] tempBuf = new byte[KyberParams.paramsSymBytes + krh.length];
-        System.arraycopy(kr, 0, tempBuf, 0, KyberParams.paramsSymBytes);
-        System.arraycopy(krh, 0, tempBuf, KyberParams.paramsSymBytes, krh.length);
-        KeccakSponge xof = new Shake256();
-        xof.getAbsorbStream().write(tempBuf);
-        xof.getSqueezeStream().read(sharedSecretFixedLength);
-
-        return new KyberDecrypted(new KyberSecretKey(sharedSecretFixedLength, null, null), new KyberVariant(buf));
     }
 
     /**
-     * Get the shared secret with the given cipher text and private key
-     *
-     * @param kyberCiphertext
-     * @return
+     * @param algorithm
+     * @return the default key length of the algorithm in bytes
+     * @throws NoSuchAlgorithmException
      */
-    private KyberDecrypted decrypt768(KyberCipherText kyberCiphertext) throws NoSuchAlgorithmException {
-        byte[] ciphertext = kyberCiphertext.getC();
-        byte[] privateKey = this.x;
-        int paramsK = 3;
-        byte[] sharedSecretFixedLength = new byte[KyberParams.KyberSSBytes];
-        byte[] indcpaPrivateKey = new byte[KyberParams.paramsIndcpaSecretKeyBytesK768];
-        System.arraycopy(privateKey, 0, indcpaPrivateKey, 0, indcpaPrivateKey.length);
-        byte[] publicKey = new byte[KyberParams.paramsIndcpaPublicKeyBytesK768];
-        System.arraycopy(privateKey, KyberParams.paramsIndcpaSecretKeyBytesK768, publicKey, 0, publicKey.length);
-
-        byte[] buf = Indcpa.decrypt(ciphertext, indcpaPrivateKey, paramsK);
-        int ski = KyberParams.Kyber768SKBytes - 2 * KyberParams.paramsSymBytes;
-        byte[] newBuf = new byte[buf.length + KyberParams.paramsSymBytes];
-        System.arraycopy(buf, 0, newBuf, 0, buf.length);
-        System.arraycopy(privateKey, ski, newBuf, buf.length, KyberParams.paramsSymBytes);
-        MessageDigest md512 = MessageDigest.getInstance("SHA3-512");
-        byte[] kr = md512.digest(newBuf);
-        byte[] subKr = new byte[kr.length - KyberParams.paramsSymBytes];
-        System.arraycopy(kr, KyberParams.paramsSymBytes, subKr, 0, subKr.length);
-        byte[] cmp = Indcpa.encrypt(buf, publicKey, subKr, paramsK);
-        byte fail = (byte) KyberKeyUtil.constantTimeCompare(ciphertext, cmp);
-        // For security purposes, removed the "if" so it behaves the same whether it
-        // worked or not.
-        MessageDigest md = MessageDigest.getInstance("SHA3-256");
-        byte[] krh = md.digest(ciphertext);
-        int index = KyberParams.Kyber768SKBytes - KyberParams.paramsSymBytes;
-        for (int i = 0; i < KyberParams.paramsSymBytes; i++) {
-            kr[i] = (byte) ((int) (kr[i] & 0xFF) ^ ((int) (fail & 0xFF) & ((int) (kr[i] & 0xFF) ^ (int) (privateKey[index] & 0xFF))));
-            index += 1;
+    static int keyBytes(String algorithm) throws NoSuchAlgorithmException {
+        switch (algorithm) {
+            case "AES_128":
+                return 16;
+            case "AES_192":
+                return 24;
+            case "AES":
+            case "AES_256":
+            case "ChaCha20":
+            case "HmacSHA256":
+            case "HmacSHA3-256":
+            case "Generic":
+            case "TlsPremasterSecret":
+                return KyberParams.KyberSSBytes;
+            case "HmacSHA384":
+            case "HmacSHA3-384":
+                return 48;
+            case "HmacSHA512":
+            case "HmacSHA3-512":
+                return 64;
+            default:
+                throw new NoSuchAlgorithmException("No default key length for " + algorithm);
         }
-        byte[] tempBuf = new byte[KyberParams.paramsSymBytes + krh.length];
-        System.arraycopy(kr, 0, tempBuf, 0, KyberParams.paramsSymBytes);
-        System.arraycopy(krh, 0, tempBuf, KyberParams.paramsSymBytes, krh.length);
-        KeccakSponge xof = new Shake256();
-        xof.getAbsorbStream().write(tempBuf);
-        xof.getSqueezeStream().read(sharedSecretFixedLength);
-
-        return new KyberDecrypted(new KyberSecretKey(sharedSecretFixedLength, null, null), new KyberVariant(buf));
     }
 
     /**
-     * Get the shared secret with the given cipher text and private key
-     *
-     * @param kyberCiphertext
-     * @return
+     * @param algorithm
+     * @return the algorithm name for the key, without a size suffix
      */
-    private KyberDecrypted decrypt1024(KyberCipherText kyberCiphertext)
-            throws IllegalArgumentException, NoSuchAlgorithmException {
-        byte[] ciphertext = kyberCiphertext.getC();
-        byte[] privateKey = this.x;
-        int paramsK = 4;
-        byte[] sharedSecretFixedLength = new byte[KyberParams.KyberSSBytes];
-        byte[] indcpaPrivateKey = new byte[KyberParams.paramsIndcpaSecretKeyBytesK1024];
-        System.arraycopy(privateKey, 0, indcpaPrivateKey, 0, indcpaPrivateKey.length);
-        byte[] publicKey = new byte[KyberParams.paramsIndcpaPublicKeyBytesK1024];
-        System.arraycopy(privateKey, KyberParams.paramsIndcpaSecretKeyBytesK1024, publicKey, 0, publicKey.length);
-
-        byte[] buf = Indcpa.decrypt(ciphertext, indcpaPrivateKey, paramsK);
-        int ski = KyberParams.Kyber1024SKBytes - 2 * KyberParams.paramsSymBytes;
-        byte[] newBuf = new byte[buf.length + KyberParams.paramsSymBytes];
-        System.arraycopy(buf, 0, newBuf, 0, buf.length);
-        System.arraycopy(privateKey, ski, newBuf, buf.length, KyberParams.paramsSymBytes);
-        MessageDigest md512 = MessageDigest.getInstance("SHA3-512");
-        byte[] kr = md512.digest(newBuf);
-        byte[] subKr = new byte[kr.length - KyberParams.paramsSymBytes];
-        System.arraycopy(kr, KyberParams.paramsSymBytes, subKr, 0, subKr.length);
-        byte[] cmp = Indcpa.encrypt(buf, publicKey, subKr, paramsK);
-        byte fail = (byte) KyberKeyUtil.constantTimeCompare(ciphertext, cmp);
-        // For security purposes, removed the "if" so it behaves the same whether it
-        // worked or not.
-        MessageDigest md = MessageDigest.getInstance("SHA3-256");
-        byte[] krh = md.digest(ciphertext);
-        int index = KyberParams.Kyber1024SKBytes - KyberParams.paramsSymBytes;
-        for (int i = 0; i < KyberParams.paramsSymBytes; i++) {
-            kr[i] = (byte) ((int) (kr[i] & 0xFF) ^ ((int) (fail & 0xFF) & ((int) (kr[i] & 0xFF) ^ (int) (privateKey[index] & 0xFF))));
-            index += 1;
-        }
-        byte[] tempBuf = new byte[KyberParams.paramsSymBytes + krh.length];
-        System.arraycopy(kr, 0, tempBuf, 0, KyberParams.paramsSymBytes);
-        System.arraycopy(krh, 0, tempBuf, KyberParams.paramsSymBytes, krh.length);
-        KeccakSponge xof = new Shake256();
-        xof.getAbsorbStream().write(tempBuf);
-        xof.getSqueezeStream().read(sharedSecretFixedLength);
-
-        return new KyberDecrypted(new KyberSecretKey(sharedSecretFixedLength, null, null), new KyberVariant(buf));
+    static String keyAlgorithm(String algorithm) {
+        return algorithm.startsWith("AES_") ? "AES" : algorithm;
     }
 
     /**
-     * Generate a key with the give kyber key size
-     *
-     * @return
+     * Make sure there is a shared secret to hand out. After a public key phase
+     * that was not the last one, the encapsulation happens here.
      */
-    private KyberEncrypted encrypt() {
-        try {
-            switch (kyberKeySize) {
-                case KEY_512:
-                    return this.encrypt512(rnd, this.y);
-                case KEY_1024:
-                    return this.encrypt1024(rnd, this.y);
-                case KEY_768:
-                    return this.encrypt768(rnd, this.y);
+    private void takeSecret() {
+        if (secret == null) {
+            if (kyberKeySize == null || y.capacity() == 0) {
+                throw new IllegalStateException("Key agreement has not been completed");
             }
-        } catch (Exception ex) {
-            System.out.println("Exception during encrypt! [" + ex.getMessage() + "]");
-            ex.printStackTrace();
-            return null;
+            encrypt();
         }
-        return null;
     }
 
     /**
-     * Encrypt the given data with the given public key
-     *
-     * @param variant
-     * @param kyberPublicKey
-     * @return KyberEncrypted
+     * @param keyIs90s whether a key or cipher text is for Kyber-90s
+     * @throws InvalidKeyException if it is not for this key agreement
      */
-    private KyberEncrypted encrypt512(byte[] variant, byte[] publicKey) throws IllegalArgumentException, InvalidKeyException, NoSuchAlgorithmException {
-        variant = verifyVariant(variant);
-        KyberEncrypted msg = new KyberEncrypted();
-        int paramsK = 2;
-        //   byte[] ciphertextFixedLength = new byte[KyberParams.Kyber512CTBytes];
-        //  byte[] sharedSecretFixedLength = new byte[KyberParams.KyberSSBytes];
-        byte[] sharedSecret = new byte[KyberParams.paramsSymBytes];
-        MessageDigest md = MessageDigest.getInstance("SHA3-256");
-        byte[] buf1 = md.digest(variant);
-        byte[] buf2 = md.digest(publicKey);
-        byte[] buf3 = new byte[buf1.length + buf2.length];
-        System.arraycopy(buf1, 0, buf3, 0, buf1.length);
-        System.arraycopy(buf2, 0, buf3, buf1.length, buf2.length);
-        MessageDigest md512 = MessageDigest.getInstance("SHA3-512");
-        byte[] kr = md512.digest(buf3);
-        byte[] subKr = new byte[kr.length - KyberParams.paramsSymBytes];
-        System.arraycopy(kr, KyberParams.paramsSymBytes, subKr, 0, subKr.length);
-        byte[] ciphertext = Indcpa.encrypt(buf1, publicKey, subKr, paramsK);
-        byte[] krc = md.digest(ciphertext);
-        byte[] newKr = new byte[KyberParams.paramsSymBytes + krc.length];
-        System.arraycopy(kr, 0, newKr, 0, KyberParams.paramsSymBytes);
-        System.arraycopy(krc, 0, newKr, KyberParams.paramsSymBytes, krc.length);
-        KeccakSponge xof = new Shake256();
-        xof.getAbsorbStream().write(newKr);
-        xof.getSqueezeStream().read(sharedSecret);
-        //     System.arraycopy(ciphertext, 0, ciphertextFixedLength, 0, ciphertext.length);
-        //   System.arraycopy(sharedSecret, 0, sharedSecretFixedLength, 0, sharedSecret.length);
-        msg.setCipherText(new KyberCipherText(ciphertext, null, null));
-        msg.setSecretKey(new KyberSecretKey(sharedSecret, null, null));
-        return msg;
+    private void checkVariant(boolean keyIs90s) throws InvalidKeyException {
+        if (keyIs90s != kyber90s) {
+            throw new InvalidKeyException(kyber90s ? "Kyber-90s key expected" : "Standard Kyber key expected, not Kyber-90s");
+        }
     }
 
     /**
-     * Encrypt the given data with the public key
-     *
-     * @param variant
-     * @param kyberPublicKey
-     * @return KyberEncrypted
+     * Drop the shared secret of the last phase
      */
-    private KyberEncrypted encrypt768(byte[] variant, byte[] publicKey) throws NoSuchAlgorithmException, InvalidKeyException {
-        variant = verifyVariant(variant);
-        KyberEncrypted msg = new KyberEncrypted();
-        int paramsK = 3;
-        //byte[] ciphertextFixedLength = new byte[KyberParams.Kyber768CTBytes];
-        // byte[] sharedSecretFixedLength = new byte[KyberParams.KyberSSBytes];
-        byte[] sharedSecret = new byte[KyberParams.paramsSymBytes];
-        MessageDigest md = MessageDigest.getInstance("SHA3-256");
-        byte[] buf1 = md.digest(variant);
-        byte[] buf2 = md.digest(publicKey);
-        byte[] buf3 = new byte[buf1.length + buf2.length];
-        System.arraycopy(buf1, 0, buf3, 0, buf1.length);
-        System.arraycopy(buf2, 0, buf3, buf1.length, buf2.length);
-        MessageDigest md512 = MessageDigest.getInstance("SHA3-512");
-        byte[] kr = md512.digest(buf3);
-        byte[] subKr = new byte[kr.length - KyberParams.paramsSymBytes];
-        System.arraycopy(kr, KyberParams.paramsSymBytes, subKr, 0, subKr.length);
-        byte[] ciphertext = Indcpa.encrypt(buf1, publicKey, subKr, paramsK);
-        byte[] krc = md.digest(ciphertext);
-        byte[] newKr = new byte[KyberParams.paramsSymBytes + krc.length];
-        System.arraycopy(kr, 0, newKr, 0, KyberParams.paramsSymBytes);
-        System.arraycopy(krc, 0, newKr, KyberParams.paramsSymBytes, krc.length);
-        KeccakSponge xof = new Shake256();
-        xof.getAbsorbStream().write(newKr);
-        xof.getSqueezeStream().read(sharedSecret);
-        //      System.arraycopy(ciphertext, 0, ciphertextFixedLength, 0, ciphertext.length);
-        //    System.arraycopy(sharedSecret, 0, sharedSecretFixedLength, 0, sharedSecret.length);
-        msg.setCipherText(new KyberCipherText(ciphertext, null, null));
-        msg.setSecretKey(new KyberSecretKey(sharedSecret, null, null));
-        return msg;
+    private void clearSecret() {
+        if (secret != null) {
+            Arrays.fill(secret, (byte) 0);
+        }
+        secret = null;
+        kdf = null;
     }
 
     /**
-     * Encrypt ciphertext with the public key
+     * Generate a key with the give kyber key size
      *
-     * @param variant
-     * @param kyberPublicKey
-     * @return KyberEncrypted
+     * If the decapsulation cache is enabled and the cipher text was recently
+     * decapsulated with the same key, the decryption is skipped and the cached
+     * pre-key and decrypted message are used.
+     *
+     * @param kyberKeySize
+     * @param cipherText
+     * @return
      */
-    private KyberEncrypted encrypt1024(byte[] variant, byte[] publicKey) throws NoSuchAlgorithmException, InvalidKeyException {
-        variant = verifyVariant(variant);
-        KyberEncrypted msg = new KyberEncrypted();
-        int paramsK = 4;
-        //    byte[] ciphertextFixedLength = new byte[KyberParams.Kyber1024CTBytes];
-        //  byte[] sharedSecretFixedLength = new byte[KyberParams.KyberSSBytes];
-        byte[] sharedSecret = new byte[KyberParams.paramsSymBytes];
-        MessageDigest md = MessageDigest.getInstance("SHA3-256");
-        byte[] buf1 = md.digest(variant);
-        byte[] buf2 = md.digest(publicKey);
-        byte[] buf3 = new byte[buf1.length + buf2.length];
-        System.arraycopy(buf1, 0, buf3, 0, buf1.length);
-        System.arraycopy(buf2, 0, buf3, buf1.length, buf2.length);
-        MessageDigest md512 = MessageDigest.getInstance("SHA3-512");
-        byte[] kr = md512.digest(buf3);
-        byte[] subKr = new byte[kr.length - KyberParams.paramsSymBytes];
-        System.arraycopy(kr, KyberParams.paramsSymBytes, subKr, 0, subKr.length);
-        byte[] ciphertext = Indcpa.encrypt(buf1, publicKey, subKr, paramsK);
-        byte[] krc = md.digest(ciphertext);
-        byte[] newKr = new byte[KyberParams.paramsSymBytes + krc.length];
-        System.arraycopy(kr, 0, newKr, 0, KyberParams.paramsSymBytes);
-        System.arraycopy(krc, 0, newKr, KyberParams.paramsSymBytes, krc.length);
-        KeccakSponge xof = new Shake256();
-        xof.getAbsorbStream().write(newKr);
-        xof.getSqueezeStream().read(sharedSecret);
-        //       System.arraycopy(ciphertext, 0, ciphertextFixedLength, 0, ciphertext.length);
-        //     System.arraycopy(sharedSecret, 0, sharedSecretFixedLength, 0, sharedSecret.length);
-        msg.setCipherText(new KyberCipherText(ciphertext, null, null));
-        msg.setSecretKey(new KyberSecretKey(sharedSecret, null, null));
-        return msg;
+    public KyberDecrypted decrypt(KyberKeySize kyberKeySize, KyberCipherText cipherText) throws NoSuchAlgorithmException {
+        if ((privateKey instanceof Destroyable) && ((Destroyable) privateKey).isDestroyed()) {
+            throw new IllegalStateException("Private key has been destroyed");
+        }
+        long start = System.nanoTime();
+        KyberDecapsulateEvent event = new KyberDecapsulateEvent(kyberKeySize);
+        KyberParameterSet params = kyberKeySize.getParameterSet(kyber90s);
+        KeccakSponge sponge = params.getSymmetric().newKdf();
+        byte[] cipherTextHash = kyber90s ? KyberKem.cipherTextHash(params, cipherText.getC()) : cipherText.getCipherTextHash();
+        byte[] preKey = new byte[KyberParams.paramsSymBytes];
+        KyberVariant variant;
+        if (KyberDecapsulationCache.isEnabled()) {
+            ByteBuffer cacheKey = KyberDecapsulationCache.key(kyber90s, params, this.x, cipherTextHash);
+            byte[] message = new byte[KyberParams.paramsSymBytes];
+            Boolean implicitRejection = KyberDecapsulationCache.get(cacheKey, preKey, message);
+            if (implicitRejection != null) {
+                event.implicitRejection = implicitRejection;
+                variant = new KyberVariant(message);
+            } else {
+                variant = KyberKem.decapsulate(params, cipherText.getC(), this.x, event, preKey);
+                KyberDecapsulationCache.put(cacheKey, preKey, variant.getBytes(), event.implicitRejection);
+            }
+            Arrays.fill(message, (byte) 0);
+        } else {
+            variant = KyberKem.decapsulate(params, cipherText.getC(), this.x, event, preKey);
+        }
+        byte[] sharedSecret = KyberKem.deriveSecret(params, preKey, cipherTextHash, sponge);
+        Arrays.fill(preKey, (byte) 0);
+        KyberDecrypted kyberDecrypted = new KyberDecrypted(new KyberSecretKey(sharedSecret, null, null), variant);
+        Arrays.fill(sharedSecret, (byte) 0);
+        KyberMetrics.commit(event);
+        KyberMetrics.recordDecapsulate(kyberKeySize, System.nanoTime() - start, event.implicitRejection);
+        clearSecret();
+        this.secret = kyberDecrypted.getSecretKey().getS();
+        this.kdf = sponge;
+        return kyberDecrypted;
     }
 
     /**
-     * Verify the array size of the variant data
+     * Generate a key with the give kyber key size
      *
-     * @param variant
      * @return
-     * @throws IllegalArgumentException
+     * @throws ProviderException if the encapsulation fails
      */
-    private byte[] verifyVariant(byte[] variant) throws IllegalArgumentException {
-        if (variant.length > KyberParams.paramsSymBytes) {
-            throw new IllegalArgumentException("Byte array exceeds allowable size of " + KyberParams.paramsSymBytes + " bytes");
-        } else if (variant.length < KyberParams.paramsSymBytes) {
-            byte[] tempData = new byte[KyberParams.paramsSymBytes];
-            System.arraycopy(variant, 0, tempData, 0, variant.length);
-            byte[] emptyBytes = new byte[KyberParams.paramsSymBytes - variant.length];
-            for (int i = 0; i < emptyBytes.length; ++i) {
-                emptyBytes[i] = (byte) 0;
-            }
-
-            System.arraycopy(emptyBytes, 0, tempData, variant.length, emptyBytes.length);
-            return tempData;
+    private KyberEncrypted encrypt() {
+        long start = System.nanoTime();
+        KyberEncapsulateEvent event = new KyberEncapsulateEvent(kyberKeySize);
+        KyberEncrypted kyberEncrypted;
+        KyberParameterSet params = kyberKeySize.getParameterSet(kyber90s);
+        KeccakSponge sponge = params.getSymmetric().newKdf();
+        try {
+            kyberEncrypted = KyberKem.encapsulate(params, rnd, this.y, this.yHash, sponge);
+        } catch (NoSuchAlgorithmException | InvalidKeyException ex) {
+            throw new ProviderException("Unable to encapsulate", ex);
         }
-        return variant;
+        KyberMetrics.commit(event);
+        KyberMetrics.recordEncapsulate(kyberKeySize, System.nanoTime() - start);
+        clearSecret();
+        this.secret = kyberEncrypted.getSecretKey().getS();
+        this.kdf = sponge;
+        this.kyberCipherText = kyberEncrypted.getCipherText();
+        return kyberEncrypted;
     }
 }
@@ -0,0 +1,317 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Directory of raw Kyber public keys in a memory-mapped file
+ *
+ * Keys are looked up by a 32-byte ID, either SHA3-256 of the public key or an
+ * ID chosen by the caller. The file holds a header, an open-addressing index
+ * with linear probing and the fixed-size records (ID followed by the public
+ * key). Appends are serialized, lookups take no locks and return read-only
+ * slices of the mapping that the key agreement encapsulates from directly.
+ * Opening a file checks the header and the index, and a lookup that runs into
+ * a corrupted index fails with an UncheckedIOException.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class KyberKeyDirectory implements Closeable {
+
+    public static final int ID_BYTES = 32;
+
+    private static final int MAGIC = 0x444B594B; // "KYKD"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int K_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 12;
+    private static final int SLOTS_OFFSET = 16;
+    private static final int COUNT_OFFSET = 20;
+
+    private final static VarHandle INT_LE = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final KyberKeySize kyberKeySize;
+    private final int publicKeyBytes;
+    private final int recordBytes;
+    private final int capacity;
+    private final int slots;
+    private final int recordsOffset;
+
+    private KyberKeyDirectory(FileChannel channel, MappedByteBuffer map, KyberKeySize kyberKeySize, int capacity, int slots) {
+        this.channel = channel;
+        this.map = map;
+        this.kyberKeySize = kyberKeySize;
+        this.publicKeyBytes = kyberKeySize.getParameterSet().getPublicKeyBytes();
+        this.recordBytes = ID_BYTES + publicKeyBytes;
+        this.capacity = capacity;
+        this.slots = slots;
+        this.recordsOffset = HEADER_BYTES + 4 * slots;
+    }
+
+    /**
+     * Create a new, empty directory file
+     *
+     * @param path
+     * @param kyberKeySize
+     * @param capacity the maximum number of keys
+     * @return
+     * @throws IOException if the file already exists or can not be mapped
+     */
+    public static KyberKeyDirectory create(Path path, KyberKeySize kyberKeySize, int capacity) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        // Keep the index at most half full so probe chains stay short
+        int slots = Integer.highestOneBit(Math.max(1, 2 * capacity - 1)) << 1;
+        long size = HEADER_BYTES + 4L * slots + (long) capacity * (ID_BYTES + kyberKeySize.getParameterSet().getPublicKeyBytes());
+        if (slots <= 0 || size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Capacity " + capacity + " is too large for a single mapping");
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            map.putInt(0, MAGIC);
+            map.putInt(4, VERSION);
+            map.putInt(K_OFFSET, kyberKeySize.getParamsK());
+            map.putInt(CAPACITY_OFFSET, capacity);
+            map.putInt(SLOTS_OFFSET, slots);
+            map.putInt(COUNT_OFFSET, 0);
+            return new KyberKeyDirectory(channel, map, kyberKeySize, capacity, slots);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Open an existing directory file
+     *
+     * @param path
+     * @return
+     * @throws IOException if the file is not a key directory or is corrupt
+     */
+    public static KyberKeyDirectory open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a Kyber key directory");
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+                throw new IOException("Not a Kyber key directory");
+            }
+            KyberKeySize kyberKeySize = null;
+            for (KyberKeySize candidate : KyberKeySize.values()) {
+                if (candidate.getParamsK() == map.getInt(K_OFFSET)) {
+                    kyberKeySize = candidate;
+                }
+            }
+            int capacity = map.getInt(CAPACITY_OFFSET);
+            int slots = map.getInt(SLOTS_OFFSET);
+            int count = map.getInt(COUNT_OFFSET);
+            // At least one free slot keeps every probe chain finite
+            if (kyberKeySize == null || capacity <= 0 || Integer.bitCount(slots) != 1 || slots <= capacity
+                    || count < 0 || count > capacity
+                    || size != HEADER_BYTES + 4L * slots + (long) capacity * (ID_BYTES + kyberKeySize.getParameterSet().getPublicKeyBytes())) {
+                throw new IOException("Corrupt Kyber key directory header");
+            }
+            int used = 0;
+            for (int slot = 0; slot < slots; slot++) {
+                int entry = map.getInt(HEADER_BYTES + 4 * slot);
+                if (entry < 0 || entry > count) {
+                    throw new IOException("Corrupt Kyber key directory index");
+                }
+                if (entry != 0) {
+                    used++;
+                }
+            }
+            if (used != count) {
+                throw new IOException("Corrupt Kyber key directory index");
+            }
+            return new KyberKeyDirectory(channel, map, kyberKeySize, capacity, slots);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Append a public key under SHA3-256 of its bytes
+     *
+     * @param publicKey the raw public key
+     * @return the ID of the key
+     * @throws InvalidKeyException
+     */
+    public byte[] add(byte[] publicKey) throws InvalidKeyException {
+        byte[] id = idOf(publicKey);
+        put(id, publicKey);
+        return id;
+    }
+
+    /**
+     * Append a public key under the given ID
+     *
+     * @param id
+     * @param publicKey the raw public key
+     * @return false if the ID is already in use
+     * @throws InvalidKeyException
+     * @throws UncheckedIOException if the index is corrupt
+     */
+    public synchronized boolean put(byte[] id, byte[] publicKey) throws InvalidKeyException {
+        checkId(id);
+        if (publicKey.length != publicKeyBytes) {
+            throw new InvalidKeyException("Unsupported Key Length " + publicKey.length);
+        }
+        int count = (int) INT_LE.getAcquire(map, COUNT_OFFSET);
+        if (count < 0 || count > capacity) {
+            throw corrupt();
+        }
+        int slot = slotOf(id);
+        int entry;
+        int probes = 0;
+        while ((entry = (int) INT_LE.getAcquire(map, HEADER_BYTES + 4 * slot)) != 0) {
+            if (entry < 0 || entry > count || ++probes == slots) {
+                throw corrupt();
+            }
+            if (matches(entry - 1, id)) {
+                return false;
+            }
+            slot = (slot + 1) & (slots - 1);
+        }
+        if (count == capacity) {
+            throw new IllegalStateException("Key directory is full");
+        }
+        int recordOffset = recordsOffset + count * recordBytes;
+        map.put(recordOffset, id);
+        map.put(recordOffset + ID_BYTES, publicKey);
+        // Publish the record to lock-free readers only once it is complete
+        INT_LE.setRelease(map, HEADER_BYTES + 4 * slot, count + 1);
+        INT_LE.setRelease(map, COUNT_OFFSET, count + 1);
+        return true;
+    }
+
+    /**
+     * @param id
+     * @return a read-only slice of the mapped public key, or null
+     * @throws UncheckedIOException if the index is corrupt
+     */
+    public ByteBuffer get(byte[] id) {
+        checkId(id);
+        int slot = slotOf(id);
+        int entry;
+        int probes = 0;
+        while ((entry = (int) INT_LE.getAcquire(map, HEADER_BYTES + 4 * slot)) != 0) {
+            // A slot is published before the count, so bound by the capacity
+            if (entry < 0 || entry > capacity || ++probes == slots) {
+                throw corrupt();
+            }
+            if (matches(entry - 1, id)) {
+                return map.slice(recordsOffset + (entry - 1) * recordBytes + ID_BYTES, publicKeyBytes).asReadOnlyBuffer();
+            }
+            slot = (slot + 1) & (slots - 1);
+        }
+        return null;
+    }
+
+    /**
+     * @param id
+     * @return a public key for the key agreement that reads the mapping in
+     * place, or null
+     */
+    public com.swiftcryptollc.crypto.interfaces.KyberPublicKey getPublicKey(byte[] id) {
+        ByteBuffer publicKey = get(id);
+        return (publicKey == null) ? null : new KyberDirectoryPublicKey(publicKey, kyberKeySize);
+    }
+
+    /**
+     * @param publicKey the raw public key
+     * @return SHA3-256 of the public key
+     */
+    public static byte[] idOf(byte[] publicKey) {
+        try {
+            return MessageDigest.getInstance("SHA3-256").digest(publicKey);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * @return the number of keys
+     */
+    public int size() {
+        return (int) INT_LE.getAcquire(map, COUNT_OFFSET);
+    }
+
+    /**
+     * @return the maximum number of keys
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the kyberKeySize
+     */
+    public KyberKeySize getKyberKeySize() {
+        return kyberKeySize;
+    }
+
+    /**
+     * Write the appended keys through to the file
+     */
+    public void force() {
+        map.force();
+    }
+
+    /**
+     * Flush and close the file. Slices already handed out stay readable until
+     * they are garbage collected.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        map.force();
+        channel.close();
+    }
+
+    private int slotOf(byte[] id) {
+        // Caller IDs are not necessarily uniform, so spread them
+        int h = Arrays.hashCode(id);
+        h ^= (h >>> 16);
+        return h & (slots - 1);
+    }
+
+    private boolean matches(int record, byte[] id) {
+        int offset = recordsOffset + record * recordBytes;
+        return map.slice(offset, ID_BYTES).mismatch(ByteBuffer.wrap(id)) == -1;
+    }
+
+    private static UncheckedIOException corrupt() {
+        return new UncheckedIOException(new IOException("Corrupt Kyber key directory index"));
+    }
+
+    private static void checkId(byte[] id) {
+        if (id.length != ID_BYTES) {
+            throw new IllegalArgumentException("ID must be " + ID_BYTES + " bytes");
+        }
+    }
+}
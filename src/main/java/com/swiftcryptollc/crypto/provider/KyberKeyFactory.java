@@ -3,6 +3,7 @@ package com.swiftcryptollc.crypto.provider;
 import com.swiftcryptollc.crypto.spec.KyberParameterSpec;
 import com.swiftcryptollc.crypto.spec.KyberPrivateKeySpec;
 import com.swiftcryptollc.crypto.spec.KyberPublicKeySpec;
+import com.swiftcryptollc.crypto.spec.KyberSeedPrivateKeySpec;
 import java.security.InvalidKeyException;
 import java.security.Key;
 import java.security.KeyFactorySpi;
@@ -51,6 +52,10 @@ public final class KyberKeyFactory extends KeyFactorySpi {
             } else if (keySpec instanceof X509EncodedKeySpec) {
                 return new KyberPublicKey(((X509EncodedKeySpec) keySpec).getEncoded());
 
+            } else if (keySpec instanceof KyberSeedPrivateKeySpec) {
+                // The public key that belongs to the seed
+                return new KyberSeedPrivateKey((KyberSeedPrivateKeySpec) keySpec).getPublicKey();
+
             } else {
                 throw new InvalidKeySpecException("Inappropriate key specification");
             }
@@ -83,6 +88,9 @@ public final class KyberKeyFactory extends KeyFactorySpi {
             } else if (keySpec instanceof PKCS8EncodedKeySpec) {
                 return new KyberPrivateKey(((PKCS8EncodedKeySpec) keySpec).getEncoded());
 
+            } else if (keySpec instanceof KyberSeedPrivateKeySpec) {
+                return new KyberSeedPrivateKey((KyberSeedPrivateKeySpec) keySpec);
+
             } else {
                 throw new InvalidKeySpecException("Inappropriate key specification");
             }
@@ -118,6 +126,10 @@ public final class KyberKeyFactory extends KeyFactorySpi {
             if (KyberPublicKeySpec.class.isAssignableFrom(keySpec)) {
                 com.swiftcryptollc.crypto.interfaces.KyberPublicKey kyberPubKey
                         = (com.swiftcryptollc.crypto.interfaces.KyberPublicKey) key;
+                if (kyberPubKey.isKyber90s()) {
+                    // The spec would turn it into a standard key
+                    throw new InvalidKeySpecException("Kyber-90s keys only have an encoded key specification");
+                }
                 params = kyberPubKey.getParams();
                 return keySpec.cast(new KyberPublicKeySpec(kyberPubKey.getY(),
                         params.getP(),
@@ -132,15 +144,32 @@ public final class KyberKeyFactory extends KeyFactorySpi {
 
         } else if (key instanceof com.swiftcryptollc.crypto.interfaces.KyberPrivateKey) {
 
-            if (KyberPrivateKeySpec.class.isAssignableFrom(keySpec)) {
+            if (KyberSeedPrivateKeySpec.class.isAssignableFrom(keySpec)) {
+                if (!(key instanceof KyberSeedPrivateKey)) {
+                    throw new InvalidKeySpecException("The seed of an expanded private key is not available");
+                }
+                return keySpec.cast(((KyberSeedPrivateKey) key).toKeySpec());
+
+            } else if (KyberPrivateKeySpec.class.isAssignableFrom(keySpec)) {
                 com.swiftcryptollc.crypto.interfaces.KyberPrivateKey kyberPrivKey
                         = (com.swiftcryptollc.crypto.interfaces.KyberPrivateKey) key;
+                if (kyberPrivKey.isKyber90s()) {
+                    throw new InvalidKeySpecException("Kyber-90s keys only have an encoded key specification");
+                }
                 params = kyberPrivKey.getParams();
                 return keySpec.cast(new KyberPrivateKeySpec(kyberPrivKey.getX(),
                         params.getP(),
                         params.getG(), kyberPrivKey.getKyberKeySize()));
 
             } else if (PKCS8EncodedKeySpec.class.isAssignableFrom(keySpec)) {
+                if (key instanceof KyberSeedPrivateKey) {
+                    try {
+                        byte[] x = ((KyberSeedPrivateKey) key).getX();
+                        return keySpec.cast(new PKCS8EncodedKeySpec(new KyberPrivateKey(x, null, null).getEncoded()));
+                    } catch (InvalidKeyException e) {
+                        throw new InvalidKeySpecException("Cannot expand the private key", e);
+                    }
+                }
                 return keySpec.cast(new PKCS8EncodedKeySpec(key.getEncoded()));
 
             } else {
@@ -173,6 +202,9 @@ public final class KyberKeyFactory extends KeyFactorySpi {
                 if (key instanceof com.swiftcryptollc.crypto.provider.KyberPublicKey) {
                     return key;
                 }
+                if (((com.swiftcryptollc.crypto.interfaces.KyberPublicKey) key).isKyber90s()) {
+                    return engineGeneratePublic(new X509EncodedKeySpec(key.getEncoded()));
+                }
                 // Convert key to spec
                 KyberPublicKeySpec kyberPubKeySpec
                         = engineGetKeySpec(key, KyberPublicKeySpec.class);
@@ -181,9 +213,13 @@ public final class KyberKeyFactory extends KeyFactorySpi {
 
             } else if (key instanceof com.swiftcryptollc.crypto.interfaces.KyberPrivateKey) {
                 // Check if key originates from this factory
-                if (key instanceof com.swiftcryptollc.crypto.provider.KyberPrivateKey) {
+                if ((key instanceof com.swiftcryptollc.crypto.provider.KyberPrivateKey)
+                        || (key instanceof KyberSeedPrivateKey)) {
                     return key;
                 }
+                if (((com.swiftcryptollc.crypto.interfaces.KyberPrivateKey) key).isKyber90s()) {
+                    return engineGeneratePrivate(new PKCS8EncodedKeySpec(key.getEncoded()));
+                }
                 // Convert key to spec
                 KyberPrivateKeySpec kyberPrivKeySpec
                         = engineGetKeySpec(key, KyberPrivateKeySpec.class);
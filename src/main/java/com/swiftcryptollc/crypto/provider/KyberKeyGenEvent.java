@@ -0,0 +1,33 @@
+package com.swiftcryptollc.crypto.provider;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event emitted for every Kyber key pair generation
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+@Name("com.swiftcryptollc.kyber.KeyGeneration")
+@Label("Kyber Key Generation")
+@Category({"KyberJCE"})
+@Description("Generation of a Kyber public/private key pair")
+@StackTrace(false)
+final class KyberKeyGenEvent extends jdk.jfr.Event {
+
+    @Label("Parameter Set")
+    String parameterSet;
+
+    /**
+     * Create and begin the event for the given key size
+     *
+     * @param kyberKeySize
+     */
+    KyberKeyGenEvent(KyberKeySize kyberKeySize) {
+        this.parameterSet = kyberKeySize.getAlgorithm();
+        begin();
+    }
+}
@@ -0,0 +1,328 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.provider.kyber.KyberParameterSet;
+import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
+import com.swiftcryptollc.crypto.util.KyberKeyUtil;
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProviderException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decapsulation with any of several private keys, e.g. the old and the new key
+ * while a key is being rotated
+ *
+ * Keys are identified by H(pk), SHA3-256 of the public key, which a sender can
+ * pass along with the cipher text to select the key directly. Without it, the
+ * cipher text is decapsulated with every key of its size and the secret of the
+ * key whose re-encryption matched is selected without branching, so the time
+ * taken does not depend on which key, if any, matched. If none does, the
+ * implicit rejection secret of the oldest key is returned. With an executor
+ * the trial decapsulations run in parallel.
+ *
+ * Keys are copied off-heap when they are added. A removed key is destroyed
+ * once the decapsulations still using it have finished.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class KyberKeyRing {
+
+    private final Executor executor;
+
+    // Copy on write, replaced under the lock and read without it
+    private volatile Entry[] entries = new Entry[0];
+    private volatile Map<ByteBuffer, Entry> byId = new HashMap<>();
+
+    /**
+     * Key ring with sequential trial decapsulation
+     */
+    public KyberKeyRing() {
+        this(null);
+    }
+
+    /**
+     * @param executor runs trial decapsulations in parallel, or null
+     */
+    public KyberKeyRing(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param publicKey
+     * @return the key ID of the public key, H(pk)
+     */
+    public static byte[] keyId(com.swiftcryptollc.crypto.interfaces.KyberPublicKey publicKey) {
+        try {
+            return MessageDigest.getInstance("SHA3-256").digest(publicKey.getY());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new ProviderException(ex);
+        }
+    }
+
+    /**
+     * Add a private key. Adding a key that is already in the ring has no
+     * effect.
+     *
+     * @param privateKey
+     * @return the key ID, H(pk)
+     * @throws InvalidKeyException
+     */
+    public synchronized byte[] add(com.swiftcryptollc.crypto.interfaces.KyberPrivateKey privateKey) throws InvalidKeyException {
+        KyberKeyUtil.checkNot90s(privateKey);
+        KyberOffHeapPrivateKey prepared = KyberOffHeapPrivateKey.copyOf(privateKey);
+        KyberParameterSet params = prepared.getKyberKeySize().getParameterSet();
+        // The private key ends with H(pk) and z
+        byte[] id = new byte[KyberParams.paramsSymBytes];
+        prepared.buffer().get(params.getPrivateKeyBytes() - 2 * KyberParams.paramsSymBytes, id);
+        if (byId.containsKey(ByteBuffer.wrap(id))) {
+            prepared.destroy();
+            return id;
+        }
+        Entry entry = new Entry(prepared, params);
+        Entry[] newEntries = Arrays.copyOf(entries, entries.length + 1);
+        newEntries[entries.length] = entry;
+        Map<ByteBuffer, Entry> newById = new HashMap<>(byId);
+        newById.put(ByteBuffer.wrap(id), entry);
+        entries = newEntries;
+        byId = newById;
+        return id.clone();
+    }
+
+    /**
+     * Remove a private key, which is destroyed once no decapsulation is using
+     * it
+     *
+     * @param keyId
+     * @return true if the key was in the ring
+     */
+    public synchronized boolean remove(byte[] keyId) {
+        Entry entry = byId.get(ByteBuffer.wrap(keyId));
+        if (entry == null) {
+            return false;
+        }
+        List<Entry> newEntries = new ArrayList<>(Arrays.asList(entries));
+        newEntries.remove(entry);
+        Map<ByteBuffer, Entry> newById = new HashMap<>(byId);
+        newById.remove(ByteBuffer.wrap(keyId));
+        entries = newEntries.toArray(new Entry[0]);
+        byId = newById;
+        entry.release();
+        return true;
+    }
+
+    /**
+     * @return the number of keys in the ring
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * Decapsulate with the key given by the key ID
+     *
+     * @param cipherText
+     * @param keyId H(pk) of the key, or null to try every key
+     * @return the shared secret
+     * @throws InvalidKeyException if the key is not in the ring or does not
+     * match the cipher text size
+     */
+    public KyberSecretKey decapsulate(byte[] cipherText, byte[] keyId) throws InvalidKeyException {
+        if (keyId == null) {
+            return decapsulate(cipherText);
+        }
+        Entry entry = byId.get(ByteBuffer.wrap(keyId));
+        if (entry == null) {
+            throw new InvalidKeyException("Unknown key ID");
+        }
+        if (cipherText.length != entry.params.getCipherTextBytes()) {
+            throw new InvalidKeyException("Invalid cipher text length");
+        }
+        return decapsulate(cipherText, new Entry[]{entry});
+    }
+
+    /**
+     * Decapsulate with every key of the cipher text's size
+     *
+     * @param cipherText
+     * @return the shared secret of the matching key, or the implicit rejection
+     * secret of the oldest key if none matched
+     * @throws InvalidKeyException if there is no key of the cipher text's size
+     */
+    public KyberSecretKey decapsulate(byte[] cipherText) throws InvalidKeyException {
+        Entry[] snapshot = entries;
+        int count = 0;
+        for (Entry entry : snapshot) {
+            if (entry.params.getCipherTextBytes() == cipherText.length) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            throw new InvalidKeyException("No key for a cipher text of " + cipherText.length + " bytes");
+        }
+        Entry[] candidates = new Entry[count];
+        count = 0;
+        for (Entry entry : snapshot) {
+            if (entry.params.getCipherTextBytes() == cipherText.length) {
+                candidates[count++] = entry;
+            }
+        }
+        return decapsulate(cipherText, candidates);
+    }
+
+    /**
+     * @param cipherText
+     * @param snapshot
+     * @return the secret of the matching candidate, or the implicit rejection
+     * secret of the first one
+     * @throws InvalidKeyException if every candidate was removed meanwhile
+     */
+    private KyberSecretKey decapsulate(byte[] cipherText, Entry[] snapshot) throws InvalidKeyException {
+        // Keep the keys from being destroyed while they are in use
+        Entry[] candidates = new Entry[snapshot.length];
+        int count = 0;
+        for (Entry entry : snapshot) {
+            if (entry.retain()) {
+                candidates[count++] = entry;
+            }
+        }
+        if (count == 0) {
+            throw new InvalidKeyException("Key has been removed");
+        }
+        try {
+            return decapsulateRetained(cipherText, Arrays.copyOf(candidates, count));
+        } finally {
+            for (int i = 0; i < count; i++) {
+                candidates[i].release();
+            }
+        }
+    }
+
+    /**
+     * @param cipherText
+     * @param candidates retained by the caller
+     * @return the secret of the matching candidate, or the implicit rejection
+     * secret of the first one
+     */
+    private KyberSecretKey decapsulateRetained(byte[] cipherText, Entry[] candidates) {
+        KyberKeySize kyberKeySize = candidates[0].privateKey.getKyberKeySize();
+        long start = System.nanoTime();
+        KyberDecapsulateEvent event = new KyberDecapsulateEvent(kyberKeySize);
+        Trial[] trials = new Trial[candidates.length];
+        if ((executor == null) || (candidates.length == 1)) {
+            for (int i = 0; i < candidates.length; i++) {
+                trials[i] = trial(cipherText, candidates[i]);
+            }
+        } else {
+            List<CompletableFuture<Trial>> futures = new ArrayList<>();
+            for (int i = 1; i < candidates.length; i++) {
+                Entry candidate = candidates[i];
+                futures.add(CompletableFuture.supplyAsync(() -> trial(cipherText, candidate), executor));
+            }
+            trials[0] = trial(cipherText, candidates[0]);
+            try {
+                for (int i = 1; i < candidates.length; i++) {
+                    trials[i] = futures.get(i - 1).join();
+                }
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw new ProviderException(ex.getCause());
+            }
+        }
+        byte[] secret = trials[0].secret;
+        int matched = trials[0].match;
+        for (int i = 1; i < trials.length; i++) {
+            int mask = trials[i].match;
+            for (int j = 0; j < secret.length; j++) {
+                secret[j] = (byte) (secret[j] ^ (mask & (secret[j] ^ trials[i].secret[j])));
+            }
+            matched |= mask;
+            Arrays.fill(trials[i].secret, (byte) 0);
+        }
+        event.implicitRejection = (matched == 0);
+        KyberMetrics.commit(event);
+        KyberMetrics.recordDecapsulate(kyberKeySize, System.nanoTime() - start, event.implicitRejection);
+        KyberSecretKey secretKey = new KyberSecretKey(secret, null, null);
+        Arrays.fill(secret, (byte) 0);
+        return secretKey;
+    }
+
+    /**
+     * @param cipherText
+     * @param entry
+     * @return the secret and whether re-encryption matched
+     */
+    private static Trial trial(byte[] cipherText, Entry entry) {
+        // A throwaway event, only the re-encryption result is read from it
+        KyberDecapsulateEvent event = new KyberDecapsulateEvent(entry.privateKey.getKyberKeySize());
+        try {
+            KyberDecrypted kyberDecrypted = KyberKem.decapsulate(entry.params, cipherText, entry.privateKey.buffer(), event);
+            return new Trial(kyberDecrypted.getSecretKey().getS(), event.implicitRejection ? 0 : -1);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new ProviderException(ex);
+        }
+    }
+
+    /**
+     * A prepared private key, its parameter set and its reference count
+     */
+    private static final class Entry {
+
+        private final KyberOffHeapPrivateKey privateKey;
+        private final KyberParameterSet params;
+        // One for being in the ring plus one per decapsulation, destroyed at
+        // zero
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Entry(KyberOffHeapPrivateKey privateKey, KyberParameterSet params) {
+            this.privateKey = privateKey;
+            this.params = params;
+        }
+
+        /**
+         * @return false if the key has already been destroyed
+         */
+        private boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0) {
+                privateKey.destroy();
+            }
+        }
+    }
+
+    /**
+     * The result of one trial decapsulation
+     */
+    private static final class Trial {
+
+        private final byte[] secret;
+        // all ones if re-encryption matched, otherwise zero
+        private final int match;
+
+        private Trial(byte[] secret, int match) {
+            this.secret = secret;
+            this.match = match;
+        }
+    }
+}
@@ -1,21 +1,54 @@
 package com.swiftcryptollc.crypto.provider;
 
+import com.swiftcryptollc.crypto.provider.kyber.Kyber1024ParameterSet;
+import com.swiftcryptollc.crypto.provider.kyber.Kyber512ParameterSet;
+import com.swiftcryptollc.crypto.provider.kyber.Kyber768ParameterSet;
+import com.swiftcryptollc.crypto.provider.kyber.KyberParameterSet;
+
 /**
  *
  * @author Steven K Fisher <swiftcryptollc@gmail.com>
  */
 public enum KyberKeySize {
-    KEY_512("2"),
-    KEY_768("3"),
-    KEY_1024("4");
+    KEY_512("2", "Kyber512", Kyber512ParameterSet.INSTANCE, Kyber512ParameterSet.INSTANCE_90S),
+    KEY_768("3", "Kyber768", Kyber768ParameterSet.INSTANCE, Kyber768ParameterSet.INSTANCE_90S),
+    KEY_1024("4", "Kyber1024", Kyber1024ParameterSet.INSTANCE, Kyber1024ParameterSet.INSTANCE_90S);
 
     public final String paramsK;
+    private final String algorithm;
+    private final KyberParameterSet parameterSet;
+    private final KyberParameterSet parameterSet90s;
 
-    private KyberKeySize(String keySize) {
+    private KyberKeySize(String keySize, String algorithm, KyberParameterSet parameterSet, KyberParameterSet parameterSet90s) {
         this.paramsK = keySize;
+        this.algorithm = algorithm;
+        this.parameterSet = parameterSet;
+        this.parameterSet90s = parameterSet90s;
     }
 
     public int getParamsK() {
         return Integer.parseInt(paramsK);
     }
+
+    /**
+     * @return the algorithm name of this parameter set, e.g. "Kyber768"
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return the parameter set used by the KEM engine for this key size
+     */
+    public KyberParameterSet getParameterSet() {
+        return parameterSet;
+    }
+
+    /**
+     * @param kyber90s
+     * @return the Kyber-90s or the standard parameter set for this key size
+     */
+    public KyberParameterSet getParameterSet(boolean kyber90s) {
+        return kyber90s ? parameterSet90s : parameterSet;
+    }
 }
@@ -0,0 +1,66 @@
+package com.swiftcryptollc.crypto.provider;
+
+/**
+ * Immutable view of a latency histogram, in microseconds
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class KyberLatencySnapshot {
+
+    private final long count;
+    private final double mean;
+    private final double p50;
+    private final double p99;
+    private final double p999;
+
+    /**
+     *
+     * @param count
+     * @param meanNanos
+     * @param p50Nanos
+     * @param p99Nanos
+     * @param p999Nanos
+     */
+    KyberLatencySnapshot(long count, double meanNanos, long p50Nanos, long p99Nanos, long p999Nanos) {
+        this.count = count;
+        this.mean = meanNanos / 1000.0;
+        this.p50 = p50Nanos / 1000.0;
+        this.p99 = p99Nanos / 1000.0;
+        this.p999 = p999Nanos / 1000.0;
+    }
+
+    /**
+     * @return the number of recorded operations
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the mean latency in microseconds
+     */
+    public double getMeanMicros() {
+        return mean;
+    }
+
+    /**
+     * @return the median latency in microseconds
+     */
+    public double getP50Micros() {
+        return p50;
+    }
+
+    /**
+     * @return the 99th percentile latency in microseconds
+     */
+    public double getP99Micros() {
+        return p99;
+    }
+
+    /**
+     * @return the 99.9th percentile latency in microseconds
+     */
+    public double getP999Micros() {
+        return p999;
+    }
+}
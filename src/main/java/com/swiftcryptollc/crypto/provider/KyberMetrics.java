@@ -0,0 +1,306 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.provider.kyber.Arithmetic;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Provider wide counters and latency histograms, exposed over JMX
+ *
+ * Recording is lock free (LongAdder and atomic histogram buckets) so it can
+ * stay enabled on the hot path. Operations run by the provider's own warm-up
+ * are neither recorded nor committed to the flight recorder.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class KyberMetrics implements KyberMetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.swiftcryptollc.crypto:type=KyberJCE,name=Metrics";
+
+    private static final KyberKeySize[] sizes = KyberKeySize.values();
+
+    private static final KyberMetrics instance = new KyberMetrics();
+
+    // Threads whose operations are not recorded, counted so other threads
+    // only need to read the count
+    private static final ThreadLocal<Boolean> unrecorded = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    private static final AtomicInteger unrecordedThreads = new AtomicInteger();
+
+    private final KyberLatencyHistogram[] keyGen = newHistograms();
+    private final KyberLatencyHistogram[] encapsulate = newHistograms();
+    private final KyberLatencyHistogram[] decapsulate = newHistograms();
+    private final LongAdder[] implicitRejections = newAdders(sizes.length);
+    private final LongAdder keyPoolDepth = new LongAdder();
+    private final Map<String, LongAdder[]> caches = new ConcurrentHashMap<>();
+    private final LongAdder arithmeticChecks = new LongAdder();
+    private final LongAdder arithmeticMismatches = new LongAdder();
+    private volatile long resetTime = System.nanoTime();
+
+    private KyberMetrics() {
+    }
+
+    /**
+     * @return the provider wide metrics
+     */
+    public static KyberMetrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Register the metrics with the platform MBean server, if not already
+     * registered
+     */
+    static void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(instance, name);
+            }
+        } catch (JMException | SecurityException ex) {
+            // Already registered by another class loader, or JMX is not available
+        }
+    }
+
+    /**
+     * Run an operation on the current thread without recording it
+     *
+     * @param <T>
+     * @param operation
+     * @return its result
+     */
+    static <T> T unrecorded(Supplier<T> operation) {
+        if (unrecorded.get()) {
+            return operation.get();
+        }
+        unrecorded.set(Boolean.TRUE);
+        unrecordedThreads.incrementAndGet();
+        try {
+            return operation.get();
+        } finally {
+            unrecordedThreads.decrementAndGet();
+            unrecorded.set(Boolean.FALSE);
+        }
+    }
+
+    /**
+     * @return false while the current thread runs an unrecorded operation
+     */
+    static boolean isRecording() {
+        return (unrecordedThreads.get() == 0) || !unrecorded.get();
+    }
+
+    /**
+     * Commit a flight recorder event, unless the current thread runs an
+     * unrecorded operation
+     *
+     * @param event
+     */
+    public static void commit(jdk.jfr.Event event) {
+        if (isRecording()) {
+            event.commit();
+        }
+    }
+
+    static void recordKeyGen(KyberKeySize kyberKeySize, long nanos) {
+        if (!isRecording()) {
+            return;
+        }
+        instance.keyGen[kyberKeySize.ordinal()].record(nanos);
+    }
+
+    static void recordEncapsulate(KyberKeySize kyberKeySize, long nanos) {
+        if (!isRecording()) {
+            return;
+        }
+        instance.encapsulate[kyberKeySize.ordinal()].record(nanos);
+    }
+
+    static void recordDecapsulate(KyberKeySize kyberKeySize, long nanos, boolean implicitRejection) {
+        if (!isRecording()) {
+            return;
+        }
+        instance.decapsulate[kyberKeySize.ordinal()].record(nanos);
+        if (implicitRejection) {
+            instance.implicitRejections[kyberKeySize.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Adjust the number of pre-generated keys currently held by the provider
+     *
+     * @param delta
+     */
+    static void adjustKeyPoolDepth(long delta) {
+        instance.keyPoolDepth.add(delta);
+    }
+
+    /**
+     * Record a cache lookup
+     *
+     * @param cache the cache name
+     * @param hit whether the lookup was a hit
+     */
+    public static void recordCacheLookup(String cache, boolean hit) {
+        if (!isRecording()) {
+            return;
+        }
+        LongAdder[] counters = instance.caches.computeIfAbsent(cache, c -> newAdders(2));
+        counters[hit ? 0 : 1].increment();
+    }
+
+    /**
+     * Record an arithmetic backend cross-check
+     *
+     * @param match whether both backends produced the same output
+     */
+    public static void recordArithmeticCheck(boolean match) {
+        instance.arithmeticChecks.increment();
+        if (!match) {
+            instance.arithmeticMismatches.increment();
+        }
+    }
+
+    @Override
+    public Map<String, Long> getKeyGenCounts() {
+        return counts(keyGen);
+    }
+
+    @Override
+    public Map<String, Long> getEncapsulateCounts() {
+        return counts(encapsulate);
+    }
+
+    @Override
+    public Map<String, Long> getDecapsulateCounts() {
+        return counts(decapsulate);
+    }
+
+    @Override
+    public Map<String, Long> getImplicitRejectionCounts() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (KyberKeySize size : sizes) {
+            map.put(size.getAlgorithm(), implicitRejections[size.ordinal()].sum());
+        }
+        return map;
+    }
+
+    @Override
+    public Map<String, KyberLatencySnapshot> getKeyGenLatency() {
+        return snapshots(keyGen);
+    }
+
+    @Override
+    public Map<String, KyberLatencySnapshot> getEncapsulateLatency() {
+        return snapshots(encapsulate);
+    }
+
+    @Override
+    public Map<String, KyberLatencySnapshot> getDecapsulateLatency() {
+        return snapshots(decapsulate);
+    }
+
+    @Override
+    public long getTotalOperations() {
+        long total = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            total += keyGen[i].getCount() + encapsulate[i].getCount() + decapsulate[i].getCount();
+        }
+        return total;
+    }
+
+    @Override
+    public double getOperationsPerSecond() {
+        double seconds = (System.nanoTime() - resetTime) / 1e9;
+        return (seconds <= 0) ? 0 : getTotalOperations() / seconds;
+    }
+
+    @Override
+    public long getKeyPoolDepth() {
+        return keyPoolDepth.sum();
+    }
+
+    @Override
+    public Map<String, Double> getCacheHitRates() {
+        Map<String, Double> map = new TreeMap<>();
+        for (Map.Entry<String, LongAdder[]> entry : caches.entrySet()) {
+            long hits = entry.getValue()[0].sum();
+            long lookups = hits + entry.getValue()[1].sum();
+            map.put(entry.getKey(), (lookups == 0) ? 0.0 : (double) hits / lookups);
+        }
+        return map;
+    }
+
+    @Override
+    public String getArithmeticBackend() {
+        return Arithmetic.BACKEND.getName();
+    }
+
+    @Override
+    public long getArithmeticChecks() {
+        return arithmeticChecks.sum();
+    }
+
+    @Override
+    public long getArithmeticMismatches() {
+        return arithmeticMismatches.sum();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < sizes.length; i++) {
+            keyGen[i].reset();
+            encapsulate[i].reset();
+            decapsulate[i].reset();
+            implicitRejections[i].reset();
+        }
+        for (LongAdder[] counters : caches.values()) {
+            counters[0].reset();
+            counters[1].reset();
+        }
+        arithmeticChecks.reset();
+        arithmeticMismatches.reset();
+        resetTime = System.nanoTime();
+    }
+
+    private static Map<String, Long> counts(KyberLatencyHistogram[] histograms) {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (KyberKeySize size : sizes) {
+            map.put(size.getAlgorithm(), histograms[size.ordinal()].getCount());
+        }
+        return map;
+    }
+
+    private static Map<String, KyberLatencySnapshot> snapshots(KyberLatencyHistogram[] histograms) {
+        Map<String, KyberLatencySnapshot> map = new LinkedHashMap<>();
+        for (KyberKeySize size : sizes) {
+            map.put(size.getAlgorithm(), histograms[size.ordinal()].snapshot());
+        }
+        return map;
+    }
+
+    private static KyberLatencyHistogram[] newHistograms() {
+        KyberLatencyHistogram[] histograms = new KyberLatencyHistogram[sizes.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new KyberLatencyHistogram();
+        }
+        return histograms;
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
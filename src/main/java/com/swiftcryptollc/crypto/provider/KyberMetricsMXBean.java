@@ -0,0 +1,72 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.util.Map;
+
+/**
+ * Management interface for the KyberJCE provider metrics
+ *
+ * All maps are keyed by the parameter set name (e.g. "Kyber768"), except for
+ * the cache hit rates which are keyed by cache name.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public interface KyberMetricsMXBean {
+
+    public Map<String, Long> getKeyGenCounts();
+
+    public Map<String, Long> getEncapsulateCounts();
+
+    public Map<String, Long> getDecapsulateCounts();
+
+    public Map<String, Long> getImplicitRejectionCounts();
+
+    public Map<String, KyberLatencySnapshot> getKeyGenLatency();
+
+    public Map<String, KyberLatencySnapshot> getEncapsulateLatency();
+
+    public Map<String, KyberLatencySnapshot> getDecapsulateLatency();
+
+    /**
+     * @return the total number of key generations, encapsulations and
+     * decapsulations since the last reset
+     */
+    public long getTotalOperations();
+
+    /**
+     * @return the average number of operations per second since the last
+     * reset
+     */
+    public double getOperationsPerSecond();
+
+    /**
+     * A gauge rather than a counter, so reset() leaves it as it is
+     *
+     * @return the number of key pairs that KyberEphemeralKeySource instances
+     * have generated ahead of time and not yet handed out
+     */
+    public long getKeyPoolDepth();
+
+    public Map<String, Double> getCacheHitRates();
+
+    /**
+     * @return the arithmetic backend in use
+     */
+    public String getArithmeticBackend();
+
+    /**
+     * @return the number of operations cross-checked against a second
+     * arithmetic backend
+     */
+    public long getArithmeticChecks();
+
+    /**
+     * @return the number of cross-checked operations where the backends
+     * disagreed
+     */
+    public long getArithmeticMismatches();
+
+    /**
+     * Clear all counters and histograms
+     */
+    public void reset();
+}
@@ -0,0 +1,317 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.github.aelstad.keccakj.core.KeccakSponge;
+import com.github.aelstad.keccakj.fips202.Shake256;
+import com.swiftcryptollc.crypto.provider.kyber.Indcpa;
+import com.swiftcryptollc.crypto.provider.kyber.KyberParameterSet;
+import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
+import com.swiftcryptollc.crypto.provider.kyber.PolyVector;
+import com.swiftcryptollc.crypto.util.KyberKeyUtil;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.InvalidKeyException;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProviderException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encapsulates one shared secret to many Kyber public keys at once
+ *
+ * Public keys that share the parameter set and the matrix seed (see
+ * {@link #generateKeyPair(KyberKeySize, byte[], SecureRandom)}) form a group.
+ * The noise r and e1 are sampled once per group, r is transformed once and
+ * u = A^T r + e1 is sent once, so each further recipient only costs one
+ * polynomial product and a compressed v. Keys from different groups, including
+ * ordinary Kyber keys, each get their own u.
+ *
+ * The combined cipher text is a version byte and a group count, then for
+ * each group the K of its parameter set, a recipient count and u, followed by
+ * H(pk) and v for each recipient. A recipient decapsulates u || v, which is an
+ * ordinary Kyber cipher text, re-encrypts it and uses implicit rejection the
+ * same way as KyberKeyAgreement.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class KyberMultiRecipientKem {
+
+    static final byte VERSION = 1;
+
+    private static final int ID_BYTES = 32;
+    private static final byte[] DOMAIN = "KyberMKEM".getBytes(StandardCharsets.US_ASCII);
+
+    private KyberMultiRecipientKem() {
+    }
+
+    /**
+     * The shared secret and the combined cipher text of an encapsulation
+     */
+    public static final class Encapsulated {
+
+        private final KyberSecretKey secretKey;
+        private final byte[] cipherText;
+
+        private Encapsulated(KyberSecretKey secretKey, byte[] cipherText) {
+            this.secretKey = secretKey;
+            this.cipherText = cipherText;
+        }
+
+        /**
+         * @return the secretKey
+         */
+        public KyberSecretKey getSecretKey() {
+            return secretKey;
+        }
+
+        /**
+         * @return the combined cipher text
+         */
+        public byte[] getCipherText() {
+            return cipherText.clone();
+        }
+    }
+
+    /**
+     * Generate a key pair in the group of the given matrix seed. The keys are
+     * ordinary Kyber keys that also work with KyberKeyAgreement.
+     *
+     * @param kyberKeySize
+     * @param groupSeed the 32-byte matrix seed shared by the group
+     * @param random
+     * @return
+     */
+    public static KeyPair generateKeyPair(KyberKeySize kyberKeySize, byte[] groupSeed, SecureRandom random) {
+        if (groupSeed.length != KyberParams.paramsSymBytes) {
+            throw new IllegalArgumentException("The group seed must be " + KyberParams.paramsSymBytes + " bytes");
+        }
+        byte[] d = new byte[KyberParams.paramsSymBytes];
+        byte[] z = new byte[KyberParams.paramsSymBytes];
+        random.nextBytes(d);
+        random.nextBytes(z);
+        try {
+            KyberPackedPKI keys = KyberKem.deriveKeys(kyberKeySize.getParameterSet(), d, groupSeed, z);
+            return new KeyPair(new KyberPublicKey(keys.getPackedPublicKey(), null, null),
+                    new KyberPrivateKey(keys.getPackedPrivateKey(), null, null));
+        } catch (NoSuchAlgorithmException | InvalidKeyException ex) {
+            throw new ProviderException("Unable to generate the key pair", ex);
+        } finally {
+            Arrays.fill(d, (byte) 0);
+            Arrays.fill(z, (byte) 0);
+        }
+    }
+
+    /**
+     * Encapsulate one shared secret to all of the given public keys
+     *
+     * @param recipients
+     * @return
+     * @throws InvalidKeyException
+     */
+    public static Encapsulated encapsulate(List<? extends com.swiftcryptollc.crypto.interfaces.KyberPublicKey> recipients)
+            throws InvalidKeyException {
+        return encapsulate(recipients, KyberJCE.getRandom());
+    }
+
+    /**
+     * Encapsulate one shared secret to all of the given public keys
+     *
+     * @param recipients
+     * @param random
+     * @return
+     * @throws InvalidKeyException
+     */
+    public static Encapsulated encapsulate(List<? extends com.swiftcryptollc.crypto.interfaces.KyberPublicKey> recipients,
+            SecureRandom random) throws InvalidKeyException {
+        if (recipients.isEmpty()) {
+            throw new IllegalArgumentException("At least one recipient is needed");
+        }
+        // Group the keys by K and matrix seed, keeping their order
+        Map<ByteBuffer, List<ByteBuffer>> groups = new LinkedHashMap<>();
+        for (com.swiftcryptollc.crypto.interfaces.KyberPublicKey recipient : recipients) {
+            KyberKeyUtil.checkNot90s(recipient);
+            ByteBuffer publicKey = KyberKem.buffer(recipient);
+            KyberKeySize kyberKeySize = KyberKeyUtil.getKyberKeySizePublicKey(publicKey.remaining());
+            ByteBuffer group = ByteBuffer.allocate(1 + KyberParams.paramsSymBytes);
+            group.put((byte) kyberKeySize.getParamsK());
+            group.put(publicKey.duplicate().position(publicKey.position() + kyberKeySize.getParameterSet().getPolyVectorBytes()));
+            group.flip();
+            groups.computeIfAbsent(group, g -> new ArrayList<>()).add(publicKey);
+        }
+        if (groups.size() > 0xFFFF) {
+            throw new IllegalArgumentException("Too many groups");
+        }
+        int size = 3;
+        for (Map.Entry<ByteBuffer, List<ByteBuffer>> entry : groups.entrySet()) {
+            KyberParameterSet params = KyberParameterSet.forK(entry.getKey().get(0));
+            if (entry.getValue().size() > 0xFFFF) {
+                throw new IllegalArgumentException("Too many recipients in one group");
+            }
+            size += 3 + params.getPolyVectorCompressedBytes()
+                    + entry.getValue().size() * (ID_BYTES + params.getPolyCompressedBytes());
+        }
+
+        byte[] m = new byte[KyberParams.paramsSymBytes];
+        ByteBuffer out = ByteBuffer.allocate(size);
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA3-256");
+            random.nextBytes(m);
+            md.update(m);
+            md.digest(m, 0, m.length);
+            out.put(VERSION);
+            out.putShort((short) groups.size());
+            for (Map.Entry<ByteBuffer, List<ByteBuffer>> entry : groups.entrySet()) {
+                KyberParameterSet params = KyberParameterSet.forK(entry.getKey().get(0));
+                byte[] seed = new byte[KyberParams.paramsSymBytes];
+                entry.getKey().get(1, seed);
+                byte[] coins = sha3(md, m, seed);
+                PolyVector sp = new PolyVector(params.getK());
+                out.put((byte) params.getK());
+                out.putShort((short) entry.getValue().size());
+                out.put(Indcpa.encryptShared(seed, coins, sp, params));
+                for (ByteBuffer publicKey : entry.getValue()) {
+                    md.update(publicKey.duplicate());
+                    byte[] id = md.digest();
+                    byte[] noiseSeed = sha3(md, coins, id);
+                    out.put(id);
+                    Indcpa.encryptRecipient(m, publicKey, sp, noiseSeed, params, out.array(), out.position());
+                    out.position(out.position() + params.getPolyCompressedBytes());
+                    Arrays.fill(noiseSeed, (byte) 0);
+                }
+                Arrays.fill(sp.getCoeffs(), (short) 0);
+                Arrays.fill(coins, (byte) 0);
+            }
+            return new Encapsulated(new KyberSecretKey(sharedSecret(m), null, null), out.array());
+        } catch (NoSuchAlgorithmException | DigestException ex) {
+            throw new ProviderException(ex);
+        } finally {
+            Arrays.fill(m, (byte) 0);
+        }
+    }
+
+    /**
+     * Decapsulate the shared secret from a combined cipher text. A cipher text
+     * that was tampered with gives a pseudo-random secret, like a single
+     * recipient decapsulation.
+     *
+     * @param cipherText the combined cipher text
+     * @param privateKey
+     * @return the shared secret
+     * @throws InvalidKeyException if the cipher text is malformed or does not
+     * list the key
+     */
+    public static KyberSecretKey decapsulate(byte[] cipherText, com.swiftcryptollc.crypto.interfaces.KyberPrivateKey privateKey)
+            throws InvalidKeyException {
+        KyberKeyUtil.checkNot90s(privateKey);
+        KyberKeySize kyberKeySize = privateKey.getKyberKeySize();
+        KyberParameterSet params = kyberKeySize.getParameterSet();
+        ByteBuffer x = KyberKem.buffer(privateKey);
+        int skBytes = params.getIndcpaSecretKeyBytes();
+        int pkBytes = params.getIndcpaPublicKeyBytes();
+        byte[] id = new byte[ID_BYTES];
+        x.get(skBytes + pkBytes, id);
+        byte[] ct = find(cipherText, params, id);
+
+        byte[] m = null;
+        byte[] coins = null;
+        byte[] pre = null;
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA3-256");
+            m = Indcpa.decrypt(ct, x, params);
+            byte[] seed = new byte[KyberParams.paramsSymBytes];
+            x.get(skBytes + params.getPolyVectorBytes(), seed);
+            coins = sha3(md, m, seed);
+            PolyVector sp = new PolyVector(params.getK());
+            byte[] cmp = Arrays.copyOf(Indcpa.encryptShared(seed, coins, sp, params), ct.length);
+            byte[] noiseSeed = sha3(md, coins, id);
+            Indcpa.encryptRecipient(m, x.slice(skBytes, pkBytes), sp, noiseSeed, params, cmp, params.getPolyVectorCompressedBytes());
+            Arrays.fill(sp.getCoeffs(), (short) 0);
+            Arrays.fill(noiseSeed, (byte) 0);
+            int fail = KyberKeyUtil.constantTimeCompare(ct, cmp);
+            int mask = -((fail | -fail) >>> 31);
+
+            // Implicit rejection, select H(z || ct) instead of m without branching
+            byte[] z = new byte[KyberParams.paramsSymBytes];
+            x.get(params.getPrivateKeyBytes() - KyberParams.paramsSymBytes, z);
+            byte[] reject = sha3(md, z, ct);
+            Arrays.fill(z, (byte) 0);
+            pre = m.clone();
+            for (int i = 0; i < pre.length; i++) {
+                pre[i] = (byte) (pre[i] ^ (mask & (pre[i] ^ reject[i])));
+            }
+            return new KyberSecretKey(sharedSecret(pre), null, null);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new ProviderException(ex);
+        } finally {
+            for (byte[] secret : new byte[][]{m, coins, pre}) {
+                if (secret != null) {
+                    Arrays.fill(secret, (byte) 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the recipient's part of a combined cipher text
+     *
+     * @return u || v of the recipient
+     */
+    private static byte[] find(byte[] cipherText, KyberParameterSet params, byte[] id) throws InvalidKeyException {
+        ByteBuffer in = ByteBuffer.wrap(cipherText);
+        try {
+            if (in.get() != VERSION) {
+                throw new InvalidKeyException("Unsupported multi-recipient cipher text version " + cipherText[0]);
+            }
+            int groups = Short.toUnsignedInt(in.getShort());
+            for (int g = 0; g < groups; g++) {
+                KyberParameterSet groupParams = KyberParameterSet.forK(in.get());
+                int count = Short.toUnsignedInt(in.getShort());
+                int uOffset = in.position();
+                in.position(uOffset + groupParams.getPolyVectorCompressedBytes());
+                for (int i = 0; i < count; i++) {
+                    int idOffset = in.position();
+                    in.position(idOffset + ID_BYTES + groupParams.getPolyCompressedBytes());
+                    if ((groupParams == params) && Arrays.equals(cipherText, idOffset, idOffset + ID_BYTES, id, 0, ID_BYTES)) {
+                        byte[] ct = new byte[params.getCipherTextBytes()];
+                        System.arraycopy(cipherText, uOffset, ct, 0, params.getPolyVectorCompressedBytes());
+                        System.arraycopy(cipherText, idOffset + ID_BYTES, ct, params.getPolyVectorCompressedBytes(),
+                                params.getPolyCompressedBytes());
+                        return ct;
+                    }
+                }
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            throw new InvalidKeyException("Invalid multi-recipient cipher text", ex);
+        }
+        throw new InvalidKeyException("The key is not a recipient of the cipher text");
+    }
+
+    /**
+     * @return SHA3-256 of the concatenated inputs
+     */
+    private static byte[] sha3(MessageDigest md, byte[]... inputs) {
+        for (byte[] input : inputs) {
+            md.update(input);
+        }
+        return md.digest();
+    }
+
+    /**
+     * @return SHAKE256(DOMAIN || pre), the 32-byte shared secret
+     */
+    private static byte[] sharedSecret(byte[] pre) {
+        byte[] sharedSecret = new byte[KyberParams.KyberSSBytes];
+        KeccakSponge xof = new Shake256();
+        xof.getAbsorbStream().write(DOMAIN);
+        xof.getAbsorbStream().write(pre);
+        xof.getSqueezeStream().read(sharedSecret);
+        return sharedSecret;
+    }
+}
@@ -0,0 +1,196 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
+import com.swiftcryptollc.crypto.spec.KyberParameterSpec;
+import com.swiftcryptollc.crypto.util.KyberKeyUtil;
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.KeyRep;
+import java.security.ProviderException;
+import java.util.Arrays;
+
+/**
+ * A Kyber private key held in direct (off-heap) memory
+ *
+ * The key bytes never live in a heap array that the garbage collector can copy
+ * around, the key agreement decapsulates straight from the buffer, and
+ * destroy() wipes the buffer right away instead of waiting for the GC.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class KyberOffHeapPrivateKey implements com.swiftcryptollc.crypto.interfaces.KyberPrivateKey {
+
+    static final long serialVersionUID = 2920316743845921739L;
+
+    private final KyberKeySize kyberKeySize;
+
+    private final boolean kyber90s;
+
+    private final transient ByteBuffer x;
+
+    private volatile boolean destroyed = false;
+
+    /**
+     * @param x
+     * @param kyberKeySize
+     * @param kyber90s
+     */
+    private KyberOffHeapPrivateKey(ByteBuffer x, KyberKeySize kyberKeySize, boolean kyber90s) {
+        this.x = x;
+        this.kyberKeySize = kyberKeySize;
+        this.kyber90s = kyber90s;
+    }
+
+    /**
+     * Copy a private key into off-heap memory
+     *
+     * @param key
+     * @return the off-heap copy
+     * @throws InvalidKeyException
+     */
+    public static KyberOffHeapPrivateKey copyOf(com.swiftcryptollc.crypto.interfaces.KyberPrivateKey key) throws InvalidKeyException {
+        return move(key.getX(), key.isKyber90s());
+    }
+
+    /**
+     * Copy raw private key bytes into off-heap memory and zero the array
+     *
+     * @param privX
+     * @param kyber90s true for a Kyber-90s key
+     * @return the off-heap copy
+     * @throws InvalidKeyException
+     */
+    static KyberOffHeapPrivateKey move(byte[] privX, boolean kyber90s) throws InvalidKeyException {
+        try {
+            KyberKeySize kyberKeySize = KyberKeyUtil.getKyberKeySizePrivateKey(privX.length);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(privX.length);
+            buffer.put(privX);
+            return new KyberOffHeapPrivateKey(buffer, kyberKeySize, kyber90s);
+        } finally {
+            Arrays.fill(privX, (byte) 0);
+        }
+    }
+
+    /**
+     * @return a read-only view of the key bytes
+     */
+    ByteBuffer buffer() {
+        checkDestroyed();
+        return x.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a heap copy of the private value, <code>x</code>.
+     *
+     * @return the private value, <code>x</code>
+     */
+    @Override
+    public byte[] getX() {
+        checkDestroyed();
+        byte[] privX = new byte[x.capacity()];
+        x.get(0, privX);
+        return privX;
+    }
+
+    /**
+     * Returns the encoding format of this key: "PKCS#8"
+     */
+    @Override
+    public String getFormat() {
+        return "PKCS#8";
+    }
+
+    /**
+     * Returns the name of the algorithm associated with this key: "Kyber"
+     */
+    @Override
+    public String getAlgorithm() {
+        return "Kyber";
+    }
+
+    /**
+     * Get the encoding of the key.
+     */
+    @Override
+    public byte[] getEncoded() {
+        byte[] privX = getX();
+        try {
+            return new KyberPrivateKey(privX, null, null, privX.length, kyber90s).getEncoded();
+        } catch (InvalidKeyException ex) {
+            throw new ProviderException("Unable to encode the private key", ex);
+        } finally {
+            Arrays.fill(privX, (byte) 0);
+        }
+    }
+
+    @Override
+    public boolean isKyber90s() {
+        return kyber90s;
+    }
+
+    /**
+     * Returns the key parameters.
+     *
+     * @return the key parameters
+     */
+    @Override
+    public KyberParameterSpec getParams() {
+        return new KyberParameterSpec(KyberParams.default_p, KyberParams.default_g,
+                kyberKeySize.getParameterSet().getPrivateKeyBytes());
+    }
+
+    /**
+     * @return true, this key always uses the default p and g
+     */
+    @Override
+    public boolean hasDefaultParams() {
+        return true;
+    }
+
+    /**
+     * @return the kyberKeySize
+     */
+    @Override
+    public KyberKeySize getKyberKeySize() {
+        return kyberKeySize;
+    }
+
+    /**
+     * Zero the key bytes, the key can not be used afterwards
+     */
+    @Override
+    public void destroy() {
+        synchronized (x) {
+            for (int i = 0; i < x.capacity(); i++) {
+                x.put(i, (byte) 0);
+            }
+            destroyed = true;
+        }
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return destroyed;
+    }
+
+    private void checkDestroyed() {
+        if (destroyed) {
+            throw new IllegalStateException("Private key has been destroyed");
+        }
+    }
+
+    /**
+     * Replace the Kyber private key to be serialized.
+     *
+     * @return the standard KeyRep object to be serialized
+     *
+     * @throws java.io.ObjectStreamException if a new object representing this
+     * Kyber private key could not be created
+     */
+    private Object writeReplace() throws java.io.ObjectStreamException {
+        return new KeyRep(KeyRep.Type.PRIVATE,
+                getAlgorithm(),
+                getFormat(),
+                getEncoded());
+    }
+}
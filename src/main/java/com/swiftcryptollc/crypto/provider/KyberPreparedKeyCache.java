@@ -0,0 +1,127 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of private keys expanded from their seeds
+ *
+ * Entries are keyed by SHA3-256 of the seed, so the seeds themselves are not
+ * kept here. Callers always get copies, which lets evicted keys be zeroed.
+ * Cached keys outlive the seed keys they were expanded from, so the cache is
+ * disabled by default. The size is set with
+ * -Dcom.swiftcryptollc.kyber.preparedKeyCacheSize.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+final class KyberPreparedKeyCache {
+
+    static final String CACHE_NAME = "preparedKey";
+
+    private static volatile int capacity = Integer.getInteger("com.swiftcryptollc.kyber.preparedKeyCacheSize", 0);
+
+    private static final Map<ByteBuffer, KyberPackedPKI> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteBuffer, KyberPackedPKI> eldest) {
+            if (size() > capacity) {
+                Arrays.fill(eldest.getValue().getPackedPrivateKey(), (byte) 0);
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private KyberPreparedKeyCache() {
+    }
+
+    /**
+     * Resize the cache, dropping and zeroing every entry
+     *
+     * @param size the maximum number of entries, 0 to disable
+     */
+    static void configure(int size) {
+        synchronized (cache) {
+            clear();
+            capacity = size;
+        }
+    }
+
+    /**
+     * @param kyberKeySize
+     * @param seed d || z
+     * @return a copy of the full private key
+     * @throws NoSuchAlgorithmException
+     */
+    static byte[] getPrivateKey(KyberKeySize kyberKeySize, byte[] seed) throws NoSuchAlgorithmException {
+        return get(kyberKeySize, seed, true);
+    }
+
+    /**
+     * @param kyberKeySize
+     * @param seed d || z
+     * @return a copy of the public key
+     * @throws NoSuchAlgorithmException
+     */
+    static byte[] getPublicKey(KyberKeySize kyberKeySize, byte[] seed) throws NoSuchAlgorithmException {
+        return get(kyberKeySize, seed, false);
+    }
+
+    /**
+     * Drop and zero every cached key
+     */
+    static void clear() {
+        synchronized (cache) {
+            for (KyberPackedPKI keys : cache.values()) {
+                Arrays.fill(keys.getPackedPrivateKey(), (byte) 0);
+            }
+            cache.clear();
+        }
+    }
+
+    private static byte[] get(KyberKeySize kyberKeySize, byte[] seed, boolean privateKey) throws NoSuchAlgorithmException {
+        ByteBuffer id = null;
+        if (capacity > 0) {
+            MessageDigest md = MessageDigest.getInstance("SHA3-256");
+            md.update((byte) kyberKeySize.getParamsK());
+            id = ByteBuffer.wrap(md.digest(seed));
+            synchronized (cache) {
+                KyberPackedPKI keys = cache.get(id);
+                KyberMetrics.recordCacheLookup(CACHE_NAME, keys != null);
+                if (keys != null) {
+                    return copy(keys, privateKey);
+                }
+            }
+        }
+        // Expand outside the lock, another thread may race us to the same key
+        byte[] d = Arrays.copyOfRange(seed, 0, 32);
+        byte[] z = Arrays.copyOfRange(seed, 32, 64);
+        KyberPackedPKI keys;
+        try {
+            keys = KyberKem.deriveKeys(kyberKeySize.getParameterSet(), d, z);
+        } finally {
+            Arrays.fill(d, (byte) 0);
+            Arrays.fill(z, (byte) 0);
+        }
+        byte[] result = copy(keys, privateKey);
+        boolean cached = false;
+        if (id != null) {
+            synchronized (cache) {
+                // The cache may have been disabled meanwhile
+                cached = (capacity > 0) && (cache.putIfAbsent(id, keys) == null);
+            }
+        }
+        if (!cached) {
+            // Disabled, or we lost the race and the other thread's key is kept
+            Arrays.fill(keys.getPackedPrivateKey(), (byte) 0);
+        }
+        return result;
+    }
+
+    private static byte[] copy(KyberPackedPKI keys, boolean privateKey) {
+        return (privateKey ? keys.getPackedPrivateKey() : keys.getPackedPublicKey()).clone();
+    }
+}
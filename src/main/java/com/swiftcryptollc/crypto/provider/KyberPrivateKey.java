@@ -2,21 +2,17 @@ package com.swiftcryptollc.crypto.provider;
 
 import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
 import com.swiftcryptollc.crypto.spec.KyberParameterSpec;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.KeyRep;
 import java.security.PrivateKey;
-import java.security.ProviderException;
-import java.util.Objects;
-import com.swiftcryptollc.crypto.util.DerInputStream;
+import com.swiftcryptollc.crypto.util.DerCursor;
 import com.swiftcryptollc.crypto.util.DerOutputStream;
 import com.swiftcryptollc.crypto.util.DerValue;
 import com.swiftcryptollc.crypto.util.KyberKeyUtil;
-import com.swiftcryptollc.crypto.util.ObjectIdentifier;
 
 /**
  * A private key in PKCS#8 format for the Diffie-Hellman key agreement
@@ -30,6 +26,9 @@ final class KyberPrivateKey implements PrivateKey, com.swiftcryptollc.crypto.int
 
     private KyberKeySize kyberKeySize;
 
+    // whether this is a Kyber-90s key
+    private boolean kyber90s;
+
     // only supported version of PKCS#8 PrivateKeyInfo
     private static final BigInteger PKCS8_VERSION = BigInteger.ZERO;
 
@@ -58,8 +57,6 @@ final class KyberPrivateKey implements PrivateKey, com.swiftcryptollc.crypto.int
      * @param x the private value
      * @param p the prime modulus
      * @param g the base generator
-     *
-     * @exception ProviderException if the key cannot be encoded
      */
     KyberPrivateKey(byte[] x, BigInteger p, BigInteger g)
             throws InvalidKeyException {
@@ -80,8 +77,28 @@ final class KyberPrivateKey implements PrivateKey, com.swiftcryptollc.crypto.int
      */
     KyberPrivateKey(byte[] x, BigInteger p, BigInteger g, int l)
             throws InvalidKeyException {
+        this(x, p, g, l, false);
+    }
+
+    /**
+     * Make a Kyber or Kyber-90s private key out of a private value
+     * <code>x</code>, a prime modulus <code>p</code>, a base generator
+     * <code>g</code>, and a private-value length <code>l</code>.
+     *
+     * @param x the private value
+     * @param p the prime modulus
+     * @param g the base generator
+     * @param l the private-value length
+     * @param kyber90s true for a Kyber-90s key
+     *
+     * @exception InvalidKeyException if the key cannot be encoded
+     */
+    KyberPrivateKey(byte[] x, BigInteger p, BigInteger g, int l, boolean kyber90s)
+            throws InvalidKeyException {
+        this.kyber90s = kyber90s;
         this.kyberKeySize = KyberKeyUtil.getKyberKeySizePrivateKey(x.length);
         this.x = x.clone();
+        this.p = p;
         if (p == null) {
             this.p = KyberParams.default_p;
         }
@@ -90,13 +107,7 @@ final class KyberPrivateKey implements PrivateKey, com.swiftcryptollc.crypto.int
             this.g = KyberParams.default_g;
         }
         this.l = l;
-        try {
-            this.key = new DerValue(DerValue.tag_Integer,
-                    this.getX()).toByteArray();
-            this.encodedKey = getEncoded();
-        } catch (IOException e) {
-            throw new ProviderException("Cannot produce ASN.1 encoding", e);
-        }
+        // the DER encoding is only built if getEncoded() is called
     }
 
     /**
@@ -108,17 +119,17 @@ final class KyberPrivateKey implements PrivateKey, com.swiftcryptollc.crypto.int
      * Diffie-Hellman private key
      */
     KyberPrivateKey(byte[] encodedKey) throws InvalidKeyException {
-        InputStream inStream = new ByteArrayInputStream(encodedKey);
         try {
-            DerValue val = new DerValue(inStream);
-            if (val.tag != DerValue.tag_Sequence) {
-                throw new InvalidKeyException("Key not a SEQUENCE");
+            DerCursor in = new DerCursor(encodedKey);
+            DerCursor val = in.getSequence();
+            if (in.available() != 0) {
+                throw new InvalidKeyException("Extra data after the key");
             }
 
             //
             // version
             //
-            BigInteger parsedVersion = val.data.getBigInteger();
+            BigInteger parsedVersion = val.getBigInteger();
             if (!parsedVersion.equals(PKCS8_VERSION)) {
                 throw new IOException("version mismatch: (supported: "
                         + PKCS8_VERSION + ", parsed: "
@@ -128,42 +139,32 @@ final class KyberPrivateKey implements PrivateKey, com.swiftcryptollc.crypto.int
             //
             // privateKeyAlgorithm
             //
-            DerValue algid = val.data.getDerValue();
-            if (algid.tag != DerValue.tag_Sequence) {
-                throw new InvalidKeyException("AlgId is not a SEQUENCE");
-            }
-            DerInputStream derInStream = algid.toDerInputStream();
-            ObjectIdentifier oid = derInStream.getOID();
-            if (oid == null) {
-                throw new InvalidKeyException("Null OID");
-            }
-            if (derInStream.available() == 0) {
+            DerCursor algid = val.getSequence();
+            this.kyber90s = KyberKeyUtil.isKyber90s(algid.getOID());
+            if (algid.available() == 0) {
                 throw new InvalidKeyException("Parameters missing");
             }
             // parse the parameters
-            DerValue params = derInStream.getDerValue();
-            if (params.tag == DerValue.tag_Null) {
+            if (algid.peekTag() == DerValue.tag_Null) {
                 throw new InvalidKeyException("Null parameters");
             }
-            if (params.tag != DerValue.tag_Sequence) {
-                throw new InvalidKeyException("Parameters not a SEQUENCE");
-            }
-            params.data.reset();
-            this.p = params.data.getBigInteger();
-            this.g = params.data.getBigInteger();
+            DerCursor params = algid.getSequence();
+            // Share the default values, so the key agreement can check
+            // them by reference
+            this.p = KyberKeyUtil.canonical(params.getBigInteger(), KyberParams.default_p);
+            this.g = KyberKeyUtil.canonical(params.getBigInteger(), KyberParams.default_g);
             // Private-value length is OPTIONAL
-            if (params.data.available() != 0) {
-                this.l = params.data.getInteger();
+            if (params.available() != 0) {
+                this.l = params.getInteger();
             }
-            if (params.data.available() != 0) {
+            if (params.available() != 0) {
                 throw new InvalidKeyException("Extra parameter data");
             }
 
             //
             // privateKey
             //
-            this.key = val.data.getOctetString();
-            parseKeyBits();
+            parseKeyBits(val.getOctetString());
 
             this.encodedKey = new byte[encodedKey.length];
             System.arraycopy(encodedKey, 0, this.encodedKey, 0, encodedKey.length);
@@ -195,6 +196,9 @@ final class KyberPrivateKey implements PrivateKey, com.swiftcryptollc.crypto.int
     public synchronized byte[] getEncoded() {
         if (this.encodedKey == null) {
             try {
+                if (this.key == null) {
+                    this.key = new DerValue(DerValue.tag_Integer, this.x).toByteArray();
+                }
                 DerOutputStream tmp = new DerOutputStream();
 
                 //
@@ -208,7 +212,7 @@ final class KyberPrivateKey implements PrivateKey, com.swiftcryptollc.crypto.int
                 DerOutputStream algid = new DerOutputStream();
 
                 // store OID
-                algid.putOID(ObjectIdentifier.of(KyberJCE.OID_KYBER));
+                algid.putOID(KyberKeyUtil.getOID(this.kyber90s));
                 // encode parameters
                 DerOutputStream params = new DerOutputStream();
                 params.putInteger(this.p);
@@ -263,17 +267,34 @@ final class KyberPrivateKey implements PrivateKey, com.swiftcryptollc.crypto.int
         return new KyberParameterSpec(this.p, this.g, this.l);
     }
 
+    @Override
+    public boolean isKyber90s() {
+        return kyber90s;
+    }
+
     /**
-     * Parse the encoded key into the original raw key
+     * @return true if p and g are the defaults, checked by reference
+     */
+    @Override
+    public boolean hasDefaultParams() {
+        return (this.p == KyberParams.default_p) && (this.g == KyberParams.default_g);
+    }
+
+    /**
+     * Read the raw private key out of the key bits, which wrap it in an INTEGER
      *
+     * @param keyBits
      * @throws InvalidKeyException
      */
-    private void parseKeyBits() throws InvalidKeyException {
+    private void parseKeyBits(ByteBuffer keyBits) throws InvalidKeyException {
         try {
-            DerInputStream in = new DerInputStream(this.key);
-            byte[] rawArray = in.toByteArray();
-            this.x = new byte[rawArray.length - 4];
-            System.arraycopy(rawArray, 4, this.x, 0, rawArray.length - 4);
+            DerCursor in = new DerCursor(keyBits);
+            ByteBuffer raw = in.getContents(DerValue.tag_Integer);
+            if (in.available() != 0) {
+                throw new InvalidKeyException("Excess key data");
+            }
+            this.x = new byte[raw.remaining()];
+            raw.get(this.x);
             this.kyberKeySize = KyberKeyUtil.getKyberKeySizePrivateKey(x.length);
             this.l = this.x.length;
         } catch (IOException e) {
@@ -288,7 +309,9 @@ final class KyberPrivateKey implements PrivateKey, com.swiftcryptollc.crypto.int
      */
     @Override
     public int hashCode() {
-        return Objects.hash(x, p, g);
+        // The private key embeds H(pk) in front of z, which is public and
+        // uniformly distributed
+        return KyberKeyUtil.hashCodeOf(x, x.length - 2 * KyberParams.paramsSymBytes);
     }
 
     @Override
@@ -302,10 +325,10 @@ final class KyberPrivateKey implements PrivateKey, com.swiftcryptollc.crypto.int
         }
         KyberPrivateKey other
                 = (KyberPrivateKey) obj;
-        KyberParameterSpec otherParams = other.getParams();
-        return ((KyberKeyUtil.constantTimeCompare(this.x, other.getX()) == 0)
-                && (this.p.compareTo(otherParams.getP()) == 0)
-                && (this.g.compareTo(otherParams.getG()) == 0));
+        return ((KyberKeyUtil.constantTimeCompare(this.x, other.x) == 0)
+                && (this.p.compareTo(other.p) == 0)
+                && (this.g.compareTo(other.g) == 0)
+                && (this.kyber90s == other.kyber90s));
     }
 
     /**
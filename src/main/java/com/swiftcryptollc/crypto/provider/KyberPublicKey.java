@@ -2,21 +2,20 @@ package com.swiftcryptollc.crypto.provider;
 
 import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
 import com.swiftcryptollc.crypto.spec.KyberParameterSpec;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.KeyRep;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.ProviderException;
 import java.security.PublicKey;
-import java.util.Objects;
-import com.swiftcryptollc.crypto.util.DerInputStream;
+import com.swiftcryptollc.crypto.util.DerCursor;
 import com.swiftcryptollc.crypto.util.DerOutputStream;
 import com.swiftcryptollc.crypto.util.DerValue;
 import com.swiftcryptollc.crypto.util.KyberKeyUtil;
-import com.swiftcryptollc.crypto.util.ObjectIdentifier;
 
 /**
  * A public key in X.509 format for the Kyber key agreement algorithm.
@@ -27,6 +26,9 @@ final class KyberPublicKey implements PublicKey, com.swiftcryptollc.crypto.inter
 
     private KyberKeySize kyberKeySize;
 
+    // whether this is a Kyber-90s key
+    private boolean kyber90s;
+
     // the public key
     private byte[] y;
 
@@ -45,6 +47,9 @@ final class KyberPublicKey implements PublicKey, com.swiftcryptollc.crypto.inter
     // the private-value length (optional)
     private int l;
 
+    // SHA3-256 of y, computed on first use
+    private transient volatile byte[] publicKeyHash;
+
     /**
      * Make a Kyber public key out of a public value <code>y</code>, a prime
      * modulus <code>p</code>, and a base generator <code>g</code>.
@@ -69,11 +74,26 @@ final class KyberPublicKey implements PublicKey, com.swiftcryptollc.crypto.inter
      * @param p the prime modulus
      * @param g the base generator
      * @param l the private-value length
-     *
-     * @exception ProviderException if the key cannot be encoded
      */
     KyberPublicKey(byte[] y, BigInteger p, BigInteger g, int l)
             throws InvalidKeyException {
+        this(y, p, g, l, false);
+    }
+
+    /**
+     * Make a Kyber or Kyber-90s public key out of a public value
+     * <code>y</code>, a prime modulus <code>p</code>, a base generator
+     * <code>g</code>, and a private-value length <code>l</code>.
+     *
+     * @param y the public value
+     * @param p the prime modulus
+     * @param g the base generator
+     * @param l the private-value length
+     * @param kyber90s true for a Kyber-90s key
+     */
+    KyberPublicKey(byte[] y, BigInteger p, BigInteger g, int l, boolean kyber90s)
+            throws InvalidKeyException {
+        this.kyber90s = kyber90s;
         this.kyberKeySize = KyberKeyUtil.getKyberKeySizePublicKey(y.length);
         this.y = y.clone();
         this.p = p;
@@ -85,13 +105,7 @@ final class KyberPublicKey implements PublicKey, com.swiftcryptollc.crypto.inter
             this.g = KyberParams.default_g;
         }
         this.l = l;
-        try {
-            this.key = new DerValue(DerValue.tag_Integer,
-                    this.getY()).toByteArray();
-            this.encodedKey = getEncoded();
-        } catch (IOException e) {
-            throw new ProviderException("Cannot produce ASN.1 encoding", e);
-        }
+        // the DER encoding is only built if getEncoded() is called
     }
 
     /**
@@ -103,56 +117,46 @@ final class KyberPublicKey implements PublicKey, com.swiftcryptollc.crypto.inter
      * Kyber public key
      */
     KyberPublicKey(byte[] encodedKey) throws InvalidKeyException {
-        InputStream inStream = new ByteArrayInputStream(encodedKey);
         try {
-            DerValue derKeyVal = new DerValue(inStream);
-            if (derKeyVal.tag != DerValue.tag_Sequence) {
-                throw new InvalidKeyException("Invalid key format");
+            DerCursor in = new DerCursor(encodedKey);
+            DerCursor derKeyVal = in.getSequence();
+            if (in.available() != 0) {
+                throw new InvalidKeyException("Extra data after the key");
             }
 
             /*
              * Parse the algorithm identifier
              */
-            DerValue algid = derKeyVal.data.getDerValue();
-            if (algid.tag != DerValue.tag_Sequence) {
-                throw new InvalidKeyException("AlgId is not a SEQUENCE");
-            }
-            DerInputStream derInStream = algid.toDerInputStream();
-            ObjectIdentifier oid = derInStream.getOID();
-            if (oid == null) {
-                throw new InvalidKeyException("Null OID");
-            }
-            if (derInStream.available() == 0) {
+            DerCursor algid = derKeyVal.getSequence();
+            this.kyber90s = KyberKeyUtil.isKyber90s(algid.getOID());
+            if (algid.available() == 0) {
                 throw new InvalidKeyException("Parameters missing");
             }
 
             /*
              * Parse the parameters
              */
-            DerValue params = derInStream.getDerValue();
-            if (params.tag == DerValue.tag_Null) {
+            if (algid.peekTag() == DerValue.tag_Null) {
                 throw new InvalidKeyException("Null parameters");
             }
-            if (params.tag != DerValue.tag_Sequence) {
-                throw new InvalidKeyException("Parameters not a SEQUENCE");
-            }
-            params.data.reset();
-            this.p = params.data.getBigInteger();
-            this.g = params.data.getBigInteger();
+            DerCursor params = algid.getSequence();
+            // Share the default values, so the key agreement can check
+            // them by reference
+            this.p = KyberKeyUtil.canonical(params.getBigInteger(), KyberParams.default_p);
+            this.g = KyberKeyUtil.canonical(params.getBigInteger(), KyberParams.default_g);
             // Private-value length is OPTIONAL
-            if (params.data.available() != 0) {
-                this.l = params.data.getInteger();
+            if (params.available() != 0) {
+                this.l = params.getInteger();
             }
-            if (params.data.available() != 0) {
+            if (params.available() != 0) {
                 throw new InvalidKeyException("Extra parameter data");
             }
 
             /*
              * Parse the key
              */
-            this.key = derKeyVal.data.getBitString();
-            parseKeyBits();
-            if (derKeyVal.data.available() != 0) {
+            parseKeyBits(derKeyVal.getBitString());
+            if (derKeyVal.available() != 0) {
                 throw new InvalidKeyException("Excess key data");
             }
 
@@ -186,10 +190,13 @@ final class KyberPublicKey implements PublicKey, com.swiftcryptollc.crypto.inter
     public synchronized byte[] getEncoded() {
         if (this.encodedKey == null) {
             try {
+                if (this.key == null) {
+                    this.key = new DerValue(DerValue.tag_Integer, this.y).toByteArray();
+                }
                 DerOutputStream algid = new DerOutputStream();
 
                 // store oid in algid
-                algid.putOID(ObjectIdentifier.of(KyberJCE.OID_KYBER));
+                algid.putOID(KyberKeyUtil.getOID(this.kyber90s));
 
                 // encode parameters
                 DerOutputStream params = new DerOutputStream();
@@ -235,6 +242,13 @@ final class KyberPublicKey implements PublicKey, com.swiftcryptollc.crypto.inter
         return this.y.clone();
     }
 
+    /**
+     * @return a read-only view of the public value, without copying it
+     */
+    ByteBuffer buffer() {
+        return ByteBuffer.wrap(this.y).asReadOnlyBuffer();
+    }
+
     /**
      * Returns the key parameters.
      *
@@ -245,17 +259,34 @@ final class KyberPublicKey implements PublicKey, com.swiftcryptollc.crypto.inter
         return new KyberParameterSpec(this.p, this.g, this.l);
     }
 
+    @Override
+    public boolean isKyber90s() {
+        return kyber90s;
+    }
+
     /**
-     * Parse the encoded key into the original raw key
+     * @return true if p and g are the defaults, checked by reference
+     */
+    @Override
+    public boolean hasDefaultParams() {
+        return (this.p == KyberParams.default_p) && (this.g == KyberParams.default_g);
+    }
+
+    /**
+     * Read the raw public key out of the key bits, which wrap it in an INTEGER
      *
+     * @param keyBits
      * @throws InvalidKeyException
      */
-    private void parseKeyBits() throws InvalidKeyException {
+    private void parseKeyBits(ByteBuffer keyBits) throws InvalidKeyException {
         try {
-            DerInputStream in = new DerInputStream(this.key);
-            byte[] rawArray = in.toByteArray();
-            this.y = new byte[rawArray.length - 4];
-            System.arraycopy(rawArray, 4, this.y, 0, rawArray.length - 4);
+            DerCursor in = new DerCursor(keyBits);
+            ByteBuffer raw = in.getContents(DerValue.tag_Integer);
+            if (in.available() != 0) {
+                throw new InvalidKeyException("Excess key data");
+            }
+            this.y = new byte[raw.remaining()];
+            raw.get(this.y);
             this.kyberKeySize = KyberKeyUtil.getKyberKeySizePublicKey(y.length);
             this.l = this.y.length;
         } catch (IOException e) {
@@ -270,7 +301,26 @@ final class KyberPublicKey implements PublicKey, com.swiftcryptollc.crypto.inter
      */
     @Override
     public int hashCode() {
-        return Objects.hash(y, p, g);
+        return KyberKeyUtil.hashCodeOf(getPublicKeyHash(), 0);
+    }
+
+    /**
+     * H(pk), which encapsulation needs as well. The array is shared, do not
+     * modify it.
+     *
+     * @return SHA3-256 of the public value
+     */
+    byte[] getPublicKeyHash() {
+        byte[] hash = publicKeyHash;
+        if (hash == null) {
+            try {
+                hash = MessageDigest.getInstance("SHA3-256").digest(y);
+            } catch (NoSuchAlgorithmException ex) {
+                throw new ProviderException(ex);
+            }
+            publicKeyHash = hash;
+        }
+        return hash;
     }
 
     @Override
@@ -279,16 +329,20 @@ final class KyberPublicKey implements PublicKey, com.swiftcryptollc.crypto.inter
             return true;
         }
 
+        if (obj instanceof KyberDirectoryPublicKey) {
+            return obj.equals(this);
+        }
+
         if (!(obj instanceof KyberPublicKey)) {
             return false;
         }
 
         KyberPublicKey other
                 = (KyberPublicKey) obj;
-        KyberParameterSpec otherParams = other.getParams();
-        return (((KyberKeyUtil.constantTimeCompare(this.y, other.getY())) == 0)
-                && (this.p.compareTo(otherParams.getP()) == 0)
-                && (this.g.compareTo(otherParams.getG()) == 0));
+        return (((KyberKeyUtil.constantTimeCompare(this.y, other.y)) == 0)
+                && (this.p.compareTo(other.p) == 0)
+                && (this.g.compareTo(other.g) == 0)
+                && (this.kyber90s == other.kyber90s));
     }
 
     /**
@@ -2,17 +2,15 @@ package com.swiftcryptollc.crypto.provider;
 
 import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
 import com.swiftcryptollc.crypto.spec.KyberParameterSpec;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.KeyRep;
-import java.security.ProviderException;
 import java.security.PublicKey;
 import java.util.Objects;
-import com.swiftcryptollc.crypto.util.DerInputStream;
+import com.swiftcryptollc.crypto.util.DerCursor;
 import com.swiftcryptollc.crypto.util.DerOutputStream;
 import com.swiftcryptollc.crypto.util.DerValue;
 import com.swiftcryptollc.crypto.util.KyberKeyUtil;
@@ -76,13 +74,7 @@ public final class KyberSecretKey implements PublicKey, Serializable {
             this.g = KyberParams.default_g;
         }
         this.l = l;
-        try {
-            this.key = new DerValue(DerValue.tag_Integer,
-                    this.getS()).toByteArray();
-            this.encodedKey = getEncoded();
-        } catch (IOException e) {
-            throw new ProviderException("Cannot produce ASN.1 encoding", e);
-        }
+        // the DER encoding is only built if getEncoded() is called
     }
 
     /**
@@ -94,56 +86,46 @@ public final class KyberSecretKey implements PublicKey, Serializable {
      * Kyber public key
      */
     public KyberSecretKey(byte[] encodedKey) throws InvalidKeyException {
-        InputStream inStream = new ByteArrayInputStream(encodedKey);
         try {
-            DerValue derKeyVal = new DerValue(inStream);
-            if (derKeyVal.tag != DerValue.tag_Sequence) {
-                throw new InvalidKeyException("Invalid key format");
+            DerCursor in = new DerCursor(encodedKey);
+            DerCursor derKeyVal = in.getSequence();
+            if (in.available() != 0) {
+                throw new InvalidKeyException("Extra data after the key");
             }
 
             /*
              * Parse the algorithm identifier
              */
-            DerValue algid = derKeyVal.data.getDerValue();
-            if (algid.tag != DerValue.tag_Sequence) {
-                throw new InvalidKeyException("AlgId is not a SEQUENCE");
-            }
-            DerInputStream derInStream = algid.toDerInputStream();
-            ObjectIdentifier oid = derInStream.getOID();
-            if (oid == null) {
-                throw new InvalidKeyException("Null OID");
-            }
-            if (derInStream.available() == 0) {
+            DerCursor algid = derKeyVal.getSequence();
+            algid.getOID();
+            if (algid.available() == 0) {
                 throw new InvalidKeyException("Parameters missing");
             }
 
             /*
              * Parse the parameters
              */
-            DerValue params = derInStream.getDerValue();
-            if (params.tag == DerValue.tag_Null) {
+            if (algid.peekTag() == DerValue.tag_Null) {
                 throw new InvalidKeyException("Null parameters");
             }
-            if (params.tag != DerValue.tag_Sequence) {
-                throw new InvalidKeyException("Parameters not a SEQUENCE");
-            }
-            params.data.reset();
-            this.p = params.data.getBigInteger();
-            this.g = params.data.getBigInteger();
+            DerCursor params = algid.getSequence();
+            // Share the default values, so the key agreement can check
+            // them by reference
+            this.p = KyberKeyUtil.canonical(params.getBigInteger(), KyberParams.default_p);
+            this.g = KyberKeyUtil.canonical(params.getBigInteger(), KyberParams.default_g);
             // Private-value length is OPTIONAL
-            if (params.data.available() != 0) {
-                this.l = params.data.getInteger();
+            if (params.available() != 0) {
+                this.l = params.getInteger();
             }
-            if (params.data.available() != 0) {
+            if (params.available() != 0) {
                 throw new InvalidKeyException("Extra parameter data");
             }
 
             /*
              * Parse the key
              */
-            this.key = derKeyVal.data.getBitString();
-            parseKeyBits();
-            if (derKeyVal.data.available() != 0) {
+            parseKeyBits(derKeyVal.getBitString());
+            if (derKeyVal.available() != 0) {
                 throw new InvalidKeyException("Excess key data");
             }
 
@@ -177,6 +159,9 @@ public final class KyberSecretKey implements PublicKey, Serializable {
     public synchronized byte[] getEncoded() {
         if (this.encodedKey == null) {
             try {
+                if (this.key == null) {
+                    this.key = new DerValue(DerValue.tag_Integer, this.s).toByteArray();
+                }
                 DerOutputStream algid = new DerOutputStream();
 
                 // store oid in algid
@@ -235,16 +220,20 @@ public final class KyberSecretKey implements PublicKey, Serializable {
     }
 
     /**
-     * Parse the encoded bytes to the raw secret
+     * Read the raw secret out of the key bits, which wrap it in an INTEGER
      *
+     * @param keyBits
      * @throws InvalidKeyException
      */
-    private void parseKeyBits() throws InvalidKeyException {
+    private void parseKeyBits(ByteBuffer keyBits) throws InvalidKeyException {
         try {
-            DerInputStream in = new DerInputStream(this.key);
-            byte[] rawArray = in.toByteArray();
-            this.s = new byte[rawArray.length - 2];
-            System.arraycopy(rawArray, 2, this.s, 0, rawArray.length - 2);
+            DerCursor in = new DerCursor(keyBits);
+            ByteBuffer raw = in.getContents(DerValue.tag_Integer);
+            if (in.available() != 0) {
+                throw new InvalidKeyException("Excess key data");
+            }
+            this.s = new byte[raw.remaining()];
+            raw.get(this.s);
             this.l = this.s.length;
         } catch (IOException e) {
             throw new InvalidKeyException(
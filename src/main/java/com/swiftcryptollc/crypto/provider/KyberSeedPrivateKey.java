@@ -0,0 +1,150 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
+import com.swiftcryptollc.crypto.spec.KyberParameterSpec;
+import com.swiftcryptollc.crypto.spec.KyberSeedPrivateKeySpec;
+import com.swiftcryptollc.crypto.util.KyberKeyUtil;
+import java.io.Serializable;
+import java.security.PrivateKey;
+import java.security.ProviderException;
+import java.util.Arrays;
+
+/**
+ * A Kyber private key that only stores its 64-byte seed (d || z)
+ *
+ * The full private key is derived on demand and held in the
+ * KyberPreparedKeyCache, so a key store only needs 65 bytes per key instead of
+ * the full private key and its PKCS#8 encoding.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+final class KyberSeedPrivateKey implements PrivateKey, com.swiftcryptollc.crypto.interfaces.KyberPrivateKey, Serializable {
+
+    static final long serialVersionUID = 6146201928813549470L;
+
+    private final KyberKeySize kyberKeySize;
+
+    // d || z
+    private final byte[] seed;
+
+    /**
+     * @param seed d || z
+     * @param kyberKeySize
+     */
+    KyberSeedPrivateKey(byte[] seed, KyberKeySize kyberKeySize) {
+        if (seed.length != KyberSeedPrivateKeySpec.SEED_BYTES) {
+            throw new IllegalArgumentException("Seed must be " + KyberSeedPrivateKeySpec.SEED_BYTES + " bytes");
+        }
+        this.seed = seed.clone();
+        this.kyberKeySize = kyberKeySize;
+    }
+
+    /**
+     * @param keySpec
+     */
+    KyberSeedPrivateKey(KyberSeedPrivateKeySpec keySpec) {
+        this(keySpec.getSeed(), keySpec.getKyberKeySize());
+    }
+
+    /**
+     * Returns the encoding format of this key: "RAW"
+     */
+    @Override
+    public String getFormat() {
+        return "RAW";
+    }
+
+    /**
+     * Returns the name of the algorithm associated with this key: "Kyber"
+     */
+    @Override
+    public String getAlgorithm() {
+        return "Kyber";
+    }
+
+    /**
+     * @return K followed by d || z (65 bytes)
+     */
+    @Override
+    public byte[] getEncoded() {
+        return toKeySpec().getEncoded();
+    }
+
+    /**
+     * Returns the full private key, expanded from the seed if it is not
+     * already cached
+     *
+     * @return the full private key
+     */
+    @Override
+    public byte[] getX() {
+        try {
+            return KyberPreparedKeyCache.getPrivateKey(kyberKeySize, seed);
+        } catch (Exception ex) {
+            throw new ProviderException("Unable to expand the private key", ex);
+        }
+    }
+
+    /**
+     * @return the public key that belongs to this private key
+     */
+    KyberPublicKey getPublicKey() {
+        try {
+            return new KyberPublicKey(KyberPreparedKeyCache.getPublicKey(kyberKeySize, seed), null, null);
+        } catch (Exception ex) {
+            throw new ProviderException("Unable to expand the public key", ex);
+        }
+    }
+
+    /**
+     * @return the key spec holding the seed
+     */
+    KyberSeedPrivateKeySpec toKeySpec() {
+        return new KyberSeedPrivateKeySpec(seed, kyberKeySize);
+    }
+
+    /**
+     * Returns the key parameters.
+     *
+     * @return the key parameters
+     */
+    @Override
+    public KyberParameterSpec getParams() {
+        return new KyberParameterSpec(KyberParams.default_p, KyberParams.default_g,
+                kyberKeySize.getParameterSet().getPrivateKeyBytes());
+    }
+
+    /**
+     * @return true, this key always uses the default p and g
+     */
+    @Override
+    public boolean hasDefaultParams() {
+        return true;
+    }
+
+    /**
+     * @return the kyberKeySize
+     */
+    @Override
+    public KyberKeySize getKyberKeySize() {
+        return kyberKeySize;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * kyberKeySize.hashCode() + Arrays.hashCode(seed);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof KyberSeedPrivateKey)) {
+            return false;
+        }
+        KyberSeedPrivateKey other = (KyberSeedPrivateKey) obj;
+        return (KyberKeyUtil.constantTimeCompare(this.seed, other.seed) == 0)
+                && (this.kyberKeySize == other.kyberKeySize);
+    }
+}
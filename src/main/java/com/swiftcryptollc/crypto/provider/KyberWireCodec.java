@@ -0,0 +1,194 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.provider.kyber.KyberParameterSet;
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.PublicKey;
+
+/**
+ * Compact raw encoding of Kyber public keys and cipher texts
+ *
+ * The encoding is a one-byte tag followed by the raw key or cipher text, 1 +
+ * 1184 bytes for a Kyber768 public key and 1 + 1088 for a Kyber768 cipher text,
+ * instead of the DER encodings with their p and g. The high nibble of the tag
+ * is the kind, the low nibble is k of the parameter set, with the KYBER_90S
+ * bit set for Kyber-90s keys and cipher texts.
+ *
+ * KyberFrameWriter and KyberFrameReader stream these encodings with a length
+ * prefix.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class KyberWireCodec {
+
+    public static final int PUBLIC_KEY = 0x10;
+    public static final int CIPHER_TEXT = 0x20;
+    public static final int KYBER_90S = 0x08;
+
+    private static final KyberKeySize[] sizes = KyberKeySize.values();
+
+    private KyberWireCodec() {
+    }
+
+    /**
+     * @param kind PUBLIC_KEY or CIPHER_TEXT
+     * @param kyberKeySize
+     * @return the tag
+     */
+    public static byte tag(int kind, KyberKeySize kyberKeySize) {
+        return tag(kind, kyberKeySize, false);
+    }
+
+    /**
+     * @param kind PUBLIC_KEY or CIPHER_TEXT
+     * @param kyberKeySize
+     * @param kyber90s
+     * @return the tag
+     */
+    public static byte tag(int kind, KyberKeySize kyberKeySize, boolean kyber90s) {
+        return (byte) (kind | kyberKeySize.getParamsK() | (kyber90s ? KYBER_90S : 0));
+    }
+
+    /**
+     * @param tag
+     * @return true if the tag is one this codec decodes
+     */
+    public static boolean isKnownTag(byte tag) {
+        int kind = tag & 0xF0;
+        return ((kind == PUBLIC_KEY) || (kind == CIPHER_TEXT)) && (keySize(tag) != null);
+    }
+
+    /**
+     * @param key a Kyber public key or cipher text
+     * @return the encoded length
+     * @throws InvalidKeyException
+     */
+    public static int encodedLength(Key key) throws InvalidKeyException {
+        return 1 + body(key).remaining();
+    }
+
+    /**
+     * @param key a Kyber public key or cipher text
+     * @return the tag followed by the raw key or cipher text
+     * @throws InvalidKeyException if the key is neither, or has an unsupported
+     * length
+     */
+    public static byte[] encode(Key key) throws InvalidKeyException {
+        ByteBuffer body = body(key);
+        byte[] encoded = new byte[1 + body.remaining()];
+        encoded[0] = tag(key);
+        body.get(encoded, 1, encoded.length - 1);
+        return encoded;
+    }
+
+    /**
+     * @param encoded
+     * @return a KyberPublicKey or a KyberCipherText holding a copy of the bytes
+     * @throws InvalidKeyException if the tag is unknown or does not match the
+     * length
+     */
+    public static PublicKey decode(byte[] encoded) throws InvalidKeyException {
+        PublicKey key = decode(ByteBuffer.wrap(encoded));
+        if (key instanceof KyberDirectoryPublicKey) {
+            byte[] y = ((KyberDirectoryPublicKey) key).getY();
+            return new KyberPublicKey(y, null, null, y.length, ((KyberDirectoryPublicKey) key).isKyber90s());
+        }
+        return key;
+    }
+
+    /**
+     * Decode the remaining bytes of the buffer. Public keys are not copied,
+     * they are read-only views of the buffer, which must not be modified while
+     * they are in use. Cipher texts are copied.
+     *
+     * @param encoded
+     * @return a Kyber public key or a KyberCipherText
+     * @throws InvalidKeyException if the tag is unknown or does not match the
+     * length
+     */
+    public static PublicKey decode(ByteBuffer encoded) throws InvalidKeyException {
+        if (!encoded.hasRemaining()) {
+            throw new InvalidKeyException("Empty encoding");
+        }
+        int position = encoded.position();
+        byte tag = encoded.get(position);
+        if (!isKnownTag(tag)) {
+            throw new InvalidKeyException("Unknown tag 0x" + Integer.toHexString(tag & 0xFF));
+        }
+        KyberKeySize kyberKeySize = keySize(tag);
+        boolean kyber90s = (tag & KYBER_90S) != 0;
+        KyberParameterSet params = kyberKeySize.getParameterSet();
+        int length = encoded.remaining() - 1;
+        if ((tag & 0xF0) == PUBLIC_KEY) {
+            if (length != params.getPublicKeyBytes()) {
+                throw new InvalidKeyException(kyberKeySize.getAlgorithm() + " public keys are " + params.getPublicKeyBytes() + " bytes");
+            }
+            return new KyberDirectoryPublicKey(encoded.slice(position + 1, length).asReadOnlyBuffer(), kyberKeySize, kyber90s);
+        }
+        if (length != params.getCipherTextBytes()) {
+            throw new InvalidKeyException(kyberKeySize.getAlgorithm() + " cipher texts are " + params.getCipherTextBytes() + " bytes");
+        }
+        byte[] c = new byte[length];
+        encoded.get(position + 1, c);
+        return KyberCipherText.move(c, kyber90s);
+    }
+
+    /**
+     * @param key a Kyber public key or cipher text
+     * @return the tag
+     * @throws InvalidKeyException
+     */
+    static byte tag(Key key) throws InvalidKeyException {
+        if (key instanceof com.swiftcryptollc.crypto.interfaces.KyberPublicKey) {
+            com.swiftcryptollc.crypto.interfaces.KyberPublicKey publicKey = (com.swiftcryptollc.crypto.interfaces.KyberPublicKey) key;
+            return tag(PUBLIC_KEY, publicKey.getKyberKeySize(), publicKey.isKyber90s());
+        }
+        if (key instanceof KyberCipherText) {
+            int length = ((KyberCipherText) key).buffer().remaining();
+            for (KyberKeySize kyberKeySize : sizes) {
+                if (kyberKeySize.getParameterSet().getCipherTextBytes() == length) {
+                    return tag(CIPHER_TEXT, kyberKeySize, ((KyberCipherText) key).isKyber90s());
+                }
+            }
+            throw new InvalidKeyException("Unsupported cipher text length " + length);
+        }
+        throw new InvalidKeyException("Kyber public key or cipher text expected");
+    }
+
+    /**
+     * @param key a Kyber public key or cipher text
+     * @return a read-only view of the raw bytes, copied only for foreign
+     * public key implementations
+     * @throws InvalidKeyException
+     */
+    static ByteBuffer body(Key key) throws InvalidKeyException {
+        if (key instanceof KyberDirectoryPublicKey) {
+            return ((KyberDirectoryPublicKey) key).buffer();
+        }
+        if (key instanceof KyberPublicKey) {
+            return ((KyberPublicKey) key).buffer();
+        }
+        if (key instanceof com.swiftcryptollc.crypto.interfaces.KyberPublicKey) {
+            return ByteBuffer.wrap(((com.swiftcryptollc.crypto.interfaces.KyberPublicKey) key).getY());
+        }
+        if (key instanceof KyberCipherText) {
+            return ((KyberCipherText) key).buffer();
+        }
+        throw new InvalidKeyException("Kyber public key or cipher text expected");
+    }
+
+    /**
+     * @param tag
+     * @return the key size of the tag, or null
+     */
+    private static KyberKeySize keySize(byte tag) {
+        int k = tag & 0x07;
+        for (KyberKeySize kyberKeySize : sizes) {
+            if (kyberKeySize.getParamsK() == k) {
+                return kyberKeySize;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,77 @@
+package com.swiftcryptollc.crypto.provider.kyber;
+
+/**
+ * Chooses the arithmetic backend once, when the provider is loaded
+ *
+ * The backend is picked with -Dcom.swiftcryptollc.kyber.arithmetic=auto,
+ * scalar or swar (default auto). Setting
+ * -Dcom.swiftcryptollc.kyber.arithmetic.crosscheck to a fraction between 0
+ * and 1 also runs that share of operations on a second backend and counts
+ * mismatches in KyberMetrics. Invalid settings are logged as warnings to the
+ * System.Logger named after this class.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class Arithmetic {
+
+    public final static String BACKEND_PROPERTY = "com.swiftcryptollc.kyber.arithmetic";
+    public final static String CROSS_CHECK_PROPERTY = "com.swiftcryptollc.kyber.arithmetic.crosscheck";
+
+    // Before BACKEND, which logs while it is selected
+    private final static System.Logger logger = System.getLogger(Arithmetic.class.getName());
+
+    /**
+     * The backend used by Poly and Indcpa
+     */
+    public final static KyberArithmetic BACKEND = select();
+
+    private Arithmetic() {
+    }
+
+    /**
+     * Look up a backend by name
+     *
+     * "auto" currently resolves to the scalar backend: C2 already
+     * auto-vectorizes its simple loops, and the Vector API is still an
+     * incubator module on the supported JDKs.
+     *
+     * @param name
+     * @return
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static KyberArithmetic forName(String name) throws IllegalArgumentException {
+        switch (name) {
+            case "auto":
+            case "scalar":
+                return new ScalarArithmetic();
+            case "swar":
+                return new SwarArithmetic();
+            default:
+                throw new IllegalArgumentException("Unknown arithmetic backend [" + name + "]");
+        }
+    }
+
+    private static KyberArithmetic select() {
+        KyberArithmetic backend;
+        try {
+            backend = forName(System.getProperty(BACKEND_PROPERTY, "auto").trim().toLowerCase());
+        } catch (IllegalArgumentException ex) {
+            logger.log(System.Logger.Level.WARNING, ex.getMessage() + ", using the scalar backend");
+            backend = new ScalarArithmetic();
+        }
+        String rate = System.getProperty(CROSS_CHECK_PROPERTY);
+        if (rate != null) {
+            try {
+                double sampleRate = Double.parseDouble(rate);
+                if (sampleRate > 0) {
+                    // Check against scalar, or against swar when scalar is the primary
+                    KyberArithmetic reference = (backend instanceof SwarArithmetic) ? new ScalarArithmetic() : new SwarArithmetic();
+                    backend = new CrossCheckArithmetic(backend, reference, Math.min(sampleRate, 1.0));
+                }
+            } catch (NumberFormatException ex) {
+                logger.log(System.Logger.Level.WARNING, "Invalid " + CROSS_CHECK_PROPERTY + " [" + rate + "], cross-checking disabled");
+            }
+        }
+        return backend;
+    }
+}
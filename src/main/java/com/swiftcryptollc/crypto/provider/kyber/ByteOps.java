@@ -1,6 +1,8 @@
 package com.swiftcryptollc.crypto.provider.kyber;
 
-import java.util.Arrays;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 
 /**
  * Utility class for byte operations
@@ -9,6 +11,10 @@ import java.util.Arrays;
  */
 public final class ByteOps {
 
+    private final static VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private final static VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private final static VarHandle SHORT_LE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+
     /**
      * Returns a 32-bit unsigned integer as a long from byte x
      *
@@ -38,44 +44,54 @@ public final class ByteOps {
 
     /**
      * Generate a polynomial with coefficients distributed according to a
-     * centered binomial distribution with parameter eta, given an array of
+     * centered binomial distribution with parameter eta = 2, given an array of
      * uniformly random bytes.
      *
+     * Works on 64 bits (16 coefficients) at a time. The bit pairs are summed
+     * in place, then every 4-bit lane holds a + 4 - b, which cannot borrow
+     * from its neighbour. There are no branches or table lookups on the secret
+     * bytes.
+     *
      * @param buf
-     * @param paramsK
-     * @return
+     * @param r
+     * @param rOff
      */
-    public static short[] generateCBDPoly(byte[] buf, int paramsK) {
-        long t, d; //both unsigned
-        int a, b;
-        short[] r = new short[KyberParams.paramsPolyBytes];
-        switch (paramsK) {
-            case 2:
-                for (int i = 0; i < KyberParams.paramsN / 4; i++) {
-                    t = ByteOps.convertByteTo24BitUnsignedInt(Arrays.copyOfRange(buf, (3 * i), buf.length));
-                    d = t & 0x00249249;
-                    d = d + ((t >> 1) & 0x00249249);
-                    d = d + ((t >> 2) & 0x00249249);
-                    for (int j = 0; j < 4; j++) {
-                        a = (short) ((d >> (6 * j + 0)) & 0x7);
-                        b = (short) ((d >> (6 * j + KyberParams.paramsETAK512)) & 0x7);
-                        r[4 * i + j] = (short) (a - b);
-                    }
-                }
-                break;
-            default:
-                for (int i = 0; i < KyberParams.paramsN / 8; i++) {
-                    t = ByteOps.convertByteTo32BitUnsignedInt(Arrays.copyOfRange(buf, (4 * i), buf.length));
-                    d = t & 0x55555555;
-                    d = d + ((t >> 1) & 0x55555555);
-                    for (int j = 0; j < 8; j++) {
-                        a = (short) ((d >> (4 * j + 0)) & 0x3);
-                        b = (short) ((d >> (4 * j + KyberParams.paramsETAK768K1024)) & 0x3);
-                        r[8 * i + j] = (short) (a - b);
-                    }
-                }
+    public static void generateCBDPolyEta2(byte[] buf, short[] r, int rOff) {
+        for (int i = 0; i < KyberParams.paramsN / 16; i++) {
+            long t = (long) LONG_LE.get(buf, 8 * i);
+            long d = (t & 0x5555555555555555L) + ((t >>> 1) & 0x5555555555555555L);
+            long v = ((d & 0x3333333333333333L) | 0x4444444444444444L) - ((d >>> 2) & 0x3333333333333333L);
+            int ri = rOff + 16 * i;
+            for (int j = 0; j < 16; j++) {
+                r[ri + j] = (short) (((int) (v >>> (4 * j)) & 0xF) - 4);
+            }
+        }
+    }
+
+    /**
+     * Generate a polynomial with coefficients distributed according to a
+     * centered binomial distribution with parameter eta = 3, given an array of
+     * uniformly random bytes.
+     *
+     * Works on 48 bits (8 coefficients) at a time, with every 6-bit lane
+     * holding a + 4 - b after the bit triples are summed. There are no
+     * branches or table lookups on the secret bytes.
+     *
+     * @param buf
+     * @param r
+     * @param rOff
+     */
+    public static void generateCBDPolyEta3(byte[] buf, short[] r, int rOff) {
+        for (int i = 0; i < KyberParams.paramsN / 8; i++) {
+            int off = 6 * i;
+            long t = ((int) INT_LE.get(buf, off) & 0xFFFFFFFFL) | (((short) SHORT_LE.get(buf, off + 4) & 0xFFFFL) << 32);
+            long d = (t & 0x249249249249L) + ((t >>> 1) & 0x249249249249L) + ((t >>> 2) & 0x249249249249L);
+            long v = ((d & 0x1C71C71C71C7L) | 0x104104104104L) - ((d >>> 3) & 0x1C71C71C71C7L);
+            int ri = rOff + 8 * i;
+            for (int j = 0; j < 8; j++) {
+                r[ri + j] = (short) (((int) (v >>> (6 * j)) & 0x7) - 4);
+            }
         }
-        return r;
     }
 
     /**
@@ -0,0 +1,205 @@
+package com.swiftcryptollc.crypto.provider.kyber;
+
+import com.swiftcryptollc.crypto.provider.KyberMetrics;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs every operation on a primary backend and a sampled fraction of them on
+ * a reference backend as well, counting any difference in KyberMetrics
+ *
+ * The primary result is always the one returned, so a faster backend can be
+ * rolled out while the reference keeps watch over it. Operations that both
+ * backends inherit from the same class run the same code, so only operations
+ * they implement differently are sampled.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class CrossCheckArithmetic implements KyberArithmetic {
+
+    private final KyberArithmetic primary;
+    private final KyberArithmetic reference;
+    private final double sampleRate;
+    private final boolean checkNTT;
+    private final boolean checkInvNTT;
+    private final boolean checkBaseMul;
+    private final boolean checkReduce;
+    private final boolean checkConditionalSubQ;
+    private final boolean checkAdd;
+    private final boolean checkSub;
+    private final boolean checkCompress;
+    private final boolean checkCBD;
+    private final boolean checkRejectionSample;
+
+    /**
+     * @param primary
+     * @param reference
+     * @param sampleRate the fraction of operations to check, 0.0 to 1.0
+     */
+    public CrossCheckArithmetic(KyberArithmetic primary, KyberArithmetic reference, double sampleRate) {
+        this.primary = primary;
+        this.reference = reference;
+        this.sampleRate = sampleRate;
+        this.checkNTT = differs("ntt", short[].class, int.class);
+        this.checkInvNTT = differs("invNTT", short[].class, int.class);
+        this.checkBaseMul = differs("baseMulMont", short[].class, int.class, short[].class, int.class, short[].class, int.class, boolean.class);
+        this.checkReduce = differs("reduce", short[].class, int.class, int.class);
+        this.checkConditionalSubQ = differs("conditionalSubQ", short[].class, int.class, int.class);
+        this.checkAdd = differs("add", short[].class, int.class, short[].class, int.class, int.class);
+        this.checkSub = differs("sub", short[].class, int.class, short[].class, int.class, int.class);
+        this.checkCompress = differs("compress", short[].class, int.class, int.class, int.class, byte[].class, int.class);
+        this.checkCBD = differs("cbd", byte[].class, int.class, short[].class, int.class);
+        this.checkRejectionSample = differs("rejectionSample", byte[].class, int.class, int.class, short[].class, int.class, int.class);
+    }
+
+    /**
+     * @param name
+     * @param parameterTypes
+     * @return true unless both backends inherit the operation from the same
+     * class
+     */
+    private boolean differs(String name, Class<?>... parameterTypes) {
+        try {
+            return primary.getClass().getMethod(name, parameterTypes).getDeclaringClass()
+                    != reference.getClass().getMethod(name, parameterTypes).getDeclaringClass();
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return primary.getName() + " (checked against " + reference.getName() + ")";
+    }
+
+    @Override
+    public void ntt(short[] r, int off) {
+        if (!checkNTT || !sample()) {
+            primary.ntt(r, off);
+            return;
+        }
+        short[] expected = Arrays.copyOfRange(r, off, off + KyberParams.paramsN);
+        reference.ntt(expected, 0);
+        primary.ntt(r, off);
+        record(Arrays.equals(expected, 0, expected.length, r, off, off + expected.length));
+    }
+
+    @Override
+    public void invNTT(short[] r, int off) {
+        if (!checkInvNTT || !sample()) {
+            primary.invNTT(r, off);
+            return;
+        }
+        short[] expected = Arrays.copyOfRange(r, off, off + KyberParams.paramsN);
+        reference.invNTT(expected, 0);
+        primary.invNTT(r, off);
+        record(Arrays.equals(expected, 0, expected.length, r, off, off + expected.length));
+    }
+
+    @Override
+    public void baseMulMont(short[] a, int aOff, short[] b, int bOff, short[] r, int rOff, boolean accumulate) {
+        if (!checkBaseMul || !sample()) {
+            primary.baseMulMont(a, aOff, b, bOff, r, rOff, accumulate);
+            return;
+        }
+        // Copy the inputs too, in case r overlaps a or b
+        short[] ca = Arrays.copyOfRange(a, aOff, aOff + KyberParams.paramsN);
+        short[] cb = Arrays.copyOfRange(b, bOff, bOff + KyberParams.paramsN);
+        short[] expected = Arrays.copyOfRange(r, rOff, rOff + KyberParams.paramsN);
+        reference.baseMulMont(ca, 0, cb, 0, expected, 0, accumulate);
+        primary.baseMulMont(a, aOff, b, bOff, r, rOff, accumulate);
+        record(Arrays.equals(expected, 0, expected.length, r, rOff, rOff + expected.length));
+    }
+
+    @Override
+    public void reduce(short[] r, int off, int len) {
+        if (!checkReduce || !sample()) {
+            primary.reduce(r, off, len);
+            return;
+        }
+        short[] expected = Arrays.copyOfRange(r, off, off + len);
+        reference.reduce(expected, 0, len);
+        primary.reduce(r, off, len);
+        record(Arrays.equals(expected, 0, len, r, off, off + len));
+    }
+
+    @Override
+    public void conditionalSubQ(short[] r, int off, int len) {
+        if (!checkConditionalSubQ || !sample()) {
+            primary.conditionalSubQ(r, off, len);
+            return;
+        }
+        short[] expected = Arrays.copyOfRange(r, off, off + len);
+        reference.conditionalSubQ(expected, 0, len);
+        primary.conditionalSubQ(r, off, len);
+        record(Arrays.equals(expected, 0, len, r, off, off + len));
+    }
+
+    @Override
+    public void add(short[] a, int aOff, short[] b, int bOff, int len) {
+        if (!checkAdd || !sample()) {
+            primary.add(a, aOff, b, bOff, len);
+            return;
+        }
+        short[] expected = Arrays.copyOfRange(a, aOff, aOff + len);
+        reference.add(expected, 0, b, bOff, len);
+        primary.add(a, aOff, b, bOff, len);
+        record(Arrays.equals(expected, 0, len, a, aOff, aOff + len));
+    }
+
+    @Override
+    public void sub(short[] a, int aOff, short[] b, int bOff, int len) {
+        if (!checkSub || !sample()) {
+            primary.sub(a, aOff, b, bOff, len);
+            return;
+        }
+        short[] expected = Arrays.copyOfRange(a, aOff, aOff + len);
+        reference.sub(expected, 0, b, bOff, len);
+        primary.sub(a, aOff, b, bOff, len);
+        record(Arrays.equals(expected, 0, len, a, aOff, aOff + len));
+    }
+
+    @Override
+    public void compress(short[] a, int aOff, int len, int bits, byte[] r, int rOff) {
+        if (!checkCompress || !sample()) {
+            primary.compress(a, aOff, len, bits, r, rOff);
+            return;
+        }
+        byte[] expected = new byte[len * bits / 8];
+        reference.compress(a, aOff, len, bits, expected, 0);
+        primary.compress(a, aOff, len, bits, r, rOff);
+        record(Arrays.equals(expected, 0, expected.length, r, rOff, rOff + expected.length));
+    }
+
+    @Override
+    public void cbd(byte[] buf, int eta, short[] r, int rOff) {
+        if (!checkCBD || !sample()) {
+            primary.cbd(buf, eta, r, rOff);
+            return;
+        }
+        short[] expected = new short[KyberParams.paramsN];
+        reference.cbd(buf, eta, expected, 0);
+        primary.cbd(buf, eta, r, rOff);
+        record(Arrays.equals(expected, 0, expected.length, r, rOff, rOff + expected.length));
+    }
+
+    @Override
+    public int rejectionSample(byte[] buf, int bufOff, int bufLen, short[] r, int rOff, int len) {
+        if (!checkRejectionSample || !sample()) {
+            return primary.rejectionSample(buf, bufOff, bufLen, r, rOff, len);
+        }
+        short[] expected = new short[len];
+        int expectedCtr = reference.rejectionSample(buf, bufOff, bufLen, expected, 0, len);
+        int ctr = primary.rejectionSample(buf, bufOff, bufLen, r, rOff, len);
+        record(ctr == expectedCtr && Arrays.equals(expected, 0, ctr, r, rOff, rOff + ctr));
+        return ctr;
+    }
+
+    private boolean sample() {
+        return ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    private static void record(boolean match) {
+        KyberMetrics.recordArithmeticCheck(match);
+    }
+}
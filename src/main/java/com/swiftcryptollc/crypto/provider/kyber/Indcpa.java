@@ -1,12 +1,11 @@
 package com.swiftcryptollc.crypto.provider.kyber;
 
 import com.github.aelstad.keccakj.core.KeccakSponge;
-import com.github.aelstad.keccakj.fips202.Shake128;
 import com.github.aelstad.keccakj.fips202.Shake256;
+import com.swiftcryptollc.crypto.provider.KyberMetrics;
 import com.swiftcryptollc.crypto.provider.KyberPackedPKI;
-import com.swiftcryptollc.crypto.provider.KyberUniformRandom;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
-import java.security.SecureRandom;
 import java.util.Arrays;
 
 /**
@@ -22,29 +21,13 @@ public final class Indcpa {
      *
      * @param publicKey
      * @param seed
-     * @param paramsK
+     * @param params
      * @return
      */
-    public static byte[] packPublicKey(short[][] publicKey, byte[] seed, int paramsK) {
-        byte[] initialArray = Poly.polyVectorToBytes(publicKey, paramsK);
-        byte[] packedPublicKey;
-        switch (paramsK) {
-            case 2:
-                packedPublicKey = new byte[KyberParams.paramsIndcpaPublicKeyBytesK512];
-                System.arraycopy(initialArray, 0, packedPublicKey, 0, initialArray.length);
-                System.arraycopy(seed, 0, packedPublicKey, initialArray.length, seed.length);
-                break;
-            case 3:
-                packedPublicKey = new byte[KyberParams.paramsIndcpaPublicKeyBytesK768];
-                System.arraycopy(initialArray, 0, packedPublicKey, 0, initialArray.length);
-                System.arraycopy(seed, 0, packedPublicKey, initialArray.length, seed.length);
-                break;
-            default:
-                packedPublicKey = new byte[KyberParams.paramsIndcpaPublicKeyBytesK1024];
-                System.arraycopy(initialArray, 0, packedPublicKey, 0, initialArray.length);
-                System.arraycopy(seed, 0, packedPublicKey, initialArray.length, seed.length);
-        }
-
+    public static byte[] packPublicKey(PolyVector publicKey, byte[] seed, KyberParameterSet params) {
+        byte[] packedPublicKey = new byte[params.getIndcpaPublicKeyBytes()];
+        Poly.polyVectorToBytes(publicKey, packedPublicKey, 0);
+        System.arraycopy(seed, 0, packedPublicKey, params.getPolyVectorBytes(), seed.length);
         return packedPublicKey;
     }
 
@@ -53,24 +36,29 @@ public final class Indcpa {
      * see
      *
      * @param packedPublicKey
-     * @param paramsK
+     * @param params
+     * @return
+     */
+    public static UnpackedPublicKey unpackPublicKey(byte[] packedPublicKey, KyberParameterSet params) {
+        return unpackPublicKey(ByteBuffer.wrap(packedPublicKey), params);
+    }
+
+    /**
+     * Unpack the packed public key, read in place with absolute gets
+     *
+     * @param packedPublicKey
+     * @param params
      * @return
      */
-    public static UnpackedPublicKey unpackPublicKey(byte[] packedPublicKey, int paramsK) {
+    public static UnpackedPublicKey unpackPublicKey(ByteBuffer packedPublicKey, KyberParameterSet params) {
         UnpackedPublicKey unpackedKey = new UnpackedPublicKey();
-        switch (paramsK) {
-            case 2:
-                unpackedKey.setPublicKeyPolyvec(Poly.polyVectorFromBytes(Arrays.copyOfRange(packedPublicKey, 0, KyberParams.paramsPolyvecBytesK512), paramsK));
-                unpackedKey.setSeed(Arrays.copyOfRange(packedPublicKey, KyberParams.paramsPolyvecBytesK512, packedPublicKey.length));
-                break;
-            case 3:
-                unpackedKey.setPublicKeyPolyvec(Poly.polyVectorFromBytes(Arrays.copyOfRange(packedPublicKey, 0, KyberParams.paramsPolyvecBytesK768), paramsK));
-                unpackedKey.setSeed(Arrays.copyOfRange(packedPublicKey, KyberParams.paramsPolyvecBytesK768, packedPublicKey.length));
-                break;
-            default:
-                unpackedKey.setPublicKeyPolyvec(Poly.polyVectorFromBytes(Arrays.copyOfRange(packedPublicKey, 0, KyberParams.paramsPolyvecBytesK1024), paramsK));
-                unpackedKey.setSeed(Arrays.copyOfRange(packedPublicKey, KyberParams.paramsPolyvecBytesK1024, packedPublicKey.length));
-        }
+        int polyVectorBytes = params.getPolyVectorBytes();
+        PolyVector publicKeyPolyvec = new PolyVector(params.getK());
+        Poly.polyVectorFromBytes(packedPublicKey, 0, publicKeyPolyvec);
+        unpackedKey.setPublicKeyPolyvec(publicKeyPolyvec);
+        byte[] seed = new byte[KyberParams.paramsSymBytes];
+        packedPublicKey.get(polyVectorBytes, seed);
+        unpackedKey.setSeed(seed);
         return unpackedKey;
     }
 
@@ -78,11 +66,12 @@ public final class Indcpa {
      * Pack the private key into a byte array
      *
      * @param privateKey
-     * @param paramsK
+     * @param params
      * @return
      */
-    public static byte[] packPrivateKey(short[][] privateKey, int paramsK) {
-        byte[] packedPrivateKey = Poly.polyVectorToBytes(privateKey, paramsK);
+    public static byte[] packPrivateKey(PolyVector privateKey, KyberParameterSet params) {
+        byte[] packedPrivateKey = new byte[params.getIndcpaSecretKeyBytes()];
+        Poly.polyVectorToBytes(privateKey, packedPrivateKey, 0);
         return packedPrivateKey;
     }
 
@@ -90,11 +79,26 @@ public final class Indcpa {
      * Unpack the private key byte array into a polynomial vector
      *
      * @param packedPrivateKey
-     * @param paramsK
+     * @param params
+     * @return
+     */
+    public static PolyVector unpackPrivateKey(byte[] packedPrivateKey, KyberParameterSet params) {
+        PolyVector unpackedPrivateKey = new PolyVector(params.getK());
+        Poly.polyVectorFromBytes(packedPrivateKey, 0, unpackedPrivateKey);
+        return unpackedPrivateKey;
+    }
+
+    /**
+     * De-serialize the private key that starts at the beginning of the
+     * buffer, without copying it to the heap first
+     *
+     * @param packedPrivateKey
+     * @param params
      * @return
      */
-    public static short[][] unpackPrivateKey(byte[] packedPrivateKey, int paramsK) {
-        short[][] unpackedPrivateKey = Poly.polyVectorFromBytes(packedPrivateKey, paramsK);
+    public static PolyVector unpackPrivateKey(ByteBuffer packedPrivateKey, KyberParameterSet params) {
+        PolyVector unpackedPrivateKey = new PolyVector(params.getK());
+        Poly.polyVectorFromBytes(packedPrivateKey, 0, unpackedPrivateKey);
         return unpackedPrivateKey;
     }
 
@@ -103,15 +107,13 @@ public final class Indcpa {
      *
      * @param b
      * @param v
-     * @param paramsK
+     * @param params
      * @return
      */
-    public static byte[] packCiphertext(short[][] b, short[] v, int paramsK) {
-        byte[] bCompress = Poly.compressPolyVector(b, paramsK);
-        byte[] vCompress = Poly.compressPoly(v, paramsK);
-        byte[] returnArray = new byte[bCompress.length + vCompress.length];
-        System.arraycopy(bCompress, 0, returnArray, 0, bCompress.length);
-        System.arraycopy(vCompress, 0, returnArray, bCompress.length, vCompress.length);
+    public static byte[] packCiphertext(PolyVector b, short[] v, KyberParameterSet params) {
+        byte[] returnArray = new byte[params.getCipherTextBytes()];
+        params.compressPolyVector(b, returnArray, 0);
+        params.compressPoly(v, 0, returnArray, params.getPolyVectorCompressedBytes());
         return returnArray;
     }
 
@@ -120,103 +122,61 @@ public final class Indcpa {
      * vector
      *
      * @param c
-     * @param paramsK
+     * @param params
      */
-    public static UnpackedCipherText unpackCiphertext(byte[] c, int paramsK) {
+    public static UnpackedCipherText unpackCiphertext(byte[] c, KyberParameterSet params) {
         UnpackedCipherText unpackedCipherText = new UnpackedCipherText();
-        byte[] bpc;
-        byte[] vc;
-        switch (paramsK) {
-            case 2:
-                bpc = new byte[KyberParams.paramsPolyvecCompressedBytesK512];
-                break;
-            case 3:
-                bpc = new byte[KyberParams.paramsPolyvecCompressedBytesK768];
-                break;
-            default:
-                bpc = new byte[KyberParams.paramsPolyvecCompressedBytesK1024];
-        }
-        System.arraycopy(c, 0, bpc, 0, bpc.length);
-        vc = new byte[c.length - bpc.length];
-        System.arraycopy(c, bpc.length, vc, 0, vc.length);
-        unpackedCipherText.setBp(Poly.decompressPolyVector(bpc, paramsK));
-        unpackedCipherText.setV(Poly.decompressPoly(vc, paramsK));
+        PolyVector bp = new PolyVector(params.getK());
+        short[] v = new short[KyberParams.paramsN];
+        params.decompressPolyVector(c, 0, bp);
+        params.decompressPoly(c, params.getPolyVectorCompressedBytes(), v, 0);
+        unpackedCipherText.setBp(bp);
+        unpackedCipherText.setV(v);
 
         return unpackedCipherText;
     }
 
-    /**
-     * Runs rejection sampling on uniform random bytes to generate uniform
-     * random integers modulo `Q`
-     *
-     * @param uniformRandom
-     * @param buf
-     * @param bufl
-     * @param l
-     * @return
-     */
-    public static void generateUniform(KyberUniformRandom uniformRandom, byte[] buf, int bufl, int l) {
-        short[] uniformR = new short[KyberParams.paramsPolyBytes];
-        int d1;
-        int d2;
-        int uniformI = 0; // Always start at 0
-        int j = 0;
-        while ((uniformI < l) && ((j + 3) <= bufl)) {
-            d1 = (int) (((((int) (buf[j] & 0xFF)) >> 0) | (((int) (buf[j + 1] & 0xFF)) << 8)) & 0xFFF);
-            d2 = (int) (((((int) (buf[j + 1] & 0xFF)) >> 4) | (((int) (buf[j + 2] & 0xFF)) << 4)) & 0xFFF);
-            j = j + 3;
-            if (d1 < (int) KyberParams.paramsQ) {
-                uniformR[uniformI] = (short) d1;
-                uniformI++;
-            }
-            if (uniformI < l && d2 < (int) KyberParams.paramsQ) {
-                uniformR[uniformI] = (short) d2;
-                uniformI++;
-            }
-        }
-        uniformRandom.setUniformI(uniformI);
-        uniformRandom.setUniformR(uniformR);
-    }
-
     /**
      * Generate a polynomial vector matrix from the given seed
      *
+     * Each polynomial is rejection sampled straight into the matrix from the
+     * XOF of the parameter set (three SHAKE128 blocks, or eight 64-byte
+     * AES-256-CTR blocks for Kyber-90s), squeezing one more block at a time in
+     * the rare case that is not enough.
+     *
      * @param seed
      * @param transposed
-     * @param paramsK
+     * @param params
      * @return
      */
-    public static short[][][] generateMatrix(byte[] seed, boolean transposed, int paramsK) {
-        short[][][] r = new short[paramsK][paramsK][KyberParams.paramsPolyBytes];
-        byte[] buf = new byte[672];
-        KyberUniformRandom uniformRandom = new KyberUniformRandom();
-        KeccakSponge xof = new Shake128();
+    public static PolyMatrix generateMatrix(byte[] seed, boolean transposed, KyberParameterSet params) {
+        int paramsK = params.getK();
+        KyberSymmetric symmetric = params.getSymmetric();
+        int blockBytes = symmetric.getXofBlockBytes();
+        PolyMatrix r = new PolyMatrix(paramsK);
+        short[] coeffs = r.getCoeffs();
+        // Room for a block plus the up to 2 bytes the sampler could not use
+        byte[] buf = new byte[symmetric.getGenMatrixNBlocks() * blockBytes + 2];
+        KyberSymmetric.Xof xof = symmetric.newXof();
         for (int i = 0; i < paramsK; i++) {
-            r[i] = Poly.generateNewPolyVector(paramsK);
             for (int j = 0; j < paramsK; j++) {
-                xof.reset();
-                xof.getAbsorbStream().write(seed);
-                byte[] ij = new byte[2];
                 if (transposed) {
-                    ij[0] = (byte) i;
-                    ij[1] = (byte) j;
+                    xof.absorb(seed, (byte) i, (byte) j);
                 } else {
-                    ij[0] = (byte) j;
-                    ij[1] = (byte) i;
+                    xof.absorb(seed, (byte) j, (byte) i);
                 }
-                xof.getAbsorbStream().write(ij);
-                xof.getSqueezeStream().read(buf);
-                generateUniform(uniformRandom, Arrays.copyOfRange(buf, 0, 504), 504, KyberParams.paramsN);
-                int ui = uniformRandom.getUniformI();
-                r[i][j] = uniformRandom.getUniformR();
-                while (ui < KyberParams.paramsN) {
-                    generateUniform(uniformRandom, Arrays.copyOfRange(buf, 504, 672), 168, KyberParams.paramsN - ui);
-                    int ctrn = uniformRandom.getUniformI();
-                    short[] missing = uniformRandom.getUniformR();
-                    for (int k = ui; k < KyberParams.paramsN; k++) {
-                        r[i][j][k] = missing[k - ui];
-                    }
-                    ui = ui + ctrn;
+                int bufLen = buf.length - 2;
+                xof.squeeze(buf, 0, bufLen);
+                int off = r.offset(i, j);
+                int ctr = Arithmetic.BACKEND.rejectionSample(buf, 0, bufLen, coeffs, off, KyberParams.paramsN);
+                while (ctr < KyberParams.paramsN) {
+                    // The sampler takes 3 bytes at a time, carry the rest
+                    // over (SHAKE128 blocks never leave any)
+                    int rest = bufLen % 3;
+                    System.arraycopy(buf, bufLen - rest, buf, 0, rest);
+                    xof.squeeze(buf, rest, blockBytes);
+                    bufLen = rest + blockBytes;
+                    ctr += Arithmetic.BACKEND.rejectionSample(buf, 0, bufLen, coeffs, off + ctr, KyberParams.paramsN - ctr);
                 }
             }
         }
@@ -246,44 +206,94 @@ public final class Indcpa {
     /**
      * Generates public and private keys for the CPA-secure public-key
      * encryption scheme underlying Kyber.
+     *
+     * The keys are fully determined by the 32-byte seed d
+     *
+     * @param d
+     * @param params
+     * @return
+     */
+    public static KyberPackedPKI generateKyberKeys(byte[] d, KyberParameterSet params) {
+        return generateKyberKeys(d, null, params);
+    }
+
+    /**
+     * Generates public and private keys for the CPA-secure public-key
+     * encryption scheme underlying Kyber.
+     *
+     * If a matrix seed is given it replaces the one derived from d, so a group
+     * of keys can share the public matrix A
+     *
+     * @param d
+     * @param matrixSeed the 32-byte seed of A, or null
+     * @param params
+     * @return
      */
-    public static KyberPackedPKI generateKyberKeys(int paramsK) {
+    public static KyberPackedPKI generateKyberKeys(byte[] d, byte[] matrixSeed, KyberParameterSet params) {
+        int paramsK = params.getK();
         KyberPackedPKI packedPKI = new KyberPackedPKI();
         try {
-            short[][] skpv = Poly.generateNewPolyVector(paramsK);
-            short[][] pkpv = Poly.generateNewPolyVector(paramsK);
-            short[][] e = Poly.generateNewPolyVector(paramsK);
+            PolyVector skpv = new PolyVector(paramsK);
+            PolyVector pkpv = new PolyVector(paramsK);
+            PolyVector e = new PolyVector(paramsK);
             byte[] publicSeed = new byte[KyberParams.paramsSymBytes];
             byte[] noiseSeed = new byte[KyberParams.paramsSymBytes];
+            IndcpaPhaseEvent probe = null;
 
-            MessageDigest h = MessageDigest.getInstance("SHA3-512");
-            SecureRandom sr = SecureRandom.getInstanceStrong();
-            sr.nextBytes(publicSeed);
+            MessageDigest h = MessageDigest.getInstance(params.getSymmetric().getHashG());
+            System.arraycopy(d, 0, publicSeed, 0, KyberParams.paramsSymBytes);
+            if (IndcpaPhaseEvent.ENABLED) {
+                probe = IndcpaPhaseEvent.start(IndcpaPhaseEvent.HASH, paramsK);
+            }
             byte[] fullSeed = h.digest(publicSeed);
+            if (IndcpaPhaseEvent.ENABLED) {
+                KyberMetrics.commit(probe);
+            }
 
             System.arraycopy(fullSeed, 0, publicSeed, 0, KyberParams.paramsSymBytes);
             System.arraycopy(fullSeed, KyberParams.paramsSymBytes, noiseSeed, 0, KyberParams.paramsSymBytes);
-            short[][][] a = generateMatrix(publicSeed, false, paramsK);
+            if (matrixSeed != null) {
+                System.arraycopy(matrixSeed, 0, publicSeed, 0, KyberParams.paramsSymBytes);
+            }
+            if (IndcpaPhaseEvent.ENABLED) {
+                probe = IndcpaPhaseEvent.start(IndcpaPhaseEvent.MATRIX, paramsK);
+            }
+            PolyMatrix a = generateMatrix(publicSeed, false, params);
+            if (IndcpaPhaseEvent.ENABLED) {
+                KyberMetrics.commit(probe);
+            }
+            if (IndcpaPhaseEvent.ENABLED) {
+                probe = IndcpaPhaseEvent.start(IndcpaPhaseEvent.NOISE, paramsK);
+            }
             byte nonce = (byte) 0;
             for (int i = 0; i < paramsK; i++) {
-                skpv[i] = Poly.getNoisePoly(noiseSeed, nonce, paramsK);
+                params.getNoisePolyEta1(noiseSeed, nonce, skpv.getCoeffs(), skpv.offset(i));
                 nonce = (byte) (nonce + (byte) 1);
             }
             for (int i = 0; i < paramsK; i++) {
-                e[i] = Poly.getNoisePoly(noiseSeed, nonce, paramsK);
+                params.getNoisePolyEta1(noiseSeed, nonce, e.getCoeffs(), e.offset(i));
                 nonce = (byte) (nonce + (byte) 1);
             }
-            skpv = Poly.polyVectorNTT(skpv, paramsK);
-            skpv = Poly.polyVectorReduce(skpv, paramsK);
-            e = Poly.polyVectorNTT(e, paramsK);
+            if (IndcpaPhaseEvent.ENABLED) {
+                KyberMetrics.commit(probe);
+            }
+            if (IndcpaPhaseEvent.ENABLED) {
+                probe = IndcpaPhaseEvent.start(IndcpaPhaseEvent.NTT, paramsK);
+            }
+            Poly.polyVectorNTT(skpv);
+            Poly.polyVectorReduce(skpv);
+            Poly.polyVectorNTT(e);
+            if (IndcpaPhaseEvent.ENABLED) {
+                KyberMetrics.commit(probe);
+            }
             for (int i = 0; i < paramsK; i++) {
-                short[] temp = Poly.polyVectorPointWiseAccMont(a[i], skpv, paramsK);
-                pkpv[i] = Poly.polyToMont(temp);
+                Poly.polyVectorPointWiseAccMont(a.getCoeffs(), a.rowOffset(i), skpv, pkpv.getCoeffs(), pkpv.offset(i));
+                Poly.polyToMont(pkpv.getCoeffs(), pkpv.offset(i));
             }
-            pkpv = Poly.polyVectorAdd(pkpv, e, paramsK);
-            pkpv = Poly.polyVectorReduce(pkpv, paramsK);
-            packedPKI.setPackedPrivateKey(packPrivateKey(skpv, paramsK));
-            packedPKI.setPackedPublicKey(packPublicKey(pkpv, publicSeed, paramsK));
+            Poly.polyVectorAdd(pkpv, e);
+            Poly.polyVectorReduce(pkpv);
+            packedPKI.setPackedPrivateKey(packPrivateKey(skpv, params));
+            packedPKI.setPackedPublicKey(packPublicKey(pkpv, publicSeed, params));
         } catch (Exception ex) {
             System.out.println("generateKyberKeys Exception! [" + ex.getMessage() + "]");
             ex.printStackTrace();
@@ -297,36 +307,142 @@ public final class Indcpa {
      * @param m
      * @param publicKey
      * @param coins
-     * @param paramsK
+     * @param params
+     * @return
+     */
+    public static byte[] encrypt(byte[] m, byte[] publicKey, byte[] coins, KyberParameterSet params) {
+        return encrypt(m, ByteBuffer.wrap(publicKey), coins, params);
+    }
+
+    /**
+     * Encrypt the given message with a public key that is read in place
+     *
+     * @param m
+     * @param publicKey
+     * @param coins
+     * @param params
      * @return
      */
-    public static byte[] encrypt(byte[] m, byte[] publicKey, byte[] coins, int paramsK) {
-        short[][] sp = Poly.generateNewPolyVector(paramsK);
-        short[][] ep = Poly.generateNewPolyVector(paramsK);
-        short[][] bp = Poly.generateNewPolyVector(paramsK);
-        UnpackedPublicKey unpackedPublicKey = unpackPublicKey(publicKey, paramsK);
-        short[] k = Poly.polyFromData(m);
-        short[][][] at = generateMatrix(Arrays.copyOfRange(unpackedPublicKey.getSeed(), 0, KyberParams.paramsSymBytes), true, paramsK);
+    public static byte[] encrypt(byte[] m, ByteBuffer publicKey, byte[] coins, KyberParameterSet params) {
+        int paramsK = params.getK();
+        PolyVector sp = new PolyVector(paramsK);
+        PolyVector ep = new PolyVector(paramsK);
+        PolyVector bp = new PolyVector(paramsK);
+        short[] v = new short[KyberParams.paramsN];
+        short[] epp = new short[KyberParams.paramsN];
+        short[] k = new short[KyberParams.paramsN];
+        IndcpaPhaseEvent probe = null;
+        UnpackedPublicKey unpackedPublicKey = unpackPublicKey(publicKey, params);
+        Poly.polyFromData(m, k, 0);
+        if (IndcpaPhaseEvent.ENABLED) {
+            probe = IndcpaPhaseEvent.start(IndcpaPhaseEvent.MATRIX, paramsK);
+        }
+        PolyMatrix at = generateMatrix(unpackedPublicKey.getSeed(), true, params);
+        if (IndcpaPhaseEvent.ENABLED) {
+            KyberMetrics.commit(probe);
+        }
+        if (IndcpaPhaseEvent.ENABLED) {
+            probe = IndcpaPhaseEvent.start(IndcpaPhaseEvent.NOISE, paramsK);
+        }
+
+        for (int i = 0; i < paramsK; i++) {
+            params.getNoisePolyEta1(coins, (byte) (i), sp.getCoeffs(), sp.offset(i));
+            params.getNoisePolyEta2(coins, (byte) (i + paramsK), ep.getCoeffs(), ep.offset(i));
+        }
 
+        params.getNoisePolyEta2(coins, (byte) (paramsK * 2), epp, 0);
+        if (IndcpaPhaseEvent.ENABLED) {
+            KyberMetrics.commit(probe);
+        }
+        if (IndcpaPhaseEvent.ENABLED) {
+            probe = IndcpaPhaseEvent.start(IndcpaPhaseEvent.NTT, paramsK);
+        }
+        Poly.polyVectorNTT(sp);
+        Poly.polyVectorReduce(sp);
         for (int i = 0; i < paramsK; i++) {
-            sp[i] = Poly.getNoisePoly(coins, (byte) (i), paramsK);
-            ep[i] = Poly.getNoisePoly(coins, (byte) (i + paramsK), 3);
+            Poly.polyVectorPointWiseAccMont(at.getCoeffs(), at.rowOffset(i), sp, bp.getCoeffs(), bp.offset(i));
+        }
+        Poly.polyVectorPointWiseAccMont(unpackedPublicKey.getPublicKeyPolyvec().getCoeffs(), 0, sp, v, 0);
+        Poly.polyVectorInvNTTMont(bp);
+        Poly.polyInvNTTMont(v, 0);
+        if (IndcpaPhaseEvent.ENABLED) {
+            KyberMetrics.commit(probe);
+        }
+        Poly.polyVectorAdd(bp, ep);
+        Poly.polyAdd(v, 0, epp, 0, KyberParams.paramsN);
+        Poly.polyAdd(v, 0, k, 0, KyberParams.paramsN);
+        Poly.polyVectorReduce(bp);
+        Poly.polyReduce(v, 0, KyberParams.paramsN);
+
+        if (IndcpaPhaseEvent.ENABLED) {
+            probe = IndcpaPhaseEvent.start(IndcpaPhaseEvent.COMPRESS, paramsK);
+        }
+        byte[] packedCipherText = packCiphertext(bp, v, params);
+        if (IndcpaPhaseEvent.ENABLED) {
+            KyberMetrics.commit(probe);
         }
+        return packedCipherText;
+    }
 
-        short[] epp = Poly.getNoisePoly(coins, (byte) (paramsK * 2), 3);
-        sp = Poly.polyVectorNTT(sp, paramsK);
-        sp = Poly.polyVectorReduce(sp, paramsK);
+    /**
+     * The recipient independent half of an encryption to a group of public
+     * keys that share the matrix seed: samples r and e1 from the coins and
+     * computes u = A^T r + e1 once for the whole group
+     *
+     * @param seed the matrix seed of the group
+     * @param coins
+     * @param sp receives r in the NTT domain, for encryptRecipient
+     * @param params
+     * @return the compressed u
+     */
+    public static byte[] encryptShared(byte[] seed, byte[] coins, PolyVector sp, KyberParameterSet params) {
+        int paramsK = params.getK();
+        PolyVector ep = new PolyVector(paramsK);
+        PolyVector bp = new PolyVector(paramsK);
+        PolyMatrix at = generateMatrix(seed, true, params);
+        for (int i = 0; i < paramsK; i++) {
+            params.getNoisePolyEta1(coins, (byte) (i), sp.getCoeffs(), sp.offset(i));
+            params.getNoisePolyEta2(coins, (byte) (i + paramsK), ep.getCoeffs(), ep.offset(i));
+        }
+        Poly.polyVectorNTT(sp);
+        Poly.polyVectorReduce(sp);
         for (int i = 0; i < paramsK; i++) {
-            bp[i] = Poly.polyVectorPointWiseAccMont(at[i], sp, paramsK);
+            Poly.polyVectorPointWiseAccMont(at.getCoeffs(), at.rowOffset(i), sp, bp.getCoeffs(), bp.offset(i));
         }
-        short[] v = Poly.polyVectorPointWiseAccMont(unpackedPublicKey.getPublicKeyPolyvec(), sp, paramsK);
-        bp = Poly.polyVectorInvNTTMont(bp, paramsK);
-        v = Poly.polyInvNTTMont(v);
-        bp = Poly.polyVectorAdd(bp, ep, paramsK);
-        v = Poly.polyAdd(Poly.polyAdd(v, epp), k);
-        bp = Poly.polyVectorReduce(bp, paramsK);
+        Poly.polyVectorInvNTTMont(bp);
+        Poly.polyVectorAdd(bp, ep);
+        Poly.polyVectorReduce(bp);
+        byte[] packedU = new byte[params.getPolyVectorCompressedBytes()];
+        params.compressPolyVector(bp, packedU, 0);
+        return packedU;
+    }
 
-        return packCiphertext(bp, Poly.polyReduce(v), paramsK);
+    /**
+     * The per-recipient half of a group encryption: computes v = t^T r + e2 +
+     * m for one public key with the r of encryptShared
+     *
+     * @param m
+     * @param publicKey read in place
+     * @param sp r in the NTT domain, from encryptShared
+     * @param noiseSeed the seed of this recipient's e2
+     * @param params
+     * @param packedV receives the compressed v
+     * @param offset
+     */
+    public static void encryptRecipient(byte[] m, ByteBuffer publicKey, PolyVector sp, byte[] noiseSeed,
+            KyberParameterSet params, byte[] packedV, int offset) {
+        short[] v = new short[KyberParams.paramsN];
+        short[] epp = new short[KyberParams.paramsN];
+        short[] k = new short[KyberParams.paramsN];
+        UnpackedPublicKey unpackedPublicKey = unpackPublicKey(publicKey, params);
+        Poly.polyFromData(m, k, 0);
+        params.getNoisePolyEta2(noiseSeed, (byte) 0, epp, 0);
+        Poly.polyVectorPointWiseAccMont(unpackedPublicKey.getPublicKeyPolyvec().getCoeffs(), 0, sp, v, 0);
+        Poly.polyInvNTTMont(v, 0);
+        Poly.polyAdd(v, 0, epp, 0, KyberParams.paramsN);
+        Poly.polyAdd(v, 0, k, 0, KyberParams.paramsN);
+        Poly.polyReduce(v, 0, KyberParams.paramsN);
+        params.compressPoly(v, 0, packedV, offset);
     }
 
     /**
@@ -334,19 +450,47 @@ public final class Indcpa {
      *
      * @param packedCipherText
      * @param privateKey
-     * @param paramsK
+     * @param params
      * @return
      */
-    public static byte[] decrypt(byte[] packedCipherText, byte[] privateKey, int paramsK) {
-        UnpackedCipherText unpackedCipherText = unpackCiphertext(packedCipherText, paramsK);
-        short[][] bp = unpackedCipherText.getBp();
+    public static byte[] decrypt(byte[] packedCipherText, byte[] privateKey, KyberParameterSet params) {
+        return decrypt(packedCipherText, ByteBuffer.wrap(privateKey), params);
+    }
+
+    /**
+     * Decrypt the given byte array using the Kyber public-key encryption scheme
+     *
+     * @param packedCipherText
+     * @param privateKey the private key, read in place
+     * @param params
+     * @return
+     */
+    public static byte[] decrypt(byte[] packedCipherText, ByteBuffer privateKey, KyberParameterSet params) {
+        int paramsK = params.getK();
+        IndcpaPhaseEvent probe = null;
+        if (IndcpaPhaseEvent.ENABLED) {
+            probe = IndcpaPhaseEvent.start(IndcpaPhaseEvent.COMPRESS, paramsK);
+        }
+        UnpackedCipherText unpackedCipherText = unpackCiphertext(packedCipherText, params);
+        if (IndcpaPhaseEvent.ENABLED) {
+            KyberMetrics.commit(probe);
+        }
+        PolyVector bp = unpackedCipherText.getBp();
         short[] v = unpackedCipherText.getV();
-        short[][] unpackedPrivateKey = unpackPrivateKey(privateKey, paramsK);
-        bp = Poly.polyVectorNTT(bp, paramsK);
-        short[] mp = Poly.polyVectorPointWiseAccMont(unpackedPrivateKey, bp, paramsK);
-        mp = Poly.polyInvNTTMont(mp);
-        mp = Poly.polySub(v, mp);
-        mp = Poly.polyReduce(mp);
-        return Poly.polyToMsg(mp);
+        short[] mp = new short[KyberParams.paramsN];
+        PolyVector unpackedPrivateKey = unpackPrivateKey(privateKey, params);
+        if (IndcpaPhaseEvent.ENABLED) {
+            probe = IndcpaPhaseEvent.start(IndcpaPhaseEvent.NTT, paramsK);
+        }
+        Poly.polyVectorNTT(bp);
+        Poly.polyVectorPointWiseAccMont(unpackedPrivateKey.getCoeffs(), 0, bp, mp, 0);
+        Poly.polyInvNTTMont(mp, 0);
+        if (IndcpaPhaseEvent.ENABLED) {
+            KyberMetrics.commit(probe);
+        }
+        Arrays.fill(unpackedPrivateKey.getCoeffs(), (short) 0);
+        Poly.polySub(v, 0, mp, 0, KyberParams.paramsN);
+        Poly.polyReduce(v, 0, KyberParams.paramsN);
+        return Poly.polyToMsg(v, 0);
     }
 }
@@ -0,0 +1,64 @@
+package com.swiftcryptollc.crypto.provider.kyber;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event for the sub-phases of the IND-CPA scheme (matrix
+ * expansion, noise sampling, NTT, compression and hashing)
+ *
+ * The probes are only compiled in when the system property
+ * "com.swiftcryptollc.kyber.probes" is set to true at startup. Since
+ * {@link #ENABLED} is a static final, the JIT removes the probe code entirely
+ * when it is false.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+@Name("com.swiftcryptollc.kyber.IndcpaPhase")
+@Label("Kyber IND-CPA Phase")
+@Category({"KyberJCE", "Phases"})
+@Description("A single sub-phase of a Kyber key generation, encryption or decryption")
+@StackTrace(false)
+public final class IndcpaPhaseEvent extends jdk.jfr.Event {
+
+    public final static boolean ENABLED = Boolean.getBoolean("com.swiftcryptollc.kyber.probes");
+
+    public final static String MATRIX = "matrix";
+    public final static String NOISE = "noise";
+    public final static String NTT = "ntt";
+    public final static String COMPRESS = "compress";
+    public final static String HASH = "hash";
+
+    @Label("Phase")
+    String phase;
+
+    @Label("K")
+    int paramsK;
+
+    /**
+     * Create and begin a phase probe
+     *
+     * @param phase
+     * @param paramsK
+     */
+    private IndcpaPhaseEvent(String phase, int paramsK) {
+        this.phase = phase;
+        this.paramsK = paramsK;
+        begin();
+    }
+
+    /**
+     * Start timing the given phase. Callers must guard this with
+     * {@link #ENABLED}
+     *
+     * @param phase
+     * @param paramsK
+     * @return
+     */
+    public static IndcpaPhaseEvent start(String phase, int paramsK) {
+        return new IndcpaPhaseEvent(phase, paramsK);
+    }
+}
@@ -0,0 +1,61 @@
+package com.swiftcryptollc.crypto.provider.kyber;
+
+/**
+ * Kyber-1024 parameters
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class Kyber1024ParameterSet extends KyberParameterSet {
+
+    public final static Kyber1024ParameterSet INSTANCE = new Kyber1024ParameterSet(KyberSymmetric.SHAKE);
+    public final static Kyber1024ParameterSet INSTANCE_90S = new Kyber1024ParameterSet(KyberSymmetric.AES);
+
+    private Kyber1024ParameterSet(KyberSymmetric symmetric) {
+        super(symmetric);
+    }
+
+    @Override
+    public int getK() {
+        return 4;
+    }
+
+    @Override
+    public int getEta1() {
+        return 2;
+    }
+
+    @Override
+    public int getDu() {
+        return 11;
+    }
+
+    @Override
+    public int getDv() {
+        return 5;
+    }
+
+    @Override
+    public void compressPoly(short[] a, int aOff, byte[] r, int rOff) {
+        Poly.compressPoly5(a, aOff, r, rOff);
+    }
+
+    @Override
+    public void decompressPoly(byte[] a, int aOff, short[] r, int rOff) {
+        Poly.decompressPoly5(a, aOff, r, rOff);
+    }
+
+    @Override
+    public void compressPolyVector(PolyVector a, byte[] r, int rOff) {
+        Poly.compressPolyVector11(a.getCoeffs(), 4, r, rOff);
+    }
+
+    @Override
+    public void decompressPolyVector(byte[] a, int aOff, PolyVector r) {
+        Poly.decompressPolyVector11(a, aOff, 4, r.getCoeffs());
+    }
+
+    @Override
+    public void getNoisePolyEta1(byte[] seed, byte nonce, short[] r, int rOff) {
+        Poly.getNoisePolyEta2(getSymmetric(), seed, nonce, r, rOff);
+    }
+}
@@ -0,0 +1,61 @@
+package com.swiftcryptollc.crypto.provider.kyber;
+
+/**
+ * Kyber-512 parameters
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class Kyber512ParameterSet extends KyberParameterSet {
+
+    public final static Kyber512ParameterSet INSTANCE = new Kyber512ParameterSet(KyberSymmetric.SHAKE);
+    public final static Kyber512ParameterSet INSTANCE_90S = new Kyber512ParameterSet(KyberSymmetric.AES);
+
+    private Kyber512ParameterSet(KyberSymmetric symmetric) {
+        super(symmetric);
+    }
+
+    @Override
+    public int getK() {
+        return 2;
+    }
+
+    @Override
+    public int getEta1() {
+        return 3;
+    }
+
+    @Override
+    public int getDu() {
+        return 10;
+    }
+
+    @Override
+    public int getDv() {
+        return 4;
+    }
+
+    @Override
+    public void compressPoly(short[] a, int aOff, byte[] r, int rOff) {
+        Poly.compressPoly4(a, aOff, r, rOff);
+    }
+
+    @Override
+    public void decompressPoly(byte[] a, int aOff, short[] r, int rOff) {
+        Poly.decompressPoly4(a, aOff, r, rOff);
+    }
+
+    @Override
+    public void compressPolyVector(PolyVector a, byte[] r, int rOff) {
+        Poly.compressPolyVector10(a.getCoeffs(), 2, r, rOff);
+    }
+
+    @Override
+    public void decompressPolyVector(byte[] a, int aOff, PolyVector r) {
+        Poly.decompressPolyVector10(a, aOff, 2, r.getCoeffs());
+    }
+
+    @Override
+    public void getNoisePolyEta1(byte[] seed, byte nonce, short[] r, int rOff) {
+        Poly.getNoisePolyEta3(getSymmetric(), seed, nonce, r, rOff);
+    }
+}
@@ -0,0 +1,61 @@
+package com.swiftcryptollc.crypto.provider.kyber;
+
+/**
+ * Kyber-768 parameters
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class Kyber768ParameterSet extends KyberParameterSet {
+
+    public final static Kyber768ParameterSet INSTANCE = new Kyber768ParameterSet(KyberSymmetric.SHAKE);
+    public final static Kyber768ParameterSet INSTANCE_90S = new Kyber768ParameterSet(KyberSymmetric.AES);
+
+    private Kyber768ParameterSet(KyberSymmetric symmetric) {
+        super(symmetric);
+    }
+
+    @Override
+    public int getK() {
+        return 3;
+    }
+
+    @Override
+    public int getEta1() {
+        return 2;
+    }
+
+    @Override
+    public int getDu() {
+        return 10;
+    }
+
+    @Override
+    public int getDv() {
+        return 4;
+    }
+
+    @Override
+    public void compressPoly(short[] a, int aOff, byte[] r, int rOff) {
+        Poly.compressPoly4(a, aOff, r, rOff);
+    }
+
+    @Override
+    public void decompressPoly(byte[] a, int aOff, short[] r, int rOff) {
+        Poly.decompressPoly4(a, aOff, r, rOff);
+    }
+
+    @Override
+    public void compressPolyVector(PolyVector a, byte[] r, int rOff) {
+        Poly.compressPolyVector10(a.getCoeffs(), 3, r, rOff);
+    }
+
+    @Override
+    public void decompressPolyVector(byte[] a, int aOff, PolyVector r) {
+        Poly.decompressPolyVector10(a, aOff, 3, r.getCoeffs());
+    }
+
+    @Override
+    public void getNoisePolyEta1(byte[] seed, byte nonce, short[] r, int rOff) {
+        Poly.getNoisePolyEta2(getSymmetric(), seed, nonce, r, rOff);
+    }
+}
@@ -0,0 +1,129 @@
+package com.swiftcryptollc.crypto.provider.kyber;
+
+/**
+ * Arithmetic kernels used by the Kyber polynomial code
+ *
+ * Poly and Indcpa call these through the backend chosen by
+ * {@link Arithmetic}, so the scalar and packed implementations can live side
+ * by side. Polynomials are 256 coefficients starting at an offset in a short
+ * array (see {@link PolyVector}). Every implementation must produce exactly
+ * the same output as {@link ScalarArithmetic}.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public interface KyberArithmetic {
+
+    /**
+     * @return the backend name used for selection and metrics
+     */
+    public String getName();
+
+    /**
+     * In-place forward NTT of the polynomial starting at off
+     *
+     * @param r
+     * @param off
+     */
+    public void ntt(short[] r, int off);
+
+    /**
+     * In-place inverse NTT of the polynomial starting at off, multiplied by
+     * the Montgomery factor 2^16
+     *
+     * @param r
+     * @param off
+     */
+    public void invNTT(short[] r, int off);
+
+    /**
+     * Multiply two polynomials in the NTT domain and either store or add the
+     * product into r
+     *
+     * @param a
+     * @param aOff
+     * @param b
+     * @param bOff
+     * @param r
+     * @param rOff
+     * @param accumulate
+     */
+    public void baseMulMont(short[] a, int aOff, short[] b, int bOff, short[] r, int rOff, boolean accumulate);
+
+    /**
+     * Barrett reduce len coefficients starting at off
+     *
+     * @param r
+     * @param off
+     * @param len
+     */
+    public void reduce(short[] r, int off, int len);
+
+    /**
+     * Conditionally subtract Q from len coefficients starting at off
+     *
+     * @param r
+     * @param off
+     * @param len
+     */
+    public void conditionalSubQ(short[] r, int off, int len);
+
+    /**
+     * Add len coefficients of b to a
+     *
+     * @param a
+     * @param aOff
+     * @param b
+     * @param bOff
+     * @param len
+     */
+    public void add(short[] a, int aOff, short[] b, int bOff, int len);
+
+    /**
+     * Subtract len coefficients of b from a
+     *
+     * @param a
+     * @param aOff
+     * @param b
+     * @param bOff
+     * @param len
+     */
+    public void sub(short[] a, int aOff, short[] b, int bOff, int len);
+
+    /**
+     * Compress and serialize len coefficients in [0, Q) with bits (4, 5, 10
+     * or 11) bits per coefficient
+     *
+     * @param a
+     * @param aOff
+     * @param len
+     * @param bits
+     * @param r
+     * @param rOff
+     */
+    public void compress(short[] a, int aOff, int len, int bits, byte[] r, int rOff);
+
+    /**
+     * Centered binomial sampling of one polynomial from eta * 64 bytes of
+     * buf (eta is 2 or 3)
+     *
+     * @param buf
+     * @param eta
+     * @param r
+     * @param rOff
+     */
+    public void cbd(byte[] buf, int eta, short[] r, int rOff);
+
+    /**
+     * Rejection sample up to len coefficients modulo Q from bufLen bytes of
+     * buf starting at bufOff
+     *
+     * @param buf
+     * @param bufOff
+     * @param bufLen
+     * @param r
+     * @param rOff
+     * @param len
+     * @return the number of coefficients written
+     */
+    public int rejectionSample(byte[] buf, int bufOff, int bufLen, short[] r, int rOff, int len);
+}
@@ -0,0 +1,195 @@
+package com.swiftcryptollc.crypto.provider.kyber;
+
+/**
+ * Immutable description of a Kyber parameter set.
+ *
+ * Each security level is a separate final subclass returning constants, so
+ * once a call site has seen its receiver type the JIT can fold the loop bounds
+ * and pick the specialised compression and noise routines without a runtime
+ * switch on K.
+ *
+ * Every subclass has an INSTANCE for standard Kyber and an INSTANCE_90S for
+ * Kyber-90s, which differ only in their {@link KyberSymmetric} primitives.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public abstract class KyberParameterSet {
+
+    private final KyberSymmetric symmetric;
+
+    /**
+     * @param symmetric the symmetric primitives of the variant
+     */
+    protected KyberParameterSet(KyberSymmetric symmetric) {
+        this.symmetric = symmetric;
+    }
+
+    /**
+     * @return the hashes, KDF, XOF and PRF of this variant
+     */
+    public final KyberSymmetric getSymmetric() {
+        return symmetric;
+    }
+
+    /**
+     * @return the module rank K
+     */
+    public abstract int getK();
+
+    /**
+     * @return the noise parameter used for the secret and key noise vectors
+     */
+    public abstract int getEta1();
+
+    /**
+     * @return the noise parameter used for the encryption noise
+     */
+    public final int getEta2() {
+        return 2;
+    }
+
+    /**
+     * @return the number of bits per coefficient of the compressed vector u
+     */
+    public abstract int getDu();
+
+    /**
+     * @return the number of bits per coefficient of the compressed polynomial v
+     */
+    public abstract int getDv();
+
+    /**
+     * @return the byte length of a serialized polynomial vector
+     */
+    public final int getPolyVectorBytes() {
+        return getK() * KyberParams.paramsPolyBytes;
+    }
+
+    /**
+     * @return the byte length of a compressed polynomial
+     */
+    public final int getPolyCompressedBytes() {
+        return getDv() * KyberParams.paramsN / 8;
+    }
+
+    /**
+     * @return the byte length of a compressed polynomial vector
+     */
+    public final int getPolyVectorCompressedBytes() {
+        return getK() * getDu() * KyberParams.paramsN / 8;
+    }
+
+    /**
+     * @return the byte length of an IND-CPA public key
+     */
+    public final int getIndcpaPublicKeyBytes() {
+        return getPolyVectorBytes() + KyberParams.paramsSymBytes;
+    }
+
+    /**
+     * @return the byte length of an IND-CPA secret key
+     */
+    public final int getIndcpaSecretKeyBytes() {
+        return getPolyVectorBytes();
+    }
+
+    /**
+     * @return the byte length of a KEM public key
+     */
+    public final int getPublicKeyBytes() {
+        return getIndcpaPublicKeyBytes();
+    }
+
+    /**
+     * @return the byte length of a KEM private key
+     */
+    public final int getPrivateKeyBytes() {
+        return getIndcpaSecretKeyBytes() + getIndcpaPublicKeyBytes() + 2 * KyberParams.paramsSymBytes;
+    }
+
+    /**
+     * @return the byte length of a cipher text
+     */
+    public final int getCipherTextBytes() {
+        return getPolyVectorCompressedBytes() + getPolyCompressedBytes();
+    }
+
+    /**
+     * Compress and serialize the polynomial v using dv bits per coefficient
+     *
+     * @param a
+     * @param aOff
+     * @param r
+     * @param rOff
+     */
+    public abstract void compressPoly(short[] a, int aOff, byte[] r, int rOff);
+
+    /**
+     * De-serialize and decompress the polynomial v
+     *
+     * @param a
+     * @param aOff
+     * @param r
+     * @param rOff
+     */
+    public abstract void decompressPoly(byte[] a, int aOff, short[] r, int rOff);
+
+    /**
+     * Compress and serialize the vector u using du bits per coefficient
+     *
+     * @param a
+     * @param r
+     * @param rOff
+     */
+    public abstract void compressPolyVector(PolyVector a, byte[] r, int rOff);
+
+    /**
+     * De-serialize and decompress the vector u
+     *
+     * @param a
+     * @param aOff
+     * @param r
+     */
+    public abstract void decompressPolyVector(byte[] a, int aOff, PolyVector r);
+
+    /**
+     * Sample a noise polynomial with parameter eta1
+     *
+     * @param seed
+     * @param nonce
+     * @param r
+     * @param rOff
+     */
+    public abstract void getNoisePolyEta1(byte[] seed, byte nonce, short[] r, int rOff);
+
+    /**
+     * Sample a noise polynomial with parameter eta2
+     *
+     * @param seed
+     * @param nonce
+     * @param r
+     * @param rOff
+     */
+    public final void getNoisePolyEta2(byte[] seed, byte nonce, short[] r, int rOff) {
+        Poly.getNoisePolyEta2(symmetric, seed, nonce, r, rOff);
+    }
+
+    /**
+     * Look up the parameter set for the given module rank
+     *
+     * @param paramsK
+     * @return
+     */
+    public static KyberParameterSet forK(int paramsK) {
+        switch (paramsK) {
+            case 2:
+                return Kyber512ParameterSet.INSTANCE;
+            case 3:
+                return Kyber768ParameterSet.INSTANCE;
+            case 4:
+                return Kyber1024ParameterSet.INSTANCE;
+            default:
+                throw new IllegalArgumentException("Unsupported paramsK " + paramsK);
+        }
+    }
+}
@@ -14,6 +14,8 @@ public final class KyberParams {
     public final static int paramsQinv = 62209;
     public final static int paramsSymBytes = 32;
     public final static int paramsPolyBytes = 384;
+    public final static int paramsXofBlockBytes = 168;
+    public final static int paramsGenMatrixNBlocks = 3;
     public final static int paramsETAK512 = 3;
     public final static int paramsETAK768K1024 = 2;
     public final static int paramsPolyvecBytesK512 = 2 * paramsPolyBytes;
@@ -0,0 +1,271 @@
+package com.swiftcryptollc.crypto.provider.kyber;
+
+import com.github.aelstad.keccakj.core.KeccakSponge;
+import com.github.aelstad.keccakj.fips202.Shake128;
+import com.github.aelstad.keccakj.fips202.Shake256;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.ProviderException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The symmetric primitives of a Kyber variant: the hashes H and G, the KDF,
+ * the XOF that expands the matrix seed and the PRF that samples the noise.
+ *
+ * {@link #SHAKE} is standard Kyber (SHA3 and SHAKE). {@link #AES} is Kyber-90s
+ * (SHA-256, SHA-512 and AES-256-CTR), which goes through the JDK's
+ * MessageDigest and Cipher implementations and so runs on the AES and SHA
+ * intrinsics where the CPU has them.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public abstract class KyberSymmetric {
+
+    public static final KyberSymmetric SHAKE = new Shake();
+    public static final KyberSymmetric AES = new Aes();
+
+    private KyberSymmetric() {
+    }
+
+    /**
+     * @return the MessageDigest algorithm of H (32 bytes)
+     */
+    public abstract String getHashH();
+
+    /**
+     * @return the MessageDigest algorithm of G (64 bytes)
+     */
+    public abstract String getHashG();
+
+    /**
+     * @return the output block size of the XOF in bytes
+     */
+    public abstract int getXofBlockBytes();
+
+    /**
+     * @return the number of XOF blocks squeezed up front for each matrix
+     * polynomial
+     */
+    public final int getGenMatrixNBlocks() {
+        return (12 * KyberParams.paramsN / 8 * (1 << 12) / KyberParams.paramsQ + getXofBlockBytes()) / getXofBlockBytes();
+    }
+
+    /**
+     * @return a new XOF for matrix expansion, only to be used by one thread
+     */
+    public abstract Xof newXof();
+
+    /**
+     * Fill out with the PRF output for the given key and nonce
+     *
+     * @param key
+     * @param nonce
+     * @param out
+     */
+    public abstract void prf(byte[] key, byte nonce, byte[] out);
+
+    /**
+     * @return a sponge for {@link #kdf}, or null if the KDF is not a sponge
+     */
+    public abstract KeccakSponge newKdf();
+
+    /**
+     * Derive the shared secret from the KDF input
+     *
+     * @param in
+     * @param sponge the sponge from {@link #newKdf()}, left positioned after
+     * the output so more key material can be squeezed from it
+     * @param out
+     */
+    public abstract void kdf(byte[] in, KeccakSponge sponge, byte[] out);
+
+    /**
+     * @return true for Kyber-90s
+     */
+    public final boolean is90s() {
+        return this == AES;
+    }
+
+    /**
+     * Matrix expansion XOF
+     */
+    public abstract static class Xof {
+
+        /**
+         * Start over with the seed and the two matrix indices
+         *
+         * @param seed
+         * @param x
+         * @param y
+         */
+        public abstract void absorb(byte[] seed, byte x, byte y);
+
+        /**
+         * @param out
+         * @param off
+         * @param len
+         */
+        public abstract void squeeze(byte[] out, int off, int len);
+    }
+
+    private static final class Shake extends KyberSymmetric {
+
+        @Override
+        public String getHashH() {
+            return "SHA3-256";
+        }
+
+        @Override
+        public String getHashG() {
+            return "SHA3-512";
+        }
+
+        @Override
+        public int getXofBlockBytes() {
+            return KyberParams.paramsXofBlockBytes;
+        }
+
+        @Override
+        public Xof newXof() {
+            return new Xof() {
+                private final KeccakSponge xof = new Shake128();
+                private final byte[] ij = new byte[2];
+
+                @Override
+                public void absorb(byte[] seed, byte x, byte y) {
+                    xof.reset();
+                    xof.getAbsorbStream().write(seed);
+                    ij[0] = x;
+                    ij[1] = y;
+                    xof.getAbsorbStream().write(ij);
+                }
+
+                @Override
+                public void squeeze(byte[] out, int off, int len) {
+                    xof.getSqueezeStream().read(out, off, len);
+                }
+            };
+        }
+
+        @Override
+        public void prf(byte[] key, byte nonce, byte[] out) {
+            KeccakSponge xof = new Shake256();
+            xof.getAbsorbStream().write(key);
+            xof.getAbsorbStream().write(nonce);
+            xof.getSqueezeStream().read(out);
+        }
+
+        @Override
+        public KeccakSponge newKdf() {
+            return new Shake256();
+        }
+
+        @Override
+        public void kdf(byte[] in, KeccakSponge sponge, byte[] out) {
+            sponge.getAbsorbStream().write(in);
+            sponge.getSqueezeStream().read(out);
+        }
+    }
+
+    /**
+     * AES-256-CTR with the seed as the key and a 12-byte nonce followed by a
+     * 32-bit big endian block counter from 0, as in the Kyber-90s reference
+     * code
+     */
+    private static final class Aes extends KyberSymmetric {
+
+        private static final int BLOCK_BYTES = 64;
+
+        // Cipher objects are not thread safe and are expensive to look up, so
+        // each thread keeps one
+        private static final ThreadLocal<Cipher> CTR = ThreadLocal.withInitial(Aes::newCtr);
+
+        @Override
+        public String getHashH() {
+            return "SHA-256";
+        }
+
+        @Override
+        public String getHashG() {
+            return "SHA-512";
+        }
+
+        @Override
+        public int getXofBlockBytes() {
+            return BLOCK_BYTES;
+        }
+
+        @Override
+        public Xof newXof() {
+            return new Xof() {
+                private final Cipher cipher = newCtr();
+                private byte[] zeros = new byte[0];
+
+                @Override
+                public void absorb(byte[] seed, byte x, byte y) {
+                    init(cipher, seed, x, y);
+                }
+
+                @Override
+                public void squeeze(byte[] out, int off, int len) {
+                    if (zeros.length < len) {
+                        zeros = new byte[len];
+                    }
+                    keyStream(cipher, zeros, out, off, len);
+                }
+            };
+        }
+
+        @Override
+        public void prf(byte[] key, byte nonce, byte[] out) {
+            Cipher cipher = CTR.get();
+            init(cipher, key, nonce, (byte) 0);
+            keyStream(cipher, new byte[out.length], out, 0, out.length);
+        }
+
+        @Override
+        public KeccakSponge newKdf() {
+            return null;
+        }
+
+        @Override
+        public void kdf(byte[] in, KeccakSponge sponge, byte[] out) {
+            try {
+                MessageDigest md = MessageDigest.getInstance("SHA-256");
+                md.update(in);
+                md.digest(out, 0, out.length);
+            } catch (GeneralSecurityException ex) {
+                throw new ProviderException(ex);
+            }
+        }
+
+        private static Cipher newCtr() {
+            try {
+                return Cipher.getInstance("AES/CTR/NoPadding");
+            } catch (GeneralSecurityException ex) {
+                throw new ProviderException("AES/CTR is not available", ex);
+            }
+        }
+
+        private static void init(Cipher cipher, byte[] key, byte n0, byte n1) {
+            byte[] iv = new byte[16];
+            iv[0] = n0;
+            iv[1] = n1;
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, 0, 32, "AES"), new IvParameterSpec(iv));
+            } catch (GeneralSecurityException ex) {
+                throw new ProviderException(ex);
+            }
+        }
+
+        private static void keyStream(Cipher cipher, byte[] zeros, byte[] out, int off, int len) {
+            try {
+                cipher.update(zeros, 0, len, out, off);
+            } catch (GeneralSecurityException ex) {
+                throw new ProviderException(ex);
+            }
+        }
+    }
+}
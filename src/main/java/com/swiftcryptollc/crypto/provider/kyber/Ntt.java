@@ -43,16 +43,17 @@ public final class Ntt {
     }
 
     /**
-     * Perform an in-place number-theoretic transform (NTT)
+     * Perform an in-place number-theoretic transform (NTT) of the polynomial
+     * starting at off
      *
      * Input is in standard order
      *
      * Output is in bit-reversed order
      *
      * @param r
-     * @return
+     * @param off
      */
-    public static short[] ntt(short[] r) {
+    public static void ntt(short[] r, int off) {
         int j = 0;
         int k = 1;
         for (int l = 128; l >= 2; l >>= 1) {
@@ -60,27 +61,26 @@ public final class Ntt {
                 short zeta = Ntt.nttZetas[k];
                 k = k + 1;
                 for (j = start; j < start + l; j++) {
-                    short t = Ntt.modQMulMont(zeta, r[j + l]);
-                    r[j + l] = (short) (r[j] - t);
-                    r[j] = (short) (r[j] + t);
+                    short t = Ntt.modQMulMont(zeta, r[off + j + l]);
+                    r[off + j + l] = (short) (r[off + j] - t);
+                    r[off + j] = (short) (r[off + j] + t);
                 }
             }
         }
-
-        return r;
     }
 
     /**
-     * Perform an in-place inverse number-theoretic transform (NTT)
+     * Perform an in-place inverse number-theoretic transform (NTT) of the
+     * polynomial starting at off
      *
      * Input is in bit-reversed order
      *
      * Output is in standard order
      *
      * @param r
-     * @return
+     * @param off
      */
-    public static short[] invNTT(short[] r) {
+    public static void invNTT(short[] r, int off) {
         int j = 0;
         int k = 0;
         for (int l = 2; l <= 128; l <<= 1) {
@@ -88,17 +88,16 @@ public final class Ntt {
                 short zeta = Ntt.nttZetasInv[k];
                 k = k + 1;
                 for (j = start; j < start + l; j++) {
-                    short t = r[j];
-                    r[j] = ByteOps.barrettReduce((short) (t + r[j + l]));
-                    r[j + l] = (short) (t - r[j + l]);
-                    r[j + l] = modQMulMont(zeta, r[j + l]);
+                    short t = r[off + j];
+                    r[off + j] = ByteOps.barrettReduce((short) (t + r[off + j + l]));
+                    r[off + j + l] = (short) (t - r[off + j + l]);
+                    r[off + j + l] = modQMulMont(zeta, r[off + j + l]);
                 }
             }
         }
         for (j = 0; j < 256; j++) {
-            r[j] = Ntt.modQMulMont(r[j], nttZetasInv[127]);
+            r[off + j] = Ntt.modQMulMont(r[off + j], nttZetasInv[127]);
         }
-        return r;
     }
 
     /**
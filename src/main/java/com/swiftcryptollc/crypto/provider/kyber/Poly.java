@@ -1,171 +1,188 @@
 package com.swiftcryptollc.crypto.provider.kyber;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 
 /**
  * Polynomial and Polynomial Vector Utility class
  *
+ * A polynomial is 256 coefficients starting at an offset in a short array. A
+ * polynomial vector is K polynomials stored back to back in a short[K * 256]
+ * (see {@link PolyVector}), so the element-wise vector operations are a single
+ * pass over the whole array. The arithmetic itself is done by the
+ * {@link KyberArithmetic} backend chosen in {@link Arithmetic}.
+ *
  * @author Steven K Fisher <swiftcryptollc@gmail.com>
  */
 public final class Poly {
 
-    protected short[] poly = new short[KyberParams.paramsPolyBytes];
-    protected short[][] polyvec;
+    private final static KyberArithmetic arithmetic = Arithmetic.BACKEND;
 
     /**
-     * Performs lossy compression and serialization of a polynomial
+     * Performs lossy compression and serialization of a polynomial using 4
+     * bits per coefficient (Kyber-512 and Kyber-768)
      *
-     * @param polyA
-     * @param paramsK
-     * @return
+     * @param a
+     * @param aOff
+     * @param r
+     * @param rOff
      */
-    public static byte[] compressPoly(short[] polyA, int paramsK) {
-        byte[] t = new byte[8];
-        polyA = Poly.polyConditionalSubQ(polyA);
-        int rr = 0;
-        byte[] r;
-        switch (paramsK) {
-            case 2:
-            case 3:
-                r = new byte[KyberParams.paramsPolyCompressedBytesK768];
-                for (int i = 0; i < KyberParams.paramsN / 8; i++) {
-                    for (int j = 0; j < 8; j++) {
-                        t[j] = (byte) (((((polyA[8 * i + j]) << 4) + (KyberParams.paramsQ / 2)) / (KyberParams.paramsQ)) & 15);
-                    }
-                    r[rr + 0] = (byte) (t[0] | (t[1] << 4));
-                    r[rr + 1] = (byte) (t[2] | (t[3] << 4));
-                    r[rr + 2] = (byte) (t[4] | (t[5] << 4));
-                    r[rr + 3] = (byte) (t[6] | (t[7] << 4));
-                    rr = rr + 4;
-                }
-                break;
-            default:
-                r = new byte[KyberParams.paramsPolyCompressedBytesK1024];
-                for (int i = 0; i < KyberParams.paramsN / 8; i++) {
-                    for (int j = 0; j < 8; j++) {
-                        t[j] = (byte) (((((polyA[8 * i + j]) << 5) + (KyberParams.paramsQ / 2)) / (KyberParams.paramsQ)) & 31);
-                    }
-                    r[rr + 0] = (byte) ((t[0] >> 0) | (t[1] << 5));
-                    r[rr + 1] = (byte) ((t[1] >> 3) | (t[2] << 2) | (t[3] << 7));
-                    r[rr + 2] = (byte) ((t[3] >> 1) | (t[4] << 4));
-                    r[rr + 3] = (byte) ((t[4] >> 4) | (t[5] << 1) | (t[6] << 6));
-                    r[rr + 4] = (byte) ((t[6] >> 2) | (t[7] << 3));
-                    rr = rr + 5;
-                }
-        }
+    public static void compressPoly4(short[] a, int aOff, byte[] r, int rOff) {
+        Poly.polyConditionalSubQ(a, aOff, KyberParams.paramsN);
+        arithmetic.compress(a, aOff, KyberParams.paramsN, 4, r, rOff);
+    }
 
-        return r;
+    /**
+     * Performs lossy compression and serialization of a polynomial using 5
+     * bits per coefficient (Kyber-1024)
+     *
+     * @param a
+     * @param aOff
+     * @param r
+     * @param rOff
+     */
+    public static void compressPoly5(short[] a, int aOff, byte[] r, int rOff) {
+        Poly.polyConditionalSubQ(a, aOff, KyberParams.paramsN);
+        arithmetic.compress(a, aOff, KyberParams.paramsN, 5, r, rOff);
     }
 
     /**
-     * De-serialize and decompress a polynomial
+     * De-serialize and decompress a polynomial compressed with 4 bits per
+     * coefficient
      *
      * Compression is lossy so the resulting polynomial will not match the
      * original polynomial
      *
      * @param a
-     * @param paramsK
-     * @return
+     * @param aOff
+     * @param r
+     * @param rOff
+     */
+    public static void decompressPoly4(byte[] a, int aOff, short[] r, int rOff) {
+        int aa = aOff;
+        for (int i = 0; i < KyberParams.paramsN / 2; i++) {
+            r[rOff + 2 * i + 0] = (short) (((((int) (a[aa] & 0xFF) & 15) * KyberParams.paramsQ) + 8) >> 4);
+            r[rOff + 2 * i + 1] = (short) (((((int) (a[aa] & 0xFF) >> 4) * KyberParams.paramsQ) + 8) >> 4);
+            aa = aa + 1;
+        }
+    }
+
+    /**
+     * De-serialize and decompress a polynomial compressed with 5 bits per
+     * coefficient
+     *
+     * Compression is lossy so the resulting polynomial will not match the
+     * original polynomial
+     *
+     * @param a
+     * @param aOff
+     * @param r
+     * @param rOff
      */
-    public static short[] decompressPoly(byte[] a, int paramsK) {
-        short[] r = new short[KyberParams.paramsPolyBytes];
-        int aa = 0;
-        switch (paramsK) {
-            case 2:
-            case 3:
-                for (int i = 0; i < KyberParams.paramsN / 2; i++) {
-                    r[2 * i + 0] = (short) (((((int) (a[aa] & 0xFF) & 15) * KyberParams.paramsQ) + 8) >> 4);
-                    r[2 * i + 1] = (short) (((((int) (a[aa] & 0xFF) >> 4) * KyberParams.paramsQ) + 8) >> 4);
-                    aa = aa + 1;
-                }
-                break;
-            default:
-                long[] t = new long[8];
-                for (int i = 0; i < KyberParams.paramsN / 8; i++) {
-                    t[0] = (long) ((int) (a[aa + 0] & 0xFF) >> 0) & 0xFF;
-                    t[1] = (long) ((byte) (((int) (a[aa + 0] & 0xFF) >> 5)) | (byte) ((int) (a[aa + 1] & 0xFF) << 3)) & 0xFF;
-                    t[2] = (long) ((int) (a[aa + 1] & 0xFF) >> 2) & 0xFF;
-                    t[3] = (long) ((byte) (((int) (a[aa + 1] & 0xFF) >> 7)) | (byte) ((int) (a[aa + 2] & 0xFF) << 1)) & 0xFF;
-                    t[4] = (long) ((byte) (((int) (a[aa + 2] & 0xFF) >> 4)) | (byte) ((int) (a[aa + 3] & 0xFF) << 4)) & 0xFF;
-                    t[5] = (long) ((int) (a[aa + 3] & 0xFF) >> 1) & 0xFF;
-                    t[6] = (long) ((byte) (((int) (a[aa + 3] & 0xFF) >> 6)) | (byte) ((int) (a[aa + 4] & 0xFF) << 2)) & 0xFF;
-                    t[7] = ((long) ((int) (a[aa + 4] & 0xFF) >> 3)) & 0xFF;
-                    aa = aa + 5;
-                    for (int j = 0; j < 8; j++) {
-                        r[8 * i + j] = (short) ((((long) (t[j] & 31) * (KyberParams.paramsQ)) + 16) >> 5);
-                    }
-                }
+    public static void decompressPoly5(byte[] a, int aOff, short[] r, int rOff) {
+        int aa = aOff;
+        long[] t = new long[8];
+        for (int i = 0; i < KyberParams.paramsN / 8; i++) {
+            t[0] = (long) ((int) (a[aa + 0] & 0xFF) >> 0) & 0xFF;
+            t[1] = (long) ((byte) (((int) (a[aa + 0] & 0xFF) >> 5)) | (byte) ((int) (a[aa + 1] & 0xFF) << 3)) & 0xFF;
+            t[2] = (long) ((int) (a[aa + 1] & 0xFF) >> 2) & 0xFF;
+            t[3] = (long) ((byte) (((int) (a[aa + 1] & 0xFF) >> 7)) | (byte) ((int) (a[aa + 2] & 0xFF) << 1)) & 0xFF;
+            t[4] = (long) ((byte) (((int) (a[aa + 2] & 0xFF) >> 4)) | (byte) ((int) (a[aa + 3] & 0xFF) << 4)) & 0xFF;
+            t[5] = (long) ((int) (a[aa + 3] & 0xFF) >> 1) & 0xFF;
+            t[6] = (long) ((byte) (((int) (a[aa + 3] & 0xFF) >> 6)) | (byte) ((int) (a[aa + 4] & 0xFF) << 2)) & 0xFF;
+            t[7] = ((long) ((int) (a[aa + 4] & 0xFF) >> 3)) & 0xFF;
+            aa = aa + 5;
+            for (int j = 0; j < 8; j++) {
+                r[rOff + 8 * i + j] = (short) ((((long) (t[j] & 31) * (KyberParams.paramsQ)) + 16) >> 5);
+            }
         }
-        return r;
     }
 
     /**
      * Serialize a polynomial in to an array of bytes
      *
      * @param a
-     * @return
+     * @param aOff
+     * @param r
+     * @param rOff
      */
-    public static byte[] polyToBytes(short[] a) {
+    public static void polyToBytes(short[] a, int aOff, byte[] r, int rOff) {
         int t0, t1;
-        byte[] r = new byte[KyberParams.paramsPolyBytes];
-        a = Poly.polyConditionalSubQ(a);
+        Poly.polyConditionalSubQ(a, aOff, KyberParams.paramsN);
         for (int i = 0; i < KyberParams.paramsN / 2; i++) {
-            t0 = ((int) (a[2 * i] & 0xFFFF));
-            t1 = ((int) (a[2 * i + 1]) & 0xFFFF);
-            r[3 * i + 0] = (byte) (t0 >> 0);
-            r[3 * i + 1] = (byte) ((int) (t0 >> 8) | (int) (t1 << 4));
-            r[3 * i + 2] = (byte) (t1 >> 4);
+            t0 = ((int) (a[aOff + 2 * i] & 0xFFFF));
+            t1 = ((int) (a[aOff + 2 * i + 1]) & 0xFFFF);
+            r[rOff + 3 * i + 0] = (byte) (t0 >> 0);
+            r[rOff + 3 * i + 1] = (byte) ((int) (t0 >> 8) | (int) (t1 << 4));
+            r[rOff + 3 * i + 2] = (byte) (t1 >> 4);
         }
-        return r;
     }
 
     /**
      * De-serialize a byte array into a polynomial
      *
      * @param a
-     * @return
+     * @param aOff
+     * @param r
+     * @param rOff
      */
-    public static short[] polyFromBytes(byte[] a) {
-        short[] r = new short[KyberParams.paramsPolyBytes];
+    public static void polyFromBytes(byte[] a, int aOff, short[] r, int rOff) {
         for (int i = 0; i < KyberParams.paramsN / 2; i++) {
-            r[2 * i] = (short) ((((a[3 * i + 0] & 0xFF) >> 0) | ((a[3 * i + 1] & 0xFF) << 8)) & 0xFFF);
-            r[2 * i + 1] = (short) ((((a[3 * i + 1] & 0xFF) >> 4) | ((a[3 * i + 2] & 0xFF) << 4)) & 0xFFF);
+            r[rOff + 2 * i] = (short) ((((a[aOff + 3 * i + 0] & 0xFF) >> 0) | ((a[aOff + 3 * i + 1] & 0xFF) << 8)) & 0xFFF);
+            r[rOff + 2 * i + 1] = (short) ((((a[aOff + 3 * i + 1] & 0xFF) >> 4) | ((a[aOff + 3 * i + 2] & 0xFF) << 4)) & 0xFFF);
+        }
+    }
+
+    /**
+     * De-serialize a polynomial straight from a (possibly direct) buffer,
+     * using absolute reads so the buffer position is left alone
+     *
+     * @param a
+     * @param aOff
+     * @param r
+     * @param rOff
+     */
+    public static void polyFromBytes(ByteBuffer a, int aOff, short[] r, int rOff) {
+        for (int i = 0; i < KyberParams.paramsN / 2; i++) {
+            int a0 = a.get(aOff + 3 * i) & 0xFF;
+            int a1 = a.get(aOff + 3 * i + 1) & 0xFF;
+            int a2 = a.get(aOff + 3 * i + 2) & 0xFF;
+            r[rOff + 2 * i] = (short) ((a0 | (a1 << 8)) & 0xFFF);
+            r[rOff + 2 * i + 1] = (short) (((a1 >> 4) | (a2 << 4)) & 0xFFF);
         }
-        return r;
     }
 
     /**
      * Convert a 32-byte message to a polynomial
      *
      * @param msg
-     * @return
+     * @param r
+     * @param rOff
      */
-    public static short[] polyFromData(byte[] msg) {
-        short[] r = new short[KyberParams.paramsN];
+    public static void polyFromData(byte[] msg, short[] r, int rOff) {
         short mask;
         for (int i = 0; i < KyberParams.paramsN / 8; i++) {
             for (int j = 0; j < 8; j++) {
                 mask = (short) (-1 * (short) (((msg[i] & 0xFF) >> j) & 1));
-                r[8 * i + j] = (short) (mask & (short) ((KyberParams.paramsQ + 1) / 2));
+                r[rOff + 8 * i + j] = (short) (mask & (short) ((KyberParams.paramsQ + 1) / 2));
             }
         }
-        return r;
     }
 
     /**
      * Convert a polynomial to a 32-byte message
      *
      * @param a
+     * @param aOff
      * @return
      */
-    public static byte[] polyToMsg(short[] a) {
+    public static byte[] polyToMsg(short[] a, int aOff) {
         byte[] msg = new byte[KyberParams.paramsSymBytes];
         int t;
-        a = polyConditionalSubQ(a);
+        polyConditionalSubQ(a, aOff, KyberParams.paramsN);
         for (int i = 0; i < KyberParams.paramsN / 8; i++) {
             msg[i] = 0;
             for (int j = 0; j < 8; j++) {
-                t = (int) ((((((int) (a[8 * i + j])) << 1) + (KyberParams.paramsQ / 2)) / KyberParams.paramsQ) & 1);
+                t = (int) ((((((int) (a[aOff + 8 * i + j])) << 1) + (KyberParams.paramsQ / 2)) / KyberParams.paramsQ) & 1);
                 msg[i] = (byte) (msg[i] | (t << j));
             }
         }
@@ -173,28 +190,65 @@ public final class Poly {
     }
 
     /**
-     * Generate a deterministic noise polynomial from a seed and nonce
+     * Generate a deterministic noise polynomial from a seed and nonce with
+     * eta = 2
      *
      * The polynomial output will be close to a centered binomial distribution
      *
      * @param seed
      * @param nonce
-     * @param paramsK
-     * @return
+     * @param r
+     * @param rOff
      */
-    public static short[] getNoisePoly(byte[] seed, byte nonce, int paramsK) {
-        int l;
-        byte[] p;
-        switch (paramsK) {
-            case 2:
-                l = KyberParams.paramsETAK512 * KyberParams.paramsN / 4;
-                break;
-            default:
-                l = KyberParams.paramsETAK768K1024 * KyberParams.paramsN / 4;
-        }
+    public static void getNoisePolyEta2(byte[] seed, byte nonce, short[] r, int rOff) {
+        getNoisePolyEta2(KyberSymmetric.SHAKE, seed, nonce, r, rOff);
+    }
 
-        p = Indcpa.generatePRFByteArray(l, seed, nonce);
-        return ByteOps.generateCBDPoly(p, paramsK);
+    /**
+     * Generate a deterministic noise polynomial with eta = 2, using the PRF
+     * of the given symmetric primitives
+     *
+     * @param symmetric
+     * @param seed
+     * @param nonce
+     * @param r
+     * @param rOff
+     */
+    public static void getNoisePolyEta2(KyberSymmetric symmetric, byte[] seed, byte nonce, short[] r, int rOff) {
+        byte[] p = new byte[2 * KyberParams.paramsN / 4];
+        symmetric.prf(seed, nonce, p);
+        arithmetic.cbd(p, 2, r, rOff);
+    }
+
+    /**
+     * Generate a deterministic noise polynomial from a seed and nonce with
+     * eta = 3
+     *
+     * The polynomial output will be close to a centered binomial distribution
+     *
+     * @param seed
+     * @param nonce
+     * @param r
+     * @param rOff
+     */
+    public static void getNoisePolyEta3(byte[] seed, byte nonce, short[] r, int rOff) {
+        getNoisePolyEta3(KyberSymmetric.SHAKE, seed, nonce, r, rOff);
+    }
+
+    /**
+     * Generate a deterministic noise polynomial with eta = 3, using the PRF
+     * of the given symmetric primitives
+     *
+     * @param symmetric
+     * @param seed
+     * @param nonce
+     * @param r
+     * @param rOff
+     */
+    public static void getNoisePolyEta3(KyberSymmetric symmetric, byte[] seed, byte nonce, short[] r, int rOff) {
+        byte[] p = new byte[3 * KyberParams.paramsN / 4];
+        symmetric.prf(seed, nonce, p);
+        arithmetic.cbd(p, 3, r, rOff);
     }
 
     /**
@@ -206,10 +260,10 @@ public final class Poly {
      * Output is assumed bit-revered order
      *
      * @param r
-     * @return
+     * @param off
      */
-    public static short[] polyNTT(short[] r) {
-        return Ntt.ntt(r);
+    public static void polyNTT(short[] r, int off) {
+        arithmetic.ntt(r, off);
     }
 
     /**
@@ -221,269 +275,213 @@ public final class Poly {
      * Output is assumed normal order
      *
      * @param r
-     * @return
+     * @param off
      */
-    public static short[] polyInvNTTMont(short[] r) {
-        return Ntt.invNTT(r);
+    public static void polyInvNTTMont(short[] r, int off) {
+        arithmetic.invNTT(r, off);
     }
 
     /**
      * Multiply two polynomials in the number-theoretic transform (NTT) domain
+     * and either store or add the product into r
      *
-     * @param polyA
-     * @param polyB
-     * @return
+     * @param a
+     * @param aOff
+     * @param b
+     * @param bOff
+     * @param r
+     * @param rOff
+     * @param accumulate
      */
-    public static short[] polyBaseMulMont(short[] polyA, short[] polyB) {
-        for (int i = 0; i < KyberParams.paramsN / 4; i++) {
-            short[] rx = Ntt.baseMultiplier(
-                    polyA[4 * i + 0], polyA[4 * i + 1],
-                    polyB[4 * i + 0], polyB[4 * i + 1],
-                    (short) Ntt.nttZetas[64 + i]
-            );
-            short[] ry = Ntt.baseMultiplier(
-                    polyA[4 * i + 2], polyA[4 * i + 3],
-                    polyB[4 * i + 2], polyB[4 * i + 3],
-                    (short) (-1 * Ntt.nttZetas[64 + i])
-            );
-            polyA[4 * i + 0] = rx[0];
-            polyA[4 * i + 1] = rx[1];
-            polyA[4 * i + 2] = ry[0];
-            polyA[4 * i + 3] = ry[1];
-        }
-        return polyA;
+    public static void polyBaseMulMont(short[] a, int aOff, short[] b, int bOff, short[] r, int rOff, boolean accumulate) {
+        arithmetic.baseMulMont(a, aOff, b, bOff, r, rOff, accumulate);
     }
 
     /**
      * Performs an in-place conversion of all coefficients of a polynomial from
      * the normal domain to the Montgomery domain
      *
-     * @param polyR
-     * @return
+     * @param r
+     * @param off
      */
-    public static short[] polyToMont(short[] polyR) {
-        for (int i = 0; i < KyberParams.paramsN; i++) {
-            polyR[i] = ByteOps.montgomeryReduce((long) (polyR[i] * 1353));
+    public static void polyToMont(short[] r, int off) {
+        for (int i = off; i < off + KyberParams.paramsN; i++) {
+            r[i] = ByteOps.montgomeryReduce((long) (r[i] * 1353));
         }
-        return polyR;
     }
 
     /**
-     * Apply Barrett reduction to all coefficients of this polynomial
+     * Apply Barrett reduction to len coefficients starting at off
      *
      * @param r
-     * @return
+     * @param off
+     * @param len
      */
-    public static short[] polyReduce(short[] r) {
-        for (int i = 0; i < KyberParams.paramsN; i++) {
-            r[i] = ByteOps.barrettReduce(r[i]);
-        }
-        return r;
+    public static void polyReduce(short[] r, int off, int len) {
+        arithmetic.reduce(r, off, len);
     }
 
     /**
-     * Apply the conditional subtraction of Q (KyberParams) to each coefficient of a
- polynomial
+     * Apply the conditional subtraction of Q (KyberParams) to len coefficients
+     * starting at off
      *
      * @param r
-     * @return
+     * @param off
+     * @param len
      */
-    public static short[] polyConditionalSubQ(short[] r) {
-        for (int i = 0; i < KyberParams.paramsN; i++) {
-            r[i] = ByteOps.conditionalSubQ(r[i]);
-        }
-        return r;
+    public static void polyConditionalSubQ(short[] r, int off, int len) {
+        arithmetic.conditionalSubQ(r, off, len);
     }
 
     /**
-     * Add two polynomials
+     * Add len coefficients of b to a
      *
-     * @param polyA
-     * @param polyB
-     * @return
+     * @param a
+     * @param aOff
+     * @param b
+     * @param bOff
+     * @param len
      */
-    public static short[] polyAdd(short[] polyA, short[] polyB) {
-        for (int i = 0; i < KyberParams.paramsN; i++) {
-            polyA[i] = (short) (polyA[i] + polyB[i]);
-        }
-        return polyA;
+    public static void polyAdd(short[] a, int aOff, short[] b, int bOff, int len) {
+        arithmetic.add(a, aOff, b, bOff, len);
     }
 
     /**
-     * Subtract two polynomials
+     * Subtract len coefficients of b from a
      *
-     * @param polyA
-     * @param polyB
-     * @return
+     * @param a
+     * @param aOff
+     * @param b
+     * @param bOff
+     * @param len
      */
-    public static short[] polySub(short[] polyA, short[] polyB) {
-        for (int i = 0; i < KyberParams.paramsN; i++) {
-            polyA[i] = (short) (polyA[i] - polyB[i]);
-        }
-        return polyA;
+    public static void polySub(short[] a, int aOff, short[] b, int bOff, int len) {
+        arithmetic.sub(a, aOff, b, bOff, len);
     }
 
     /**
-     * Create a new Polynomial Vector
+     * Perform a lossly compression and serialization of a vector of polynomials
+     * using 10 bits per coefficient (Kyber-512 and Kyber-768)
      *
+     * @param a
      * @param paramsK
-     * @return
+     * @param r
+     * @param rOff
      */
-    public static short[][] generateNewPolyVector(int paramsK) {
-        short[][] pv = new short[paramsK][KyberParams.paramsPolyBytes];
-        return pv;
+    public static void compressPolyVector10(short[] a, int paramsK, byte[] r, int rOff) {
+        Poly.polyConditionalSubQ(a, 0, paramsK * KyberParams.paramsN);
+        arithmetic.compress(a, 0, paramsK * KyberParams.paramsN, 10, r, rOff);
     }
 
     /**
      * Perform a lossly compression and serialization of a vector of polynomials
+     * using 11 bits per coefficient (Kyber-1024)
      *
      * @param a
      * @param paramsK
-     * @return
+     * @param r
+     * @param rOff
      */
-    public static byte[] compressPolyVector(short[][] a, int paramsK) {
-        Poly.polyVectorCSubQ(a, paramsK);
-        int rr = 0;
-        byte[] r;
-        long[] t;
-        switch (paramsK) {
-            case 2:
-                r = new byte[KyberParams.paramsPolyvecCompressedBytesK512];
-                break;
-            case 3:
-                r = new byte[KyberParams.paramsPolyvecCompressedBytesK768];
-                break;
-            default:
-                r = new byte[KyberParams.paramsPolyvecCompressedBytesK1024];
-        }
+    public static void compressPolyVector11(short[] a, int paramsK, byte[] r, int rOff) {
+        Poly.polyConditionalSubQ(a, 0, paramsK * KyberParams.paramsN);
+        arithmetic.compress(a, 0, paramsK * KyberParams.paramsN, 11, r, rOff);
+    }
 
-        switch (paramsK) {
-            case 2:
-            case 3:
-                t = new long[4];
-                for (int i = 0; i < paramsK; i++) {
-                    for (int j = 0; j < KyberParams.paramsN / 4; j++) {
-                        for (int k = 0; k < 4; k++) {
-                            t[k] = ((long) (((long) ((long) (a[i][4 * j + k]) << 10) + (long) (KyberParams.paramsQ / 2)) / (long) (KyberParams.paramsQ)) & 0x3ff);
-                        }
-                        r[rr + 0] = (byte) (t[0] >> 0);
-                        r[rr + 1] = (byte) ((t[0] >> 8) | (t[1] << 2));
-                        r[rr + 2] = (byte) ((t[1] >> 6) | (t[2] << 4));
-                        r[rr + 3] = (byte) ((t[2] >> 4) | (t[3] << 6));
-                        r[rr + 4] = (byte) ((t[3] >> 2));
-                        rr = rr + 5;
-                    }
-                }
-                break;
-            default:
-                t = new long[8];
-                for (int i = 0; i < paramsK; i++) {
-                    for (int j = 0; j < KyberParams.paramsN / 8; j++) {
-                        for (int k = 0; k < 8; k++) {
-                            t[k] = ((long) (((long) ((long) (a[i][8 * j + k]) << 11) + (long) (KyberParams.paramsQ / 2)) / (long) (KyberParams.paramsQ)) & 0x7ff);
-                        }
-                        r[rr + 0] = (byte) ((t[0] >> 0));
-                        r[rr + 1] = (byte) ((t[0] >> 8) | (t[1] << 3));
-                        r[rr + 2] = (byte) ((t[1] >> 5) | (t[2] << 6));
-                        r[rr + 3] = (byte) ((t[2] >> 2));
-                        r[rr + 4] = (byte) ((t[2] >> 10) | (t[3] << 1));
-                        r[rr + 5] = (byte) ((t[3] >> 7) | (t[4] << 4));
-                        r[rr + 6] = (byte) ((t[4] >> 4) | (t[5] << 7));
-                        r[rr + 7] = (byte) ((t[5] >> 1));
-                        r[rr + 8] = (byte) ((t[5] >> 9) | (t[6] << 2));
-                        r[rr + 9] = (byte) ((t[6] >> 6) | (t[7] << 5));
-                        r[rr + 10] = (byte) ((t[7] >> 3));
-                        rr = rr + 11;
-                    }
-                }
+    /**
+     * De-serialize and decompress a vector of polynomials compressed with 10
+     * bits per coefficient
+     *
+     * Since the compress is lossy, the results will not be exactly the same as
+     * the original vector of polynomials
+     *
+     * @param a
+     * @param aOff
+     * @param paramsK
+     * @param r
+     */
+    public static void decompressPolyVector10(byte[] a, int aOff, int paramsK, short[] r) {
+        int aa = aOff;
+        int[] t = new int[4]; // has to be unsigned..
+        for (int i = 0; i < paramsK * KyberParams.paramsN; i += 4) {
+            t[0] = ((a[aa + 0] & 0xFF) >> 0) | ((a[aa + 1] & 0xFF) << 8);
+            t[1] = ((a[aa + 1] & 0xFF) >> 2) | ((a[aa + 2] & 0xFF) << 6);
+            t[2] = ((a[aa + 2] & 0xFF) >> 4) | ((a[aa + 3] & 0xFF) << 4);
+            t[3] = ((a[aa + 3] & 0xFF) >> 6) | ((a[aa + 4] & 0xFF) << 2);
+            aa = aa + 5;
+            for (int k = 0; k < 4; k++) {
+                r[i + k] = (short) (((long) (t[k] & 0x3FF) * (long) (KyberParams.paramsQ) + 512) >> 10);
+            }
         }
-        return r;
     }
 
     /**
-     * De-serialize and decompress a vector of polynomials
+     * De-serialize and decompress a vector of polynomials compressed with 11
+     * bits per coefficient
      *
      * Since the compress is lossy, the results will not be exactly the same as
      * the original vector of polynomials
      *
      * @param a
+     * @param aOff
      * @param paramsK
-     * @return
+     * @param r
      */
-    public static short[][] decompressPolyVector(byte[] a, int paramsK) {
-        short[][] r = new short[paramsK][KyberParams.paramsPolyBytes];
-        int aa = 0;
-        int[] t;
-        switch (paramsK) {
-            case 2:
-            case 3:
-                t = new int[4]; // has to be unsigned..
-                for (int i = 0; i < paramsK; i++) {
-                    for (int j = 0; j < (KyberParams.paramsN / 4); j++) {
-                        t[0] = ((a[aa + 0] & 0xFF) >> 0) | ((a[aa + 1] & 0xFF) << 8);
-                        t[1] = ((a[aa + 1] & 0xFF) >> 2) | ((a[aa + 2] & 0xFF) << 6);
-                        t[2] = ((a[aa + 2] & 0xFF) >> 4) | ((a[aa + 3] & 0xFF) << 4);
-                        t[3] = ((a[aa + 3] & 0xFF) >> 6) | ((a[aa + 4] & 0xFF) << 2);
-                        aa = aa + 5;
-                        for (int k = 0; k < 4; k++) {
-                            r[i][4 * j + k] = (short) (((long) (t[k] & 0x3FF) * (long) (KyberParams.paramsQ) + 512) >> 10);
-                        }
-                    }
-                }
-                break;
-            default:
-                t = new int[8]; // has to be unsigned..
-                for (int i = 0; i < paramsK; i++) {
-                    for (int j = 0; j < (KyberParams.paramsN / 8); j++) {
-                        t[0] = (((a[aa + 0] & 0xff) >> 0) | ((a[aa + 1] & 0xff) << 8));
-                        t[1] = (((a[aa + 1] & 0xff) >> 3) | ((a[aa + 2] & 0xff) << 5));
-                        t[2] = (((a[aa + 2] & 0xff) >> 6) | ((a[aa + 3] & 0xff) << 2) | ((a[aa + 4] & 0xff) << 10));
-                        t[3] = (((a[aa + 4] & 0xff) >> 1) | ((a[aa + 5] & 0xff) << 7));
-                        t[4] = (((a[aa + 5] & 0xff) >> 4) | ((a[aa + 6] & 0xff) << 4));
-                        t[5] = (((a[aa + 6] & 0xff) >> 7) | ((a[aa + 7] & 0xff) << 1) | ((a[aa + 8] & 0xff) << 9));
-                        t[6] = (((a[aa + 8] & 0xff) >> 2) | ((a[aa + 9] & 0xff) << 6));
-                        t[7] = (((a[aa + 9] & 0xff) >> 5) | ((a[aa + 10] & 0xff) << 3));
-                        aa = aa + 11;
-                        for (int k = 0; k < 8; k++) {
-                            r[i][8 * j + k] = (short) (((long) (t[k] & 0x7FF) * (long) (KyberParams.paramsQ) + 1024) >> 11);
-                        }
-                    }
-                }
+    public static void decompressPolyVector11(byte[] a, int aOff, int paramsK, short[] r) {
+        int aa = aOff;
+        int[] t = new int[8]; // has to be unsigned..
+        for (int i = 0; i < paramsK * KyberParams.paramsN; i += 8) {
+            t[0] = (((a[aa + 0] & 0xff) >> 0) | ((a[aa + 1] & 0xff) << 8));
+            t[1] = (((a[aa + 1] & 0xff) >> 3) | ((a[aa + 2] & 0xff) << 5));
+            t[2] = (((a[aa + 2] & 0xff) >> 6) | ((a[aa + 3] & 0xff) << 2) | ((a[aa + 4] & 0xff) << 10));
+            t[3] = (((a[aa + 4] & 0xff) >> 1) | ((a[aa + 5] & 0xff) << 7));
+            t[4] = (((a[aa + 5] & 0xff) >> 4) | ((a[aa + 6] & 0xff) << 4));
+            t[5] = (((a[aa + 6] & 0xff) >> 7) | ((a[aa + 7] & 0xff) << 1) | ((a[aa + 8] & 0xff) << 9));
+            t[6] = (((a[aa + 8] & 0xff) >> 2) | ((a[aa + 9] & 0xff) << 6));
+            t[7] = (((a[aa + 9] & 0xff) >> 5) | ((a[aa + 10] & 0xff) << 3));
+            aa = aa + 11;
+            for (int k = 0; k < 8; k++) {
+                r[i + k] = (short) (((long) (t[k] & 0x7FF) * (long) (KyberParams.paramsQ) + 1024) >> 11);
+            }
         }
-        return r;
     }
 
     /**
-     * Serialize a polynomial vector to a byte array
+     * Serialize a polynomial vector into a byte array
      *
-     * @param polyA
-     * @param paramsK
-     * @return
+     * @param a
+     * @param r
+     * @param rOff
      */
-    public static byte[] polyVectorToBytes(short[][] polyA, int paramsK) {
-        byte[] r = new byte[paramsK * KyberParams.paramsPolyBytes];
-        for (int i = 0; i < paramsK; i++) {
-            byte[] byteA = polyToBytes(polyA[i]);
-            System.arraycopy(byteA, 0, r, i * KyberParams.paramsPolyBytes, byteA.length);
+    public static void polyVectorToBytes(PolyVector a, byte[] r, int rOff) {
+        for (int i = 0; i < a.getK(); i++) {
+            polyToBytes(a.getCoeffs(), a.offset(i), r, rOff + i * KyberParams.paramsPolyBytes);
         }
-        return r;
     }
 
     /**
      * Deserialize a byte array into a polynomial vector
      *
-     * @param polyA
-     * @param paramsK
-     * @return
+     * @param a
+     * @param aOff
+     * @param r
      */
-    public static short[][] polyVectorFromBytes(byte[] polyA, int paramsK) {
-        short[][] r = new short[paramsK][KyberParams.paramsPolyBytes];
-        for (int i = 0; i < paramsK; i++) {
-            int start = (i * KyberParams.paramsPolyBytes);
-            int end = (i + 1) * KyberParams.paramsPolyBytes;
-            r[i] = Poly.polyFromBytes(Arrays.copyOfRange(polyA, start, end));
+    public static void polyVectorFromBytes(byte[] a, int aOff, PolyVector r) {
+        for (int i = 0; i < r.getK(); i++) {
+            polyFromBytes(a, aOff + i * KyberParams.paramsPolyBytes, r.getCoeffs(), r.offset(i));
+        }
+    }
+
+    /**
+     * Deserialize a polynomial vector straight from a (possibly direct) buffer
+     *
+     * @param a
+     * @param aOff
+     * @param r
+     */
+    public static void polyVectorFromBytes(ByteBuffer a, int aOff, PolyVector r) {
+        for (int i = 0; i < r.getK(); i++) {
+            polyFromBytes(a, aOff + i * KyberParams.paramsPolyBytes, r.getCoeffs(), r.offset(i));
         }
-        return r;
     }
 
     /**
@@ -491,14 +489,11 @@ public final class Poly {
      * vector of polynomial
      *
      * @param r
-     * @param paramsK
-     * @return
      */
-    public static short[][] polyVectorNTT(short[][] r, int paramsK) {
-        for (int i = 0; i < paramsK; i++) {
-            r[i] = Poly.polyNTT(r[i]);
+    public static void polyVectorNTT(PolyVector r) {
+        for (int i = 0; i < r.getK(); i++) {
+            Poly.polyNTT(r.getCoeffs(), r.offset(i));
         }
-        return r;
     }
 
     /**
@@ -506,32 +501,31 @@ public final class Poly {
      * vector of polynomials and multiplies by Montgomery factor 2^16
      *
      * @param r
-     * @param paramsK
-     * @return
      */
-    public static short[][] polyVectorInvNTTMont(short[][] r, int paramsK) {
-        for (int i = 0; i < paramsK; i++) {
-            r[i] = Poly.polyInvNTTMont(r[i]);
+    public static void polyVectorInvNTTMont(PolyVector r) {
+        for (int i = 0; i < r.getK(); i++) {
+            Poly.polyInvNTTMont(r.getCoeffs(), r.offset(i));
         }
-        return r;
     }
 
     /**
-     * Pointwise-multiplies elements of the given polynomial-vectors ,
-     * accumulates the results , and then multiplies by 2^-16
+     * Pointwise-multiplies the K polynomials starting at aOff with those of b,
+     * accumulates the results into the polynomial at rOff, and then multiplies
+     * by 2^-16
      *
-     * @param polyA
-     * @param polyB
-     * @param paramsK
-     * @return
+     * @param a
+     * @param aOff
+     * @param b
+     * @param r
+     * @param rOff
      */
-    public static short[] polyVectorPointWiseAccMont(short[][] polyA, short[][] polyB, int paramsK) {
-        short[] r = Poly.polyBaseMulMont(polyA[0], polyB[0]);
-        for (int i = 1; i < paramsK; i++) {
-            short[] t = Poly.polyBaseMulMont(polyA[i], polyB[i]);
-            r = Poly.polyAdd(r, t);
+    public static void polyVectorPointWiseAccMont(short[] a, int aOff, PolyVector b, short[] r, int rOff) {
+        short[] bc = b.getCoeffs();
+        Poly.polyBaseMulMont(a, aOff, bc, 0, r, rOff, false);
+        for (int i = 1; i < b.getK(); i++) {
+            Poly.polyBaseMulMont(a, aOff + i * KyberParams.paramsN, bc, b.offset(i), r, rOff, true);
         }
-        return polyReduce(r);
+        polyReduce(r, rOff, KyberParams.paramsN);
     }
 
     /**
@@ -539,40 +533,18 @@ public final class Poly {
      * of polynomials.
      *
      * @param r
-     * @param paramsK
-     * @return
-     */
-    public static short[][] polyVectorReduce(short[][] r, int paramsK) {
-        for (int i = 0; i < paramsK; i++) {
-            r[i] = Poly.polyReduce(r[i]);
-        }
-        return r;
-    }
-
-    /**
-     * Applies the conditional subtraction of Q (KyberParams) to each coefficient of
- each element of a vector of polynomials.
      */
-    public static short[][] polyVectorCSubQ(short[][] r, int paramsK) {
-        for (int i = 0; i < paramsK; i++) {
-            r[i] = Poly.polyConditionalSubQ(r[i]);
-        }
-        return r;
+    public static void polyVectorReduce(PolyVector r) {
+        polyReduce(r.getCoeffs(), 0, r.getCoeffs().length);
     }
 
     /**
      * Add two polynomial vectors
      *
-     * @param polyA
-     * @param polyB
-     * @param paramsK
-     * @return
+     * @param a
+     * @param b
      */
-    public static short[][] polyVectorAdd(short[][] polyA, short[][] polyB, int paramsK) {
-        for (int i = 0; i < paramsK; i++) {
-            polyA[i] = Poly.polyAdd(polyA[i], polyB[i]);
-        }
-        return polyA;
+    public static void polyVectorAdd(PolyVector a, PolyVector b) {
+        polyAdd(a.getCoeffs(), 0, b.getCoeffs(), 0, a.getCoeffs().length);
     }
-
 }
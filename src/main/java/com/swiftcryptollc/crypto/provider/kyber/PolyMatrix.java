@@ -0,0 +1,57 @@
+package com.swiftcryptollc.crypto.provider.kyber;
+
+/**
+ * A K x K matrix of polynomials stored row by row in a single
+ * short[K * K * 256]
+ *
+ * Row i is itself laid out like a {@link PolyVector} starting at
+ * {@link #rowOffset(int)}.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class PolyMatrix {
+
+    private final short[] coeffs;
+    private final int k;
+
+    /**
+     * Allocate a zeroed K x K matrix
+     *
+     * @param k
+     */
+    public PolyMatrix(int k) {
+        this.coeffs = new short[k * k * KyberParams.paramsN];
+        this.k = k;
+    }
+
+    /**
+     * @return the backing coefficients
+     */
+    public short[] getCoeffs() {
+        return coeffs;
+    }
+
+    /**
+     * @return the number of rows and columns
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * @param i
+     * @return the offset of row i in the backing array
+     */
+    public int rowOffset(int i) {
+        return i * k * KyberParams.paramsN;
+    }
+
+    /**
+     * @param i
+     * @param j
+     * @return the offset of the polynomial at row i, column j
+     */
+    public int offset(int i, int j) {
+        return (i * k + j) * KyberParams.paramsN;
+    }
+}
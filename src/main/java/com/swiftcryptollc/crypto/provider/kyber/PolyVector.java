@@ -0,0 +1,57 @@
+package com.swiftcryptollc.crypto.provider.kyber;
+
+/**
+ * A vector of K polynomials stored back to back in a single short[K * 256]
+ *
+ * Polynomial i starts at {@link #offset(int)}, so whole-vector operations can
+ * run over the backing array in one pass.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class PolyVector {
+
+    private final short[] coeffs;
+    private final int k;
+
+    /**
+     * Allocate a zeroed vector of K polynomials
+     *
+     * @param k
+     */
+    public PolyVector(int k) {
+        this(new short[k * KyberParams.paramsN], k);
+    }
+
+    /**
+     * Wrap existing coefficients
+     *
+     * @param coeffs
+     * @param k
+     */
+    public PolyVector(short[] coeffs, int k) {
+        this.coeffs = coeffs;
+        this.k = k;
+    }
+
+    /**
+     * @return the backing coefficients
+     */
+    public short[] getCoeffs() {
+        return coeffs;
+    }
+
+    /**
+     * @return the number of polynomials
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * @param i
+     * @return the offset of polynomial i in the backing array
+     */
+    public int offset(int i) {
+        return i * KyberParams.paramsN;
+    }
+}
@@ -0,0 +1,216 @@
+package com.swiftcryptollc.crypto.provider.kyber;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Reference backend working on one coefficient at a time
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class ScalarArithmetic implements KyberArithmetic {
+
+    private final static VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private final static VarHandle SHORT_LE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public void ntt(short[] r, int off) {
+        Ntt.ntt(r, off);
+    }
+
+    @Override
+    public void invNTT(short[] r, int off) {
+        Ntt.invNTT(r, off);
+    }
+
+    @Override
+    public void baseMulMont(short[] a, int aOff, short[] b, int bOff, short[] r, int rOff, boolean accumulate) {
+        for (int i = 0; i < KyberParams.paramsN / 4; i++) {
+            int ai = aOff + 4 * i;
+            int bi = bOff + 4 * i;
+            int ri = rOff + 4 * i;
+            short zeta = Ntt.nttZetas[64 + i];
+            short r0 = (short) (Ntt.modQMulMont(Ntt.modQMulMont(a[ai + 1], b[bi + 1]), zeta) + Ntt.modQMulMont(a[ai], b[bi]));
+            short r1 = (short) (Ntt.modQMulMont(a[ai], b[bi + 1]) + Ntt.modQMulMont(a[ai + 1], b[bi]));
+            zeta = (short) (-1 * zeta);
+            short r2 = (short) (Ntt.modQMulMont(Ntt.modQMulMont(a[ai + 3], b[bi + 3]), zeta) + Ntt.modQMulMont(a[ai + 2], b[bi + 2]));
+            short r3 = (short) (Ntt.modQMulMont(a[ai + 2], b[bi + 3]) + Ntt.modQMulMont(a[ai + 3], b[bi + 2]));
+            if (accumulate) {
+                r[ri] = (short) (r[ri] + r0);
+                r[ri + 1] = (short) (r[ri + 1] + r1);
+                r[ri + 2] = (short) (r[ri + 2] + r2);
+                r[ri + 3] = (short) (r[ri + 3] + r3);
+            } else {
+                r[ri] = r0;
+                r[ri + 1] = r1;
+                r[ri + 2] = r2;
+                r[ri + 3] = r3;
+            }
+        }
+    }
+
+    @Override
+    public void reduce(short[] r, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            r[i] = ByteOps.barrettReduce(r[i]);
+        }
+    }
+
+    @Override
+    public void conditionalSubQ(short[] r, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            r[i] = ByteOps.conditionalSubQ(r[i]);
+        }
+    }
+
+    @Override
+    public void add(short[] a, int aOff, short[] b, int bOff, int len) {
+        for (int i = 0; i < len; i++) {
+            a[aOff + i] = (short) (a[aOff + i] + b[bOff + i]);
+        }
+    }
+
+    @Override
+    public void sub(short[] a, int aOff, short[] b, int bOff, int len) {
+        for (int i = 0; i < len; i++) {
+            a[aOff + i] = (short) (a[aOff + i] - b[bOff + i]);
+        }
+    }
+
+    @Override
+    public void compress(short[] a, int aOff, int len, int bits, byte[] r, int rOff) {
+        switch (bits) {
+            case 4:
+                compress4(a, aOff, len, r, rOff);
+                break;
+            case 5:
+                compress5(a, aOff, len, r, rOff);
+                break;
+            case 10:
+                compress10(a, aOff, len, r, rOff);
+                break;
+            case 11:
+                compress11(a, aOff, len, r, rOff);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported compression of " + bits + " bits");
+        }
+    }
+
+    @Override
+    public void cbd(byte[] buf, int eta, short[] r, int rOff) {
+        if (eta == 2) {
+            ByteOps.generateCBDPolyEta2(buf, r, rOff);
+        } else {
+            ByteOps.generateCBDPolyEta3(buf, r, rOff);
+        }
+    }
+
+    /**
+     * Reads two 3-byte groups (four 12-bit candidates) as one 48-bit word and
+     * writes accepted values straight into r. The branches only depend on the
+     * public matrix seed.
+     */
+    @Override
+    public int rejectionSample(byte[] buf, int bufOff, int bufLen, short[] r, int rOff, int len) {
+        int ctr = 0;
+        int j = bufOff;
+        int end = bufOff + bufLen;
+        while ((ctr < len) && ((j + 6) <= end)) {
+            long t = ((int) INT_LE.get(buf, j) & 0xFFFFFFFFL) | (((short) SHORT_LE.get(buf, j + 4) & 0xFFFFL) << 32);
+            j = j + 6;
+            for (int k = 0; (k < 4) && (ctr < len); k++) {
+                int d = (int) (t >>> (12 * k)) & 0xFFF;
+                if (d < KyberParams.paramsQ) {
+                    r[rOff + ctr++] = (short) d;
+                }
+            }
+        }
+        if ((ctr < len) && ((j + 3) <= end)) {
+            int d1 = ((buf[j] & 0xFF) | ((buf[j + 1] & 0xFF) << 8)) & 0xFFF;
+            int d2 = (((buf[j + 1] & 0xFF) >> 4) | ((buf[j + 2] & 0xFF) << 4)) & 0xFFF;
+            if (d1 < KyberParams.paramsQ) {
+                r[rOff + ctr++] = (short) d1;
+            }
+            if (ctr < len && d2 < KyberParams.paramsQ) {
+                r[rOff + ctr++] = (short) d2;
+            }
+        }
+        return ctr;
+    }
+
+    private static void compress4(short[] a, int aOff, int len, byte[] r, int rOff) {
+        byte[] t = new byte[8];
+        int rr = rOff;
+        for (int i = aOff; i < aOff + len; i += 8) {
+            for (int j = 0; j < 8; j++) {
+                t[j] = (byte) (((((a[i + j]) << 4) + (KyberParams.paramsQ / 2)) / (KyberParams.paramsQ)) & 15);
+            }
+            r[rr + 0] = (byte) (t[0] | (t[1] << 4));
+            r[rr + 1] = (byte) (t[2] | (t[3] << 4));
+            r[rr + 2] = (byte) (t[4] | (t[5] << 4));
+            r[rr + 3] = (byte) (t[6] | (t[7] << 4));
+            rr = rr + 4;
+        }
+    }
+
+    private static void compress5(short[] a, int aOff, int len, byte[] r, int rOff) {
+        byte[] t = new byte[8];
+        int rr = rOff;
+        for (int i = aOff; i < aOff + len; i += 8) {
+            for (int j = 0; j < 8; j++) {
+                t[j] = (byte) (((((a[i + j]) << 5) + (KyberParams.paramsQ / 2)) / (KyberParams.paramsQ)) & 31);
+            }
+            r[rr + 0] = (byte) ((t[0] >> 0) | (t[1] << 5));
+            r[rr + 1] = (byte) ((t[1] >> 3) | (t[2] << 2) | (t[3] << 7));
+            r[rr + 2] = (byte) ((t[3] >> 1) | (t[4] << 4));
+            r[rr + 3] = (byte) ((t[4] >> 4) | (t[5] << 1) | (t[6] << 6));
+            r[rr + 4] = (byte) ((t[6] >> 2) | (t[7] << 3));
+            rr = rr + 5;
+        }
+    }
+
+    private static void compress10(short[] a, int aOff, int len, byte[] r, int rOff) {
+        int rr = rOff;
+        long[] t = new long[4];
+        for (int i = aOff; i < aOff + len; i += 4) {
+            for (int k = 0; k < 4; k++) {
+                t[k] = ((long) (((long) ((long) (a[i + k]) << 10) + (long) (KyberParams.paramsQ / 2)) / (long) (KyberParams.paramsQ)) & 0x3ff);
+            }
+            r[rr + 0] = (byte) (t[0] >> 0);
+            r[rr + 1] = (byte) ((t[0] >> 8) | (t[1] << 2));
+            r[rr + 2] = (byte) ((t[1] >> 6) | (t[2] << 4));
+            r[rr + 3] = (byte) ((t[2] >> 4) | (t[3] << 6));
+            r[rr + 4] = (byte) ((t[3] >> 2));
+            rr = rr + 5;
+        }
+    }
+
+    private static void compress11(short[] a, int aOff, int len, byte[] r, int rOff) {
+        int rr = rOff;
+        long[] t = new long[8];
+        for (int i = aOff; i < aOff + len; i += 8) {
+            for (int k = 0; k < 8; k++) {
+                t[k] = ((long) (((long) ((long) (a[i + k]) << 11) + (long) (KyberParams.paramsQ / 2)) / (long) (KyberParams.paramsQ)) & 0x7ff);
+            }
+            r[rr + 0] = (byte) ((t[0] >> 0));
+            r[rr + 1] = (byte) ((t[0] >> 8) | (t[1] << 3));
+            r[rr + 2] = (byte) ((t[1] >> 5) | (t[2] << 6));
+            r[rr + 3] = (byte) ((t[2] >> 2));
+            r[rr + 4] = (byte) ((t[2] >> 10) | (t[3] << 1));
+            r[rr + 5] = (byte) ((t[3] >> 7) | (t[4] << 4));
+            r[rr + 6] = (byte) ((t[4] >> 4) | (t[5] << 7));
+            r[rr + 7] = (byte) ((t[5] >> 1));
+            r[rr + 8] = (byte) ((t[5] >> 9) | (t[6] << 2));
+            r[rr + 9] = (byte) ((t[6] >> 6) | (t[7] << 5));
+            r[rr + 10] = (byte) ((t[7] >> 3));
+            rr = rr + 11;
+        }
+    }
+}
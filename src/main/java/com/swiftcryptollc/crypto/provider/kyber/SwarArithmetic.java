@@ -0,0 +1,123 @@
+package com.swiftcryptollc.crypto.provider.kyber;
+
+/**
+ * SIMD within a register (SWAR) versions of the coefficient-wise polynomial
+ * arithmetic.
+ *
+ * Additions, subtractions and the conditional subtraction of Q pack four
+ * 16-bit coefficients into a long and stop carries at the lane boundaries.
+ * Barrett reduction packs two coefficients into 32-bit lanes so the product
+ * with the Barrett constant cannot spill into the neighbouring lane. Every
+ * method produces exactly the same coefficients as {@link ScalarArithmetic},
+ * which it falls back on for the remaining kernels.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class SwarArithmetic extends ScalarArithmetic {
+
+    // High bit of each 16-bit lane
+    private final static long H16 = 0x8000800080008000L;
+    // Q in each 16-bit lane
+    private final static long Q16 = 0x0D010D010D010D01L;
+    // Low 5 bits of each 32-bit lane
+    private final static long T32 = 0x0000001F0000001FL;
+    // Barrett constant, floor(2^26 / Q + 1/2)
+    private final static long V = 20159L;
+    // Inputs are biased by 2^15 so they are non-negative, and 10 * 2^26 -
+    // V * 2^15 is added so the biased quotient is exactly t + 10
+    private final static long BARRETT_OFFSET = 10518528L | (10518528L << 32);
+    // 10 * Q in each 32-bit lane, which undoes the +10 in the quotient and
+    // leaves the result biased by 2^15
+    private final static long TEN_Q = 33290L | (33290L << 32);
+
+    @Override
+    public String getName() {
+        return "swar";
+    }
+
+    /**
+     * Load four coefficients into 16-bit lanes
+     */
+    private static long load4(short[] a, int i) {
+        return (a[i] & 0xFFFFL)
+                | ((a[i + 1] & 0xFFFFL) << 16)
+                | ((a[i + 2] & 0xFFFFL) << 32)
+                | ((a[i + 3] & 0xFFFFL) << 48);
+    }
+
+    /**
+     * Store four 16-bit lanes
+     */
+    private static void store4(short[] a, int i, long w) {
+        a[i] = (short) w;
+        a[i + 1] = (short) (w >>> 16);
+        a[i + 2] = (short) (w >>> 32);
+        a[i + 3] = (short) (w >>> 48);
+    }
+
+    /**
+     * Lane-wise x + y modulo 2^16
+     */
+    private static long add16(long x, long y) {
+        return ((x & ~H16) + (y & ~H16)) ^ ((x ^ y) & H16);
+    }
+
+    /**
+     * Lane-wise x - y modulo 2^16
+     */
+    private static long sub16(long x, long y) {
+        return ((x | H16) - (y & ~H16)) ^ ((x ^ ~y) & H16);
+    }
+
+    @Override
+    public void add(short[] a, int aOff, short[] b, int bOff, int len) {
+        int i = 0;
+        for (; i + 4 <= len; i += 4) {
+            store4(a, aOff + i, add16(load4(a, aOff + i), load4(b, bOff + i)));
+        }
+        for (; i < len; i++) {
+            a[aOff + i] = (short) (a[aOff + i] + b[bOff + i]);
+        }
+    }
+
+    @Override
+    public void sub(short[] a, int aOff, short[] b, int bOff, int len) {
+        int i = 0;
+        for (; i + 4 <= len; i += 4) {
+            store4(a, aOff + i, sub16(load4(a, aOff + i), load4(b, bOff + i)));
+        }
+        for (; i < len; i++) {
+            a[aOff + i] = (short) (a[aOff + i] - b[bOff + i]);
+        }
+    }
+
+    @Override
+    public void conditionalSubQ(short[] r, int off, int len) {
+        int i = 0;
+        for (; i + 4 <= len; i += 4) {
+            long d = sub16(load4(r, off + i), Q16);
+            // 0xFFFF in every lane whose sign bit is set
+            long mask = ((d & H16) >>> 15) * 0xFFFFL;
+            store4(r, off + i, add16(d, mask & Q16));
+        }
+        for (; i < len; i++) {
+            r[off + i] = ByteOps.conditionalSubQ(r[off + i]);
+        }
+    }
+
+    @Override
+    public void reduce(short[] r, int off, int len) {
+        int i = 0;
+        for (; i + 2 <= len; i += 2) {
+            int j = off + i;
+            long w = ((r[j] & 0xFFFFL) ^ 0x8000L) | (((r[j + 1] & 0xFFFFL) ^ 0x8000L) << 32);
+            long t = (((w * V) + BARRETT_OFFSET) >>> 26) & T32;
+            long l = (w + TEN_Q) - (t * KyberParams.paramsQ);
+            r[j] = (short) (l ^ 0x8000L);
+            r[j + 1] = (short) ((l >>> 32) ^ 0x8000L);
+        }
+        for (; i < len; i++) {
+            r[off + i] = ByteOps.barrettReduce(r[off + i]);
+        }
+    }
+}
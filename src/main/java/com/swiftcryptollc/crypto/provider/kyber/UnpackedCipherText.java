@@ -7,7 +7,7 @@ package com.swiftcryptollc.crypto.provider.kyber;
  */
 final class UnpackedCipherText {
 
-    private short[][] bp;
+    private PolyVector bp;
     private short[] v;
 
     /**
@@ -20,14 +20,14 @@ final class UnpackedCipherText {
     /**
      * @return the bp
      */
-    public short[][] getBp() {
+    public PolyVector getBp() {
         return bp;
     }
 
     /**
      * @param bp the bp to set
      */
-    protected void setBp(short[][] bp) {
+    protected void setBp(PolyVector bp) {
         this.bp = bp;
     }
 
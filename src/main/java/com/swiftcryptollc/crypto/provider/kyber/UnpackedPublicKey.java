@@ -7,7 +7,7 @@ package com.swiftcryptollc.crypto.provider.kyber;
  */
 final class UnpackedPublicKey {
 
-    private short[][] publicKeyPolyvec;
+    private PolyVector publicKeyPolyvec;
     private byte[] seed;
 
     /**
@@ -20,14 +20,14 @@ final class UnpackedPublicKey {
     /**
      * @return the publicKeyPolyvec
      */
-    public short[][] getPublicKeyPolyvec() {
+    public PolyVector getPublicKeyPolyvec() {
         return publicKeyPolyvec;
     }
 
     /**
      * @param publicKeyPolyvec the publicKeyPolyvec to set
      */
-    protected void setPublicKeyPolyvec(short[][] publicKeyPolyvec) {
+    protected void setPublicKeyPolyvec(PolyVector publicKeyPolyvec) {
         this.publicKeyPolyvec = publicKeyPolyvec;
     }
 
@@ -0,0 +1,33 @@
+package com.swiftcryptollc.crypto.spec;
+
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * Parameters for the X25519Kyber768 key agreement: the executor that runs the
+ * X25519 half while the calling thread runs the Kyber half
+ *
+ * Without these parameters both halves run one after the other on the calling
+ * thread.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class KyberHybridParameterSpec implements AlgorithmParameterSpec {
+
+    private final Executor executor;
+
+    /**
+     * @param executor
+     */
+    public KyberHybridParameterSpec(Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+    }
+
+    /**
+     * @return the executor
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+}
@@ -0,0 +1,86 @@
+package com.swiftcryptollc.crypto.spec;
+
+import com.swiftcryptollc.crypto.provider.KyberKeySize;
+import java.security.spec.InvalidKeySpecException;
+
+/**
+ * Compact form of a Kyber private key: the 32-byte key generation seed d and
+ * the 32-byte implicit rejection secret z
+ *
+ * The full private key is derived from the seed when it is needed. The
+ * encoded form is one byte holding K (2, 3 or 4) followed by d and z.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class KyberSeedPrivateKeySpec implements java.security.spec.KeySpec {
+
+    public static final int SEED_BYTES = 64;
+    public static final int ENCODED_BYTES = SEED_BYTES + 1;
+
+    // d || z
+    private final byte[] seed;
+
+    private final KyberKeySize kyberKeySize;
+
+    /**
+     * Constructor that takes the 64-byte seed, d || z
+     *
+     * @param seed d || z
+     * @param kyberKeySize
+     */
+    public KyberSeedPrivateKeySpec(byte[] seed, KyberKeySize kyberKeySize) {
+        if (seed.length != SEED_BYTES) {
+            throw new IllegalArgumentException("Seed must be " + SEED_BYTES + " bytes");
+        }
+        this.seed = seed.clone();
+        this.kyberKeySize = kyberKeySize;
+    }
+
+    /**
+     * Constructor that takes the 65-byte encoded form
+     *
+     * @param encoded K followed by d || z
+     * @throws InvalidKeySpecException
+     */
+    public KyberSeedPrivateKeySpec(byte[] encoded) throws InvalidKeySpecException {
+        if (encoded.length != ENCODED_BYTES) {
+            throw new InvalidKeySpecException("Encoded seed must be " + ENCODED_BYTES + " bytes");
+        }
+        KyberKeySize size = null;
+        for (KyberKeySize candidate : KyberKeySize.values()) {
+            if (candidate.getParamsK() == encoded[0]) {
+                size = candidate;
+            }
+        }
+        if (size == null) {
+            throw new InvalidKeySpecException("Unsupported parameter set K=" + encoded[0]);
+        }
+        this.kyberKeySize = size;
+        this.seed = new byte[SEED_BYTES];
+        System.arraycopy(encoded, 1, this.seed, 0, SEED_BYTES);
+    }
+
+    /**
+     * @return d || z
+     */
+    public byte[] getSeed() {
+        return this.seed.clone();
+    }
+
+    /**
+     * @return K followed by d || z
+     */
+    public byte[] getEncoded() {
+        byte[] encoded = new byte[ENCODED_BYTES];
+        encoded[0] = (byte) kyberKeySize.getParamsK();
+        System.arraycopy(seed, 0, encoded, 1, SEED_BYTES);
+        return encoded;
+    }
+
+    /**
+     * @return the kyberKeySize
+     */
+    public KyberKeySize getKyberKeySize() {
+        return kyberKeySize;
+    }
+}
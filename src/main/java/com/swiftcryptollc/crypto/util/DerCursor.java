@@ -0,0 +1,211 @@
+package com.swiftcryptollc.crypto.util;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * A DER reader that walks a ByteBuffer in place
+ *
+ * Unlike DerInputStream, nothing is copied while parsing. Sequences are read
+ * as cursors over their contents and strings are returned as read-only slices
+ * of the underlying buffer, so the caller copies only the values it keeps. A
+ * cursor is not thread safe and does not lock anything. Only definite lengths
+ * in their shortest form are accepted.
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public final class DerCursor {
+
+    private final ByteBuffer data;
+    private final int limit;
+    private int pos;
+
+    /**
+     * @param data not copied, must not be modified while it is parsed
+     */
+    public DerCursor(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * @param data not copied, must not be modified while it is parsed
+     * @param offset
+     * @param length
+     */
+    public DerCursor(byte[] data, int offset, int length) {
+        this(ByteBuffer.wrap(data, offset, length));
+    }
+
+    /**
+     * Parse the bytes between the position and the limit of the buffer,
+     * without moving either
+     *
+     * @param data not copied, must not be modified while it is parsed
+     */
+    public DerCursor(ByteBuffer data) {
+        this.data = data.asReadOnlyBuffer();
+        this.pos = data.position();
+        this.limit = data.limit();
+    }
+
+    /**
+     * @return the number of bytes left
+     */
+    public int available() {
+        return limit - pos;
+    }
+
+    /**
+     * @return the tag of the next value, or -1 if there is none
+     */
+    public int peekTag() {
+        return (pos < limit) ? (data.get(pos) & 0xFF) : -1;
+    }
+
+    /**
+     * @return a cursor over the contents of the next value, a SEQUENCE
+     * @throws IOException
+     */
+    public DerCursor getSequence() throws IOException {
+        return new DerCursor(getContents(DerValue.tag_Sequence));
+    }
+
+    /**
+     * @return the next value, an OBJECT IDENTIFIER, as a slice of its encoded
+     * arcs
+     * @throws IOException
+     */
+    public ByteBuffer getOID() throws IOException {
+        ByteBuffer oid = getContents(DerValue.tag_ObjectId);
+        if (!oid.hasRemaining() || (oid.get(oid.limit() - 1) < 0)) {
+            throw new IOException("Invalid DER object identifier");
+        }
+        return oid;
+    }
+
+    /**
+     * @return the next value, an INTEGER
+     * @throws IOException
+     */
+    public BigInteger getBigInteger() throws IOException {
+        ByteBuffer contents = getContents(DerValue.tag_Integer);
+        if (!contents.hasRemaining()) {
+            throw new IOException("Empty DER integer");
+        }
+        // Integers here are parameters, small enough to copy
+        byte[] bytes = new byte[contents.remaining()];
+        contents.get(bytes);
+        return new BigInteger(bytes);
+    }
+
+    /**
+     * @return the next value, an INTEGER that fits in an int
+     * @throws IOException
+     */
+    public int getInteger() throws IOException {
+        BigInteger value = getBigInteger();
+        if (value.bitLength() > 31) {
+            throw new IOException("DER integer out of range");
+        }
+        return value.intValue();
+    }
+
+    /**
+     * @return the next value, a BIT STRING without padding bits, as a slice of
+     * its bytes
+     * @throws IOException
+     */
+    public ByteBuffer getBitString() throws IOException {
+        ByteBuffer contents = getContents(DerValue.tag_BitString);
+        if (!contents.hasRemaining()) {
+            throw new IOException("Invalid encoding: zero length bit string");
+        }
+        // A slice cannot mask off padding bits, and keys never have any
+        if (contents.get(contents.position()) != 0) {
+            throw new IOException("Padded DER bit string not supported");
+        }
+        return contents.position(contents.position() + 1).slice();
+    }
+
+    /**
+     * @return the next value, an OCTET STRING, as a slice of its bytes
+     * @throws IOException
+     */
+    public ByteBuffer getOctetString() throws IOException {
+        return getContents(DerValue.tag_OctetString);
+    }
+
+    /**
+     * Read the next value, which must have the given tag
+     *
+     * @param tag
+     * @return a slice of its contents
+     * @throws IOException if the tag does not match or the value is truncated
+     */
+    public ByteBuffer getContents(byte tag) throws IOException {
+        if (pos >= limit) {
+            throw new IOException("Short read of DER value");
+        }
+        if (data.get(pos) != tag) {
+            throw new IOException("DER tag 0x" + Integer.toHexString(tag & 0xFF) + " expected, found 0x"
+                    + Integer.toHexString(data.get(pos) & 0xFF));
+        }
+        int offset = pos + 1;
+        int length = readLength(offset);
+        offset += lengthBytes(offset);
+        if (length > limit - offset) {
+            throw new IOException("Short read of DER value");
+        }
+        pos = offset + length;
+        return data.slice(offset, length);
+    }
+
+    /**
+     * @param offset of the length
+     * @return the number of bytes holding the length
+     */
+    private int lengthBytes(int offset) {
+        int lenByte = data.get(offset) & 0xFF;
+        return ((lenByte & 0x80) == 0) ? 1 : 1 + (lenByte & 0x7F);
+    }
+
+    /**
+     * @param offset of the length
+     * @return the length
+     * @throws IOException on indefinite, oversized or non-minimal lengths
+     */
+    private int readLength(int offset) throws IOException {
+        if (offset >= limit) {
+            throw new IOException("Short read of DER length");
+        }
+        int lenByte = data.get(offset) & 0xFF;
+        if ((lenByte & 0x80) == 0) {
+            return lenByte;
+        }
+        int count = lenByte & 0x7F;
+        if (count == 0) {
+            throw new IOException("Indefinite length encoding not supported");
+        }
+        if (count > 4) {
+            throw new IOException("DER length too big");
+        }
+        if (count > limit - offset - 1) {
+            throw new IOException("Short read of DER length");
+        }
+        if (data.get(offset + 1) == 0) {
+            throw new IOException("Redundant length bytes found");
+        }
+        int value = 0;
+        for (int i = 1; i <= count; i++) {
+            value = (value << 8) | (data.get(offset + i) & 0xFF);
+        }
+        if (value < 0) {
+            throw new IOException("Invalid length bytes");
+        }
+        if (value <= 127) {
+            throw new IOException("Should use short form for length");
+        }
+        return value;
+    }
+}
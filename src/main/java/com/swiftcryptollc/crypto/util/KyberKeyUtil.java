@@ -1,13 +1,21 @@
 package com.swiftcryptollc.crypto.util;
 
+import com.swiftcryptollc.crypto.interfaces.KyberKey;
 import com.swiftcryptollc.crypto.interfaces.KyberPublicKey;
+import com.swiftcryptollc.crypto.provider.KyberJCE;
 import com.swiftcryptollc.crypto.provider.KyberKeySize;
 import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
 import com.swiftcryptollc.crypto.spec.KyberPublicKeySpec;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.security.InvalidKeyException;
 import java.security.Key;
 import java.security.NoSuchAlgorithmException;
+import java.security.ProviderException;
 import java.security.SecureRandom;
 import java.security.spec.KeySpec;
 
@@ -17,6 +25,11 @@ import java.security.spec.KeySpec;
  */
 public final class KyberKeyUtil {
 
+    private final static VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    // the encoded arcs of the Kyber and Kyber-90s OIDs
+    private final static ByteBuffer OID_KYBER = encodedOID(KyberJCE.OID_KYBER);
+    private final static ByteBuffer PRIVATE_OID_KYBER_90S = encodedOID(KyberJCE.PRIVATE_OID_KYBER_90S);
+
     /**
      * Returns whether the key is valid or not.
      * <P>
@@ -93,12 +106,38 @@ public final class KyberKeyUtil {
             return 1;
         }
 
-        byte v = 0;
-
-        for (int i = 0; i < x.length; i++) {
-            v = (byte) ((int) (v & 0xFF) | ((int) (x[i] & 0xFF) ^ (int) (y[i] & 0xFF)));
+        // Compare 8 bytes at a time, the loop never exits early
+        long v = 0;
+        int i = 0;
+        for (; i + 8 <= x.length; i += 8) {
+            v |= (long) LONG_LE.get(x, i) ^ (long) LONG_LE.get(y, i);
+        }
+        for (; i < x.length; i++) {
+            v |= (x[i] ^ y[i]) & 0xFF;
         }
-        return Byte.compare(v, (byte) 0);
+        return (int) ((v | -v) >>> 63);
+    }
+
+    /**
+     * @param value
+     * @param shared
+     * @return shared if it is equal to value, otherwise value
+     */
+    public static BigInteger canonical(BigInteger value, BigInteger shared) {
+        return shared.equals(value) ? shared : value;
+    }
+
+    /**
+     * Fold the first 8 bytes of a (uniformly distributed) hash into a hash
+     * code
+     *
+     * @param hash at least 8 bytes
+     * @param off
+     * @return
+     */
+    public static int hashCodeOf(byte[] hash, int off) {
+        long h = (long) LONG_LE.get(hash, off);
+        return (int) (h ^ (h >>> 32));
     }
 
     /**
@@ -137,6 +176,58 @@ public final class KyberKeyUtil {
         }
     }
 
+    /**
+     * @param kyber90s
+     * @return the OID of Kyber-90s or standard Kyber keys and cipher texts
+     * @throws IOException
+     */
+    public static ObjectIdentifier getOID(boolean kyber90s) throws IOException {
+        return ObjectIdentifier.of(kyber90s ? KyberJCE.PRIVATE_OID_KYBER_90S : KyberJCE.OID_KYBER);
+    }
+
+    /**
+     * Tell the variant of an encoded key or cipher text by its OID
+     *
+     * @param oid the encoded arcs of the OID
+     * @return true for Kyber-90s, false for standard Kyber
+     * @throws InvalidKeyException if the OID is neither
+     */
+    public static boolean isKyber90s(ByteBuffer oid) throws InvalidKeyException {
+        if (oid.equals(OID_KYBER)) {
+            return false;
+        } else if (oid.equals(PRIVATE_OID_KYBER_90S)) {
+            return true;
+        }
+        throw new InvalidKeyException("Not a Kyber OID");
+    }
+
+    /**
+     * For the engines that only implement standard Kyber
+     *
+     * @param key
+     * @throws InvalidKeyException if the key is for Kyber-90s
+     */
+    public static void checkNot90s(KyberKey key) throws InvalidKeyException {
+        if (key.isKyber90s()) {
+            throw new InvalidKeyException("Standard Kyber key expected, not Kyber-90s");
+        }
+    }
+
+    /**
+     * @param oid
+     * @return the encoded arcs of the OID, without the tag and length
+     */
+    private static ByteBuffer encodedOID(String oid) {
+        try {
+            DerOutputStream out = new DerOutputStream();
+            out.putOID(ObjectIdentifier.of(oid));
+            byte[] encoded = out.toByteArray();
+            return ByteBuffer.wrap(encoded, 2, encoded.length - 2).slice().asReadOnlyBuffer();
+        } catch (IOException ex) {
+            throw new ProviderException(ex);
+        }
+    }
+
     /**
      * Generate a random p
      *
@@ -0,0 +1,120 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.provider.kyber.CrossCheckArithmetic;
+import com.swiftcryptollc.crypto.provider.kyber.KyberArithmetic;
+import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
+import com.swiftcryptollc.crypto.provider.kyber.ScalarArithmetic;
+import com.swiftcryptollc.crypto.provider.kyber.SwarArithmetic;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the arithmetic backends through the cross-check wrapper
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class ArithmeticTest {
+
+    /**
+     * Run every kernel on random input
+     *
+     * @param arithmetic
+     * @return the concatenated outputs
+     */
+    private static short[] exercise(KyberArithmetic arithmetic) {
+        Random random = new Random(7);
+        short[] a = new short[512];
+        short[] b = new short[512];
+        byte[] buf = new byte[504];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = (short) random.nextInt(KyberParams.paramsQ * 2);
+            b[i] = (short) random.nextInt(KyberParams.paramsQ * 2);
+        }
+        random.nextBytes(buf);
+        short[] r = new short[256 * 6];
+        arithmetic.ntt(a, 0);
+        arithmetic.reduce(a, 0, 256);
+        arithmetic.invNTT(b, 256);
+        arithmetic.baseMulMont(a, 0, b, 256, r, 0, false);
+        arithmetic.baseMulMont(a, 256, b, 0, r, 0, true);
+        arithmetic.add(a, 0, b, 0, 512);
+        arithmetic.sub(b, 256, a, 256, 256);
+        arithmetic.reduce(a, 0, 512);
+        arithmetic.conditionalSubQ(a, 0, 512);
+        arithmetic.cbd(buf, 2, r, 256);
+        arithmetic.cbd(buf, 3, r, 512);
+        int ctr = arithmetic.rejectionSample(buf, 0, buf.length, r, 768, 256);
+        byte[] compressed = new byte[512 * 11 / 8];
+        arithmetic.compress(a, 0, 512, 11, compressed, 0);
+        for (int i = 0; i < compressed.length / 2; i++) {
+            r[1024 + i] = (short) ((compressed[2 * i] << 8) | (compressed[2 * i + 1] & 0xFF));
+        }
+        r[r.length - 1] = (short) ctr;
+        short[] out = new short[a.length + b.length + r.length];
+        System.arraycopy(a, 0, out, 0, a.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        System.arraycopy(r, 0, out, a.length + b.length, r.length);
+        return out;
+    }
+
+    @Test
+    public void testSwarMatchesScalar() {
+        KyberMetrics metrics = KyberMetrics.getInstance();
+        long mismatches = metrics.getArithmeticMismatches();
+        long checks = metrics.getArithmeticChecks();
+        short[] checked = exercise(new CrossCheckArithmetic(new SwarArithmetic(), new ScalarArithmetic(), 1.0));
+        assertArrayEquals(exercise(new ScalarArithmetic()), checked);
+        assertEquals(mismatches, metrics.getArithmeticMismatches());
+        // Only the kernels SwarArithmetic overrides are checked, 2 reduce,
+        // add, sub and conditionalSubQ
+        assertEquals(checks + 5, metrics.getArithmeticChecks());
+    }
+
+    @Test
+    public void testMismatchIsCounted() {
+        KyberArithmetic broken = new ScalarArithmetic() {
+            @Override
+            public void reduce(short[] r, int off, int len) {
+            }
+        };
+        KyberMetrics metrics = KyberMetrics.getInstance();
+        long mismatches = metrics.getArithmeticMismatches();
+        short[] checked = exercise(new CrossCheckArithmetic(broken, new ScalarArithmetic(), 1.0));
+        // The primary result is returned, even when it is wrong
+        assertArrayEquals(exercise(broken), checked);
+        assertEquals(mismatches + 2, metrics.getArithmeticMismatches());
+    }
+
+    /**
+     * Compare the word-wise sampler with a 3 bytes at a time loop, including
+     * buffers that end on a lone 3-byte group and short output lengths
+     */
+    @Test
+    public void testRejectionSample() {
+        Random random = new Random(11);
+        KyberArithmetic scalar = new ScalarArithmetic();
+        for (int n = 0; n < 500; n++) {
+            byte[] buf = new byte[3 + 3 * random.nextInt(200)];
+            random.nextBytes(buf);
+            int len = 1 + random.nextInt(256);
+            short[] expected = new short[len + 4];
+            int expectedCtr = 0;
+            for (int j = 1; (expectedCtr < len) && (j + 3 <= buf.length); j += 3) {
+                int d1 = ((buf[j] & 0xFF) | ((buf[j + 1] & 0xFF) << 8)) & 0xFFF;
+                int d2 = (((buf[j + 1] & 0xFF) >> 4) | ((buf[j + 2] & 0xFF) << 4)) & 0xFFF;
+                if (d1 < KyberParams.paramsQ) {
+                    expected[4 + expectedCtr++] = (short) d1;
+                }
+                if (expectedCtr < len && d2 < KyberParams.paramsQ) {
+                    expected[4 + expectedCtr++] = (short) d2;
+                }
+            }
+            short[] actual = new short[len + 4];
+            int ctr = scalar.rejectionSample(buf, 1, buf.length - 1 - (buf.length - 1) % 3, actual, 4, len);
+            assertEquals(expectedCtr, ctr);
+            assertArrayEquals(expected, actual);
+        }
+    }
+}
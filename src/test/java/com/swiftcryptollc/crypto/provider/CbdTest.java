@@ -0,0 +1,101 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.provider.kyber.ByteOps;
+import com.swiftcryptollc.crypto.provider.kyber.KyberParams;
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compare the word-wise CBD samplers with the original byte by byte versions
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class CbdTest {
+
+    private static void legacyEta2(byte[] buf, short[] r) {
+        long t, d;
+        int a, b;
+        for (int i = 0; i < KyberParams.paramsN / 8; i++) {
+            t = ByteOps.convertByteTo32BitUnsignedInt(Arrays.copyOfRange(buf, (4 * i), buf.length));
+            d = t & 0x55555555;
+            d = d + ((t >> 1) & 0x55555555);
+            for (int j = 0; j < 8; j++) {
+                a = (short) ((d >> (4 * j + 0)) & 0x3);
+                b = (short) ((d >> (4 * j + 2)) & 0x3);
+                r[8 * i + j] = (short) (a - b);
+            }
+        }
+    }
+
+    private static void legacyEta3(byte[] buf, short[] r) {
+        long t, d;
+        int a, b;
+        for (int i = 0; i < KyberParams.paramsN / 4; i++) {
+            t = ByteOps.convertByteTo24BitUnsignedInt(Arrays.copyOfRange(buf, (3 * i), buf.length));
+            d = t & 0x00249249;
+            d = d + ((t >> 1) & 0x00249249);
+            d = d + ((t >> 2) & 0x00249249);
+            for (int j = 0; j < 4; j++) {
+                a = (short) ((d >> (6 * j + 0)) & 0x7);
+                b = (short) ((d >> (6 * j + 3)) & 0x7);
+                r[4 * i + j] = (short) (a - b);
+            }
+        }
+    }
+
+    @Test
+    public void testEquivalence() {
+        Random random = new Random(3);
+        byte[] buf2 = new byte[2 * KyberParams.paramsN / 4];
+        byte[] buf3 = new byte[3 * KyberParams.paramsN / 4];
+        short[] expected = new short[KyberParams.paramsN];
+        short[] actual = new short[KyberParams.paramsN + 5];
+        for (int n = 0; n < 2000; n++) {
+            random.nextBytes(buf2);
+            random.nextBytes(buf3);
+            if (n == 0) {
+                Arrays.fill(buf2, (byte) 0xFF);
+                Arrays.fill(buf3, (byte) 0xFF);
+            }
+            legacyEta2(buf2, expected);
+            ByteOps.generateCBDPolyEta2(buf2, actual, 5);
+            assertArrayEquals(expected, Arrays.copyOfRange(actual, 5, actual.length));
+            legacyEta3(buf3, expected);
+            ByteOps.generateCBDPolyEta3(buf3, actual, 5);
+            assertArrayEquals(expected, Arrays.copyOfRange(actual, 5, actual.length));
+        }
+    }
+
+    /**
+     * Coefficients stay within [-eta, eta] and only the 256 coefficients at
+     * the offset are written
+     */
+    @Test
+    public void testBounds() {
+        Random random = new Random(5);
+        byte[] buf = new byte[3 * KyberParams.paramsN / 4];
+        short[] r = new short[KyberParams.paramsN + 10];
+        for (int n = 0; n < 200; n++) {
+            random.nextBytes(buf);
+            Arrays.fill(r, Short.MAX_VALUE);
+            ByteOps.generateCBDPolyEta2(buf, r, 5);
+            checkBounds(r, 5, 2);
+            Arrays.fill(r, Short.MAX_VALUE);
+            ByteOps.generateCBDPolyEta3(buf, r, 5);
+            checkBounds(r, 5, 3);
+        }
+    }
+
+    private static void checkBounds(short[] r, int off, int eta) {
+        for (int i = 0; i < r.length; i++) {
+            if ((i < off) || (i >= off + KyberParams.paramsN)) {
+                assertTrue(r[i] == Short.MAX_VALUE, "wrote outside the polynomial at " + i);
+            } else {
+                assertTrue(Math.abs(r[i]) <= eta, "coefficient " + r[i] + " out of range for eta " + eta);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.security.KeyPair;
+import java.util.Arrays;
+import javax.crypto.SecretKey;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the decapsulation cache
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class DecapsulationCacheTest {
+
+    /**
+     * A retried cipher text hits the cache and gives the same secrets, a
+     * different key or an expired entry does not
+     */
+    @Test
+    public void testDecapsulationCache() {
+        KyberDecapsulationCache.configure(4, 60000);
+        try {
+            KeyPair keyPair = new Kyber768KeyPairGenerator().generateKeyPair();
+            KeyPair otherKeyPair = new Kyber768KeyPairGenerator().generateKeyPair();
+            KyberEncrypted kyberEncrypted = encapsulate(keyPair);
+            byte[] cipherText = kyberEncrypted.getCipherText().getC();
+
+            KyberKeyAgreement first = decapsulate(keyPair, cipherText);
+            assertTrue(KyberDecapsulationCache.size() == 1);
+            double hitRate = hitRate();
+            KyberKeyAgreement second = decapsulate(keyPair, cipherText);
+            assertTrue(KyberDecapsulationCache.size() == 1);
+            assertTrue(hitRate() > hitRate);
+            // The KDF output past the first 32 bytes matches as well
+            SecretKey[] firstKeys = first.generateSecrets(new String[]{"AES", "HmacSHA256"}, new int[]{32, 64});
+            SecretKey[] secondKeys = second.generateSecrets(new String[]{"AES", "HmacSHA256"}, new int[]{32, 64});
+            for (int i = 0; i < firstKeys.length; i++) {
+                assertArrayEquals(firstKeys[i].getEncoded(), secondKeys[i].getEncoded());
+            }
+            assertArrayEquals(kyberEncrypted.getSecretKey().getS(), decapsulate(keyPair, cipherText).engineGenerateSecret());
+
+            // A hit returns the decrypted message of the original decapsulation
+            KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+            keyAgreement.engineInit(keyPair.getPrivate());
+            KyberDecrypted kyberDecrypted = keyAgreement.decrypt(KyberKeySize.KEY_768, new KyberCipherText(cipherText, null, null));
+            KyberDecapsulationCache.clear();
+            KyberDecrypted uncached = keyAgreement.decrypt(KyberKeySize.KEY_768, new KyberCipherText(cipherText, null, null));
+            assertTrue(kyberDecrypted.getVariant().getBytes().length == 32);
+            assertArrayEquals(uncached.getVariant().getBytes(), kyberDecrypted.getVariant().getBytes());
+
+            // The same cipher text under another key is a separate entry
+            decapsulate(otherKeyPair, cipherText);
+            assertTrue(KyberDecapsulationCache.size() == 2);
+
+            // Implicit rejections are cached as rejections
+            byte[] modified = cipherText.clone();
+            modified[0] ^= 1;
+            byte[] rejected = decapsulate(keyPair, modified).engineGenerateSecret();
+            assertFalse(Arrays.equals(kyberEncrypted.getSecretKey().getS(), rejected));
+            assertArrayEquals(rejected, decapsulate(keyPair, modified).engineGenerateSecret());
+
+            // The eldest entries are evicted at capacity
+            for (int i = 0; i < 4; i++) {
+                decapsulate(keyPair, encapsulate(keyPair).getCipherText().getC());
+            }
+            assertTrue(KyberDecapsulationCache.size() == 4);
+
+            // Expired entries are not hits
+            KyberDecapsulationCache.configure(4, 20);
+            decapsulate(keyPair, cipherText);
+            Thread.sleep(50);
+            hitRate = hitRate();
+            KyberKeyAgreement expired = decapsulate(keyPair, cipherText);
+            assertTrue(hitRate() < hitRate);
+            assertArrayEquals(kyberEncrypted.getSecretKey().getS(), expired.engineGenerateSecret());
+        } catch (Exception ex) {
+            fail("Exception occured during the decapsulation cache test! [" + ex.getMessage() + "]");
+        } finally {
+            KyberDecapsulationCache.configure(0, 10000);
+        }
+    }
+
+    private static double hitRate() {
+        return KyberMetrics.getInstance().getCacheHitRates().get(KyberDecapsulationCache.CACHE_NAME);
+    }
+
+    private static KyberEncrypted encapsulate(KeyPair keyPair) throws Exception {
+        KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+        keyAgreement.engineInit(keyPair.getPrivate());
+        return (KyberEncrypted) keyAgreement.engineDoPhase(keyPair.getPublic(), true);
+    }
+
+    private static KyberKeyAgreement decapsulate(KeyPair keyPair, byte[] cipherText) throws Exception {
+        KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+        keyAgreement.engineInit(keyPair.getPrivate());
+        keyAgreement.engineDoPhase(new KyberCipherText(cipherText, null, null), true);
+        return keyAgreement;
+    }
+}
@@ -0,0 +1,120 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.util.DerCursor;
+import java.io.IOException;
+import java.security.InvalidKeyException;
+import java.security.KeyPair;
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test decoding keys, cipher texts and secrets with the DER cursor
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class DerDecodingTest {
+
+    /**
+     * Every encoding decodes back to the same raw value and parameters
+     */
+    @Test
+    public void testRoundTrip() {
+        try {
+            KeyPair keyPair = new Kyber768KeyPairGenerator().generateKeyPair();
+            KyberPublicKey publicKey = (KyberPublicKey) keyPair.getPublic();
+            KyberPrivateKey privateKey = (KyberPrivateKey) keyPair.getPrivate();
+            KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+            keyAgreement.engineInit(privateKey);
+            KyberEncrypted kyberEncrypted = (KyberEncrypted) keyAgreement.engineDoPhase(publicKey, true);
+            KyberCipherText cipherText = kyberEncrypted.getCipherText();
+            KyberSecretKey secretKey = kyberEncrypted.getSecretKey();
+
+            KyberPublicKey decodedPublicKey = new KyberPublicKey(publicKey.getEncoded());
+            assertArrayEquals(publicKey.getY(), decodedPublicKey.getY());
+            assertTrue(decodedPublicKey.hasDefaultParams());
+            assertTrue(decodedPublicKey.getKyberKeySize() == KyberKeySize.KEY_768);
+            KyberPrivateKey decodedPrivateKey = new KyberPrivateKey(privateKey.getEncoded());
+            assertArrayEquals(privateKey.getX(), decodedPrivateKey.getX());
+            assertTrue(decodedPrivateKey.hasDefaultParams());
+            assertArrayEquals(cipherText.getC(), new KyberCipherText(cipherText.getEncoded()).getC());
+            assertArrayEquals(secretKey.getS(), new KyberSecretKey(secretKey.getEncoded()).getS());
+        } catch (Exception ex) {
+            fail("Exception occured during the DER round trip test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    /**
+     * Truncated, extended or corrupted encodings are rejected with an
+     * InvalidKeyException and nothing else
+     */
+    @Test
+    public void testMalformed() {
+        try {
+            KeyPair keyPair = new Kyber512KeyPairGenerator().generateKeyPair();
+            byte[] encoded = keyPair.getPublic().getEncoded();
+            assertThrows(InvalidKeyException.class, () -> new KyberPublicKey(Arrays.copyOf(encoded, encoded.length + 1)));
+            assertThrows(InvalidKeyException.class, () -> new KyberPublicKey(Arrays.copyOf(encoded, encoded.length - 1)));
+            assertThrows(InvalidKeyException.class, () -> new KyberPublicKey(new byte[0]));
+            // Indefinite length
+            byte[] indefinite = encoded.clone();
+            indefinite[1] = (byte) 0x80;
+            assertThrows(InvalidKeyException.class, () -> new KyberPublicKey(indefinite));
+
+            Random random = new Random(42);
+            byte[] privateEncoded = keyPair.getPrivate().getEncoded();
+            for (int i = 0; i < 2000; i++) {
+                byte[] corrupted = ((i & 1) == 0) ? encoded.clone() : privateEncoded.clone();
+                // Corrupt the structure, not the key bytes
+                int index = random.nextInt(Math.min(corrupted.length, 200));
+                corrupted[index] ^= (byte) (1 << random.nextInt(8));
+                if (random.nextInt(4) == 0) {
+                    corrupted = Arrays.copyOf(corrupted, random.nextInt(corrupted.length));
+                }
+                try {
+                    if ((i & 1) == 0) {
+                        new KyberPublicKey(corrupted);
+                    } else {
+                        new KyberPrivateKey(corrupted);
+                    }
+                } catch (InvalidKeyException ex) {
+                    // expected for most corruptions
+                }
+            }
+        } catch (Exception ex) {
+            fail("Exception occured during the malformed DER test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    /**
+     * Values are read as slices of the input
+     */
+    @Test
+    public void testCursor() {
+        try {
+            byte[] der = new byte[]{0x30, 0x08, 0x02, 0x01, 0x05, 0x04, 0x03, 1, 2, 3};
+            DerCursor in = new DerCursor(der);
+            DerCursor sequence = in.getSequence();
+            assertTrue(in.available() == 0);
+            assertTrue(sequence.getInteger() == 5);
+            assertTrue(sequence.peekTag() == 0x04);
+            byte[] octets = new byte[3];
+            sequence.getOctetString().get(octets);
+            assertArrayEquals(new byte[]{1, 2, 3}, octets);
+            assertTrue(sequence.peekTag() == -1);
+            assertThrows(IOException.class, () -> sequence.getBigInteger());
+
+            // Long form lengths must be minimal
+            assertThrows(IOException.class, () -> new DerCursor(new byte[]{0x04, (byte) 0x81, 0x01, 0x00}).getOctetString());
+            assertThrows(IOException.class, () -> new DerCursor(new byte[]{0x04, (byte) 0x82, 0x00, (byte) 0x80}).getOctetString());
+            // Padded bit strings are not supported
+            assertThrows(IOException.class, () -> new DerCursor(new byte[]{0x03, 0x02, 0x01, (byte) 0xFE}).getBitString());
+        } catch (Exception ex) {
+            fail("Exception occured during the DER cursor test! [" + ex.getMessage() + "]");
+        }
+    }
+}
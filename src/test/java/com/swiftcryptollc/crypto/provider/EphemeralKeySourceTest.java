@@ -0,0 +1,193 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.security.KeyPair;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the ephemeral key source
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class EphemeralKeySourceTest {
+
+    /**
+     * A key pair is handed out the given number of times, a rotated out key
+     * pair stays usable while it is leased and is destroyed with the last
+     * lease
+     */
+    @Test
+    public void testRotationByUses() {
+        try (KyberEphemeralKeySource source = new KyberEphemeralKeySource(KyberKeySize.KEY_768, 3, Duration.ofHours(1))) {
+            KyberEphemeralKeySource.Lease firstLease = source.acquire();
+            KeyPair first = firstLease.getKeyPair();
+            try (KyberEphemeralKeySource.Lease lease = source.acquire()) {
+                assertTrue(lease.getKeyPair() == first);
+            }
+            KyberEphemeralKeySource.Lease otherLease = source.acquire();
+            assertTrue(otherLease.getKeyPair() == first);
+            KyberEncrypted kyberEncrypted = encapsulate(first);
+
+            KyberEphemeralKeySource.Lease secondLease = source.acquire();
+            KeyPair second = secondLease.getKeyPair();
+            assertFalse(second == first);
+            assertTrue(source.getRotations() == 1);
+            // In flight on the rotated out key pair
+            source.rotate();
+            KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+            keyAgreement.engineInit(first.getPrivate());
+            KyberDecrypted kyberDecrypted = (KyberDecrypted) keyAgreement.engineDoPhase(kyberEncrypted.getCipherText(), true);
+            assertArrayEquals(kyberEncrypted.getSecretKey().getS(), kyberDecrypted.getSecretKey().getS());
+
+            firstLease.close();
+            assertFalse(((KyberOffHeapPrivateKey) first.getPrivate()).isDestroyed());
+            otherLease.close();
+            otherLease.close();
+            assertTrue(((KyberOffHeapPrivateKey) first.getPrivate()).isDestroyed());
+            assertThrows(IllegalStateException.class, () -> otherLease.getKeyPair());
+
+            source.close();
+            assertFalse(((KyberOffHeapPrivateKey) second.getPrivate()).isDestroyed());
+            secondLease.close();
+            assertTrue(((KyberOffHeapPrivateKey) second.getPrivate()).isDestroyed());
+            assertThrows(IllegalStateException.class, () -> source.acquire());
+        } catch (Exception ex) {
+            fail("Exception occured during the ephemeral key rotation test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    /**
+     * A key pair is rotated out when it gets too old, even without traffic
+     */
+    @Test
+    public void testRotationByAge() {
+        try (KyberEphemeralKeySource source = new KyberEphemeralKeySource(KyberKeySize.KEY_512, 1000, Duration.ofMillis(50))) {
+            KeyPair first;
+            try (KyberEphemeralKeySource.Lease lease = source.acquire()) {
+                first = lease.getKeyPair();
+            }
+            Thread.sleep(300);
+            assertTrue(source.getRotations() >= 1);
+            assertTrue(((KyberOffHeapPrivateKey) first.getPrivate()).isDestroyed());
+            try (KyberEphemeralKeySource.Lease lease = source.acquire()) {
+                assertFalse(lease.getKeyPair() == first);
+            }
+        } catch (Exception ex) {
+            fail("Exception occured during the ephemeral key age test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    /**
+     * Each key pair is handed out exactly maxUses times across threads
+     */
+    @Test
+    public void testConcurrentAcquire() {
+        int threads = 8;
+        int perThread = 1000;
+        int maxUses = 50;
+        try (KyberEphemeralKeySource source = new KyberEphemeralKeySource(KyberKeySize.KEY_768, maxUses, Duration.ofHours(1))) {
+            Map<KeyPair, AtomicInteger> counts = new ConcurrentHashMap<>();
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread worker = new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        try (KyberEphemeralKeySource.Lease lease = source.acquire()) {
+                            counts.computeIfAbsent(lease.getKeyPair(), k -> new AtomicInteger()).incrementAndGet();
+                        }
+                    }
+                });
+                workers.add(worker);
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            assertTrue(counts.size() == threads * perThread / maxUses);
+            for (AtomicInteger count : counts.values()) {
+                assertTrue(count.get() == maxUses);
+            }
+            assertTrue(source.getRotations() == counts.size() - 1);
+        } catch (Exception ex) {
+            fail("Exception occured during the concurrent ephemeral key test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    /**
+     * Handshakes decapsulating on leased key pairs agree on the secret while
+     * the key pairs rotate underneath them every few uses
+     */
+    @Test
+    public void testDecapsulationDuringRotation() {
+        int threads = 4;
+        int perThread = 100;
+        try (KyberEphemeralKeySource source = new KyberEphemeralKeySource(KyberKeySize.KEY_512, 2, Duration.ofHours(1))) {
+            AtomicInteger mismatches = new AtomicInteger();
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread worker = new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        try (KyberEphemeralKeySource.Lease lease = source.acquire()) {
+                            KeyPair keyPair = lease.getKeyPair();
+                            KyberEncrypted kyberEncrypted = encapsulate(keyPair);
+                            source.rotate();
+                            KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+                            keyAgreement.engineInit(keyPair.getPrivate());
+                            KyberDecrypted kyberDecrypted = (KyberDecrypted) keyAgreement.engineDoPhase(kyberEncrypted.getCipherText(), true);
+                            if (!Arrays.equals(kyberEncrypted.getSecretKey().getS(), kyberDecrypted.getSecretKey().getS())) {
+                                mismatches.incrementAndGet();
+                            }
+                        } catch (Exception ex) {
+                            mismatches.incrementAndGet();
+                        }
+                    }
+                });
+                workers.add(worker);
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            assertTrue(mismatches.get() == 0);
+            assertTrue(source.getRotations() > 0);
+        } catch (Exception ex) {
+            fail("Exception occured during the ephemeral key rotation race test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    /**
+     * The pre-generated key pair shows up in the key pool gauge
+     */
+    @Test
+    public void testKeyPoolDepth() {
+        try {
+            long depth = KyberMetrics.getInstance().getKeyPoolDepth();
+            KyberEphemeralKeySource source = new KyberEphemeralKeySource(KyberKeySize.KEY_512, 10, Duration.ofHours(1));
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while ((KyberMetrics.getInstance().getKeyPoolDepth() == depth) && (System.nanoTime() < deadline)) {
+                Thread.sleep(10);
+            }
+            assertTrue(KyberMetrics.getInstance().getKeyPoolDepth() == depth + 1);
+            source.close();
+            assertTrue(KyberMetrics.getInstance().getKeyPoolDepth() == depth);
+        } catch (Exception ex) {
+            fail("Exception occured during the key pool depth test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    private static KyberEncrypted encapsulate(KeyPair keyPair) throws Exception {
+        KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+        keyAgreement.engineInit(keyPair.getPrivate());
+        return (KyberEncrypted) keyAgreement.engineDoPhase(keyPair.getPublic(), true);
+    }
+}
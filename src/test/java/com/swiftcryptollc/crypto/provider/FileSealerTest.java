@@ -0,0 +1,80 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.util.Random;
+import java.util.stream.Stream;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the parallel file sealer against the streaming Kyber/GCM Cipher
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class FileSealerTest {
+
+    @Test
+    public void testFileSealer() {
+        try {
+            KeyPair keyPair = new Kyber1024KeyPairGenerator().generateKeyPair();
+            Path dir = Files.createTempDirectory("kyber");
+            Path plain = dir.resolve("plain");
+            Path sealed = dir.resolve("sealed");
+            Path opened = dir.resolve("opened");
+            // More than one task, and a chunk-aligned size
+            for (int size : new int[]{17 * 1024 * 1024 + 12345, 3 * KyberGcmCipher.CHUNK_BYTES, 0}) {
+                byte[] message = new byte[size];
+                new Random(size).nextBytes(message);
+                Files.write(plain, message);
+
+                KyberFileSealer.seal(plain, sealed, (KyberPublicKey) keyPair.getPublic());
+                KyberFileSealer.open(sealed, opened, (KyberPrivateKey) keyPair.getPrivate());
+                assertArrayEquals(message, Files.readAllBytes(opened));
+
+                // Same format as the streaming Cipher
+                Cipher cipher = Cipher.getInstance("Kyber1024/GCM/NoPadding", new KyberJCE());
+                cipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+                assertArrayEquals(message, cipher.doFinal(Files.readAllBytes(sealed)));
+            }
+
+            // A damaged frame leaves no output behind, and an existing output
+            // as it was
+            byte[] damaged = Files.readAllBytes(sealed);
+            damaged[damaged.length - 1] ^= 1;
+            Files.write(sealed, damaged);
+            Files.deleteIfExists(opened);
+            assertThrows(AEADBadTagException.class, () -> KyberFileSealer.open(sealed, opened, (KyberPrivateKey) keyPair.getPrivate()));
+            assertFalse(Files.exists(opened));
+            byte[] previous = new byte[]{1, 2, 3};
+            Files.write(opened, previous);
+            assertThrows(AEADBadTagException.class, () -> KyberFileSealer.open(sealed, opened, (KyberPrivateKey) keyPair.getPrivate()));
+            assertArrayEquals(previous, Files.readAllBytes(opened));
+
+            // The input cannot be overwritten in place, also through another
+            // path to it
+            Path alias = dir.resolve(".").resolve("plain");
+            assertThrows(IOException.class, () -> KyberFileSealer.seal(plain, alias, (KyberPublicKey) keyPair.getPublic()));
+            assertThrows(IOException.class, () -> KyberFileSealer.open(sealed, sealed, (KyberPrivateKey) keyPair.getPrivate()));
+            assertArrayEquals(damaged, Files.readAllBytes(sealed));
+            try (Stream<Path> files = Files.list(dir)) {
+                assertTrue(files.count() == 3);
+            }
+
+            Files.deleteIfExists(plain);
+            Files.deleteIfExists(sealed);
+            Files.deleteIfExists(opened);
+            Files.deleteIfExists(dir);
+        } catch (Exception ex) {
+            fail("Exception occured during the file sealer test! [" + ex.getMessage() + "]");
+        }
+    }
+}
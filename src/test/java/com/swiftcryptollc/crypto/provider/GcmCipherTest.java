@@ -0,0 +1,95 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.io.ByteArrayOutputStream;
+import java.security.KeyPair;
+import java.util.Arrays;
+import java.util.Random;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the streaming Kyber + AES-GCM Cipher
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class GcmCipherTest {
+
+    @Test
+    public void testStreaming() {
+        try {
+            KeyPair keyPair = new Kyber768KeyPairGenerator().generateKeyPair();
+            byte[] message = new byte[3 * KyberGcmCipher.CHUNK_BYTES + 1234];
+            new Random(7).nextBytes(message);
+
+            Cipher cipher = Cipher.getInstance("Kyber768/GCM/NoPadding", new KyberJCE());
+            cipher.init(Cipher.ENCRYPT_MODE, keyPair.getPublic());
+            byte[] encrypted = process(cipher, message, 10000);
+
+            cipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+            assertArrayEquals(message, process(cipher, encrypted, 777));
+            // The cipher is ready for the next message after doFinal
+            assertArrayEquals(message, cipher.doFinal(encrypted));
+
+            // Each message gets its own encapsulation
+            cipher.init(Cipher.ENCRYPT_MODE, keyPair.getPublic());
+            byte[] empty = cipher.doFinal();
+            byte[] second = cipher.doFinal();
+            assertThrows(AssertionError.class, () -> assertArrayEquals(empty, second));
+            cipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+            assertArrayEquals(new byte[0], cipher.doFinal(second));
+
+            // Tampering and truncation are detected
+            byte[] tampered = encrypted.clone();
+            tampered[tampered.length - 1] ^= 1;
+            assertThrows(AEADBadTagException.class, () -> cipher.doFinal(tampered));
+            byte[] truncated = Arrays.copyOf(encrypted, encrypted.length - 1300);
+            assertThrows(AEADBadTagException.class, () -> cipher.doFinal(truncated));
+            assertArrayEquals(message, cipher.doFinal(encrypted));
+        } catch (Exception ex) {
+            fail("Exception occured during the Kyber/GCM test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    /**
+     * Each message costs one encapsulation, none is made ahead of time
+     */
+    @Test
+    public void testOneEncapsulationPerMessage() {
+        try {
+            KeyPair keyPair = new Kyber1024KeyPairGenerator().generateKeyPair();
+            KyberMetrics metrics = KyberMetrics.getInstance();
+            long encapsulations = metrics.getEncapsulateCounts().get("Kyber1024");
+
+            Cipher cipher = Cipher.getInstance("Kyber1024/GCM/NoPadding", new KyberJCE());
+            cipher.init(Cipher.ENCRYPT_MODE, keyPair.getPublic());
+            assertTrue(metrics.getEncapsulateCounts().get("Kyber1024") == encapsulations);
+            byte[] encrypted = cipher.doFinal(new byte[100]);
+            assertTrue(metrics.getEncapsulateCounts().get("Kyber1024") == encapsulations + 1);
+            assertTrue(encrypted.length <= cipher.getOutputSize(100));
+            process(cipher, new byte[100], 10);
+            assertTrue(metrics.getEncapsulateCounts().get("Kyber1024") == encapsulations + 2);
+
+            cipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+            assertArrayEquals(new byte[100], cipher.doFinal(encrypted));
+        } catch (Exception ex) {
+            fail("Exception occured during the Kyber/GCM encapsulation count test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    private static byte[] process(Cipher cipher, byte[] input, int step) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < input.length; i += step) {
+            byte[] part = cipher.update(input, i, Math.min(step, input.length - i));
+            if (part != null) {
+                out.write(part);
+            }
+        }
+        out.write(cipher.doFinal());
+        return out.toByteArray();
+    }
+}
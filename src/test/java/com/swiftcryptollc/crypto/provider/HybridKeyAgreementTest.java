@@ -0,0 +1,140 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.spec.KyberHybridParameterSpec;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.crypto.KeyAgreement;
+import javax.crypto.SecretKey;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the X25519Kyber768 hybrid key agreement
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class HybridKeyAgreementTest {
+
+    /**
+     * Both sides get the same secret, with and without an executor
+     */
+    @Test
+    public void testHybridKeyAgreement() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            KeyPairGenerator keyGen = KeyPairGenerator.getInstance("X25519Kyber768", new KyberJCE());
+            KeyPair aliceKeyPair = keyGen.generateKeyPair();
+            KeyPair bobKeyPair = keyGen.generateKeyPair();
+            assertTrue(bobKeyPair.getPublic().getEncoded().length == KyberHybridPublicKey.ENCODED_BYTES);
+
+            for (KyberHybridParameterSpec params : new KyberHybridParameterSpec[]{null, new KyberHybridParameterSpec(executor)}) {
+                KeyAgreement aliceKeyAgreement = KeyAgreement.getInstance("X25519Kyber768", new KyberJCE());
+                aliceKeyAgreement.init(aliceKeyPair.getPrivate(), params);
+                Key cipherText = aliceKeyAgreement.doPhase(bobKeyPair.getPublic(), true);
+                assertTrue(cipherText.getEncoded().length == KyberHybridCipherText.ENCODED_BYTES);
+                SecretKey aliceKey = aliceKeyAgreement.generateSecret("AES");
+
+                KeyAgreement bobKeyAgreement = KeyAgreement.getInstance("X25519Kyber768", new KyberJCE());
+                bobKeyAgreement.init(bobKeyPair.getPrivate(), params);
+                bobKeyAgreement.doPhase(cipherText, true);
+                SecretKey bobKey = bobKeyAgreement.generateSecret("AES");
+                assertArrayEquals(aliceKey.getEncoded(), bobKey.getEncoded());
+            }
+        } catch (Exception ex) {
+            fail("Exception occured during the hybrid key agreement test! [" + ex.getMessage() + "]");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Keys and cipher texts survive their encodings, and a modified X25519
+     * half changes the secret
+     */
+    @Test
+    public void testHybridEncoding() {
+        try {
+            KyberHybridKeyPairGenerator keyGen = new KyberHybridKeyPairGenerator();
+            KeyPair aliceKeyPair = keyGen.generateKeyPair();
+            KeyPair bobKeyPair = keyGen.generateKeyPair();
+            KyberHybridPublicKey bobPublicKey = new KyberHybridPublicKey(bobKeyPair.getPublic().getEncoded());
+            KyberHybridPrivateKey bobPrivateKey = new KyberHybridPrivateKey(bobKeyPair.getPrivate().getEncoded());
+            assertTrue(bobPublicKey.equals(bobKeyPair.getPublic()));
+            assertTrue(bobPublicKey.hashCode() == bobKeyPair.getPublic().hashCode());
+            assertTrue(bobPrivateKey.getPublicKey().equals(bobPublicKey));
+
+            KyberHybridKeyAgreement aliceKeyAgreement = new KyberHybridKeyAgreement();
+            aliceKeyAgreement.engineInit(aliceKeyPair.getPrivate(), null);
+            byte[] cipherText = aliceKeyAgreement.engineDoPhase(bobPublicKey, true).getEncoded();
+            byte[] aliceSecret = aliceKeyAgreement.engineGenerateSecret();
+
+            KyberHybridKeyAgreement bobKeyAgreement = new KyberHybridKeyAgreement();
+            bobKeyAgreement.engineInit(bobPrivateKey, null);
+            bobKeyAgreement.engineDoPhase(new KyberHybridCipherText(cipherText), true);
+            assertArrayEquals(aliceSecret, bobKeyAgreement.engineGenerateSecret());
+            assertThrows(IllegalStateException.class, () -> bobKeyAgreement.engineGenerateSecret());
+
+            cipherText[0] ^= 2;
+            bobKeyAgreement.engineDoPhase(new KyberHybridCipherText(cipherText), true);
+            assertFalse(Arrays.equals(aliceSecret, bobKeyAgreement.engineGenerateSecret()));
+
+            assertThrows(InvalidKeyException.class, () -> new KyberHybridCipherText(new byte[32]));
+            assertThrows(InvalidKeyException.class, () -> bobKeyAgreement.engineDoPhase(bobKeyPair.getPrivate(), true));
+        } catch (Exception ex) {
+            fail("Exception occured during the hybrid encoding test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    /**
+     * Compare the latency of running the halves one after the other and
+     * concurrently
+     */
+    @Test
+    public void testHybridLatency() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            int rounds = 200;
+            KyberHybridKeyPairGenerator keyGen = new KyberHybridKeyPairGenerator();
+            KeyPair aliceKeyPair = keyGen.generateKeyPair();
+            KeyPair bobKeyPair = keyGen.generateKeyPair();
+            long sequential = time(aliceKeyPair, bobKeyPair, null, rounds);
+            long concurrent = time(aliceKeyPair, bobKeyPair, new KyberHybridParameterSpec(executor), rounds);
+            System.out.println("X25519Kyber768 " + rounds + " rounds: sequential [" + sequential
+                    + "] ms, concurrent [" + concurrent + "] ms");
+        } catch (Exception ex) {
+            fail("Exception occured during the hybrid latency test! [" + ex.getMessage() + "]");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return the time taken by the given number of encapsulation and
+     * decapsulation rounds, after the same number of warm-up rounds
+     */
+    private static long time(KeyPair aliceKeyPair, KeyPair bobKeyPair, KyberHybridParameterSpec params, int rounds) throws Exception {
+        KyberHybridKeyAgreement aliceKeyAgreement = new KyberHybridKeyAgreement();
+        aliceKeyAgreement.engineInit(aliceKeyPair.getPrivate(), params, null);
+        KyberHybridKeyAgreement bobKeyAgreement = new KyberHybridKeyAgreement();
+        bobKeyAgreement.engineInit(bobKeyPair.getPrivate(), params, null);
+        long start = 0;
+        for (int i = 0; i < 2 * rounds; i++) {
+            if (i == rounds) {
+                start = System.nanoTime();
+            }
+            Key cipherText = aliceKeyAgreement.engineDoPhase(bobKeyPair.getPublic(), true);
+            bobKeyAgreement.engineDoPhase(cipherText, true);
+            assertArrayEquals(aliceKeyAgreement.engineGenerateSecret(), bobKeyAgreement.engineGenerateSecret());
+        }
+        return (System.nanoTime() - start) / 1000000;
+    }
+}
@@ -0,0 +1,41 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.github.aelstad.keccakj.core.KeccakSponge;
+import com.github.aelstad.keccakj.fips202.Shake256;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A tampered cipher text must decapsulate to SHAKE256(z || H(c))
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class ImplicitRejectionTest {
+
+    @Test
+    public void testImplicitRejection() throws Exception {
+        for (KyberKeySize kyberKeySize : KyberKeySize.values()) {
+            KyberPKI kyberPKI = KyberKem.generateKeyPair(kyberKeySize.getParameterSet(), KyberJCE.getRandom());
+            KyberPrivateKey privateKey = kyberPKI.getPrivateKey();
+            KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+            keyAgreement.engineInit(privateKey);
+            KyberEncrypted kyberEncrypted = (KyberEncrypted) keyAgreement.engineDoPhase(kyberPKI.getPublicKey(), true);
+            byte[] ciphertext = kyberEncrypted.getCipherText().getC().clone();
+            ciphertext[0] ^= 1;
+
+            KyberDecrypted kyberDecrypted = keyAgreement.decrypt(kyberKeySize, new KyberCipherText(ciphertext, null, null));
+
+            byte[] x = privateKey.getX();
+            byte[] z = Arrays.copyOfRange(x, x.length - 32, x.length);
+            byte[] hc = MessageDigest.getInstance("SHA3-256").digest(ciphertext);
+            byte[] expected = new byte[32];
+            KeccakSponge xof = new Shake256();
+            xof.getAbsorbStream().write(z);
+            xof.getAbsorbStream().write(hc);
+            xof.getSqueezeStream().read(expected);
+            assertArrayEquals(expected, kyberDecrypted.getSecretKey().getS());
+        }
+    }
+}
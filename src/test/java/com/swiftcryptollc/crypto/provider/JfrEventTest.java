@@ -0,0 +1,65 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.util.HashSet;
+import java.util.Set;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test that the JFR events are emitted for key generation, encapsulation and
+ * decapsulation
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class JfrEventTest {
+
+    @Test
+    public void testEvents() {
+        Path dump = null;
+        try (Recording recording = new Recording()) {
+            recording.enable("com.swiftcryptollc.kyber.KeyGeneration");
+            recording.enable("com.swiftcryptollc.kyber.Encapsulate");
+            recording.enable("com.swiftcryptollc.kyber.Decapsulate");
+            recording.start();
+
+            Kyber768KeyPairGenerator keyGen768 = new Kyber768KeyPairGenerator();
+            KeyPair keyPair = keyGen768.generateKeyPair();
+            KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+            keyAgreement.engineInit(keyPair.getPrivate());
+            KyberEncrypted kyberEncrypted = (KyberEncrypted) keyAgreement.engineDoPhase(keyPair.getPublic(), true);
+            keyAgreement.engineDoPhase(kyberEncrypted.getCipherText(), true);
+
+            recording.stop();
+            dump = Files.createTempFile("kyber", ".jfr");
+            recording.dump(dump);
+
+            Set<String> names = new HashSet<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+                names.add(event.getEventType().getName());
+                assertTrue(event.getString("parameterSet").equals("Kyber768"));
+                if (event.hasField("implicitRejection")) {
+                    assertTrue(!event.getBoolean("implicitRejection"));
+                }
+            }
+            assertTrue(names.contains("com.swiftcryptollc.kyber.KeyGeneration"));
+            assertTrue(names.contains("com.swiftcryptollc.kyber.Encapsulate"));
+            assertTrue(names.contains("com.swiftcryptollc.kyber.Decapsulate"));
+        } catch (Exception ex) {
+            fail("Exception occured during the JFR test! [" + ex.getMessage() + "]");
+        } finally {
+            try {
+                if (dump != null) {
+                    Files.deleteIfExists(dump);
+                }
+            } catch (Exception ex) {
+            }
+        }
+    }
+}
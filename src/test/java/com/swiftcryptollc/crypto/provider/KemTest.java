@@ -3,8 +3,15 @@ package com.swiftcryptollc.crypto.provider;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import com.swiftcryptollc.crypto.provider.kyber.KyberParameterSet;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import org.junit.jupiter.api.Test;
@@ -169,6 +176,108 @@ public class KemTest {
         }
     }
 
+    /**
+     * Every vector of the official data files is reproduced from its seed
+     * with the NIST DRBG, which checks the DRBG the Kyber-90s regression
+     * vectors were generated with
+     */
+    @Test
+    public void testSeeds() {
+        try {
+            int fileIndex = 0;
+            for (String rsp : new String[]{"PQCkemKAT_1632.rsp", "PQCkemKAT_2400.rsp", "PQCkemKAT_3168.rsp"}) {
+                KyberKeySize kyberKeySize = KyberKeySize.values()[fileIndex++];
+                for (Map<String, byte[]> vector : readVectors(rsp)) {
+                    testSeed(kyberKeySize.getParameterSet(), vector);
+                }
+            }
+        } catch (Exception ex) {
+            fail("Exception occured during the seed test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    /**
+     * Kyber-90s regression vectors. These were generated by this
+     * implementation, not taken from the official known answer tests, so they
+     * only catch changes to its output: decapsulation with the Kyber-90s key
+     * agreement and derivation of every value from the seed
+     */
+    @Test
+    public void testRegression90s() {
+        try {
+            int fileIndex = 0;
+            for (String rsp : new String[]{"kyber512_90s_regression.txt", "kyber768_90s_regression.txt", "kyber1024_90s_regression.txt"}) {
+                KyberKeySize kyberKeySize = KyberKeySize.values()[fileIndex++];
+                List<Map<String, byte[]>> vectors = readVectors(rsp);
+                assertTrue(vectors.size() == 100);
+                for (Map<String, byte[]> vector : vectors) {
+                    byte[] sk = vector.get("sk");
+                    Kyber90sKeyAgreement keyAgreement = new Kyber90sKeyAgreement();
+                    keyAgreement.engineInit(new KyberPrivateKey(sk, null, null, sk.length, true));
+                    KyberDecrypted kyberDecrypted = keyAgreement.decrypt(kyberKeySize,
+                            KyberCipherText.move(vector.get("ct"), true));
+                    assertArrayEquals(vector.get("ss"), kyberDecrypted.getSecretKey().getS());
+                    testSeed(kyberKeySize.getParameterSet(true), vector);
+                }
+            }
+        } catch (Exception ex) {
+            fail("Exception occured during the Kyber-90s regression test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    /**
+     * Repeat the PQCgenKAT_kem steps for one vector, key generation and
+     * encapsulation with the randomness of the DRBG seeded with the vector's
+     * seed
+     *
+     * @param params
+     * @param vector
+     * @throws Exception
+     */
+    private static void testSeed(KyberParameterSet params, Map<String, byte[]> vector) throws Exception {
+        NistDrbg drbg = new NistDrbg(vector.get("seed"));
+        byte[] d = new byte[32];
+        byte[] z = new byte[32];
+        byte[] m = new byte[32];
+        drbg.nextBytes(d);
+        drbg.nextBytes(z);
+        KyberPackedPKI keys = KyberKem.deriveKeys(params, d, z);
+        assertArrayEquals(vector.get("pk"), keys.getPackedPublicKey());
+        assertArrayEquals(vector.get("sk"), keys.getPackedPrivateKey());
+        drbg.nextBytes(m);
+        KyberEncrypted kyberEncrypted = KyberKem.encapsulate(params, m, ByteBuffer.wrap(keys.getPackedPublicKey()), null);
+        assertArrayEquals(vector.get("ct"), kyberEncrypted.getCipherText().getC());
+        assertArrayEquals(vector.get("ss"), kyberEncrypted.getSecretKey().getS());
+    }
+
+    /**
+     * @param rsp
+     * @return the values of every vector in the data file
+     * @throws IOException
+     */
+    private List<Map<String, byte[]>> readVectors(String rsp) throws IOException {
+        List<Map<String, byte[]>> vectors = new ArrayList<>();
+        try (InputStream inputStream = Thread.currentThread().getContextClassLoader().getResourceAsStream("assets/" + rsp);
+                BufferedReader br = new BufferedReader(new InputStreamReader(inputStream))) {
+            Map<String, byte[]> vector = null;
+            String line;
+            while ((line = br.readLine()) != null) {
+                int split = line.indexOf('=');
+                if (split < 0) {
+                    continue;
+                }
+                String key = line.substring(0, split).trim();
+                if (key.equals("count")) {
+                    vector = new HashMap<>();
+                    vectors.add(vector);
+                } else {
+                    vector.put(key, toByteArray(line.substring(split + 1).trim()));
+                }
+            }
+        }
+        return vectors;
+    }
+
     /**
      * Verifies that the private key is stored properly and that it is encoded
      * and decoded properly
@@ -1,6 +1,13 @@
 package com.swiftcryptollc.crypto.provider;
 
+import java.security.InvalidKeyException;
 import java.security.KeyPair;
+import java.util.Arrays;
+import javax.crypto.SecretKey;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import org.junit.jupiter.api.Test;
@@ -57,4 +64,67 @@ public class KeyAgreementTest {
             fail("Exception occured during the test! [" + ex.getMessage() + "]");
         }
     }
+
+    /**
+     * Decoded keys share the default parameters, and a public key from another
+     * parameter set is rejected
+     */
+    @Test
+    public void testParameterSetMismatch() {
+        try {
+            KeyPair aliceKeyPair = new Kyber768KeyPairGenerator().generateKeyPair();
+            KeyPair bobKeyPair = new Kyber512KeyPairGenerator().generateKeyPair();
+            KyberPublicKey bobPublicKey = new KyberPublicKey(bobKeyPair.getPublic().getEncoded());
+            KyberPrivateKey alicePrivateKey = new KyberPrivateKey(aliceKeyPair.getPrivate().getEncoded());
+            assertTrue(bobPublicKey.hasDefaultParams());
+            assertTrue(alicePrivateKey.hasDefaultParams());
+
+            KyberKeyAgreement aliceKeyAgreement = new KyberKeyAgreement();
+            aliceKeyAgreement.engineInit(alicePrivateKey);
+            assertThrows(InvalidKeyException.class, () -> aliceKeyAgreement.engineDoPhase(bobPublicKey, true));
+        } catch (Exception ex) {
+            fail("Exception occured during the parameter set mismatch test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    /**
+     * Both sides derive the same AES key, IV and HMAC key from one SHAKE256
+     * pass, and the AES key is the shared secret itself
+     */
+    @Test
+    public void testGenerateSecrets() {
+        try {
+            KeyPair bobKeyPair = new Kyber768KeyPairGenerator().generateKeyPair();
+            KeyPair aliceKeyPair = new Kyber768KeyPairGenerator().generateKeyPair();
+            String[] algorithms = {"AES", "IV", "HmacSHA256"};
+            int[] lengths = {32, 12, 32};
+
+            KyberKeyAgreement aliceKeyAgreement = new KyberKeyAgreement();
+            aliceKeyAgreement.engineInit(aliceKeyPair.getPrivate());
+            KyberEncrypted kyberEncrypted = (KyberEncrypted) aliceKeyAgreement.engineDoPhase(bobKeyPair.getPublic(), true);
+            SecretKey[] aliceKeys = aliceKeyAgreement.generateSecrets(algorithms, lengths);
+
+            KyberKeyAgreement bobKeyAgreement = new KyberKeyAgreement();
+            bobKeyAgreement.engineInit(bobKeyPair.getPrivate());
+            bobKeyAgreement.engineDoPhase(kyberEncrypted.getCipherText(), true);
+            SecretKey[] bobKeys = bobKeyAgreement.generateSecrets(algorithms, lengths);
+
+            assertArrayEquals(kyberEncrypted.getSecretKey().getS(), aliceKeys[0].getEncoded());
+            assertEquals("AES", aliceKeys[0].getAlgorithm());
+            for (int i = 0; i < algorithms.length; i++) {
+                assertEquals(lengths[i], bobKeys[i].getEncoded().length);
+                assertArrayEquals(aliceKeys[i].getEncoded(), bobKeys[i].getEncoded());
+            }
+            assertFalse(Arrays.equals(Arrays.copyOf(bobKeys[0].getEncoded(), 12), bobKeys[1].getEncoded()));
+
+            // The secret is handed out once per phase
+            assertThrows(IllegalStateException.class, () -> bobKeyAgreement.engineGenerateSecret("AES"));
+            bobKeyAgreement.engineDoPhase(kyberEncrypted.getCipherText(), true);
+            SecretKey aes128 = bobKeyAgreement.engineGenerateSecret("AES_128");
+            assertEquals("AES", aes128.getAlgorithm());
+            assertArrayEquals(Arrays.copyOf(kyberEncrypted.getSecretKey().getS(), 16), aes128.getEncoded());
+        } catch (Exception ex) {
+            fail("Exception occured during the generate secrets test! [" + ex.getMessage() + "]");
+        }
+    }
 }
@@ -0,0 +1,117 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.KeyPair;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the memory-mapped public key directory
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class KeyDirectoryTest {
+
+    @Test
+    public void testKeyDirectory() {
+        try {
+            Path path = Files.createTempDirectory("kyber").resolve("keys.kyd");
+            path.getParent().toFile().deleteOnExit();
+            path.toFile().deleteOnExit();
+            int count = 8;
+            KeyPair[] keyPairs = new KeyPair[count];
+            byte[][] ids = new byte[count][];
+            try (KyberKeyDirectory directory = KyberKeyDirectory.create(path, KyberKeySize.KEY_768, count)) {
+                for (int i = 0; i < count; i++) {
+                    keyPairs[i] = new Kyber768KeyPairGenerator().generateKeyPair();
+                    ids[i] = directory.add(((KyberPublicKey) keyPairs[i].getPublic()).getY());
+                }
+                assertEquals(count, directory.size());
+                assertFalse(directory.put(ids[0], ((KyberPublicKey) keyPairs[0].getPublic()).getY()));
+                assertThrows(IllegalStateException.class, () -> directory.put(new byte[KyberKeyDirectory.ID_BYTES],
+                        ((KyberPublicKey) keyPairs[0].getPublic()).getY()));
+            }
+
+            try (KyberKeyDirectory directory = KyberKeyDirectory.open(path)) {
+                assertEquals(count, directory.size());
+                assertEquals(KyberKeySize.KEY_768, directory.getKyberKeySize());
+                assertNull(directory.get(new byte[KyberKeyDirectory.ID_BYTES]));
+                for (int i = 0; i < count; i++) {
+                    ByteBuffer slice = directory.get(ids[i]);
+                    assertTrue(slice.isReadOnly());
+                    byte[] y = new byte[slice.remaining()];
+                    slice.get(y);
+                    assertArrayEquals(((KyberPublicKey) keyPairs[i].getPublic()).getY(), y);
+
+                    // Encapsulate straight from the mapping
+                    KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+                    keyAgreement.engineInit(keyPairs[i].getPrivate());
+                    KyberEncrypted kyberEncrypted = (KyberEncrypted) keyAgreement.engineDoPhase(directory.getPublicKey(ids[i]), true);
+                    KyberDecrypted kyberDecrypted = (KyberDecrypted) keyAgreement.engineDoPhase(kyberEncrypted.getCipherText(), true);
+                    assertArrayEquals(kyberEncrypted.getSecretKey().getS(), kyberDecrypted.getSecretKey().getS());
+                }
+            }
+        } catch (Exception ex) {
+            fail("Exception occured during the key directory test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    /**
+     * A corrupt count or index fails to open with an IOException
+     */
+    @Test
+    public void testCorruptKeyDirectory() {
+        try {
+            Path path = Files.createTempDirectory("kyber").resolve("keys.kyd");
+            path.getParent().toFile().deleteOnExit();
+            path.toFile().deleteOnExit();
+            int count = 4;
+            try (KyberKeyDirectory directory = KyberKeyDirectory.create(path, KyberKeySize.KEY_512, count)) {
+                directory.add(((KyberPublicKey) new Kyber512KeyPairGenerator().generateKeyPair().getPublic()).getY());
+            }
+            byte[] original = Files.readAllBytes(path);
+
+            // COUNT past the capacity
+            writeInt(path, 20, count + 1);
+            assertThrows(IOException.class, () -> KyberKeyDirectory.open(path));
+
+            // An index entry past the count
+            Files.write(path, original);
+            writeInt(path, 32, 2);
+            writeInt(path, 36, 2);
+            assertThrows(IOException.class, () -> KyberKeyDirectory.open(path));
+
+            // Every slot in use, which would never end a probe
+            Files.write(path, original);
+            for (int slot = 0; slot < 8; slot++) {
+                writeInt(path, 32 + 4 * slot, 1);
+            }
+            assertThrows(IOException.class, () -> KyberKeyDirectory.open(path));
+
+            Files.write(path, original);
+            try (KyberKeyDirectory directory = KyberKeyDirectory.open(path)) {
+                assertEquals(1, directory.size());
+            }
+        } catch (Exception ex) {
+            fail("Exception occured during the corrupt key directory test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    private static void writeInt(Path path, int offset, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, value), offset);
+        }
+    }
+}
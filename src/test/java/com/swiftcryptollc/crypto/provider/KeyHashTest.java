@@ -0,0 +1,65 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.util.KyberKeyUtil;
+import java.security.KeyPair;
+import java.util.HashMap;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test that keys and cipher texts hash by content, so they work as map keys
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class KeyHashTest {
+
+    @Test
+    public void testContentHash() {
+        try {
+            KeyPair keyPair = new Kyber512KeyPairGenerator().generateKeyPair();
+            KyberPublicKey publicKey = (KyberPublicKey) keyPair.getPublic();
+            KyberPrivateKey privateKey = (KyberPrivateKey) keyPair.getPrivate();
+            KyberPublicKey decodedPublicKey = new KyberPublicKey(publicKey.getEncoded());
+            KyberPrivateKey decodedPrivateKey = new KyberPrivateKey(privateKey.getEncoded());
+
+            Map<Object, String> map = new HashMap<>();
+            map.put(publicKey, "public");
+            map.put(privateKey, "private");
+            assertEquals("public", map.get(decodedPublicKey));
+            assertEquals("private", map.get(decodedPrivateKey));
+
+            KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+            keyAgreement.engineInit(privateKey);
+            KyberEncrypted kyberEncrypted = (KyberEncrypted) keyAgreement.engineDoPhase(publicKey, true);
+            KyberCipherText cipherText = kyberEncrypted.getCipherText();
+            map.put(cipherText, "cipherText");
+            assertEquals("cipherText", map.get(new KyberCipherText(cipherText.getC(), null, null)));
+
+            KeyPair otherKeyPair = new Kyber512KeyPairGenerator().generateKeyPair();
+            assertNotEquals(publicKey, otherKeyPair.getPublic());
+            assertNotEquals(privateKey, otherKeyPair.getPrivate());
+        } catch (Exception ex) {
+            fail("Exception occured during the key hash test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    @Test
+    public void testConstantTimeCompare() {
+        for (int length = 0; length < 20; length++) {
+            byte[] x = new byte[length];
+            for (int i = 0; i < length; i++) {
+                x[i] = (byte) (i * 37);
+            }
+            assertEquals(0, KyberKeyUtil.constantTimeCompare(x, x.clone()));
+            for (int i = 0; i < length; i++) {
+                byte[] y = x.clone();
+                y[i] ^= (byte) 0x80;
+                assertEquals(1, KyberKeyUtil.constantTimeCompare(x, y));
+            }
+        }
+        assertEquals(1, KyberKeyUtil.constantTimeCompare(new byte[3], new byte[4]));
+    }
+}
@@ -0,0 +1,131 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.security.InvalidKeyException;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the key ring decapsulation
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class KeyRingTest {
+
+    /**
+     * Cipher texts for any key in the ring decapsulate, with and without a
+     * key ID and an executor
+     */
+    @Test
+    public void testKeyRing() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            KeyPair oldKeyPair = new Kyber768KeyPairGenerator().generateKeyPair();
+            KeyPair newKeyPair = new Kyber768KeyPairGenerator().generateKeyPair();
+            KeyPair otherKeyPair = new Kyber512KeyPairGenerator().generateKeyPair();
+            for (KyberKeyRing keyRing : new KyberKeyRing[]{new KyberKeyRing(), new KyberKeyRing(executor)}) {
+                byte[] oldId = keyRing.add((KyberPrivateKey) oldKeyPair.getPrivate());
+                byte[] newId = keyRing.add((KyberPrivateKey) newKeyPair.getPrivate());
+                keyRing.add((KyberPrivateKey) otherKeyPair.getPrivate());
+                keyRing.add((KyberPrivateKey) newKeyPair.getPrivate());
+                assertTrue(keyRing.size() == 3);
+                assertArrayEquals(oldId, KyberKeyRing.keyId((KyberPublicKey) oldKeyPair.getPublic()));
+
+                for (KeyPair keyPair : new KeyPair[]{oldKeyPair, newKeyPair, otherKeyPair}) {
+                    KyberEncrypted kyberEncrypted = encapsulate(keyPair);
+                    byte[] cipherText = kyberEncrypted.getCipherText().getC();
+                    byte[] secret = kyberEncrypted.getSecretKey().getS();
+                    assertArrayEquals(secret, keyRing.decapsulate(cipherText).getS());
+                    byte[] keyId = KyberKeyRing.keyId((KyberPublicKey) keyPair.getPublic());
+                    assertArrayEquals(secret, keyRing.decapsulate(cipherText, keyId).getS());
+                }
+
+                // A modified cipher text matches no key
+                KyberEncrypted kyberEncrypted = encapsulate(newKeyPair);
+                byte[] cipherText = kyberEncrypted.getCipherText().getC();
+                cipherText[0] ^= 1;
+                assertFalse(Arrays.equals(kyberEncrypted.getSecretKey().getS(), keyRing.decapsulate(cipherText).getS()));
+
+                // Removed keys are gone
+                assertTrue(keyRing.remove(oldId));
+                assertFalse(keyRing.remove(oldId));
+                byte[] oldCipherText = encapsulate(oldKeyPair).getCipherText().getC();
+                assertThrows(InvalidKeyException.class, () -> keyRing.decapsulate(oldCipherText, oldId));
+                assertTrue(keyRing.remove(newId));
+                assertThrows(InvalidKeyException.class, () -> keyRing.decapsulate(oldCipherText));
+            }
+        } catch (Exception ex) {
+            fail("Exception occured during the key ring test! [" + ex.getMessage() + "]");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Removing a key while it is decapsulating never yields a wrong secret,
+     * the decapsulation either completes or finds the key gone
+     */
+    @Test
+    public void testRemoveDuringDecapsulation() {
+        try {
+            KyberKeyRing keyRing = new KyberKeyRing();
+            KeyPair keyPair = new Kyber1024KeyPairGenerator().generateKeyPair();
+            KyberPrivateKey privateKey = (KyberPrivateKey) keyPair.getPrivate();
+            KyberEncrypted kyberEncrypted = encapsulate(keyPair);
+            byte[] cipherText = kyberEncrypted.getCipherText().getC();
+            byte[] secret = kyberEncrypted.getSecretKey().getS();
+            byte[] keyId = keyRing.add(privateKey);
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicInteger wrong = new AtomicInteger();
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < 3; t++) {
+                Thread worker = new Thread(() -> {
+                    while (!done.get()) {
+                        try {
+                            if (!Arrays.equals(secret, keyRing.decapsulate(cipherText, keyId).getS())) {
+                                wrong.incrementAndGet();
+                            }
+                        } catch (InvalidKeyException ex) {
+                            // removed
+                        } catch (RuntimeException ex) {
+                            // e.g. the key was destroyed under the decapsulation
+                            wrong.incrementAndGet();
+                        }
+                    }
+                });
+                workers.add(worker);
+                worker.start();
+            }
+            long deadline = System.nanoTime() + 1_000_000_000L;
+            while (System.nanoTime() - deadline < 0) {
+                keyRing.remove(keyId);
+                keyRing.add(privateKey);
+                Thread.yield();
+            }
+            done.set(true);
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            assertTrue(wrong.get() == 0);
+        } catch (Exception ex) {
+            fail("Exception occured during the key ring removal test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    private static KyberEncrypted encapsulate(KeyPair keyPair) throws Exception {
+        KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+        keyAgreement.engineInit(keyPair.getPrivate());
+        return (KyberEncrypted) keyAgreement.engineDoPhase(keyPair.getPublic(), true);
+    }
+}
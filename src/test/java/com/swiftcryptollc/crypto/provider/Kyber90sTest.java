@@ -0,0 +1,146 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.spec.KyberPublicKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.InvalidKeyException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyPairGeneratorSpi;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.List;
+import javax.crypto.Cipher;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the Kyber-90s variant
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class Kyber90sTest {
+
+    /**
+     * Both sides of a Kyber-90s key agreement get the same secret for every
+     * parameter set
+     */
+    @Test
+    public void testKeyAgreement90s() {
+        try {
+            KeyPairGeneratorSpi[] keyGens = {new Kyber90sKeyPairGenerator.Kyber512(),
+                new Kyber90sKeyPairGenerator.Kyber768(), new Kyber90sKeyPairGenerator.Kyber1024()};
+            for (KeyPairGeneratorSpi keyGen : keyGens) {
+                KeyPair bobKeyPair = keyGen.generateKeyPair();
+                KeyPair aliceKeyPair = keyGen.generateKeyPair();
+
+                Kyber90sKeyAgreement aliceKeyAgreement = new Kyber90sKeyAgreement();
+                aliceKeyAgreement.engineInit(aliceKeyPair.getPrivate());
+                KyberEncrypted kyberEncrypted = (KyberEncrypted) aliceKeyAgreement.engineDoPhase(bobKeyPair.getPublic(), true);
+
+                Kyber90sKeyAgreement bobKeyAgreement = new Kyber90sKeyAgreement();
+                bobKeyAgreement.engineInit(bobKeyPair.getPrivate());
+                KyberDecrypted kyberDecrypted = (KyberDecrypted) bobKeyAgreement.engineDoPhase(kyberEncrypted.getCipherText(), true);
+                assertArrayEquals(kyberEncrypted.getSecretKey().getS(), kyberDecrypted.getSecretKey().getS());
+                // SHA-256 only gives 32 bytes of key material
+                assertThrows(IllegalArgumentException.class, () -> aliceKeyAgreement.generateSecrets("HmacSHA512"));
+                aliceKeyAgreement.engineDoPhase(bobKeyPair.getPublic(), true);
+                assertThrows(InvalidKeyException.class, () -> aliceKeyAgreement.engineGenerateSecret("HmacSHA512"));
+
+                // The keys and cipher texts carry their variant, each key
+                // agreement rejects the other one's
+                assertTrue(((KyberPublicKey) bobKeyPair.getPublic()).isKyber90s());
+                assertTrue(kyberEncrypted.getCipherText().isKyber90s());
+                KyberKeyAgreement standardKeyAgreement = new KyberKeyAgreement();
+                assertThrows(InvalidKeyException.class, () -> standardKeyAgreement.engineInit(bobKeyPair.getPrivate()));
+                KyberKeySize kyberKeySize = ((KyberPublicKey) bobKeyPair.getPublic()).getKyberKeySize();
+                KyberPKI standardPKI = KyberKem.generateKeyPair(kyberKeySize.getParameterSet(), KyberJCE.getRandom());
+                KeyPair standardKeyPair = new KeyPair(standardPKI.getPublicKey(), standardPKI.getPrivateKey());
+                standardKeyAgreement.engineInit(standardKeyPair.getPrivate());
+                assertThrows(InvalidKeyException.class, () -> standardKeyAgreement.engineDoPhase(bobKeyPair.getPublic(), true));
+                assertThrows(InvalidKeyException.class, () -> standardKeyAgreement.engineDoPhase(kyberEncrypted.getCipherText(), true));
+                KyberEncrypted standardEncrypted = (KyberEncrypted) standardKeyAgreement.engineDoPhase(standardKeyPair.getPublic(), true);
+                assertThrows(InvalidKeyException.class, () -> bobKeyAgreement.engineDoPhase(standardEncrypted.getCipherText(), true));
+                assertThrows(InvalidKeyException.class, () -> new Kyber90sKeyAgreement().engineInit(standardKeyPair.getPrivate()));
+            }
+        } catch (Exception ex) {
+            fail("Exception occured during the Kyber-90s key agreement test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    /**
+     * The variant survives every encoding and the standard-only engines
+     * reject Kyber-90s keys
+     */
+    @Test
+    public void testVariant90s() {
+        try {
+            KeyPair keyPair = new Kyber90sKeyPairGenerator.Kyber768().generateKeyPair();
+            KyberPublicKey publicKey = (KyberPublicKey) keyPair.getPublic();
+            KyberPrivateKey privateKey = (KyberPrivateKey) keyPair.getPrivate();
+            Kyber90sKeyAgreement keyAgreement = new Kyber90sKeyAgreement();
+            keyAgreement.engineInit(privateKey);
+            KyberCipherText cipherText = ((KyberEncrypted) keyAgreement.engineDoPhase(publicKey, true)).getCipherText();
+
+            // DER
+            assertTrue(new KyberPublicKey(publicKey.getEncoded()).isKyber90s());
+            assertTrue(new KyberPrivateKey(privateKey.getEncoded()).isKyber90s());
+            assertTrue(new KyberCipherText(cipherText.getEncoded()).isKyber90s());
+            assertFalse(Arrays.equals(publicKey.getEncoded(), new KyberPublicKey(publicKey.getY(), null, null).getEncoded()));
+            assertFalse(publicKey.equals(new KyberPublicKey(publicKey.getY(), null, null)));
+            KeyFactory keyFactory = KeyFactory.getInstance("Kyber", new KyberJCE());
+            assertTrue(((KyberPublicKey) keyFactory.generatePublic(new X509EncodedKeySpec(publicKey.getEncoded()))).isKyber90s());
+            assertThrows(InvalidKeySpecException.class, () -> keyFactory.getKeySpec(publicKey, KyberPublicKeySpec.class));
+            KyberOffHeapPrivateKey offHeapKey = KyberOffHeapPrivateKey.copyOf(privateKey);
+            assertTrue(offHeapKey.isKyber90s());
+            assertTrue(new KyberPrivateKey(offHeapKey.getEncoded()).isKyber90s());
+            assertTrue(((KyberPrivateKey) keyFactory.translateKey(offHeapKey)).isKyber90s());
+
+            // Wire
+            byte[] encodedKey = KyberWireCodec.encode(publicKey);
+            assertTrue(encodedKey[0] == KyberWireCodec.tag(KyberWireCodec.PUBLIC_KEY, KyberKeySize.KEY_768, true));
+            assertTrue(((KyberPublicKey) KyberWireCodec.decode(encodedKey)).isKyber90s());
+            assertTrue(((com.swiftcryptollc.crypto.interfaces.KyberPublicKey) KyberWireCodec.decode(ByteBuffer.wrap(encodedKey))).isKyber90s());
+            assertTrue(((KyberCipherText) KyberWireCodec.decode(KyberWireCodec.encode(cipherText))).isKyber90s());
+
+            // Standard-only engines
+            Cipher cipher = Cipher.getInstance("Kyber768/GCM/NoPadding", new KyberJCE());
+            assertThrows(InvalidKeyException.class, () -> cipher.init(Cipher.ENCRYPT_MODE, publicKey));
+            assertThrows(InvalidKeyException.class, () -> cipher.init(Cipher.DECRYPT_MODE, privateKey));
+            Path in = Files.createTempFile("kyber90s", ".in");
+            Path out = in.resolveSibling(in.getFileName() + ".sealed");
+            try {
+                assertThrows(InvalidKeyException.class, () -> KyberFileSealer.seal(in, out, publicKey));
+                assertFalse(Files.exists(out));
+            } finally {
+                Files.deleteIfExists(in);
+            }
+            assertThrows(InvalidKeyException.class, () -> KyberMultiRecipientKem.encapsulate(List.of(publicKey)));
+            assertThrows(InvalidKeyException.class, () -> new KyberKeyRing().add(privateKey));
+        } catch (Exception ex) {
+            fail("Exception occured during the Kyber-90s variant test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    /**
+     * The engines are registered with the provider
+     */
+    @Test
+    public void testProvider90s() {
+        try {
+            KeyPairGenerator keyGen = KeyPairGenerator.getInstance("Kyber768-90s", new KyberJCE());
+            KeyPair keyPair = keyGen.generateKeyPair();
+            assertTrue(((KyberPublicKey) keyPair.getPublic()).getKyberKeySize() == KyberKeySize.KEY_768);
+            assertTrue(new KyberJCE().getService("KeyAgreement", "Kyber-90s") != null);
+        } catch (Exception ex) {
+            fail("Exception occured during the Kyber-90s provider test! [" + ex.getMessage() + "]");
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.lang.management.ManagementFactory;
+import java.security.KeyPair;
+import java.time.Duration;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the provider metrics and the JMX registration
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class MetricsTest {
+
+    @Test
+    public void testMetrics() {
+        try {
+            new KyberJCE();
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertTrue(server.isRegistered(new ObjectName(KyberMetrics.OBJECT_NAME)));
+
+            KyberMetrics metrics = KyberMetrics.getInstance();
+            long keyGens = metrics.getKeyGenCounts().get("Kyber512");
+            long decapsulations = metrics.getDecapsulateCounts().get("Kyber512");
+
+            Kyber512KeyPairGenerator keyGen512 = new Kyber512KeyPairGenerator();
+            KeyPair keyPair = keyGen512.generateKeyPair();
+            KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+            keyAgreement.engineInit(keyPair.getPrivate());
+            KyberEncrypted kyberEncrypted = (KyberEncrypted) keyAgreement.engineDoPhase(keyPair.getPublic(), true);
+            keyAgreement.engineDoPhase(kyberEncrypted.getCipherText(), true);
+
+            assertTrue(metrics.getKeyGenCounts().get("Kyber512") == keyGens + 1);
+            assertTrue(metrics.getDecapsulateCounts().get("Kyber512") == decapsulations + 1);
+            assertTrue(metrics.getDecapsulateLatency().get("Kyber512").getP99Micros() > 0);
+
+            Object counts = server.getAttribute(new ObjectName(KyberMetrics.OBJECT_NAME), "EncapsulateCounts");
+            assertTrue(counts != null);
+            Object latency = server.getAttribute(new ObjectName(KyberMetrics.OBJECT_NAME), "DecapsulateLatency");
+            assertTrue(latency != null);
+
+            // The key pool depth is a gauge of the pending ephemeral key pairs
+            long depth = metrics.getKeyPoolDepth();
+            try (KyberEphemeralKeySource keySource = new KyberEphemeralKeySource(KyberKeySize.KEY_512, 1000, Duration.ofHours(1))) {
+                long deadline = System.nanoTime() + 10_000_000_000L;
+                while ((metrics.getKeyPoolDepth() == depth) && (System.nanoTime() < deadline)) {
+                    Thread.sleep(10);
+                }
+                metrics.reset();
+                assertTrue((Long) server.getAttribute(new ObjectName(KyberMetrics.OBJECT_NAME), "KeyPoolDepth") == depth + 1);
+            }
+            assertTrue(metrics.getKeyPoolDepth() == depth);
+        } catch (Exception ex) {
+            fail("Exception occured during the metrics test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    /**
+     * The bucket upper bounds must be within 25% of every value mapped to them
+     */
+    @Test
+    public void testHistogramBuckets() {
+        for (long value = 0; value < 1_000_000; value += 7) {
+            long upper = KyberLatencyHistogram.bucketUpperBound(KyberLatencyHistogram.bucketIndex(value));
+            assertTrue(upper >= value && upper <= value + (value / 4) + 1, "value " + value + " upper " + upper);
+        }
+    }
+}
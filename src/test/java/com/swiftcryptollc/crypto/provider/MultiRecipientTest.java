@@ -0,0 +1,100 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.security.InvalidKeyException;
+import java.security.KeyPair;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the multi-recipient KEM
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class MultiRecipientTest {
+
+    /**
+     * A group sharing the matrix seed and two ordinary keys all decapsulate
+     * the same secret, and the group shares one u
+     */
+    @Test
+    public void testMultiRecipient() {
+        try {
+            SecureRandom random = new SecureRandom();
+            byte[] groupSeed = new byte[32];
+            random.nextBytes(groupSeed);
+            List<KeyPair> keyPairs = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                keyPairs.add(KyberMultiRecipientKem.generateKeyPair(KyberKeySize.KEY_768, groupSeed, random));
+            }
+            keyPairs.add(new Kyber512KeyPairGenerator().generateKeyPair());
+            keyPairs.add(new Kyber768KeyPairGenerator().generateKeyPair());
+            List<KyberPublicKey> publicKeys = new ArrayList<>();
+            for (KeyPair keyPair : keyPairs) {
+                publicKeys.add((KyberPublicKey) keyPair.getPublic());
+            }
+
+            KyberMultiRecipientKem.Encapsulated encapsulated = KyberMultiRecipientKem.encapsulate(publicKeys);
+            byte[] cipherText = encapsulated.getCipherText();
+            // 3 groups, the first one with a single u for three recipients
+            int expected = 3 + (3 + 960 + 3 * (32 + 128)) + (3 + 640 + (32 + 128)) + (3 + 960 + (32 + 128));
+            assertTrue(cipherText.length == expected);
+            for (KeyPair keyPair : keyPairs) {
+                KyberSecretKey secretKey = KyberMultiRecipientKem.decapsulate(cipherText, (KyberPrivateKey) keyPair.getPrivate());
+                assertArrayEquals(encapsulated.getSecretKey().getS(), secretKey.getS());
+            }
+
+            // Group keys are ordinary Kyber keys
+            KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+            keyAgreement.engineInit(keyPairs.get(1).getPrivate());
+            KyberEncrypted kyberEncrypted = (KyberEncrypted) keyAgreement.engineDoPhase(keyPairs.get(0).getPublic(), true);
+            KyberKeyAgreement otherKeyAgreement = new KyberKeyAgreement();
+            otherKeyAgreement.engineInit(keyPairs.get(0).getPrivate());
+            KyberDecrypted kyberDecrypted = (KyberDecrypted) otherKeyAgreement.engineDoPhase(kyberEncrypted.getCipherText(), true);
+            assertArrayEquals(kyberEncrypted.getSecretKey().getS(), kyberDecrypted.getSecretKey().getS());
+        } catch (Exception ex) {
+            fail("Exception occured during the multi-recipient test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    /**
+     * A modified cipher text gives a different secret, and a key that is not
+     * listed is rejected
+     */
+    @Test
+    public void testMultiRecipientRejection() {
+        try {
+            SecureRandom random = new SecureRandom();
+            byte[] groupSeed = new byte[32];
+            random.nextBytes(groupSeed);
+            KeyPair alice = KyberMultiRecipientKem.generateKeyPair(KyberKeySize.KEY_1024, groupSeed, random);
+            KeyPair bob = KyberMultiRecipientKem.generateKeyPair(KyberKeySize.KEY_1024, groupSeed, random);
+            KeyPair eve = KyberMultiRecipientKem.generateKeyPair(KyberKeySize.KEY_1024, groupSeed, random);
+            List<KyberPublicKey> publicKeys = new ArrayList<>();
+            publicKeys.add((KyberPublicKey) alice.getPublic());
+            publicKeys.add((KyberPublicKey) bob.getPublic());
+
+            KyberMultiRecipientKem.Encapsulated encapsulated = KyberMultiRecipientKem.encapsulate(publicKeys);
+            byte[] cipherText = encapsulated.getCipherText();
+            // Flip a bit of bob's v
+            cipherText[cipherText.length - 1] ^= 1;
+            KyberSecretKey aliceSecret = KyberMultiRecipientKem.decapsulate(cipherText, (KyberPrivateKey) alice.getPrivate());
+            KyberSecretKey bobSecret = KyberMultiRecipientKem.decapsulate(cipherText, (KyberPrivateKey) bob.getPrivate());
+            assertArrayEquals(encapsulated.getSecretKey().getS(), aliceSecret.getS());
+            assertFalse(java.util.Arrays.equals(encapsulated.getSecretKey().getS(), bobSecret.getS()));
+
+            assertThrows(InvalidKeyException.class,
+                    () -> KyberMultiRecipientKem.decapsulate(encapsulated.getCipherText(), (KyberPrivateKey) eve.getPrivate()));
+            assertThrows(InvalidKeyException.class,
+                    () -> KyberMultiRecipientKem.decapsulate(new byte[]{1, 0, 1, 4}, (KyberPrivateKey) eve.getPrivate()));
+        } catch (Exception ex) {
+            fail("Exception occured during the multi-recipient rejection test! [" + ex.getMessage() + "]");
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.security.GeneralSecurityException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The AES-256 CTR_DRBG of the NIST PQC reference rng.c, which PQCgenKAT_kem
+ * seeds with the "seed" of every vector in the data files
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class NistDrbg {
+
+    private final byte[] key = new byte[32];
+    private final byte[] v = new byte[16];
+    private final Cipher aes;
+
+    /**
+     * randombytes_init(entropyInput, NULL, 256)
+     *
+     * @param entropyInput 48 bytes
+     * @throws GeneralSecurityException
+     */
+    public NistDrbg(byte[] entropyInput) throws GeneralSecurityException {
+        aes = Cipher.getInstance("AES/ECB/NoPadding");
+        update(entropyInput);
+    }
+
+    /**
+     * randombytes(x, x.length)
+     *
+     * @param x
+     * @throws GeneralSecurityException
+     */
+    public void nextBytes(byte[] x) throws GeneralSecurityException {
+        byte[] block = new byte[16];
+        for (int i = 0; i < x.length; i += 16) {
+            increment();
+            encrypt(v, block, 0);
+            System.arraycopy(block, 0, x, i, Math.min(16, x.length - i));
+        }
+        update(null);
+    }
+
+    /**
+     * AES256_CTR_DRBG_Update
+     *
+     * @param providedData 48 bytes, or null
+     * @throws GeneralSecurityException
+     */
+    private void update(byte[] providedData) throws GeneralSecurityException {
+        byte[] temp = new byte[48];
+        for (int i = 0; i < 3; i++) {
+            increment();
+            encrypt(v, temp, 16 * i);
+        }
+        if (providedData != null) {
+            for (int i = 0; i < 48; i++) {
+                temp[i] ^= providedData[i];
+            }
+        }
+        System.arraycopy(temp, 0, key, 0, 32);
+        System.arraycopy(temp, 32, v, 0, 16);
+    }
+
+    private void increment() {
+        for (int j = 15; j >= 0; j--) {
+            if (v[j] == (byte) 0xFF) {
+                v[j] = 0;
+            } else {
+                v[j]++;
+                break;
+            }
+        }
+    }
+
+    private void encrypt(byte[] in, byte[] out, int outOffset) throws GeneralSecurityException {
+        aes.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"));
+        aes.doFinal(in, 0, 16, out, outOffset);
+    }
+}
@@ -0,0 +1,43 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.security.KeyPair;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the off-heap private key and its destruction
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class OffHeapKeyTest {
+
+    @Test
+    public void testOffHeapKey() {
+        try {
+            Kyber768KeyPairGenerator keyGen = new Kyber768KeyPairGenerator();
+            KeyPair keyPair = keyGen.generateKeyPair();
+            KyberPrivateKey privateKey = (KyberPrivateKey) keyPair.getPrivate();
+            KyberOffHeapPrivateKey offHeapKey = KyberOffHeapPrivateKey.copyOf(privateKey);
+            assertArrayEquals(privateKey.getX(), offHeapKey.getX());
+            assertArrayEquals(privateKey.getEncoded(), offHeapKey.getEncoded());
+
+            KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+            keyAgreement.engineInit(offHeapKey);
+            KyberEncrypted kyberEncrypted = (KyberEncrypted) keyAgreement.engineDoPhase(keyPair.getPublic(), true);
+            KyberDecrypted kyberDecrypted = (KyberDecrypted) keyAgreement.engineDoPhase(kyberEncrypted.getCipherText(), true);
+            assertArrayEquals(kyberEncrypted.getSecretKey().getS(), kyberDecrypted.getSecretKey().getS());
+
+            assertFalse(offHeapKey.isDestroyed());
+            offHeapKey.destroy();
+            assertTrue(offHeapKey.isDestroyed());
+            assertThrows(IllegalStateException.class, () -> offHeapKey.getX());
+            assertThrows(IllegalStateException.class, () -> keyAgreement.engineDoPhase(kyberEncrypted.getCipherText(), true));
+        } catch (Exception ex) {
+            fail("Exception occured during the off-heap key test! [" + ex.getMessage() + "]");
+        }
+    }
+}
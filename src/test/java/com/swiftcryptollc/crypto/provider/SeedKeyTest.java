@@ -0,0 +1,77 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.spec.KyberSeedPrivateKeySpec;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test deterministic key generation and the compact seed private key
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class SeedKeyTest {
+
+    @Test
+    public void testSeedKey() {
+        try {
+            byte[] seed = new byte[KyberSeedPrivateKeySpec.SEED_BYTES];
+            new Random(1).nextBytes(seed);
+            KyberKeyFactory keyFactory = new KyberKeyFactory();
+            KyberSeedPrivateKeySpec spec = new KyberSeedPrivateKeySpec(seed, KyberKeySize.KEY_768);
+            PrivateKey privateKey = keyFactory.engineGeneratePrivate(spec);
+            PublicKey publicKey = keyFactory.engineGeneratePublic(spec);
+
+            // The same seed always gives the same keys
+            KyberPreparedKeyCache.configure(4);
+            byte[] expanded = ((KyberSeedPrivateKey) privateKey).getX();
+            assertArrayEquals(expanded, ((KyberSeedPrivateKey) keyFactory.engineGeneratePrivate(spec)).getX());
+            assertArrayEquals(((KyberPublicKey) publicKey).getY(), ((KyberPublicKey) keyFactory.engineGeneratePublic(spec)).getY());
+            assertEquals(KyberKeySize.KEY_768.getParameterSet().getPrivateKeyBytes(), expanded.length);
+
+            // z is the last 32 bytes of the full private key
+            byte[] z = new byte[32];
+            System.arraycopy(expanded, expanded.length - 32, z, 0, 32);
+            byte[] seedZ = new byte[32];
+            System.arraycopy(seed, 32, seedZ, 0, 32);
+            assertArrayEquals(seedZ, z);
+
+            // 65-byte round trip
+            byte[] encoded = privateKey.getEncoded();
+            assertEquals("RAW", privateKey.getFormat());
+            assertEquals(KyberSeedPrivateKeySpec.ENCODED_BYTES, encoded.length);
+            PrivateKey decoded = keyFactory.engineGeneratePrivate(new KyberSeedPrivateKeySpec(encoded));
+            assertEquals(privateKey, decoded);
+
+            // The seed key works with the key agreement, and the expanded key
+            // agrees with it
+            KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+            keyAgreement.engineInit(decoded);
+            KyberEncrypted kyberEncrypted = (KyberEncrypted) keyAgreement.engineDoPhase(publicKey, true);
+            KyberDecrypted kyberDecrypted = (KyberDecrypted) keyAgreement.engineDoPhase(kyberEncrypted.getCipherText(), true);
+            assertArrayEquals(kyberEncrypted.getSecretKey().getS(), kyberDecrypted.getSecretKey().getS());
+
+            PKCS8EncodedKeySpec pkcs8 = keyFactory.engineGetKeySpec(privateKey, PKCS8EncodedKeySpec.class);
+            KyberKeyAgreement expandedAgreement = new KyberKeyAgreement();
+            expandedAgreement.engineInit(keyFactory.engineGeneratePrivate(pkcs8));
+            KyberDecrypted expandedDecrypted = (KyberDecrypted) expandedAgreement.engineDoPhase(kyberEncrypted.getCipherText(), true);
+            assertArrayEquals(kyberEncrypted.getSecretKey().getS(), expandedDecrypted.getSecretKey().getS());
+
+            assertTrue(KyberMetrics.getInstance().getCacheHitRates().get(KyberPreparedKeyCache.CACHE_NAME) > 0);
+
+            // Disabled by default, keys are expanded on every use
+            KyberPreparedKeyCache.configure(0);
+            assertArrayEquals(expanded, ((KyberSeedPrivateKey) privateKey).getX());
+        } catch (Exception ex) {
+            fail("Exception occured during the seed key test! [" + ex.getMessage() + "]");
+        } finally {
+            KyberPreparedKeyCache.configure(0);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.swiftcryptollc.crypto.provider;
+
+import com.swiftcryptollc.crypto.provider.kyber.ByteOps;
+import com.swiftcryptollc.crypto.provider.kyber.SwarArithmetic;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The SWAR kernels must match the scalar ones bit for bit
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class SwarArithmeticTest {
+
+    private final SwarArithmetic swar = new SwarArithmetic();
+
+    /**
+     * Every 16-bit input, with an odd length to cover the scalar tail
+     */
+    private static short[] allShorts() {
+        short[] a = new short[65537];
+        for (int i = 0; i < 65536; i++) {
+            a[i] = (short) i;
+        }
+        return a;
+    }
+
+    @Test
+    public void testBarrettReduce() {
+        short[] packed = allShorts();
+        short[] scalar = packed.clone();
+        swar.reduce(packed, 0, packed.length);
+        for (int i = 0; i < scalar.length; i++) {
+            scalar[i] = ByteOps.barrettReduce(scalar[i]);
+        }
+        assertArrayEquals(scalar, packed);
+    }
+
+    @Test
+    public void testConditionalSubQ() {
+        short[] packed = allShorts();
+        short[] scalar = packed.clone();
+        swar.conditionalSubQ(packed, 0, packed.length);
+        for (int i = 0; i < scalar.length; i++) {
+            scalar[i] = ByteOps.conditionalSubQ(scalar[i]);
+        }
+        assertArrayEquals(scalar, packed);
+    }
+
+    @Test
+    public void testAddSub() {
+        Random random = new Random(42);
+        short[] a = new short[1027];
+        short[] b = new short[1027];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = (short) random.nextInt();
+            b[i] = (short) random.nextInt();
+        }
+        short[] sum = a.clone();
+        short[] diff = a.clone();
+        swar.add(sum, 0, b, 0, a.length);
+        swar.sub(diff, 0, b, 0, a.length);
+        for (int i = 0; i < a.length; i++) {
+            assertArrayEquals(new short[]{(short) (a[i] + b[i]), (short) (a[i] - b[i])}, new short[]{sum[i], diff[i]});
+        }
+    }
+}
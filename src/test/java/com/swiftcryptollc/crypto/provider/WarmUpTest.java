@@ -0,0 +1,57 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class WarmUpTest {
+
+    @Test
+    public void testWarmUpIterations() {
+        Duration duration = KyberJCE.warmUp(5, KyberKeySize.KEY_512, KyberKeySize.KEY_768, KyberKeySize.KEY_1024);
+        assertTrue(duration.toNanos() > 0);
+        assertEquals(duration, KyberJCE.getWarmUpTime());
+    }
+
+    @Test
+    public void testWarmUpInBackground() throws Exception {
+        Duration duration = KyberJCE.warmUpInBackground(Duration.ofMillis(100)).get(30, TimeUnit.SECONDS);
+        assertTrue(duration.toMillis() >= 100);
+    }
+
+    @Test
+    public void testWarmUpUnrecorded() throws Exception {
+        KyberMetrics metrics = KyberMetrics.getInstance();
+        long keyGens = metrics.getKeyGenCounts().get("Kyber512");
+        long decapsulations = metrics.getDecapsulateCounts().get("Kyber512");
+        Path dump = Files.createTempFile("kyber", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.swiftcryptollc.kyber.KeyGeneration");
+            recording.enable("com.swiftcryptollc.kyber.Encapsulate");
+            recording.enable("com.swiftcryptollc.kyber.Decapsulate");
+            recording.start();
+            KyberJCE.warmUp(3, KyberKeySize.KEY_512);
+            recording.stop();
+            recording.dump(dump);
+            assertTrue(RecordingFile.readAllEvents(dump).isEmpty());
+        } finally {
+            Files.deleteIfExists(dump);
+        }
+        assertEquals(keyGens, (long) metrics.getKeyGenCounts().get("Kyber512"));
+        assertEquals(decapsulations, (long) metrics.getDecapsulateCounts().get("Kyber512"));
+
+        // Recording resumes after the warm-up
+        new Kyber512KeyPairGenerator().generateKeyPair();
+        assertEquals(keyGens + 1, (long) metrics.getKeyGenCounts().get("Kyber512"));
+    }
+}
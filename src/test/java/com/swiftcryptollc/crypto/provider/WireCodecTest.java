@@ -0,0 +1,180 @@
+package com.swiftcryptollc.crypto.provider;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.security.InvalidKeyException;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the raw wire codec and the frame reader and writer
+ *
+ * @author Steven K Fisher <swiftcryptollc@gmail.com>
+ */
+public class WireCodecTest {
+
+    /**
+     * Keys and cipher texts of every size survive encoding, which is smaller
+     * than the DER encoding
+     */
+    @Test
+    public void testCodec() {
+        try {
+            for (KyberKeySize kyberKeySize : KyberKeySize.values()) {
+                KeyPair keyPair = generateKeyPair(kyberKeySize);
+                KyberPublicKey publicKey = (KyberPublicKey) keyPair.getPublic();
+                KyberCipherText cipherText = encapsulate(keyPair).getCipherText();
+
+                byte[] encodedKey = KyberWireCodec.encode(publicKey);
+                assertTrue(encodedKey.length == 1 + kyberKeySize.getParameterSet().getPublicKeyBytes());
+                assertTrue(encodedKey.length == KyberWireCodec.encodedLength(publicKey));
+                assertTrue(encodedKey.length < publicKey.getEncoded().length);
+                assertTrue(KyberWireCodec.decode(encodedKey).equals(publicKey));
+                // Keys read in place equal the decoded copies both ways round
+                PublicKey inPlace = KyberWireCodec.decode(ByteBuffer.wrap(encodedKey));
+                assertTrue(inPlace.equals(publicKey) && publicKey.equals(inPlace));
+                assertTrue(inPlace.hashCode() == publicKey.hashCode());
+                byte[] encoded90s = encodedKey.clone();
+                encoded90s[0] = KyberWireCodec.tag(KyberWireCodec.PUBLIC_KEY, kyberKeySize, true);
+                PublicKey inPlace90s = KyberWireCodec.decode(ByteBuffer.wrap(encoded90s));
+                assertFalse(inPlace90s.equals(publicKey) || publicKey.equals(inPlace90s) || inPlace90s.equals(inPlace));
+                assertTrue(inPlace90s.equals(KyberWireCodec.decode(encoded90s)));
+
+                byte[] encodedCipherText = KyberWireCodec.encode(cipherText);
+                assertTrue(encodedCipherText.length == 1 + kyberKeySize.getParameterSet().getCipherTextBytes());
+                assertTrue(encodedCipherText.length < cipherText.getEncoded().length);
+                assertArrayEquals(cipherText.getC(), ((KyberCipherText) KyberWireCodec.decode(encodedCipherText)).getC());
+            }
+
+            byte[] encoded = KyberWireCodec.encode(generateKeyPair(KyberKeySize.KEY_768).getPublic());
+            assertThrows(InvalidKeyException.class, () -> KyberWireCodec.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+            encoded[0] = KyberWireCodec.tag(KyberWireCodec.CIPHER_TEXT, KyberKeySize.KEY_768);
+            assertThrows(InvalidKeyException.class, () -> KyberWireCodec.decode(encoded));
+            encoded[0] = 0x7F;
+            assertThrows(InvalidKeyException.class, () -> KyberWireCodec.decode(encoded));
+        } catch (Exception ex) {
+            fail("Exception occured during the wire codec test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    /**
+     * A stream of mixed frames reads back in order, the keys read are usable
+     * for encapsulation and unknown frames are skipped
+     */
+    @Test
+    public void testFrames() {
+        try {
+            List<KeyPair> keyPairs = new ArrayList<>();
+            List<PublicKey> written = new ArrayList<>();
+            for (int i = 0; i < 150; i++) {
+                KeyPair keyPair = generateKeyPair(KyberKeySize.values()[i % 3]);
+                keyPairs.add(keyPair);
+                written.add(keyPair.getPublic());
+                written.add(encapsulate(keyPair).getCipherText());
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            KyberFrameWriter writer = new KyberFrameWriter(Channels.newChannel(out));
+            for (PublicKey key : written) {
+                writer.write(key);
+            }
+            writer.flush();
+            // A frame from a newer writer
+            out.write(new byte[]{0, 3, 0x7F, 1, 2});
+            byte[] stream = out.toByteArray();
+
+            // A small buffer to refill mid-frame
+            for (int bufferBytes : new int[]{100, 64 * 1024}) {
+                KyberFrameReader reader = new KyberFrameReader(Channels.newChannel(new ByteArrayInputStream(stream)), bufferBytes);
+                List<com.swiftcryptollc.crypto.interfaces.KyberPublicKey> publicKeys = new ArrayList<>();
+                for (int i = 0; i < keyPairs.size(); i++) {
+                    publicKeys.add(reader.readPublicKey());
+                    assertArrayEquals(((KyberCipherText) written.get(2 * i + 1)).getC(), reader.readCipherText().getC());
+                }
+                assertTrue(reader.read() == null);
+                // Keys read early are intact after the buffer was refilled
+                for (int i = 0; i < keyPairs.size(); i++) {
+                    assertArrayEquals(((KyberPublicKey) keyPairs.get(i).getPublic()).getY(), publicKeys.get(i).getY());
+                }
+                KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+                keyAgreement.engineInit(keyPairs.get(0).getPrivate());
+                KyberEncrypted kyberEncrypted = (KyberEncrypted) keyAgreement.engineDoPhase(publicKeys.get(0), true);
+                keyAgreement = new KyberKeyAgreement();
+                keyAgreement.engineInit(keyPairs.get(0).getPrivate());
+                KyberDecrypted kyberDecrypted = (KyberDecrypted) keyAgreement.engineDoPhase(kyberEncrypted.getCipherText(), true);
+                assertArrayEquals(kyberEncrypted.getSecretKey().getS(), kyberDecrypted.getSecretKey().getS());
+            }
+
+            KyberFrameReader truncated = new KyberFrameReader(Channels.newChannel(new ByteArrayInputStream(Arrays.copyOf(stream, 1000))));
+            assertTrue(truncated.readPublicKey() != null);
+            assertThrows(EOFException.class, () -> truncated.read());
+        } catch (Exception ex) {
+            fail("Exception occured during the frame test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    /**
+     * Frames stream through a pipe while they are being written
+     */
+    @Test
+    public void testPipe() {
+        try {
+            KeyPair keyPair = generateKeyPair(KyberKeySize.KEY_768);
+            int frames = 1000;
+            Pipe pipe = Pipe.open();
+            CompletableFuture<Void> sender = CompletableFuture.runAsync(() -> {
+                try {
+                    KyberFrameWriter writer = new KyberFrameWriter(pipe.sink());
+                    for (int i = 0; i < frames; i++) {
+                        writer.write(keyPair.getPublic());
+                    }
+                    writer.flush();
+                    pipe.sink().close();
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+            KyberFrameReader reader = new KyberFrameReader(pipe.source());
+            int count = 0;
+            com.swiftcryptollc.crypto.interfaces.KyberPublicKey publicKey;
+            while ((publicKey = reader.readPublicKey()) != null) {
+                assertTrue(publicKey.getKyberKeySize() == KyberKeySize.KEY_768);
+                count++;
+            }
+            sender.join();
+            assertTrue(count == frames);
+        } catch (Exception ex) {
+            fail("Exception occured during the frame pipe test! [" + ex.getMessage() + "]");
+        }
+    }
+
+    private static KeyPair generateKeyPair(KyberKeySize kyberKeySize) {
+        switch (kyberKeySize) {
+            case KEY_512:
+                return new Kyber512KeyPairGenerator().generateKeyPair();
+            case KEY_1024:
+                return new Kyber1024KeyPairGenerator().generateKeyPair();
+            default:
+                return new Kyber768KeyPairGenerator().generateKeyPair();
+        }
+    }
+
+    private static KyberEncrypted encapsulate(KeyPair keyPair) throws Exception {
+        KyberKeyAgreement keyAgreement = new KyberKeyAgreement();
+        keyAgreement.engineInit(keyPair.getPrivate());
+        return (KyberEncrypted) keyAgreement.engineDoPhase(keyPair.getPublic(), true);
+    }
+}